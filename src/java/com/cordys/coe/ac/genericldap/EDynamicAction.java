@@ -18,7 +18,11 @@
 package com.cordys.coe.ac.genericldap;
 
 import com.cordys.coe.ac.genericldap.soap.impl.BaseImplementation;
+import com.cordys.coe.ac.genericldap.soap.impl.CountLDAPImpl;
+import com.cordys.coe.ac.genericldap.soap.impl.ExistsLDAPImpl;
 import com.cordys.coe.ac.genericldap.soap.impl.GetLDAPObjectImpl;
+import com.cordys.coe.ac.genericldap.soap.impl.GetLDAPObjectsImpl;
+import com.cordys.coe.ac.genericldap.soap.impl.IsGroupMemberImpl;
 import com.cordys.coe.ac.genericldap.soap.impl.SearchLDAPImpl;
 import com.cordys.coe.ac.genericldap.soap.impl.UpdateImpl;
 
@@ -31,6 +35,10 @@ public enum EDynamicAction
 {
     SEARCH_LDAP(SearchLDAPImpl.class),
     GET_LDAP_OBJECT(GetLDAPObjectImpl.class),
+    GET_LDAP_OBJECTS(GetLDAPObjectsImpl.class),
+    COUNT_LDAP(CountLDAPImpl.class),
+    EXISTS_LDAP(ExistsLDAPImpl.class),
+    IS_GROUP_MEMBER(IsGroupMemberImpl.class),
     UPDATE(UpdateImpl.class);
 
     /**
@@ -0,0 +1,123 @@
+/*
+ * Copyright 2007 Cordys R&D B.V. 
+ *
+ *   This file is part of the Cordys Generic LDAP Connector. 
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.cordys.coe.ac.genericldap.cache;
+
+import com.cordys.coe.ac.genericldap.exception.GenericLDAPConnectorException;
+import com.cordys.coe.ac.genericldap.localization.GenLDAPExceptionMessages;
+
+import com.eibus.xml.nom.Node;
+
+/**
+ * This class holds the definition of a cache in a method implementation. The definition looks
+ * like this: &lt;cache ttl="60" maxentries="1000"/&gt;. The time to live is given in seconds.
+ *
+ * @author  pgussow
+ */
+public class CacheDefinition
+{
+    /**
+     * Holds the default maximum number of entries.
+     */
+    private static final String DEFAULT_MAX_ENTRIES = "1000";
+    /**
+     * Holds the default time to live in seconds.
+     */
+    private static final String DEFAULT_TTL = "60";
+    /**
+     * Holds the maximum number of entries.
+     */
+    private int m_maxEntries;
+    /**
+     * Holds the time to live in milliseconds.
+     */
+    private long m_timeToLive;
+
+    /**
+     * Creates a new CacheDefinition object.
+     *
+     * @param  timeToLive  The time to live in milliseconds.
+     * @param  maxEntries  The maximum number of entries.
+     */
+    public CacheDefinition(long timeToLive, int maxEntries)
+    {
+        m_timeToLive = timeToLive;
+        m_maxEntries = maxEntries;
+    }
+
+    /**
+     * This method parses the given definition of the cache.
+     *
+     * @param   cache  The definition of the cache.
+     *
+     * @return  The parsed definition. null if there is no definition.
+     *
+     * @throws  GenericLDAPConnectorException  In case the definition is invalid.
+     */
+    public static CacheDefinition parse(int cache)
+                                 throws GenericLDAPConnectorException
+    {
+        if (cache == 0)
+        {
+            return null;
+        }
+
+        long timeToLive;
+        int maxEntries;
+
+        try
+        {
+            timeToLive = Long.parseLong(Node.getAttribute(cache, "ttl", DEFAULT_TTL));
+            maxEntries = Integer.parseInt(Node.getAttribute(cache, "maxentries",
+                                                            DEFAULT_MAX_ENTRIES));
+        }
+        catch (NumberFormatException e)
+        {
+            throw new GenericLDAPConnectorException(e,
+                                                    GenLDAPExceptionMessages.GLE_THE_CACHE_DEFINITION_0_IS_INVALID,
+                                                    Node.writeToString(cache, false));
+        }
+
+        if ((timeToLive <= 0) || (maxEntries <= 0))
+        {
+            throw new GenericLDAPConnectorException(GenLDAPExceptionMessages.GLE_THE_CACHE_DEFINITION_0_IS_INVALID,
+                                                    Node.writeToString(cache, false));
+        }
+
+        return new CacheDefinition(timeToLive * 1000, maxEntries);
+    }
+
+    /**
+     * This method gets the maximum number of entries.
+     *
+     * @return  The maximum number of entries.
+     */
+    public int getMaxEntries()
+    {
+        return m_maxEntries;
+    }
+
+    /**
+     * This method gets the time to live.
+     *
+     * @return  The time to live in milliseconds.
+     */
+    public long getTimeToLive()
+    {
+        return m_timeToLive;
+    }
+}
@@ -0,0 +1,176 @@
+/*
+ * Copyright 2007 Cordys R&D B.V. 
+ *
+ *   This file is part of the Cordys Generic LDAP Connector. 
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.cordys.coe.ac.genericldap.cache;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This class holds the statistics of a cache. It counts the lookups that were served from the
+ * cache and the ones that were not, and the reasons entries were removed.
+ *
+ * <p>This class will be accessed by multiple threads.</p>
+ *
+ * @author  pgussow
+ */
+public class CacheStatistics
+{
+    /**
+     * Holds the number of entries that were evicted to stay within the bounds of the cache.
+     */
+    private AtomicLong m_evictions = new AtomicLong();
+    /**
+     * Holds the number of entries that were removed because their time to live expired.
+     */
+    private AtomicLong m_expirations = new AtomicLong();
+    /**
+     * Holds the number of lookups that were served from the cache.
+     */
+    private AtomicLong m_hits = new AtomicLong();
+    /**
+     * Holds the number of entries that were removed because the directory changed.
+     */
+    private AtomicLong m_invalidations = new AtomicLong();
+    /**
+     * Holds the number of lookups that were not served from the cache.
+     */
+    private AtomicLong m_misses = new AtomicLong();
+
+    /**
+     * This method gets the number of entries that were evicted to stay within the bounds of the
+     * cache.
+     *
+     * @return  The number of evicted entries.
+     */
+    public long getEvictions()
+    {
+        return m_evictions.get();
+    }
+
+    /**
+     * This method gets the number of entries that were removed because their time to live
+     * expired.
+     *
+     * @return  The number of expired entries.
+     */
+    public long getExpirations()
+    {
+        return m_expirations.get();
+    }
+
+    /**
+     * This method gets the fraction of the lookups that were served from the cache.
+     *
+     * @return  The hit ratio between 0 and 1.
+     */
+    public double getHitRatio()
+    {
+        long hits = m_hits.get();
+        long lookups = hits + m_misses.get();
+
+        return (lookups == 0) ? 0 : ((double) hits / lookups);
+    }
+
+    /**
+     * This method gets the number of lookups that were served from the cache.
+     *
+     * @return  The number of hits.
+     */
+    public long getHits()
+    {
+        return m_hits.get();
+    }
+
+    /**
+     * This method gets the number of entries that were removed because the directory changed.
+     *
+     * @return  The number of invalidated entries.
+     */
+    public long getInvalidations()
+    {
+        return m_invalidations.get();
+    }
+
+    /**
+     * This method gets the number of lookups that were not served from the cache.
+     *
+     * @return  The number of misses.
+     */
+    public long getMisses()
+    {
+        return m_misses.get();
+    }
+
+    /**
+     * @see  java.lang.Object#toString()
+     */
+    @Override public String toString()
+    {
+        StringBuilder sb = new StringBuilder(128);
+
+        sb.append("Hits: ").append(getHits());
+        sb.append(", misses: ").append(getMisses());
+        sb.append(", hit ratio: ").append(Math.round(getHitRatio() * 100)).append("%");
+        sb.append(", evictions: ").append(getEvictions());
+        sb.append(", expirations: ").append(getExpirations());
+        sb.append(", invalidations: ").append(getInvalidations());
+
+        return sb.toString();
+    }
+
+    /**
+     * This method records that an entry was evicted.
+     */
+    void recordEviction()
+    {
+        m_evictions.incrementAndGet();
+    }
+
+    /**
+     * This method records that an entry expired.
+     */
+    void recordExpiration()
+    {
+        m_expirations.incrementAndGet();
+    }
+
+    /**
+     * This method records a lookup that was served from the cache.
+     */
+    void recordHit()
+    {
+        m_hits.incrementAndGet();
+    }
+
+    /**
+     * This method records that entries were invalidated.
+     *
+     * @param  count  The number of invalidated entries.
+     */
+    void recordInvalidations(int count)
+    {
+        m_invalidations.addAndGet(count);
+    }
+
+    /**
+     * This method records a lookup that was not served from the cache.
+     */
+    void recordMiss()
+    {
+        m_misses.incrementAndGet();
+    }
+}
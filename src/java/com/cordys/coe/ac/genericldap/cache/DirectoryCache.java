@@ -0,0 +1,221 @@
+/*
+ * Copyright 2007 Cordys R&D B.V. 
+ *
+ *   This file is part of the Cordys Generic LDAP Connector. 
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.cordys.coe.ac.genericldap.cache;
+
+import com.eibus.util.logger.CordysLogger;
+
+/**
+ * This class is the base for the caches that are invalidated by the changes the connector makes
+ * to the directory. The entries expire after a fixed time and the least recently used entries are
+ * evicted when the cache is full. The subclasses decide which entries a change affects.
+ *
+ * <p>A value that is read from LDAP while a change is processed might be outdated already. To
+ * prevent it from being cached the generation must be read before reading from LDAP and passed
+ * when storing the value.</p>
+ *
+ * <p>This class will be accessed by multiple threads.</p>
+ *
+ * @param   <K>  The type of the keys.
+ * @param   <V>  The type of the values.
+ *
+ * @author  pgussow
+ */
+public abstract class DirectoryCache<K, V>
+    implements IDirectoryChangeListener
+{
+    /**
+     * Holds the logger to use.
+     */
+    private static final CordysLogger LOG = CordysLogger.getCordysLogger(DirectoryCache.class);
+    /**
+     * Holds the bus this cache listens to. null if it is not attached.
+     */
+    private DirectoryChangeBus m_bus;
+    /**
+     * Holds the cached values.
+     */
+    private TTLCache<K, V> m_cache;
+    /**
+     * Holds the number of changes that have been processed.
+     */
+    private long m_generation;
+    /**
+     * Holds the maximum total weight of the cached values.
+     */
+    private int m_maxWeight;
+
+    /**
+     * Creates a new DirectoryCache object.
+     *
+     * @param  timeToLive  The time to live of the values in milliseconds.
+     * @param  maxWeight   The maximum total weight of the cached values.
+     */
+    protected DirectoryCache(long timeToLive, int maxWeight)
+    {
+        m_maxWeight = maxWeight;
+        m_cache = new TTLCache<K, V>(timeToLive, maxWeight);
+    }
+
+    /**
+     * This method registers the cache with the given bus. When the cache was attached to another
+     * bus, e.g. after the connector was reconfigured, it is detached from it and cleared first.
+     *
+     * @param  bus  The bus to listen to.
+     */
+    public synchronized void attach(DirectoryChangeBus bus)
+    {
+        if (m_bus == bus)
+        {
+            return;
+        }
+
+        detach();
+
+        m_bus = bus;
+        m_bus.addListener(this);
+    }
+
+    /**
+     * This method unregisters the cache from its bus and removes all values.
+     */
+    public synchronized void detach()
+    {
+        if (m_bus != null)
+        {
+            m_bus.removeListener(this);
+            m_bus = null;
+        }
+
+        m_generation++;
+        m_cache.clear();
+    }
+
+    /**
+     * @see  com.cordys.coe.ac.genericldap.cache.IDirectoryChangeListener#directoryChanged(com.cordys.coe.ac.genericldap.cache.DirectoryChangeEvent)
+     */
+    @Override public void directoryChanged(final DirectoryChangeEvent event)
+    {
+        int count;
+
+        synchronized (this)
+        {
+            m_generation++;
+
+            count = m_cache.removeAll(new TTLCache.IKeyMatcher<K>()
+                {
+                    public boolean matches(K key)
+                    {
+                        return isAffected(key, event);
+                    }
+                });
+        }
+
+        if (LOG.isDebugEnabled())
+        {
+            LOG.debug("Invalidated " + count + " entries of " + getClass().getSimpleName() +
+                      " for the change of " + event);
+        }
+    }
+
+    /**
+     * This method gets the number of changes that have been processed. It must be read before
+     * reading from LDAP and passed when storing the value.
+     *
+     * @return  The number of processed changes.
+     */
+    public synchronized long getGeneration()
+    {
+        return m_generation;
+    }
+
+    /**
+     * This method gets the maximum total weight of the cached values.
+     *
+     * @return  The maximum total weight.
+     */
+    public int getMaxWeight()
+    {
+        return m_maxWeight;
+    }
+
+    /**
+     * This method gets the statistics of the cache.
+     *
+     * @return  The statistics of the cache.
+     */
+    public CacheStatistics getStatistics()
+    {
+        return m_cache.getStatistics();
+    }
+
+    /**
+     * This method returns the cached value for the given key and counts it as a hit or a miss.
+     *
+     * @param   key  The key to look up.
+     *
+     * @return  The cached value. null if it is not cached.
+     */
+    protected V get(K key)
+    {
+        return m_cache.get(key);
+    }
+
+    /**
+     * This method returns whether the given change affects the value of the given key.
+     *
+     * @param   key    The key of the cached value.
+     * @param   event  The change that was made.
+     *
+     * @return  true if the value must be removed. Otherwise false.
+     */
+    protected abstract boolean isAffected(K key, DirectoryChangeEvent event);
+
+    /**
+     * This method returns the cached value for the given key without counting it as a hit or a
+     * miss.
+     *
+     * @param   key  The key to look up.
+     *
+     * @return  The cached value. null if it is not cached.
+     */
+    protected V peek(K key)
+    {
+        return m_cache.peek(key);
+    }
+
+    /**
+     * This method stores the given value. The value is not stored if the directory changed since
+     * the generation was read, since it might be outdated already.
+     *
+     * @param   key         The key of the value.
+     * @param   value       The value to store.
+     * @param   weight      The weight of the value.
+     * @param   generation  The number of processed changes before the value was read.
+     *
+     * @return  true if the value was stored. Otherwise false.
+     */
+    protected synchronized boolean put(K key, V value, int weight, long generation)
+    {
+        if (generation != m_generation)
+        {
+            return false;
+        }
+
+        return m_cache.put(key, value, weight);
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright 2007 Cordys R&D B.V. 
+ *
+ *   This file is part of the Cordys Generic LDAP Connector. 
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.cordys.coe.ac.genericldap.cache;
+
+import com.cordys.coe.ac.genericldap.localization.GeneralMessages;
+
+import com.eibus.util.logger.CordysLogger;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * This class passes the changes the connector made to the directory on to the registered
+ * listeners. The caches use it to invalidate their entries.
+ *
+ * <p>This class will be accessed by multiple threads.</p>
+ *
+ * @author  pgussow
+ */
+public class DirectoryChangeBus
+{
+    /**
+     * Holds the logger to use.
+     */
+    private static final CordysLogger LOG = CordysLogger.getCordysLogger(DirectoryChangeBus.class);
+    /**
+     * Holds the registered listeners.
+     */
+    private List<IDirectoryChangeListener> m_listeners = new CopyOnWriteArrayList<IDirectoryChangeListener>();
+
+    /**
+     * This method registers the given listener.
+     *
+     * @param  listener  The listener to add.
+     */
+    public void addListener(IDirectoryChangeListener listener)
+    {
+        m_listeners.add(listener);
+    }
+
+    /**
+     * This method notifies all listeners of the given change. A failing listener does not stop
+     * the others from being notified.
+     *
+     * @param  event  The change that was made.
+     */
+    public void publish(DirectoryChangeEvent event)
+    {
+        if (LOG.isDebugEnabled())
+        {
+            LOG.debug("Publishing change of " + event + " to " + m_listeners.size() +
+                      " listeners.");
+        }
+
+        for (IDirectoryChangeListener listener : m_listeners)
+        {
+            try
+            {
+                listener.directoryChanged(event);
+            }
+            catch (RuntimeException e)
+            {
+                LOG.warn(e, GeneralMessages.ERROR_NOTIFYING_A_LISTENER_OF_THE_CHANGE_TO_0,
+                         event.getDN());
+            }
+        }
+    }
+
+    /**
+     * This method unregisters the given listener.
+     *
+     * @param  listener  The listener to remove.
+     */
+    public void removeListener(IDirectoryChangeListener listener)
+    {
+        m_listeners.remove(listener);
+    }
+}
@@ -0,0 +1,235 @@
+/*
+ * Copyright 2007 Cordys R&D B.V. 
+ *
+ *   This file is part of the Cordys Generic LDAP Connector. 
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.cordys.coe.ac.genericldap.cache;
+
+import com.novell.ldap.LDAPConnection;
+import com.novell.ldap.LDAPDN;
+
+import java.util.Locale;
+
+/**
+ * This class describes a change the connector made to the directory. Entries of caches that
+ * might contain the changed entry must be invalidated. When a subtree was renamed or deleted all
+ * entries below the given DN have changed as well.
+ *
+ * <p>The DNs are normalized, so they can be compared as strings.</p>
+ *
+ * @author  pgussow
+ */
+public class DirectoryChangeEvent
+{
+    /**
+     * Holds the normalized DN of the changed entry.
+     */
+    private String m_dn;
+    /**
+     * Holds the normalized new DN of the entry in case of a rename. Otherwise null.
+     */
+    private String m_newDN;
+    /**
+     * Holds whether the entries below the changed entry have changed as well.
+     */
+    private boolean m_subtree;
+
+    /**
+     * Creates a new DirectoryChangeEvent object.
+     *
+     * @param  dn       The DN of the changed entry.
+     * @param  newDN    The new DN of the entry in case of a rename. Otherwise null.
+     * @param  subtree  Whether the entries below the changed entry have changed as well.
+     */
+    public DirectoryChangeEvent(String dn, String newDN, boolean subtree)
+    {
+        m_dn = normalize(dn);
+        m_newDN = (newDN == null) ? null : normalize(newDN);
+        m_subtree = subtree;
+    }
+
+    /**
+     * This method returns the normalized version of the given DN. The spaces around the
+     * separators are removed and the DN is lowercased. DNs that cannot be parsed are only trimmed
+     * and lowercased.
+     *
+     * @param   dn  The DN to normalize.
+     *
+     * @return  The normalized DN.
+     */
+    public static String normalize(String dn)
+    {
+        if ((dn == null) || (dn.trim().length() == 0))
+        {
+            return "";
+        }
+
+        String returnValue;
+
+        try
+        {
+            returnValue = LDAPDN.normalize(dn.trim());
+        }
+        catch (IllegalArgumentException e)
+        {
+            returnValue = dn.trim();
+        }
+
+        return returnValue.toLowerCase(Locale.ENGLISH);
+    }
+
+    /**
+     * This method returns whether the change affects the results of a search with the given base
+     * and scope. The filter of the search is not taken into account, since a change can make an
+     * entry match the filter or no longer match it.
+     *
+     * @param   baseDN  The normalized DN the search starts from.
+     * @param   scope   The scope of the search.
+     *
+     * @return  true if the results of the search may have changed. Otherwise false.
+     */
+    public boolean affects(String baseDN, int scope)
+    {
+        if (isInScope(m_dn, baseDN, scope) ||
+                ((m_newDN != null) && isInScope(m_newDN, baseDN, scope)))
+        {
+            return true;
+        }
+
+        // When a whole subtree changed the base of the search can be part of it.
+        return m_subtree &&
+               (isAtOrBelow(baseDN, m_dn) || ((m_newDN != null) && isAtOrBelow(baseDN, m_newDN)));
+    }
+
+    /**
+     * This method gets the normalized DN of the changed entry.
+     *
+     * @return  The normalized DN of the changed entry.
+     */
+    public String getDN()
+    {
+        return m_dn;
+    }
+
+    /**
+     * This method gets the normalized new DN of the entry in case of a rename.
+     *
+     * @return  The normalized new DN. null if the entry was not renamed.
+     */
+    public String getNewDN()
+    {
+        return m_newDN;
+    }
+
+    /**
+     * This method gets whether the entries below the changed entry have changed as well.
+     *
+     * @return  Whether the entries below the changed entry have changed as well.
+     */
+    public boolean isSubtree()
+    {
+        return m_subtree;
+    }
+
+    /**
+     * @see  java.lang.Object#toString()
+     */
+    @Override public String toString()
+    {
+        StringBuilder sb = new StringBuilder(128);
+
+        sb.append(m_dn);
+
+        if (m_newDN != null)
+        {
+            sb.append(" -> ").append(m_newDN);
+        }
+
+        if (m_subtree)
+        {
+            sb.append(" (subtree)");
+        }
+
+        return sb.toString();
+    }
+
+    /**
+     * This method returns the parent of the given normalized DN.
+     *
+     * @param   dn  The normalized DN.
+     *
+     * @return  The normalized DN of the parent. An empty string for a top level entry.
+     */
+    static String getParent(String dn)
+    {
+        for (int iCount = 0; iCount < dn.length(); iCount++)
+        {
+            char c = dn.charAt(iCount);
+
+            if (c == '\\')
+            {
+                // Skip the escaped character.
+                iCount++;
+            }
+            else if (c == ',')
+            {
+                return dn.substring(iCount + 1);
+            }
+        }
+
+        return "";
+    }
+
+    /**
+     * This method returns whether the normalized DN is the same as or below the given ancestor.
+     * Every DN is below the root.
+     *
+     * @param   dn        The normalized DN.
+     * @param   ancestor  The normalized DN of the ancestor.
+     *
+     * @return  true if the DN is the same as or below the ancestor. Otherwise false.
+     */
+    static boolean isAtOrBelow(String dn, String ancestor)
+    {
+        return (ancestor.length() == 0) || dn.equals(ancestor) || dn.endsWith("," + ancestor);
+    }
+
+    /**
+     * This method returns whether the normalized DN is within the scope of a search.
+     *
+     * @param   dn      The normalized DN.
+     * @param   baseDN  The normalized DN the search starts from.
+     * @param   scope   The scope of the search.
+     *
+     * @return  true if the DN is within the scope. Otherwise false.
+     */
+    private static boolean isInScope(String dn, String baseDN, int scope)
+    {
+        switch (scope)
+        {
+            case LDAPConnection.SCOPE_BASE:
+                return dn.equals(baseDN);
+
+            case LDAPConnection.SCOPE_ONE:
+                return getParent(dn).equals(baseDN);
+
+            case LDAPConnection.SCOPE_SUBORDINATESUBTREE:
+                return !dn.equals(baseDN) && isAtOrBelow(dn, baseDN);
+
+            default:
+                return isAtOrBelow(dn, baseDN);
+        }
+    }
+}
@@ -0,0 +1,283 @@
+/*
+ * Copyright 2007 Cordys R&D B.V. 
+ *
+ *   This file is part of the Cordys Generic LDAP Connector. 
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.cordys.coe.ac.genericldap.cache;
+
+import com.cordys.coe.ac.genericldap.connection.IConnectionManager;
+import com.cordys.coe.ac.genericldap.exception.GenericLDAPConnectorException;
+
+import com.novell.ldap.LDAPAttribute;
+import com.novell.ldap.LDAPAttributeSet;
+import com.novell.ldap.LDAPConnection;
+import com.novell.ldap.LDAPEntry;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * This class caches the entries that were read by their DN. The cache remembers which attributes
+ * were read for an entry. A request for attributes that have all been read is served from the
+ * cache. For a request for more attributes only the missing attributes are read and merged into
+ * the cached entry.
+ *
+ * <p>The changes the connector makes to the directory remove the affected entries. Changes made
+ * by others are only seen after the time to live of the entries expired.</p>
+ *
+ * <p>This class will be accessed by multiple threads.</p>
+ *
+ * @author  pgussow
+ */
+public class EntryCache extends DirectoryCache<String, EntryCache.CachedEntry>
+{
+    /**
+     * Creates a new EntryCache object.
+     *
+     * @param  timeToLive  The time to live of the entries in milliseconds.
+     * @param  maxEntries  The maximum number of cached entries.
+     */
+    public EntryCache(long timeToLive, int maxEntries)
+    {
+        super(timeToLive, maxEntries);
+    }
+
+    /**
+     * This method returns the entry with the given DN. If all requested attributes are cached the
+     * entry is not read from LDAP. Attribute names with options (like ;binary or ;range) are
+     * always read from LDAP.
+     *
+     * @param   connectionManager  The connection manager to read the entry with.
+     * @param   dn                 The DN of the entry.
+     * @param   attributes         The names of the attributes to read. An empty list reads all
+     *                             user attributes.
+     *
+     * @return  The entry.
+     *
+     * @throws  GenericLDAPConnectorException  In case the entry could not be read.
+     */
+    public LDAPEntry readLDAPEntry(IConnectionManager connectionManager, String dn,
+                                   String[] attributes)
+                            throws GenericLDAPConnectorException
+    {
+        Set<String> requested = getRequestedAttributes(attributes);
+
+        if (requested == null)
+        {
+            return connectionManager.readLDAPEntry(dn, attributes);
+        }
+
+        String key = DirectoryChangeEvent.normalize(dn);
+
+        // The generation must be read before the cached entry, so a change made in between
+        // prevents the outdated attributes from being merged and cached again.
+        long generation = getGeneration();
+        CachedEntry cached = peek(key);
+
+        if (cached != null)
+        {
+            if (cached.covers(requested))
+            {
+                getStatistics().recordHit();
+
+                return cached.getEntry();
+            }
+        }
+
+        getStatistics().recordMiss();
+
+        CachedEntry result;
+
+        if ((cached == null) || requested.isEmpty())
+        {
+            result = new CachedEntry(connectionManager.readLDAPEntry(dn, attributes), requested);
+        }
+        else
+        {
+            // Only read the attributes that are missing.
+            List<String> missing = new ArrayList<String>();
+
+            for (String name : requested)
+            {
+                if (!cached.covers(Collections.singleton(name)))
+                {
+                    missing.add(name);
+                }
+            }
+
+            result = cached.merge(connectionManager.readLDAPEntry(dn,
+                                                                  missing.toArray(new String[0])),
+                                  requested);
+        }
+
+        put(key, result, 1, generation);
+
+        return result.getEntry();
+    }
+
+    /**
+     * @see  com.cordys.coe.ac.genericldap.cache.DirectoryCache#isAffected(java.lang.Object, com.cordys.coe.ac.genericldap.cache.DirectoryChangeEvent)
+     */
+    @Override protected boolean isAffected(String key, DirectoryChangeEvent event)
+    {
+        return event.affects(key, LDAPConnection.SCOPE_BASE);
+    }
+
+    /**
+     * This method returns the lowercased names of the requested attributes.
+     *
+     * @param   attributes  The names of the attributes.
+     *
+     * @return  The lowercased names. An empty set if all user attributes are requested. null if
+     *          the request cannot be served from the cache.
+     */
+    private static Set<String> getRequestedAttributes(String[] attributes)
+    {
+        Set<String> returnValue = new HashSet<String>();
+
+        if (attributes != null)
+        {
+            for (String attribute : attributes)
+            {
+                if ((attribute.indexOf(';') >= 0) || "+".equals(attribute) ||
+                        "1.1".equals(attribute))
+                {
+                    return null;
+                }
+
+                if (!"*".equals(attribute))
+                {
+                    returnValue.add(attribute.toLowerCase(Locale.ENGLISH));
+                }
+            }
+        }
+
+        return returnValue;
+    }
+
+    /**
+     * This class holds a cached entry together with the names of the attributes that were read.
+     * Instances are never changed, so they can be used by multiple threads.
+     */
+    public static class CachedEntry
+    {
+        /**
+         * Holds whether all user attributes were read.
+         */
+        private boolean m_allAttributes;
+        /**
+         * Holds the lowercased names of the attributes that were read.
+         */
+        private Set<String> m_attributes;
+        /**
+         * Holds the entry.
+         */
+        private LDAPEntry m_entry;
+
+        /**
+         * Creates a new CachedEntry object.
+         *
+         * @param  entry       The entry that was read.
+         * @param  attributes  The lowercased names of the attributes that were read. An empty set
+         *                     if all user attributes were read.
+         */
+        CachedEntry(LDAPEntry entry, Set<String> attributes)
+        {
+            m_entry = entry;
+            m_attributes = attributes;
+            m_allAttributes = attributes.isEmpty();
+        }
+
+        /**
+         * This method gets the entry.
+         *
+         * @return  The entry.
+         */
+        public LDAPEntry getEntry()
+        {
+            return m_entry;
+        }
+
+        /**
+         * This method returns whether the given attributes have been read. When all user
+         * attributes were read an attribute that is not present may be an operational attribute,
+         * so it is not covered.
+         *
+         * @param   attributes  The lowercased names of the attributes. An empty set for all user
+         *                      attributes.
+         *
+         * @return  true if the attributes have been read. Otherwise false.
+         */
+        boolean covers(Set<String> attributes)
+        {
+            if (attributes.isEmpty())
+            {
+                return m_allAttributes;
+            }
+
+            for (String name : attributes)
+            {
+                if (!m_attributes.contains(name) &&
+                        !(m_allAttributes && (m_entry.getAttribute(name) != null)))
+                {
+                    return false;
+                }
+            }
+
+            return true;
+        }
+
+        /**
+         * This method creates a new cached entry with the attributes of the given entry added.
+         *
+         * @param   entry       The entry with the missing attributes.
+         * @param   attributes  The lowercased names of the attributes that were requested.
+         *
+         * @return  The merged entry.
+         */
+        CachedEntry merge(LDAPEntry entry, Set<String> attributes)
+        {
+            LDAPAttributeSet attributeSet = new LDAPAttributeSet();
+            Set<String> names = new HashSet<String>(m_attributes);
+
+            names.addAll(attributes);
+
+            for (Iterator<?> iterator = m_entry.getAttributeSet().iterator(); iterator.hasNext();)
+            {
+                attributeSet.add(iterator.next());
+            }
+
+            for (Iterator<?> iterator = entry.getAttributeSet().iterator(); iterator.hasNext();)
+            {
+                LDAPAttribute attribute = (LDAPAttribute) iterator.next();
+
+                // The new value replaces the cached one.
+                attributeSet.remove(attribute.getName());
+                attributeSet.add(attribute);
+            }
+
+            CachedEntry returnValue = new CachedEntry(new LDAPEntry(m_entry.getDN(), attributeSet),
+                                                      names);
+            returnValue.m_allAttributes = m_allAttributes;
+
+            return returnValue;
+        }
+    }
+}
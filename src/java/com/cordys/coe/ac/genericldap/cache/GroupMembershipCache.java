@@ -0,0 +1,125 @@
+/*
+ * Copyright 2007 Cordys R&D B.V. 
+ *
+ *   This file is part of the Cordys Generic LDAP Connector. 
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.cordys.coe.ac.genericldap.cache;
+
+import com.novell.ldap.LDAPConnection;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * This class caches the edges of the group membership graph: for an entry the groups it is a
+ * direct member of. Together they are used to resolve nested group memberships without searching
+ * the same part of the graph again.
+ *
+ * <p>A change to a group can add members, which cannot be seen from the change. So a change
+ * removes all cached memberships, unless the entry is known not to be a group because its object
+ * classes cannot hold members. Then only that entry is removed, and since the change might have
+ * added an object class it is no longer known as a non-group.</p>
+ *
+ * <p>This class will be accessed by multiple threads.</p>
+ *
+ * @author  pgussow
+ */
+public class GroupMembershipCache extends DirectoryCache<String, String[]>
+{
+    /**
+     * Holds whether the change that is processed removes all cached memberships.
+     */
+    private boolean m_clearAll;
+    /**
+     * Holds the normalized DNs of the cached entries that are known not to be groups.
+     */
+    private Set<String> m_nonGroups = new HashSet<String>();
+
+    /**
+     * Creates a new GroupMembershipCache object.
+     *
+     * @param  timeToLive  The time to live of the memberships in milliseconds.
+     * @param  maxEntries  The maximum number of entries of which the groups are cached.
+     */
+    public GroupMembershipCache(long timeToLive, int maxEntries)
+    {
+        super(timeToLive, maxEntries);
+    }
+
+    /**
+     * @see  com.cordys.coe.ac.genericldap.cache.DirectoryCache#directoryChanged(com.cordys.coe.ac.genericldap.cache.DirectoryChangeEvent)
+     */
+    @Override public synchronized void directoryChanged(DirectoryChangeEvent event)
+    {
+        m_clearAll = event.isSubtree() || !m_nonGroups.remove(event.getDN());
+
+        try
+        {
+            super.directoryChanged(event);
+        }
+        finally
+        {
+            if (m_clearAll)
+            {
+                m_nonGroups.clear();
+                m_clearAll = false;
+            }
+        }
+    }
+
+    /**
+     * This method returns the groups the given entry is a direct member of.
+     *
+     * @param   dn  The normalized DN of the entry.
+     *
+     * @return  The normalized DNs of the groups. null if they are not cached.
+     */
+    public String[] getParentGroups(String dn)
+    {
+        return get(dn);
+    }
+
+    /**
+     * This method stores the groups the given entry is a direct member of. They are not stored if
+     * the directory changed since the generation was read.
+     *
+     * @param  dn          The normalized DN of the entry.
+     * @param  groups      The normalized DNs of the groups.
+     * @param  nonGroup    Whether the entry is known not to be a group.
+     * @param  generation  The number of processed changes before the entry was read.
+     */
+    public synchronized void putParentGroups(String dn, String[] groups, boolean nonGroup,
+                                             long generation)
+    {
+        if (put(dn, groups, 1, generation) && nonGroup)
+        {
+            // Forgetting a non-group only makes the next change to it clear all memberships.
+            if (m_nonGroups.size() >= getMaxWeight())
+            {
+                m_nonGroups.clear();
+            }
+
+            m_nonGroups.add(dn);
+        }
+    }
+
+    /**
+     * @see  com.cordys.coe.ac.genericldap.cache.DirectoryCache#isAffected(java.lang.Object, com.cordys.coe.ac.genericldap.cache.DirectoryChangeEvent)
+     */
+    @Override protected boolean isAffected(String key, DirectoryChangeEvent event)
+    {
+        return m_clearAll || event.affects(key, LDAPConnection.SCOPE_BASE);
+    }
+}
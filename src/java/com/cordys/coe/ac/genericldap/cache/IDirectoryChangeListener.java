@@ -0,0 +1,35 @@
+/*
+ * Copyright 2007 Cordys R&D B.V. 
+ *
+ *   This file is part of the Cordys Generic LDAP Connector. 
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.cordys.coe.ac.genericldap.cache;
+
+/**
+ * This interface describes a listener that is notified of the changes the connector made to the
+ * directory.
+ *
+ * @author  pgussow
+ */
+public interface IDirectoryChangeListener
+{
+    /**
+     * This method is called after the connector changed the directory. It is called on the thread
+     * that made the change, so it should return quickly.
+     *
+     * @param  event  The change that was made.
+     */
+    void directoryChanged(DirectoryChangeEvent event);
+}
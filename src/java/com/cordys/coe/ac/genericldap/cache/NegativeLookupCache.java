@@ -0,0 +1,133 @@
+/*
+ * Copyright 2007 Cordys R&D B.V. 
+ *
+ *   This file is part of the Cordys Generic LDAP Connector. 
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.cordys.coe.ac.genericldap.cache;
+
+import com.novell.ldap.LDAPConnection;
+import com.novell.ldap.LDAPEntry;
+import com.novell.ldap.LDAPException;
+
+/**
+ * This class remembers the DNs that do not exist for a short time. Reading such a DN again fails
+ * without a round trip to the server. Adding or renaming an entry by the connector removes the DN
+ * from the cache. Entries that are created by others are only seen after the time to live
+ * expired, so the time to live should be short.
+ *
+ * <p>This class will be accessed by multiple threads.</p>
+ *
+ * @author  pgussow
+ */
+public class NegativeLookupCache extends DirectoryCache<String, Boolean>
+{
+    /**
+     * Holds whether the cache is enabled.
+     */
+    private boolean m_enabled;
+
+    /**
+     * Creates a new NegativeLookupCache object.
+     *
+     * @param  timeToLive  The time to live of the DNs in milliseconds. 0 disables the cache.
+     * @param  maxEntries  The maximum number of DNs to remember.
+     */
+    public NegativeLookupCache(long timeToLive, int maxEntries)
+    {
+        super(timeToLive, maxEntries);
+
+        m_enabled = (timeToLive > 0) && (maxEntries > 0);
+    }
+
+    /**
+     * This method returns whether the given DN is known not to exist.
+     *
+     * @param   dn  The DN to check.
+     *
+     * @return  true if the DN does not exist. false if it is unknown.
+     */
+    public boolean isMissing(String dn)
+    {
+        return m_enabled && (get(DirectoryChangeEvent.normalize(dn)) != null);
+    }
+
+    /**
+     * This method reads the given entry. If the DN is known not to exist the same exception as
+     * the server would give is thrown. If the server reports that it does not exist the DN is
+     * remembered.
+     *
+     * @param   connection  The connection to use.
+     * @param   dn          The DN to read.
+     * @param   attributes  The names of the attributes to read. null for all user attributes.
+     *
+     * @return  The entry.
+     *
+     * @throws  LDAPException  In case the entry could not be read.
+     */
+    public LDAPEntry read(LDAPConnection connection, String dn, String[] attributes)
+                  throws LDAPException
+    {
+        if (!m_enabled)
+        {
+            return connection.read(dn, attributes);
+        }
+
+        if (isMissing(dn))
+        {
+            throw new LDAPException(LDAPException.resultCodeToString(LDAPException.NO_SUCH_OBJECT),
+                                    LDAPException.NO_SUCH_OBJECT, null, dn);
+        }
+
+        long generation = getGeneration();
+
+        try
+        {
+            return connection.read(dn, attributes);
+        }
+        catch (LDAPException e)
+        {
+            if (e.getResultCode() == LDAPException.NO_SUCH_OBJECT)
+            {
+                recordMissing(dn, generation);
+            }
+
+            throw e;
+        }
+    }
+
+    /**
+     * This method remembers that the given DN does not exist.
+     *
+     * @param  dn          The DN that does not exist.
+     * @param  generation  The number of processed changes before the DN was read.
+     */
+    public void recordMissing(String dn, long generation)
+    {
+        if (m_enabled)
+        {
+            put(DirectoryChangeEvent.normalize(dn), Boolean.TRUE, 1, generation);
+        }
+    }
+
+    /**
+     * @see  com.cordys.coe.ac.genericldap.cache.DirectoryCache#isAffected(java.lang.Object, com.cordys.coe.ac.genericldap.cache.DirectoryChangeEvent)
+     */
+    @Override protected boolean isAffected(String key, DirectoryChangeEvent event)
+    {
+        // Only an add or the target of a rename creates an entry, but removing the DN for any
+        // change to it is cheaper than telling the changes apart.
+        return event.affects(key, LDAPConnection.SCOPE_BASE);
+    }
+}
@@ -0,0 +1,205 @@
+/*
+ * Copyright 2007 Cordys R&D B.V. 
+ *
+ *   This file is part of the Cordys Generic LDAP Connector. 
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.cordys.coe.ac.genericldap.cache;
+
+import com.novell.ldap.LDAPEntry;
+
+import java.util.Locale;
+import java.util.TreeSet;
+
+/**
+ * This class caches the results of searches. The key is the normalized search: base DN, scope,
+ * filter, attributes, sort order, maximum number of results and referral following. The size of
+ * the cache is bounded by the total number of LDAP entries in the cached results.
+ *
+ * <p>The changes the connector makes to the directory invalidate all results of searches that
+ * could contain the changed entries. Changes made by others are only seen after the time to live
+ * of the results expired.</p>
+ *
+ * <p>This class will be accessed by multiple threads.</p>
+ *
+ * @author  pgussow
+ */
+public class SearchResultCache extends DirectoryCache<SearchResultCache.SearchKey, LDAPEntry[]>
+{
+    /**
+     * Creates a new SearchResultCache object.
+     *
+     * @param  timeToLive  The time to live of the results in milliseconds.
+     * @param  maxEntries  The maximum total number of LDAP entries in the cached results.
+     */
+    public SearchResultCache(long timeToLive, int maxEntries)
+    {
+        super(timeToLive, maxEntries);
+    }
+
+    /**
+     * This method creates the key for the given search.
+     *
+     * @param   baseDN             The DN to start searching from.
+     * @param   scope              The scope for searching.
+     * @param   filter             The filter to use.
+     * @param   attributes         The names of the attributes to retrieve.
+     * @param   sort               The sort order.
+     * @param   maxResults         The maximum number of results.
+     * @param   referralFollowing  Whether referrals are followed.
+     *
+     * @return  The key for the search.
+     */
+    public static SearchKey createKey(String baseDN, int scope, String filter, String[] attributes,
+                                      String sort, int maxResults, boolean referralFollowing)
+    {
+        // The order and case of the attribute names do not matter.
+        TreeSet<String> attributeNames = new TreeSet<String>();
+
+        if (attributes != null)
+        {
+            for (String attribute : attributes)
+            {
+                attributeNames.add(attribute.toLowerCase(Locale.ENGLISH));
+            }
+        }
+
+        StringBuilder details = new StringBuilder(128);
+        details.append((filter == null) ? "" : filter.trim()).append('\n');
+        details.append(attributeNames).append('\n');
+        details.append((sort == null) ? "" : sort.trim().toLowerCase(Locale.ENGLISH)).append('\n');
+        details.append(maxResults).append('\n');
+        details.append(referralFollowing);
+
+        return new SearchKey(DirectoryChangeEvent.normalize(baseDN), scope, details.toString());
+    }
+
+    /**
+     * This method returns the cached results of the given search.
+     *
+     * @param   key  The key of the search.
+     *
+     * @return  The cached results. null if the results are not cached.
+     */
+    @Override public LDAPEntry[] get(SearchKey key)
+    {
+        return super.get(key);
+    }
+
+    /**
+     * This method stores the results of the given search. The results are not stored if the
+     * directory changed while the search was executed, since they might be outdated already.
+     *
+     * @param   key         The key of the search.
+     * @param   entries     The results of the search.
+     * @param   generation  The number of processed changes before the search was executed.
+     *
+     * @return  true if the results were stored. Otherwise false.
+     */
+    public boolean put(SearchKey key, LDAPEntry[] entries, long generation)
+    {
+        // Empty results take memory as well.
+        return put(key, entries, Math.max(entries.length, 1), generation);
+    }
+
+    /**
+     * @see  com.cordys.coe.ac.genericldap.cache.DirectoryCache#isAffected(java.lang.Object, com.cordys.coe.ac.genericldap.cache.DirectoryChangeEvent)
+     */
+    @Override protected boolean isAffected(SearchKey key, DirectoryChangeEvent event)
+    {
+        return event.affects(key.getBaseDN(), key.getScope());
+    }
+
+    /**
+     * This class holds the normalized definition of a search.
+     */
+    public static class SearchKey
+    {
+        /**
+         * Holds the normalized DN the search starts from.
+         */
+        private String m_baseDN;
+        /**
+         * Holds the other details of the search.
+         */
+        private String m_details;
+        /**
+         * Holds the scope of the search.
+         */
+        private int m_scope;
+
+        /**
+         * Creates a new SearchKey object.
+         *
+         * @param  baseDN   The normalized DN the search starts from.
+         * @param  scope    The scope of the search.
+         * @param  details  The other details of the search.
+         */
+        SearchKey(String baseDN, int scope, String details)
+        {
+            m_baseDN = baseDN;
+            m_scope = scope;
+            m_details = details;
+        }
+
+        /**
+         * @see  java.lang.Object#equals(java.lang.Object)
+         */
+        @Override public boolean equals(Object obj)
+        {
+            if (this == obj)
+            {
+                return true;
+            }
+
+            if (!(obj instanceof SearchKey))
+            {
+                return false;
+            }
+
+            SearchKey other = (SearchKey) obj;
+
+            return (m_scope == other.m_scope) && m_baseDN.equals(other.m_baseDN) &&
+                   m_details.equals(other.m_details);
+        }
+
+        /**
+         * This method gets the normalized DN the search starts from.
+         *
+         * @return  The normalized DN the search starts from.
+         */
+        public String getBaseDN()
+        {
+            return m_baseDN;
+        }
+
+        /**
+         * This method gets the scope of the search.
+         *
+         * @return  The scope of the search.
+         */
+        public int getScope()
+        {
+            return m_scope;
+        }
+
+        /**
+         * @see  java.lang.Object#hashCode()
+         */
+        @Override public int hashCode()
+        {
+            return (((m_baseDN.hashCode() * 31) + m_scope) * 31) + m_details.hashCode();
+        }
+    }
+}
@@ -0,0 +1,305 @@
+/*
+ * Copyright 2007 Cordys R&D B.V. 
+ *
+ *   This file is part of the Cordys Generic LDAP Connector. 
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.cordys.coe.ac.genericldap.cache;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * This class is a cache in which the entries expire after a fixed time. The memory is bounded by
+ * the total weight of the entries; when it is exceeded the least recently used entries are
+ * evicted. The caller determines the weight of an entry, e.g. the number of LDAP entries it holds.
+ *
+ * <p>This class will be accessed by multiple threads.</p>
+ *
+ * @param   <K>  The type of the keys.
+ * @param   <V>  The type of the values.
+ *
+ * @author  pgussow
+ */
+public class TTLCache<K, V>
+{
+    /**
+     * Holds the cached entries in the order of their last use.
+     */
+    private LinkedHashMap<K, CacheEntry<V>> m_entries = new LinkedHashMap<K, CacheEntry<V>>(16, 0.75f,
+                                                                                             true);
+    /**
+     * Holds the maximum total weight of the entries.
+     */
+    private long m_maxWeight;
+    /**
+     * Holds the statistics of the cache.
+     */
+    private CacheStatistics m_statistics = new CacheStatistics();
+    /**
+     * Holds the time to live of the entries in milliseconds.
+     */
+    private long m_timeToLive;
+    /**
+     * Holds the current total weight of the entries.
+     */
+    private long m_weight;
+
+    /**
+     * Creates a new TTLCache object.
+     *
+     * @param  timeToLive  The time to live of the entries in milliseconds.
+     * @param  maxWeight   The maximum total weight of the entries.
+     */
+    public TTLCache(long timeToLive, long maxWeight)
+    {
+        m_timeToLive = timeToLive;
+        m_maxWeight = maxWeight;
+    }
+
+    /**
+     * This method removes all entries.
+     */
+    public synchronized void clear()
+    {
+        m_entries.clear();
+        m_weight = 0;
+    }
+
+    /**
+     * This method returns the value for the given key. Expired entries are removed.
+     *
+     * @param   key  The key to look up.
+     *
+     * @return  The cached value. null if it is not cached or has expired.
+     */
+    public synchronized V get(K key)
+    {
+        V returnValue = peek(key);
+
+        if (returnValue == null)
+        {
+            m_statistics.recordMiss();
+        }
+        else
+        {
+            m_statistics.recordHit();
+        }
+
+        return returnValue;
+    }
+
+    /**
+     * This method gets the statistics of the cache.
+     *
+     * @return  The statistics of the cache.
+     */
+    public CacheStatistics getStatistics()
+    {
+        return m_statistics;
+    }
+
+    /**
+     * This method gets the current total weight of the entries.
+     *
+     * @return  The total weight of the entries.
+     */
+    public synchronized long getWeight()
+    {
+        return m_weight;
+    }
+
+    /**
+     * This method returns the value for the given key without counting it as a hit or a miss.
+     * Expired entries are removed.
+     *
+     * @param   key  The key to look up.
+     *
+     * @return  The cached value. null if it is not cached or has expired.
+     */
+    public synchronized V peek(K key)
+    {
+        CacheEntry<V> entry = m_entries.get(key);
+
+        if (entry == null)
+        {
+            return null;
+        }
+
+        if (entry.m_expires <= System.currentTimeMillis())
+        {
+            removeEntry(key);
+            m_statistics.recordExpiration();
+
+            return null;
+        }
+
+        return entry.m_value;
+    }
+
+    /**
+     * This method stores the value for the given key. Values that are heavier than the whole
+     * cache are not stored.
+     *
+     * @param   key     The key of the value.
+     * @param   value   The value to store.
+     * @param   weight  The weight of the value.
+     *
+     * @return  true if the value was stored. Otherwise false.
+     */
+    public synchronized boolean put(K key, V value, int weight)
+    {
+        removeEntry(key);
+
+        if (weight > m_maxWeight)
+        {
+            return false;
+        }
+
+        m_entries.put(key, new CacheEntry<V>(value, weight,
+                                             System.currentTimeMillis() + m_timeToLive));
+        m_weight += weight;
+
+        // Evict the least recently used entries until the cache is within its bounds again.
+        Iterator<CacheEntry<V>> entries = m_entries.values().iterator();
+
+        while ((m_weight > m_maxWeight) && entries.hasNext())
+        {
+            m_weight -= entries.next().m_weight;
+            entries.remove();
+            m_statistics.recordEviction();
+        }
+
+        return true;
+    }
+
+    /**
+     * This method removes the value for the given key.
+     *
+     * @param  key  The key to remove.
+     */
+    public synchronized void remove(K key)
+    {
+        removeEntry(key);
+    }
+
+    /**
+     * This method removes all entries of which the key matches. They are counted as
+     * invalidations.
+     *
+     * @param   matcher  The matcher for the keys.
+     *
+     * @return  The number of removed entries.
+     */
+    public synchronized int removeAll(IKeyMatcher<K> matcher)
+    {
+        int returnValue = 0;
+
+        for (Iterator<Map.Entry<K, CacheEntry<V>>> entries = m_entries.entrySet().iterator();
+                 entries.hasNext();)
+        {
+            Map.Entry<K, CacheEntry<V>> entry = entries.next();
+
+            if (matcher.matches(entry.getKey()))
+            {
+                m_weight -= entry.getValue().m_weight;
+                entries.remove();
+                returnValue++;
+            }
+        }
+
+        m_statistics.recordInvalidations(returnValue);
+
+        return returnValue;
+    }
+
+    /**
+     * This method returns the number of cached entries, including the expired entries that have
+     * not been removed yet.
+     *
+     * @return  The number of cached entries.
+     */
+    public synchronized int size()
+    {
+        return m_entries.size();
+    }
+
+    /**
+     * This method removes the entry for the given key and updates the total weight.
+     *
+     * @param  key  The key to remove.
+     */
+    private void removeEntry(K key)
+    {
+        CacheEntry<V> entry = m_entries.remove(key);
+
+        if (entry != null)
+        {
+            m_weight -= entry.m_weight;
+        }
+    }
+
+    /**
+     * This interface describes the selection of keys to remove from the cache.
+     *
+     * @param   <K>  The type of the keys.
+     */
+    public interface IKeyMatcher<K>
+    {
+        /**
+         * This method returns whether the given key matches.
+         *
+         * @param   key  The key to check.
+         *
+         * @return  true if the key matches. Otherwise false.
+         */
+        boolean matches(K key);
+    }
+
+    /**
+     * This class holds a cached value together with its weight and expiry time.
+     *
+     * @param   <V>  The type of the value.
+     */
+    private static class CacheEntry<V>
+    {
+        /**
+         * Holds the time at which the entry expires.
+         */
+        private long m_expires;
+        /**
+         * Holds the cached value.
+         */
+        private V m_value;
+        /**
+         * Holds the weight of the entry.
+         */
+        private int m_weight;
+
+        /**
+         * Creates a new CacheEntry object.
+         *
+         * @param  value    The cached value.
+         * @param  weight   The weight of the entry.
+         * @param  expires  The time at which the entry expires.
+         */
+        CacheEntry(V value, int weight, long expires)
+        {
+            m_value = value;
+            m_weight = weight;
+            m_expires = expires;
+        }
+    }
+}
@@ -0,0 +1,43 @@
+/*
+ * Copyright 2007 Cordys R&D B.V. 
+ *
+ *   This file is part of the Cordys Generic LDAP Connector. 
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.cordys.coe.ac.genericldap.config;
+
+/**
+ * This enum holds the strategies to spread the load over the configured LDAP servers.
+ *
+ * @author  pgussow
+ */
+public enum ELoadBalancingStrategy
+{
+    /**
+     * All requests go to the first healthy server in the configured order.
+     */
+    FAILOVER,
+    /**
+     * The healthy servers take turns.
+     */
+    ROUND_ROBIN,
+    /**
+     * The healthy server with the fewest connections in use is used.
+     */
+    LEAST_OUTSTANDING,
+    /**
+     * A healthy server is picked at random, weighted by the inverse of its average latency.
+     */
+    LATENCY_WEIGHTED;
+}
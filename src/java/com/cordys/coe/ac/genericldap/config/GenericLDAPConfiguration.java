@@ -34,6 +34,9 @@ import com.eibus.xml.xpath.XPathMetaInfo;
 
 import java.security.Provider;
 
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * This class holds the configuration details for the Generic LDAP Connector.
  */
@@ -88,14 +91,106 @@ class GenericLDAPConfiguration
      * Holds the name of the tag holding the number of LDAP connections tag.
      */
     private static final String TAG_NR_OF_CONNECTIONS = "nrofconnections";
+    /**
+     * Holds the name of the tag holding the minimum number of LDAP connections.
+     */
+    private static final String TAG_MIN_CONNECTIONS = "minconnections";
+    /**
+     * Holds the name of the tag holding the maximum number of LDAP connections.
+     */
+    private static final String TAG_MAX_CONNECTIONS = "maxconnections";
+    /**
+     * Holds the name of the tag holding the idle timeout for LDAP connections.
+     */
+    private static final String TAG_IDLE_TIMEOUT = "idletimeout";
+    /**
+     * Holds the name of the tag holding the maximum time to wait for a free LDAP connection.
+     */
+    private static final String TAG_ACQUIRE_TIMEOUT = "acquiretimeout";
+    /**
+     * Holds the name of the tag holding the interval in which idle connections are validated.
+     */
+    private static final String TAG_VALIDATION_INTERVAL = "validationinterval";
+    /**
+     * Holds the name of the tag holding whether or not the pool is filled in the background.
+     */
+    private static final String TAG_LAZY_STARTUP = "lazystartup";
+    /**
+     * Holds the name of the tag holding the additional LDAP servers (host[:port], comma
+     * separated).
+     */
+    private static final String TAG_REPLICAS = "replicas";
+    /**
+     * Holds the name of the tag holding the load balancing strategy.
+     */
+    private static final String TAG_LOAD_BALANCING = "loadbalancing";
+    /**
+     * Holds the name of the tag holding the LDAP servers for updates (host[:port], comma
+     * separated).
+     */
+    private static final String TAG_WRITE_SERVERS = "writeservers";
+    /**
+     * Holds the name of the tag holding the interval in which schema changes are picked up.
+     */
+    private static final String TAG_SCHEMA_REFRESH_INTERVAL = "schemarefreshinterval";
+    /**
+     * Holds the name of the tag holding the time a paged search waits for the next page.
+     */
+    private static final String TAG_PAGED_SEARCH_TIMEOUT = "pagedsearchtimeout";
+    /**
+     * Holds the name of the tag holding the folder in which the schema is cached.
+     */
+    private static final String TAG_SCHEMA_CACHE_DIR = "schemacachedir";
+    /**
+     * Holds the name of the tag holding the minimum number of LDAP connections for updates.
+     */
+    private static final String TAG_WRITE_MIN_CONNECTIONS = "writeminconnections";
+    /**
+     * Holds the name of the tag holding the maximum number of LDAP connections for updates.
+     */
+    private static final String TAG_WRITE_MAX_CONNECTIONS = "writemaxconnections";
+    /**
+     * Holds the name of the tag holding the time DNs that do not exist are remembered.
+     */
+    private static final String TAG_NEGATIVE_CACHE_TTL = "negativecachettl";
+    /**
+     * Holds the name of the tag holding the maximum number of search bases searched at the same
+     * time.
+     */
+    private static final String TAG_SEARCH_PARALLELISM = "searchparallelism";
+    /**
+     * Holds the name of the tag indicating whether identical concurrent requests share one search.
+     */
+    private static final String TAG_COALESCE_REQUESTS = "coalescerequests";
+    /**
+     * Holds the name of the tag holding the subtrees of which the changes are listened to.
+     */
+    private static final String TAG_CHANGE_LISTENER_BASES = "changelistenerbases";
+    /**
+     * Holds the name of the tag holding the maximum number of paged searches that keep a
+     * connection.
+     */
+    private static final String TAG_MAX_PINNED_SEARCHES = "maxpinnedsearches";
     /**
      * Contains the logger.
      */
     public static CordysLogger LOG = CordysLogger.getCordysLogger(GenericLDAPConfiguration.class);
+    /**
+     * Holds the maximum time in milliseconds to wait for a free connection.
+     */
+    private long m_acquireTimeout;
     /**
      * Holds whether or not anononymous access is used.
      */
     private boolean m_anonymousBind;
+    /**
+     * Holds the subtrees of which the changes are listened to.
+     */
+    private List<String> m_changeListenerBases;
+    /**
+     * Holds whether identical requests that run at the same time share one search.
+     */
+    private boolean m_coalesceRequests;
     /**
      * Holds the connection manager to use.
      */
@@ -108,18 +203,52 @@ class GenericLDAPConfiguration
      * This method returns the connector to use.
      */
     private Connector m_connector;
+    /**
+     * Holds the time in seconds after which surplus idle connections are closed.
+     */
+    private int m_idleTimeout;
     /**
      * Holds the location of the key store.
      */
     private String m_keyStore;
+    /**
+     * Holds whether or not the pool is filled in the background.
+     */
+    private boolean m_lazyStartup;
+    /**
+     * Holds the strategy to spread the load over the servers.
+     */
+    private ELoadBalancingStrategy m_loadBalancingStrategy;
     /**
      * Holds the maximum number of search results.
      */
     private int m_maximumNumberOfSearchResults;
+    /**
+     * Holds the maximum number of connections.
+     */
+    private int m_maxConnections;
+    /**
+     * Holds the maximum number of paged searches that keep a connection while waiting for the next
+     * page.
+     */
+    private int m_maxPinnedSearches;
+    /**
+     * Holds the minimum number of connections.
+     */
+    private int m_minConnections;
+    /**
+     * Holds the time in seconds DNs that do not exist are remembered. 0 if they are not
+     * remembered.
+     */
+    private int m_negativeCacheTTL;
     /**
      * Holds the number of connections to start up.
      */
     private int m_nrOfConnections;
+    /**
+     * Holds the time in seconds a paged search waits for the next page to be requested.
+     */
+    private int m_pagedSearchTimeout;
     /**
      * Holds the password to use.
      */
@@ -128,6 +257,18 @@ class GenericLDAPConfiguration
      * Holds the portnumber.
      */
     private int m_port;
+    /**
+     * Holds the folder in which the schema is cached.
+     */
+    private String m_schemaCacheDir;
+    /**
+     * Holds the interval in seconds in which schema changes are picked up.
+     */
+    private int m_schemaRefreshInterval;
+    /**
+     * Holds the maximum number of search bases of one request that are searched at the same time.
+     */
+    private int m_searchParallelism;
     /**
      * Holds the search root.
      */
@@ -140,10 +281,30 @@ class GenericLDAPConfiguration
      * Holds the server name.
      */
     private String m_server;
+    /**
+     * Holds all servers to connect to.
+     */
+    private List<ServerEndpoint> m_servers;
     /**
      * Holds the username.
      */
     private String m_user;
+    /**
+     * Holds the interval in seconds in which idle connections are validated.
+     */
+    private int m_validationInterval;
+    /**
+     * Holds the maximum number of connections for updates.
+     */
+    private int m_writeMaxConnections;
+    /**
+     * Holds the minimum number of connections for updates.
+     */
+    private int m_writeMinConnections;
+    /**
+     * Holds the servers to send the updates to.
+     */
+    private List<ServerEndpoint> m_writeServers;
 
     /**
      * Creates the constructor.This loads the configuration object and pass it to XMLProperties for
@@ -208,6 +369,111 @@ class GenericLDAPConfiguration
         m_server = XPathHelper.getStringValue(configurationXML, "ns:" + TAG_SERVER, xmi, "");
         m_nrOfConnections = XPathHelper.getIntegerValue(configurationXML,
                                                         "ns:" + TAG_NR_OF_CONNECTIONS, xmi, 5);
+
+        // The pool sizing defaults to a fixed pool of nrofconnections connections.
+        m_minConnections = XPathHelper.getIntegerValue(configurationXML,
+                                                       "ns:" + TAG_MIN_CONNECTIONS, xmi,
+                                                       m_nrOfConnections);
+        m_maxConnections = XPathHelper.getIntegerValue(configurationXML,
+                                                       "ns:" + TAG_MAX_CONNECTIONS, xmi,
+                                                       Math.max(m_nrOfConnections,
+                                                                m_minConnections));
+
+        if (m_maxConnections < m_minConnections)
+        {
+            m_maxConnections = m_minConnections;
+        }
+        m_idleTimeout = XPathHelper.getIntegerValue(configurationXML, "ns:" + TAG_IDLE_TIMEOUT,
+                                                    xmi, 300);
+        m_acquireTimeout = XPathHelper.getLongValue(configurationXML,
+                                                    "ns:" + TAG_ACQUIRE_TIMEOUT, xmi, 30000L);
+        m_validationInterval = XPathHelper.getIntegerValue(configurationXML,
+                                                           "ns:" + TAG_VALIDATION_INTERVAL, xmi,
+                                                           60);
+        m_lazyStartup = XPathHelper.getBooleanValue(configurationXML, "ns:" + TAG_LAZY_STARTUP,
+                                                    xmi, false);
+
+        // The configured server is always the first one. The replicas follow in the configured
+        // order.
+        m_servers = new ArrayList<ServerEndpoint>();
+        m_servers.add(new ServerEndpoint(m_server, m_port));
+
+        m_servers.addAll(parseServers(XPathHelper.getStringValue(configurationXML,
+                                                                 "ns:" + TAG_REPLICAS, xmi, "")));
+
+        m_loadBalancingStrategy = ELoadBalancingStrategy.valueOf(XPathHelper.getStringValue(configurationXML,
+                                                                                            "ns:" +
+                                                                                            TAG_LOAD_BALANCING,
+                                                                                            xmi,
+                                                                                            ELoadBalancingStrategy.FAILOVER
+                                                                                            .name()));
+
+        // Updates only get their own pool when write servers are configured. Otherwise they
+        // share the connections of the reads.
+        m_writeServers = parseServers(XPathHelper.getStringValue(configurationXML,
+                                                                 "ns:" + TAG_WRITE_SERVERS, xmi,
+                                                                 ""));
+        m_writeMinConnections = XPathHelper.getIntegerValue(configurationXML,
+                                                            "ns:" + TAG_WRITE_MIN_CONNECTIONS,
+                                                            xmi, 1);
+        m_writeMaxConnections = XPathHelper.getIntegerValue(configurationXML,
+                                                            "ns:" + TAG_WRITE_MAX_CONNECTIONS,
+                                                            xmi,
+                                                            Math.max(m_writeMinConnections, 5));
+
+        if (m_writeMaxConnections < m_writeMinConnections)
+        {
+            m_writeMaxConnections = m_writeMinConnections;
+        }
+        m_schemaRefreshInterval = XPathHelper.getIntegerValue(configurationXML,
+                                                              "ns:" + TAG_SCHEMA_REFRESH_INTERVAL,
+                                                              xmi, 3600);
+        m_schemaCacheDir = XPathHelper.getStringValue(configurationXML,
+                                                      "ns:" + TAG_SCHEMA_CACHE_DIR, xmi, "");
+        m_pagedSearchTimeout = XPathHelper.getIntegerValue(configurationXML,
+                                                           "ns:" + TAG_PAGED_SEARCH_TIMEOUT, xmi,
+                                                           300);
+
+        // Every pinned search holds a read connection, so by default half of the pool is left
+        // for the other requests.
+        m_maxPinnedSearches = XPathHelper.getIntegerValue(configurationXML,
+                                                          "ns:" + TAG_MAX_PINNED_SEARCHES, xmi,
+                                                          Math.max(m_maxConnections / 2, 1));
+        m_negativeCacheTTL = XPathHelper.getIntegerValue(configurationXML,
+                                                         "ns:" + TAG_NEGATIVE_CACHE_TTL, xmi, 0);
+        m_searchParallelism = XPathHelper.getIntegerValue(configurationXML,
+                                                          "ns:" + TAG_SEARCH_PARALLELISM, xmi, 1);
+        m_coalesceRequests = XPathHelper.getBooleanValue(configurationXML,
+                                                         "ns:" + TAG_COALESCE_REQUESTS, xmi, false);
+
+        // DNs contain commas, so the subtrees are separated by semicolons.
+        m_changeListenerBases = new ArrayList<String>();
+
+        for (String base : XPathHelper.getStringValue(configurationXML,
+                                                      "ns:" + TAG_CHANGE_LISTENER_BASES, xmi, "")
+                                      .split(";"))
+        {
+            if (base.trim().length() > 0)
+            {
+                m_changeListenerBases.add(base.trim());
+            }
+        }
+    }
+
+    /**
+     * @see  com.cordys.coe.ac.genericldap.config.IGenLDAPConfiguration#getAcquireTimeout()
+     */
+    @Override public long getAcquireTimeout()
+    {
+        return m_acquireTimeout;
+    }
+
+    /**
+     * @see  com.cordys.coe.ac.genericldap.config.IGenLDAPConfiguration#getChangeListenerBases()
+     */
+    @Override public List<String> getChangeListenerBases()
+    {
+        return m_changeListenerBases;
     }
 
     /**
@@ -234,6 +500,22 @@ class GenericLDAPConfiguration
         return m_connector;
     }
 
+    /**
+     * @see  com.cordys.coe.ac.genericldap.config.IGenLDAPConfiguration#getIdleTimeout()
+     */
+    @Override public int getIdleTimeout()
+    {
+        return m_idleTimeout;
+    }
+
+    /**
+     * @see  com.cordys.coe.ac.genericldap.config.IGenLDAPConfiguration#getLoadBalancingStrategy()
+     */
+    @Override public ELoadBalancingStrategy getLoadBalancingStrategy()
+    {
+        return m_loadBalancingStrategy;
+    }
+
     /**
      * @see  com.cordys.coe.ac.genericldap.config.IGenLDAPConfiguration#getKeyStore()
      */
@@ -250,6 +532,38 @@ class GenericLDAPConfiguration
         return m_maximumNumberOfSearchResults;
     }
 
+    /**
+     * @see  com.cordys.coe.ac.genericldap.config.IGenLDAPConfiguration#getMaxConnections()
+     */
+    @Override public int getMaxConnections()
+    {
+        return m_maxConnections;
+    }
+
+    /**
+     * @see  com.cordys.coe.ac.genericldap.config.IGenLDAPConfiguration#getMaxPinnedSearches()
+     */
+    @Override public int getMaxPinnedSearches()
+    {
+        return m_maxPinnedSearches;
+    }
+
+    /**
+     * @see  com.cordys.coe.ac.genericldap.config.IGenLDAPConfiguration#getMinConnections()
+     */
+    @Override public int getMinConnections()
+    {
+        return m_minConnections;
+    }
+
+    /**
+     * @see  com.cordys.coe.ac.genericldap.config.IGenLDAPConfiguration#getNegativeCacheTTL()
+     */
+    @Override public int getNegativeCacheTTL()
+    {
+        return m_negativeCacheTTL;
+    }
+
     /**
      * @see  com.cordys.coe.ac.genericldap.config.IGenLDAPConfiguration#getNrOfConnections()
      */
@@ -258,6 +572,14 @@ class GenericLDAPConfiguration
         return m_nrOfConnections;
     }
 
+    /**
+     * @see  com.cordys.coe.ac.genericldap.config.IGenLDAPConfiguration#getPagedSearchTimeout()
+     */
+    @Override public int getPagedSearchTimeout()
+    {
+        return m_pagedSearchTimeout;
+    }
+
     /**
      * @see  com.cordys.coe.ac.genericldap.config.IGenLDAPConfiguration#getPassword()
      */
@@ -274,6 +596,30 @@ class GenericLDAPConfiguration
         return m_port;
     }
 
+    /**
+     * @see  com.cordys.coe.ac.genericldap.config.IGenLDAPConfiguration#getSchemaCacheDir()
+     */
+    @Override public String getSchemaCacheDir()
+    {
+        return m_schemaCacheDir;
+    }
+
+    /**
+     * @see  com.cordys.coe.ac.genericldap.config.IGenLDAPConfiguration#getSchemaRefreshInterval()
+     */
+    @Override public int getSchemaRefreshInterval()
+    {
+        return m_schemaRefreshInterval;
+    }
+
+    /**
+     * @see  com.cordys.coe.ac.genericldap.config.IGenLDAPConfiguration#getSearchParallelism()
+     */
+    @Override public int getSearchParallelism()
+    {
+        return m_searchParallelism;
+    }
+
     /**
      * @see  com.cordys.coe.ac.genericldap.config.IGenLDAPConfiguration#getSearchRoot()
      */
@@ -329,6 +675,14 @@ class GenericLDAPConfiguration
         return m_server;
     }
 
+    /**
+     * @see  com.cordys.coe.ac.genericldap.config.IGenLDAPConfiguration#getServers()
+     */
+    @Override public List<ServerEndpoint> getServers()
+    {
+        return m_servers;
+    }
+
     /**
      * @see  com.cordys.coe.ac.genericldap.config.IGenLDAPConfiguration#getUser()
      */
@@ -337,6 +691,38 @@ class GenericLDAPConfiguration
         return m_user;
     }
 
+    /**
+     * @see  com.cordys.coe.ac.genericldap.config.IGenLDAPConfiguration#getValidationInterval()
+     */
+    @Override public int getValidationInterval()
+    {
+        return m_validationInterval;
+    }
+
+    /**
+     * @see  com.cordys.coe.ac.genericldap.config.IGenLDAPConfiguration#getWriteMaxConnections()
+     */
+    @Override public int getWriteMaxConnections()
+    {
+        return m_writeMaxConnections;
+    }
+
+    /**
+     * @see  com.cordys.coe.ac.genericldap.config.IGenLDAPConfiguration#getWriteMinConnections()
+     */
+    @Override public int getWriteMinConnections()
+    {
+        return m_writeMinConnections;
+    }
+
+    /**
+     * @see  com.cordys.coe.ac.genericldap.config.IGenLDAPConfiguration#getWriteServers()
+     */
+    @Override public List<ServerEndpoint> getWriteServers()
+    {
+        return m_writeServers;
+    }
+
     /**
      * @see  com.cordys.coe.ac.genericldap.config.IGenLDAPConfiguration#isAnonymousBind()
      */
@@ -345,6 +731,22 @@ class GenericLDAPConfiguration
         return m_anonymousBind;
     }
 
+    /**
+     * @see  com.cordys.coe.ac.genericldap.config.IGenLDAPConfiguration#isCoalesceRequests()
+     */
+    @Override public boolean isCoalesceRequests()
+    {
+        return m_coalesceRequests;
+    }
+
+    /**
+     * @see  com.cordys.coe.ac.genericldap.config.IGenLDAPConfiguration#isLazyStartup()
+     */
+    @Override public boolean isLazyStartup()
+    {
+        return m_lazyStartup;
+    }
+
     /**
      * @see  com.cordys.coe.ac.genericldap.config.IGenLDAPConfiguration#setConnectionManager(com.cordys.coe.ac.genericldap.connection.IConnectionManager)
      */
@@ -360,4 +762,30 @@ class GenericLDAPConfiguration
     {
         m_connector = connector;
     }
+
+    /**
+     * This method parses a comma separated list of servers in the format host[:port]. Servers
+     * without a port use the configured port.
+     *
+     * @param   servers  The list of servers.
+     *
+     * @return  The parsed servers. An empty list if no servers are given.
+     *
+     * @throws  GenericLDAPConnectorException  In case a server could not be parsed.
+     */
+    private List<ServerEndpoint> parseServers(String servers)
+                                       throws GenericLDAPConnectorException
+    {
+        List<ServerEndpoint> returnValue = new ArrayList<ServerEndpoint>();
+
+        for (String server : servers.split("[,;\\s]+"))
+        {
+            if (server.length() > 0)
+            {
+                returnValue.add(ServerEndpoint.parse(server, m_port));
+            }
+        }
+
+        return returnValue;
+    }
 }
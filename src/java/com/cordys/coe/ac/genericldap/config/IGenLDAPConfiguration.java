@@ -23,6 +23,8 @@ import com.eibus.connector.nom.Connector;
 
 import java.security.Provider;
 
+import java.util.List;
+
 /**
  * This method defines the configuration options for the generic LDAP connector.
  *
@@ -30,6 +32,23 @@ import java.security.Provider;
  */
 public interface IGenLDAPConfiguration
 {
+    /**
+     * This method gets the maximum time in milliseconds a request waits for a free LDAP
+     * connection. When the time expires the request fails. 0 means that the request waits until a
+     * connection becomes available.
+     *
+     * @return  The acquire timeout in milliseconds.
+     */
+    long getAcquireTimeout();
+
+    /**
+     * This method gets the subtrees of which the changes made by others are listened to, so the
+     * caches can be invalidated. In the configuration the subtrees are separated by semicolons.
+     *
+     * @return  The subtrees to listen to. An empty list if no listener is started.
+     */
+    List<String> getChangeListenerBases();
+
     /**
      * This method gets the connection manager to use.
      *
@@ -51,6 +70,15 @@ public interface IGenLDAPConfiguration
      */
     Connector getConnector();
 
+    /**
+     * This method gets the time in seconds after which surplus idle connections are closed. The
+     * pool never shrinks below the minimum number of connections. 0 means that idle connections
+     * are never closed.
+     *
+     * @return  The idle timeout in seconds.
+     */
+    int getIdleTimeout();
+
     /**
      * This method gets the keystore that contains the certificate of the LDAP server.
      *
@@ -58,6 +86,20 @@ public interface IGenLDAPConfiguration
      */
     String getKeyStore();
 
+    /**
+     * This method gets the strategy to spread the load over the configured servers.
+     *
+     * @return  The load balancing strategy.
+     */
+    ELoadBalancingStrategy getLoadBalancingStrategy();
+
+    /**
+     * This method gets the maximum number of LDAP connections the pool can grow to.
+     *
+     * @return  The maximum number of LDAP connections.
+     */
+    int getMaxConnections();
+
     /**
      * This method gets the maximum number of search results.
      *
@@ -65,6 +107,29 @@ public interface IGenLDAPConfiguration
      */
     int getMaximumNumberOfSearchResults();
 
+    /**
+     * This method gets the maximum number of paged searches that keep a connection while waiting
+     * for the next page. When the limit is reached the oldest search gives its connection back.
+     *
+     * @return  The maximum number of pinned paged searches.
+     */
+    int getMaxPinnedSearches();
+
+    /**
+     * This method gets the minimum number of LDAP connections that are kept open.
+     *
+     * @return  The minimum number of LDAP connections.
+     */
+    int getMinConnections();
+
+    /**
+     * This method gets the time in seconds DNs that do not exist are remembered. Reads of these
+     * DNs fail without asking the server. 0 disables the negative lookup cache.
+     *
+     * @return  The time to live of the negative lookup cache in seconds.
+     */
+    int getNegativeCacheTTL();
+
     /**
      * This method gets the number of LDAP connections to create.
      *
@@ -72,6 +137,14 @@ public interface IGenLDAPConfiguration
      */
     int getNrOfConnections();
 
+    /**
+     * This method gets the time in seconds a paged search keeps its connection while waiting for
+     * the next page to be requested.
+     *
+     * @return  The paged search timeout in seconds.
+     */
+    int getPagedSearchTimeout();
+
     /**
      * This method gets the password.
      *
@@ -86,6 +159,30 @@ public interface IGenLDAPConfiguration
      */
     int getPort();
 
+    /**
+     * This method gets the folder in which a snapshot of the LDAP schema is stored. An empty
+     * string disables the snapshot.
+     *
+     * @return  The folder for the schema snapshot.
+     */
+    String getSchemaCacheDir();
+
+    /**
+     * This method gets the interval in seconds in which the connector checks whether the LDAP
+     * schema has changed. 0 disables the check.
+     *
+     * @return  The schema refresh interval in seconds.
+     */
+    int getSchemaRefreshInterval();
+
+    /**
+     * This method gets the maximum number of search bases of one ReadLDAP request that are
+     * searched at the same time. 1 searches the bases one after the other.
+     *
+     * @return  The maximum number of bases searched at the same time.
+     */
+    int getSearchParallelism();
+
     /**
      * This method gets the searchroot.
      *
@@ -107,6 +204,14 @@ public interface IGenLDAPConfiguration
      */
     String getServer();
 
+    /**
+     * This method gets all LDAP servers to connect to. The first one is the server configured by
+     * server and port, followed by the configured replicas. Each server gets its own pool.
+     *
+     * @return  The LDAP servers to connect to.
+     */
+    List<ServerEndpoint> getServers();
+
     /**
      * This method gets the user.
      *
@@ -114,6 +219,39 @@ public interface IGenLDAPConfiguration
      */
     String getUser();
 
+    /**
+     * This method gets the interval in seconds in which idle connections are validated in the
+     * background. Broken connections are replaced on the maintenance thread. 0 disables the
+     * validation.
+     *
+     * @return  The validation interval in seconds.
+     */
+    int getValidationInterval();
+
+    /**
+     * This method gets the maximum number of LDAP connections the write pool can grow to. Only
+     * used when write servers are configured.
+     *
+     * @return  The maximum number of LDAP connections for updates.
+     */
+    int getWriteMaxConnections();
+
+    /**
+     * This method gets the minimum number of LDAP connections that are kept open for updates.
+     * Only used when write servers are configured.
+     *
+     * @return  The minimum number of LDAP connections for updates.
+     */
+    int getWriteMinConnections();
+
+    /**
+     * This method gets the LDAP servers to send the updates to. If no write servers are
+     * configured the updates share the pools of the reads, so no extra connections are opened.
+     *
+     * @return  The LDAP servers to send the updates to. An empty list if none are configured.
+     */
+    List<ServerEndpoint> getWriteServers();
+
     /**
      * Returns the authenticate configuration value.
      *
@@ -121,6 +259,23 @@ public interface IGenLDAPConfiguration
      */
     boolean isAnonymousBind();
 
+    /**
+     * This method returns whether identical searches and reads that run at the same time share one
+     * round trip to the LDAP server.
+     *
+     * @return  true if identical concurrent requests are coalesced. Otherwise false.
+     */
+    boolean isCoalesceRequests();
+
+    /**
+     * This method returns whether or not the pool is filled in the background. If true the
+     * connector is available as soon as the first connection is bound and the remaining
+     * connections are created after startup.
+     *
+     * @return  Whether or not the pool is filled in the background.
+     */
+    boolean isLazyStartup();
+
     /**
      * This method sets the connection manager to use.
      *
@@ -0,0 +1,126 @@
+/*
+ * Copyright 2007 Cordys R&D B.V. 
+ *
+ *   This file is part of the Cordys Generic LDAP Connector. 
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.cordys.coe.ac.genericldap.config;
+
+import com.cordys.coe.ac.genericldap.exception.GenericLDAPConnectorException;
+import com.cordys.coe.ac.genericldap.localization.GenLDAPExceptionMessages;
+
+/**
+ * This class holds the host and port of a single LDAP server.
+ *
+ * @author  pgussow
+ */
+public class ServerEndpoint
+{
+    /**
+     * Holds the host name of the server.
+     */
+    private String m_host;
+    /**
+     * Holds the port of the server.
+     */
+    private int m_port;
+
+    /**
+     * Creates a new ServerEndpoint object.
+     *
+     * @param  host  The host name of the server.
+     * @param  port  The port of the server.
+     */
+    public ServerEndpoint(String host, int port)
+    {
+        m_host = host;
+        m_port = port;
+    }
+
+    /**
+     * This method parses an endpoint in the format host[:port]. IPv6 addresses must be enclosed
+     * in square brackets when a port is given.
+     *
+     * @param   endpoint     The endpoint to parse.
+     * @param   defaultPort  The port to use when the endpoint does not contain one.
+     *
+     * @return  The parsed endpoint.
+     *
+     * @throws  GenericLDAPConnectorException  In case the port is not a number.
+     */
+    public static ServerEndpoint parse(String endpoint, int defaultPort)
+                                throws GenericLDAPConnectorException
+    {
+        String host = endpoint.trim();
+        int port = defaultPort;
+        int index = host.lastIndexOf(':');
+
+        // A colon is only a port separator if it is the only one or follows an IPv6 address.
+        if ((index > 0) && ((host.indexOf(':') == index) || (host.charAt(index - 1) == ']')))
+        {
+            try
+            {
+                port = Integer.parseInt(host.substring(index + 1));
+            }
+            catch (NumberFormatException e)
+            {
+                throw new GenericLDAPConnectorException(e,
+                                                        GenLDAPExceptionMessages.GLE_INVALID_SERVER_ENDPOINT_0,
+                                                        endpoint);
+            }
+            host = host.substring(0, index);
+        }
+
+        if (host.startsWith("[") && host.endsWith("]"))
+        {
+            host = host.substring(1, host.length() - 1);
+        }
+
+        if (host.length() == 0)
+        {
+            throw new GenericLDAPConnectorException(GenLDAPExceptionMessages.GLE_INVALID_SERVER_ENDPOINT_0,
+                                                    endpoint);
+        }
+
+        return new ServerEndpoint(host, port);
+    }
+
+    /**
+     * This method gets the host name of the server.
+     *
+     * @return  The host name of the server.
+     */
+    public String getHost()
+    {
+        return m_host;
+    }
+
+    /**
+     * This method gets the port of the server.
+     *
+     * @return  The port of the server.
+     */
+    public int getPort()
+    {
+        return m_port;
+    }
+
+    /**
+     * @see  java.lang.Object#toString()
+     */
+    @Override public String toString()
+    {
+        return m_host + ":" + m_port;
+    }
+}
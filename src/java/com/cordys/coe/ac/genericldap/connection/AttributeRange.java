@@ -0,0 +1,183 @@
+/*
+ * Copyright 2007 Cordys R&D B.V. 
+ *
+ *   This file is part of the Cordys Generic LDAP Connector. 
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.cordys.coe.ac.genericldap.connection;
+
+import com.novell.ldap.LDAPAttribute;
+import com.novell.ldap.LDAPConnection;
+import com.novell.ldap.LDAPEntry;
+import com.novell.ldap.LDAPException;
+
+import java.util.Iterator;
+
+/**
+ * This class describes the range of values of a multi-valued attribute that the server returned.
+ * Active Directory returns at most 1500 values of an attribute at a time. The attribute then has
+ * an option like <code>range=0-1499</code> and the next values must be read with a follow-up
+ * request for <code>member;range=1500-*</code>. The last range ends with <code>*</code>.
+ *
+ * @author  pgussow
+ */
+public class AttributeRange
+{
+    /**
+     * Holds the prefix of the range option.
+     */
+    private static final String RANGE_OPTION = "range=";
+    /**
+     * Holds the last value index of the range. -1 if this is the last range.
+     */
+    private int m_high;
+    /**
+     * Holds the name of the attribute without the range option.
+     */
+    private String m_name;
+
+    /**
+     * Creates a new AttributeRange object.
+     *
+     * @param  name  The name of the attribute without the range option.
+     * @param  high  The last value index of the range. -1 if this is the last range.
+     */
+    private AttributeRange(String name, int high)
+    {
+        m_name = name;
+        m_high = high;
+    }
+
+    /**
+     * This method returns the range of the values of the given attribute.
+     *
+     * @param   attribute  The attribute.
+     *
+     * @return  The range. null if the attribute holds all its values.
+     */
+    public static AttributeRange parse(LDAPAttribute attribute)
+    {
+        StringBuilder name = new StringBuilder(attribute.getBaseName());
+        String range = null;
+
+        for (String subtype : attribute.getSubtypes())
+        {
+            if (subtype.regionMatches(true, 0, RANGE_OPTION, 0, RANGE_OPTION.length()))
+            {
+                range = subtype;
+            }
+            else
+            {
+                name.append(';').append(subtype);
+            }
+        }
+
+        int separator = (range == null) ? -1 : range.indexOf('-');
+
+        if (separator < 0)
+        {
+            return null;
+        }
+
+        String high = range.substring(separator + 1);
+
+        try
+        {
+            return new AttributeRange(name.toString(),
+                                      "*".equals(high) ? -1 : Integer.parseInt(high));
+        }
+        catch (NumberFormatException e)
+        {
+            return null;
+        }
+    }
+
+    /**
+     * This method reads the next range of the values of an attribute of an entry.
+     *
+     * @param   connection     The connection to read with.
+     * @param   dn             The DN of the entry.
+     * @param   attributeName  The name of the attribute including the range to read.
+     *
+     * @return  The attribute with the values of the range. null if the entry does not have the
+     *          attribute anymore.
+     *
+     * @throws  LDAPException  In case the entry could not be read.
+     */
+    public static LDAPAttribute read(LDAPConnection connection, String dn, String attributeName)
+                              throws LDAPException
+    {
+        LDAPEntry entry = connection.read(dn, new String[] { attributeName });
+
+        if (entry == null)
+        {
+            return null;
+        }
+
+        String baseName = LDAPAttribute.getBaseName(attributeName);
+        Iterator<?> attributes = entry.getAttributeSet().iterator();
+
+        while (attributes.hasNext())
+        {
+            LDAPAttribute attribute = (LDAPAttribute) attributes.next();
+
+            if (baseName.equalsIgnoreCase(attribute.getBaseName()))
+            {
+                return attribute;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * This method returns the name of the attribute without the range option.
+     *
+     * @return  The name of the attribute.
+     */
+    public String getName()
+    {
+        return m_name;
+    }
+
+    /**
+     * This method returns the name of the attribute to request the values after this range.
+     *
+     * @return  The name of the attribute including the next range.
+     */
+    public String getNextName()
+    {
+        return m_name + ";" + RANGE_OPTION + getNextStart() + "-*";
+    }
+
+    /**
+     * This method returns the index of the first value after this range.
+     *
+     * @return  The index of the first value after this range.
+     */
+    public int getNextStart()
+    {
+        return m_high + 1;
+    }
+
+    /**
+     * This method returns whether this is the last range of the values.
+     *
+     * @return  true if there are no more values. Otherwise false.
+     */
+    public boolean isLast()
+    {
+        return m_high < 0;
+    }
+}
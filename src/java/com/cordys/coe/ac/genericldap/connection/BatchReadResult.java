@@ -0,0 +1,123 @@
+/*
+ * Copyright 2007 Cordys R&D B.V. 
+ *
+ *   This file is part of the Cordys Generic LDAP Connector. 
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.cordys.coe.ac.genericldap.connection;
+
+import com.novell.ldap.LDAPEntry;
+import com.novell.ldap.LDAPException;
+
+/**
+ * This class holds the results of reading a list of DNs. For every DN either the entry or the
+ * error is available, in the order of the DNs that were requested.
+ *
+ * @author  pgussow
+ */
+public class BatchReadResult
+{
+    /**
+     * Holds the DNs that were requested.
+     */
+    private String[] m_dns;
+    /**
+     * Holds the entries that were read.
+     */
+    private LDAPEntry[] m_entries;
+    /**
+     * Holds the errors for the DNs that could not be read.
+     */
+    private LDAPException[] m_errors;
+
+    /**
+     * Creates a new BatchReadResult object.
+     *
+     * @param  dns  The DNs that are requested.
+     */
+    public BatchReadResult(String[] dns)
+    {
+        m_dns = dns;
+        m_entries = new LDAPEntry[dns.length];
+        m_errors = new LDAPException[dns.length];
+    }
+
+    /**
+     * This method gets the DN with the given index.
+     *
+     * @param   index  The index of the DN.
+     *
+     * @return  The DN.
+     */
+    public String getDN(int index)
+    {
+        return m_dns[index];
+    }
+
+    /**
+     * This method gets the entry for the DN with the given index.
+     *
+     * @param   index  The index of the DN.
+     *
+     * @return  The entry. null if it could not be read.
+     */
+    public LDAPEntry getEntry(int index)
+    {
+        return m_entries[index];
+    }
+
+    /**
+     * This method gets the error for the DN with the given index.
+     *
+     * @param   index  The index of the DN.
+     *
+     * @return  The error. null if the entry was read.
+     */
+    public LDAPException getError(int index)
+    {
+        return m_errors[index];
+    }
+
+    /**
+     * This method returns the number of requested DNs.
+     *
+     * @return  The number of requested DNs.
+     */
+    public int size()
+    {
+        return m_dns.length;
+    }
+
+    /**
+     * This method sets the entry for the DN with the given index.
+     *
+     * @param  index  The index of the DN.
+     * @param  entry  The entry that was read.
+     */
+    void setEntry(int index, LDAPEntry entry)
+    {
+        m_entries[index] = entry;
+    }
+
+    /**
+     * This method sets the error for the DN with the given index.
+     *
+     * @param  index  The index of the DN.
+     * @param  error  The reason the entry could not be read.
+     */
+    void setError(int index, LDAPException error)
+    {
+        m_errors[index] = error;
+    }
+}
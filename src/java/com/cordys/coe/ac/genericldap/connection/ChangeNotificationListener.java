@@ -0,0 +1,396 @@
+/*
+ * Copyright 2007 Cordys R&D B.V. 
+ *
+ *   This file is part of the Cordys Generic LDAP Connector. 
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.cordys.coe.ac.genericldap.connection;
+
+import com.cordys.coe.ac.genericldap.cache.DirectoryChangeBus;
+import com.cordys.coe.ac.genericldap.cache.DirectoryChangeEvent;
+import com.cordys.coe.ac.genericldap.localization.GeneralMessages;
+import com.cordys.coe.ac.genericldap.util.NamedThreadFactory;
+
+import com.eibus.util.logger.CordysLogger;
+
+import com.novell.ldap.LDAPAttribute;
+import com.novell.ldap.LDAPConnection;
+import com.novell.ldap.LDAPControl;
+import com.novell.ldap.LDAPEntry;
+import com.novell.ldap.LDAPException;
+import com.novell.ldap.LDAPSearchConstraints;
+import com.novell.ldap.LDAPSearchResults;
+import com.novell.ldap.controls.LDAPEntryChangeControl;
+import com.novell.ldap.controls.LDAPPersistSearchControl;
+import com.novell.ldap.util.Base64;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * This class listens to the changes others make to a subtree of the directory and publishes them
+ * on the change bus, so the caches are invalidated right away instead of after their time to
+ * live. It keeps a search open on a dedicated connection, outside the pools.
+ *
+ * <p>Servers that support the persistent search control report the type of each change and the
+ * previous DN of a renamed entry. Active Directory only reports that an entry changed. To still
+ * recognize renames, moves and deletes the listener remembers the DN of the entries by their
+ * objectGUID. A rename of an entry that did not change since the listener started cannot be
+ * recognized, so the old DN is only invalidated by the time to live.</p>
+ *
+ * <p>When the connection is lost, changes may have been missed. After reconnecting all caches of
+ * the subtree are invalidated.</p>
+ *
+ * @author  pgussow
+ */
+class ChangeNotificationListener
+    implements Runnable
+{
+    /**
+     * Holds the logger to use.
+     */
+    private static final CordysLogger LOG = CordysLogger.getCordysLogger(ChangeNotificationListener.class);
+    /**
+     * Holds the OID of the persistent search control.
+     */
+    static final String PERSISTENT_SEARCH_OID = "2.16.840.1.113730.3.4.3";
+    /**
+     * Holds the OID of the change notification control of Active Directory.
+     */
+    static final String NOTIFICATION_OID = "1.2.840.113556.1.4.528";
+    /**
+     * Holds the OID of the control of Active Directory that returns deleted entries.
+     */
+    private static final String SHOW_DELETED_OID = "1.2.840.113556.1.4.417";
+    /**
+     * Holds the name of the attribute that identifies an entry in Active Directory.
+     */
+    private static final String ATTR_OBJECT_GUID = "objectGUID";
+    /**
+     * Holds the name of the attribute that marks a deleted entry in Active Directory.
+     */
+    private static final String ATTR_IS_DELETED = "isDeleted";
+    /**
+     * Holds the maximum number of entries of which the DN is remembered.
+     */
+    private static final int MAX_KNOWN_ENTRIES = 10000;
+    /**
+     * Holds the time in milliseconds to wait before reconnecting.
+     */
+    private static final long RECONNECT_DELAY = 10000;
+    /**
+     * Holds the factory for the names of the listener threads.
+     */
+    private static final NamedThreadFactory THREAD_FACTORY = new NamedThreadFactory("GenericLDAPChangeListener");
+    /**
+     * Holds the DN of the subtree to listen to.
+     */
+    private String m_baseDN;
+    /**
+     * Holds the bus to publish the changes on.
+     */
+    private DirectoryChangeBus m_bus;
+    /**
+     * Holds the connection the search is running on. null if not connected.
+     */
+    private volatile LDAPConnection m_connection;
+    /**
+     * Holds the factories for the connections to the servers. The next server is tried after the
+     * connection was lost.
+     */
+    private List<LDAPConnectionFactory> m_factories;
+    /**
+     * Holds the normalized DNs of the entries by their objectGUID. Only used for Active Directory.
+     */
+    private Map<String, String> m_knownEntries = new LinkedHashMap<String, String>(16, 0.75f, true)
+    {
+        private static final long serialVersionUID = 1L;
+
+        @Override protected boolean removeEldestEntry(Map.Entry<String, String> eldest)
+        {
+            return size() > MAX_KNOWN_ENTRIES;
+        }
+    };
+    /**
+     * Holds whether the persistent search control is used. Otherwise the change notification
+     * control of Active Directory is used.
+     */
+    private boolean m_persistentSearch;
+    /**
+     * Holds whether or not the listener has been stopped.
+     */
+    private volatile boolean m_stopped = false;
+    /**
+     * Holds the thread the listener runs on.
+     */
+    private Thread m_thread;
+
+    /**
+     * Creates a new ChangeNotificationListener object.
+     *
+     * @param  baseDN            The DN of the subtree to listen to.
+     * @param  factories         The factories for the connections to the servers.
+     * @param  persistentSearch  Whether the persistent search control is used. Otherwise the
+     *                           change notification control of Active Directory is used.
+     * @param  bus               The bus to publish the changes on.
+     */
+    ChangeNotificationListener(String baseDN, List<LDAPConnectionFactory> factories,
+                               boolean persistentSearch, DirectoryChangeBus bus)
+    {
+        m_baseDN = baseDN;
+        m_factories = factories;
+        m_persistentSearch = persistentSearch;
+        m_bus = bus;
+    }
+
+    /**
+     * @see  java.lang.Runnable#run()
+     */
+    @Override public void run()
+    {
+        boolean reconnected = false;
+        int server = 0;
+
+        while (!m_stopped)
+        {
+            try
+            {
+                m_connection = m_factories.get(server).createConnection();
+
+                LDAPSearchResults results = startSearch(m_connection);
+
+                // The search is running, so no change after this point is missed.
+                if (reconnected)
+                {
+                    m_bus.publish(new DirectoryChangeEvent(m_baseDN, null, true));
+                }
+
+                reconnected = true;
+
+                while (!m_stopped && results.hasMore())
+                {
+                    LDAPEntry entry = results.next();
+
+                    publish(entry, results.getResponseControls());
+                }
+            }
+            catch (LDAPException e)
+            {
+                if (!m_stopped)
+                {
+                    LOG.warn(e, GeneralMessages.THE_CHANGE_LISTENER_FOR_0_LOST_ITS_CONNECTION_RECONNECTING,
+                             m_baseDN);
+                }
+            }
+            finally
+            {
+                disconnect();
+            }
+
+            // The search only ends when the connection was lost, so try the next server.
+            server = (server + 1) % m_factories.size();
+            reconnected = true;
+
+            try
+            {
+                if (!m_stopped)
+                {
+                    Thread.sleep(RECONNECT_DELAY);
+                }
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+
+        if (LOG.isDebugEnabled())
+        {
+            LOG.debug("The change listener for " + m_baseDN + " stopped.");
+        }
+    }
+
+    /**
+     * This method starts listening on a separate thread.
+     */
+    public synchronized void start()
+    {
+        if (LOG.isDebugEnabled())
+        {
+            LOG.debug("Starting the change listener for " + m_baseDN + " using " +
+                      (m_persistentSearch ? "persistent searches." : "change notifications."));
+        }
+
+        m_thread = THREAD_FACTORY.newThread(this);
+        m_thread.start();
+    }
+
+    /**
+     * This method stops listening. The connection is closed, which ends the running search.
+     */
+    public synchronized void stop()
+    {
+        m_stopped = true;
+
+        disconnect();
+
+        if (m_thread != null)
+        {
+            m_thread.interrupt();
+        }
+    }
+
+    /**
+     * This method returns the value of an attribute that identifies the entry as a string.
+     *
+     * @param   entry  The entry.
+     *
+     * @return  The objectGUID of the entry. null if the entry does not have one.
+     */
+    private static String getObjectGUID(LDAPEntry entry)
+    {
+        LDAPAttribute attribute = entry.getAttribute(ATTR_OBJECT_GUID);
+        byte[] value = (attribute == null) ? null : attribute.getByteValue();
+
+        return (value == null) ? null : Base64.encode(value);
+    }
+
+    /**
+     * This method closes the connection of the search.
+     */
+    private void disconnect()
+    {
+        LDAPConnection connection = m_connection;
+
+        m_connection = null;
+
+        if (connection != null)
+        {
+            try
+            {
+                connection.disconnect();
+            }
+            catch (LDAPException e)
+            {
+                LOG.warn(e, GeneralMessages.ERROR_DISCONNECTING_CONNECTION);
+            }
+        }
+    }
+
+    /**
+     * This method publishes the change that was reported for the given entry.
+     *
+     * @param  entry     The changed entry.
+     * @param  controls  The controls that were returned with the entry.
+     */
+    private void publish(LDAPEntry entry, LDAPControl[] controls)
+    {
+        String dn = entry.getDN();
+        DirectoryChangeEvent event;
+
+        if (m_persistentSearch)
+        {
+            LDAPEntryChangeControl change = null;
+
+            for (int iCount = 0; (controls != null) && (iCount < controls.length); iCount++)
+            {
+                if (controls[iCount] instanceof LDAPEntryChangeControl)
+                {
+                    change = (LDAPEntryChangeControl) controls[iCount];
+                }
+            }
+
+            if ((change != null) && (change.getChangeType() == LDAPPersistSearchControl.MODDN))
+            {
+                event = new DirectoryChangeEvent(change.getPreviousDN(), dn, true);
+            }
+            else
+            {
+                event = new DirectoryChangeEvent(dn, null,
+                                                 (change != null) &&
+                                                 (change.getChangeType() ==
+                                                      LDAPPersistSearchControl.DELETE));
+            }
+        }
+        else
+        {
+            // A renamed, moved or deleted entry is reported at its new DN.
+            String guid = getObjectGUID(entry);
+            String normalized = DirectoryChangeEvent.normalize(dn);
+            String previous = (guid == null) ? null : m_knownEntries.put(guid, normalized);
+            boolean deleted = (entry.getAttribute(ATTR_IS_DELETED) != null) &&
+                              "TRUE".equalsIgnoreCase(entry.getAttribute(ATTR_IS_DELETED)
+                                                      .getStringValue());
+
+            if ((previous != null) && !previous.equals(normalized))
+            {
+                event = new DirectoryChangeEvent(previous, dn, true);
+            }
+            else if (deleted)
+            {
+                // The DN of the entry before it was deleted is not known.
+                event = new DirectoryChangeEvent(m_baseDN, null, true);
+            }
+            else
+            {
+                event = new DirectoryChangeEvent(dn, null, false);
+            }
+        }
+
+        m_bus.publish(event);
+    }
+
+    /**
+     * This method starts the search that returns the changed entries.
+     *
+     * @param   connection  The connection to search on.
+     *
+     * @return  The results of the search. An entry is returned for every change.
+     *
+     * @throws  LDAPException  In case the search could not be started.
+     */
+    private LDAPSearchResults startSearch(LDAPConnection connection)
+                                   throws LDAPException
+    {
+        LDAPSearchConstraints constraints = new LDAPSearchConstraints();
+
+        // The search runs until it is stopped and every change is handled when it arrives.
+        constraints.setMaxResults(0);
+        constraints.setTimeLimit(0);
+        constraints.setBatchSize(1);
+
+        String[] attributes;
+
+        if (m_persistentSearch)
+        {
+            constraints.setControls(new LDAPPersistSearchControl(LDAPPersistSearchControl.ANY,
+                                                                 true, true, true));
+            attributes = new String[] { LDAPConnection.NO_ATTRS };
+        }
+        else
+        {
+            constraints.setControls(new LDAPControl[]
+                                    {
+                                        new LDAPControl(NOTIFICATION_OID, true, null),
+                                        new LDAPControl(SHOW_DELETED_OID, false, null)
+                                    });
+            attributes = new String[] { ATTR_OBJECT_GUID, ATTR_IS_DELETED };
+        }
+
+        return connection.search(m_baseDN, LDAPConnection.SCOPE_SUB, "(objectClass=*)",
+                                 attributes, false, constraints);
+    }
+}
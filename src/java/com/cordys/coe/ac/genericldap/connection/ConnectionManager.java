@@ -17,17 +17,27 @@
  */
 package com.cordys.coe.ac.genericldap.connection;
 
+import com.cordys.coe.ac.genericldap.cache.DirectoryChangeBus;
+import com.cordys.coe.ac.genericldap.cache.NegativeLookupCache;
+import com.cordys.coe.ac.genericldap.cache.SearchResultCache;
 import com.cordys.coe.ac.genericldap.config.EConnectionType;
+import com.cordys.coe.ac.genericldap.config.ELoadBalancingStrategy;
 import com.cordys.coe.ac.genericldap.config.IGenLDAPConfiguration;
+import com.cordys.coe.ac.genericldap.config.ServerEndpoint;
 import com.cordys.coe.ac.genericldap.exception.GenericLDAPConnectorException;
 import com.cordys.coe.ac.genericldap.localization.GenLDAPExceptionMessages;
 import com.cordys.coe.ac.genericldap.localization.GeneralMessages;
+import com.cordys.coe.ac.genericldap.schema.SchemaIndex;
+import com.cordys.coe.ac.genericldap.schema.SchemaSnapshot;
+
+import com.cordys.coe.ac.genericldap.util.NamedThreadFactory;
 
-import com.eibus.util.Queue;
 import com.eibus.util.logger.CordysLogger;
 
+import com.novell.ldap.LDAPAttribute;
 import com.novell.ldap.LDAPAttributeSchema;
 import com.novell.ldap.LDAPConnection;
+import com.novell.ldap.LDAPControl;
 import com.novell.ldap.LDAPEntry;
 import com.novell.ldap.LDAPException;
 import com.novell.ldap.LDAPJSSESecureSocketFactory;
@@ -35,15 +45,40 @@ import com.novell.ldap.LDAPSchema;
 import com.novell.ldap.LDAPSearchConstraints;
 import com.novell.ldap.LDAPSearchResults;
 
+import java.io.File;
+import java.io.IOException;
+
 import java.security.Provider;
 import java.security.Security;
 
+import java.util.ArrayList;
+import java.util.EnumMap;
 import java.util.Enumeration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 /**
  * This class maintains the connection to the LDAP server. It will automatically reconnect is for
  * some reason the connection died.
  *
+ * <p>The connections are kept in an elastic pool. The pool grows on demand up to the configured
+ * maximum and a background task closes the surplus connections that have been idle for longer
+ * than the configured idle timeout.</p>
+ *
+ * <p>Searches and reads use the read pools, updates use the write pools. Both have their own
+ * sizes and can point to different servers, so long running searches cannot starve the
+ * updates.</p>
+ *
+ * <p>When replicas are configured every server gets its own pool. The load balancing strategy
+ * decides which server is used for a request. If a connection to a server cannot be created the
+ * server is skipped for a while and the next server is used.</p>
+ *
  * <p>This class will be accessed by multiple threads.</p>
  *
  * @author  pgussow
@@ -55,22 +90,94 @@ class ConnectionManager
      * Holds the logger to use.
      */
     private static final CordysLogger LOG = CordysLogger.getCordysLogger(ConnectionManager.class);
+    /**
+     * Holds the maximum number of connections that are established at the same time when the
+     * pool is filled at startup.
+     */
+    private static final int STARTUP_PARALLELISM = 8;
+    /**
+     * Holds the name of the operational attribute that holds the time the schema was changed.
+     */
+    private static final String ATTR_MODIFY_TIMESTAMP = "modifyTimestamp";
+    /**
+     * Holds the maximum number of DNs that are remembered as not existing.
+     */
+    private static final int MAX_MISSING_ENTRIES = 10000;
+    /**
+     * Holds the maximum number of outstanding reads per connection when reading a list of DNs.
+     */
+    private static final int MAX_PIPELINED_READS = 32;
+    /**
+     * Holds the maximum number of connections a list of DNs is read over.
+     */
+    private static final int MAX_PIPELINED_CONNECTIONS = 4;
     /**
      * Holds the configuration to use.
      */
     private IGenLDAPConfiguration m_configuration;
     /**
-     * Holds the available connections.
+     * Holds the read and write pool groups.
+     */
+    private Map<EPoolType, PoolGroup> m_groups = new EnumMap<EPoolType, PoolGroup>(EPoolType.class);
+    /**
+     * Holds the groups that own their pools. A pool type that shares the pools of another type
+     * is not in this list, so its pools are maintained only once.
+     */
+    private List<PoolGroup> m_poolGroups = new ArrayList<PoolGroup>();
+    /**
+     * Holds the pools with the available connections of both groups. There is one pool per
+     * server and pool type.
+     */
+    private List<ConnectionPool> m_pools = new ArrayList<ConnectionPool>();
+    /**
+     * Holds the scheduler for the background maintenance of the pool.
+     */
+    private ScheduledExecutorService m_scheduler;
+    /**
+     * Holds the executor on which requests run their searches in parallel.
+     */
+    private ThreadPoolExecutor m_searchExecutor;
+    /**
+     * Holds the DNs that are known not to exist.
+     */
+    private NegativeLookupCache m_missingEntries;
+    /**
+     * Holds the coalescer for the reads of single entries. null if reads are not coalesced.
+     */
+    private RequestCoalescer<SearchResultCache.SearchKey, LDAPEntry> m_entryReads;
+    /**
+     * Holds the coalescer for the searches. null if searches are not coalesced.
+     */
+    private RequestCoalescer<SearchResultCache.SearchKey, LDAPEntry[]> m_searches;
+    /**
+     * Holds the paged searches that wait for the next page.
+     */
+    private PagedSearchRegistry m_pagedSearches = new PagedSearchRegistry();
+    /**
+     * Holds the bus on which the changes to the directory are published.
+     */
+    private DirectoryChangeBus m_changeBus = new DirectoryChangeBus();
+    /**
+     * Holds the capabilities the server advertises.
      */
-    private Queue m_connectionQueue;
+    private volatile ServerCapabilities m_capabilities = ServerCapabilities.EMPTY;
     /**
      * Holds the schema for this connection.
      */
-    private LDAPSchema m_schema;
+    private volatile LDAPSchema m_schema;
+    /**
+     * Holds the index of the attribute types in the schema.
+     */
+    private volatile SchemaIndex m_schemaIndex = SchemaIndex.EMPTY;
+    /**
+     * Holds the modify timestamp of the schema that was read. null if the server does not
+     * provide it.
+     */
+    private volatile String m_schemaTimestamp;
     /**
-     * Holds the optional SSL socket factory,
+     * Holds the listeners that publish the changes others make to the directory.
      */
-    private LDAPJSSESecureSocketFactory m_ssf;
+    private List<ChangeNotificationListener> m_changeListeners = new ArrayList<ChangeNotificationListener>();
 
     /**
      * Construction. It will initialize the actual connections to LDAP.
@@ -84,18 +191,29 @@ class ConnectionManager
     {
         m_configuration = configuration;
 
+        m_missingEntries = new NegativeLookupCache(configuration.getNegativeCacheTTL() * 1000L,
+                                                   MAX_MISSING_ENTRIES);
+        m_missingEntries.attach(m_changeBus);
+
+        // Identical requests that run at the same time can share one round trip.
+        if (configuration.isCoalesceRequests())
+        {
+            m_entryReads = new RequestCoalescer<SearchResultCache.SearchKey, LDAPEntry>();
+            m_changeBus.addListener(m_entryReads);
+            m_searches = new RequestCoalescer<SearchResultCache.SearchKey, LDAPEntry[]>();
+            m_changeBus.addListener(m_searches);
+        }
+
         if (LOG.isDebugEnabled())
         {
-            LOG.debug("Creating " + configuration.getNrOfConnections() + " connections of type " +
+            LOG.debug("Creating a pool of " + configuration.getMinConnections() + " to " +
+                      configuration.getMaxConnections() + " connections of type " +
                       configuration.getConnectionType() + ". The connections will " +
                       (configuration.isAnonymousBind() ? "NOT " : "") + " use authentication.");
         }
 
-        // Create the placeholder for the connections.
-        m_connectionQueue = new Queue(configuration.getNrOfConnections());
-
         // Check if the connection is supposed to be secure. If so, set up the security.
-        m_ssf = null;
+        LDAPJSSESecureSocketFactory ssf = null;
 
         if (configuration.getConnectionType() == EConnectionType.SECURE)
         {
@@ -108,74 +226,189 @@ class ConnectionManager
             Security.addProvider(pTemp);
             System.setProperty("javax.net.ssl.trustStore", configuration.getKeyStore());
 
-            m_ssf = new LDAPJSSESecureSocketFactory();
+            ssf = new LDAPJSSESecureSocketFactory();
+        }
+
+        // Create the placeholder for the connections. Every server gets its own pool. Updates
+        // always go to the first available write server, so a client reads its own writes.
+        createGroup(EPoolType.READ, configuration.getServers(), configuration.getMinConnections(),
+                    configuration.getMaxConnections(), configuration.getLoadBalancingStrategy(),
+                    ssf);
+
+        if (configuration.getWriteServers().isEmpty())
+        {
+            // Without write servers the updates share the read pools, so the connector keeps
+            // within the configured number of connections.
+            PoolGroup reads = m_groups.get(EPoolType.READ);
+
+            m_groups.put(EPoolType.WRITE,
+                         new PoolGroup(EPoolType.WRITE, reads.getPools(),
+                                       ELoadBalancingStrategy.FAILOVER, reads.getStatistics()));
+        }
+        else
+        {
+            createGroup(EPoolType.WRITE, configuration.getWriteServers(),
+                        configuration.getWriteMinConnections(),
+                        configuration.getWriteMaxConnections(), ELoadBalancingStrategy.FAILOVER,
+                        ssf);
         }
 
         LDAPConnection connection = null;
+        boolean fromSnapshot = false;
 
         try
         {
-            connection = createConnection(m_ssf, configuration);
+            connection = getConnection(EPoolType.READ);
+        }
+        catch (GenericLDAPConnectorException e)
+        {
+            closePools();
+            throw e;
+        }
 
-            // Now also read the schema
-            String schemaDN = connection.getSchemaDN();
+        try
+        {
+            // Now also read the schema. A snapshot on disk saves downloading the complete schema.
+            fromSnapshot = loadSchemaSnapshot(connection);
 
-            if ((schemaDN != null) && (schemaDN.length() > 0))
+            if (!fromSnapshot)
             {
-                if (LOG.isDebugEnabled())
-                {
-                    LOG.debug("The DN for the schema: " + schemaDN);
-                }
+                loadSchema(connection);
+            }
 
-                m_schema = connection.fetchSchema(schemaDN);
+            // The capabilities are optional. Without them the connector falls back to plain
+            // searches.
+            try
+            {
+                m_capabilities = ServerCapabilities.read(connection);
 
                 if (LOG.isDebugEnabled())
                 {
-                    // Dump the schema
-                    StringBuilder sbTemp = new StringBuilder(1024);
-
-                    Enumeration<?> enumNames = m_schema.getAttributeNames();
-
-                    while (enumNames.hasMoreElements())
-                    {
-                        String name = (String) enumNames.nextElement();
-                        LDAPAttributeSchema attrSchema = m_schema.getAttributeSchema(name);
-                        String syntax = attrSchema.getSyntaxString();
-
-                        sbTemp.append(name).append(": ").append(attrSchema.getID())
-                              .append("; Syntax: ").append(syntax).append("\n");
-                    }
-                    
-                    LOG.debug(sbTemp.toString());
+                    LOG.debug("Server capabilities: " + m_capabilities);
                 }
             }
+            catch (LDAPException e)
+            {
+                LOG.warn(e, GeneralMessages.ERROR_READING_THE_CAPABILITIES_OF_THE_LDAP_SERVER);
+            }
         }
         catch (Exception e)
         {
+            closePools();
             throw new GenericLDAPConnectorException(e,
                                                     GenLDAPExceptionMessages.GLE_ERROR_CREATING_CONNECTION_TO_01,
                                                     configuration.getServer(),
                                                     configuration.getPort());
         }
+        finally
+        {
+            // Store the connection.
+            releaseConnection(connection);
+        }
+
+        m_scheduler = Executors.newSingleThreadScheduledExecutor(new NamedThreadFactory("GenericLDAPPoolMaintenance"));
+
+        // Every parallel search holds a connection, so more threads than connections would only
+        // wait. The threads stop when they are idle.
+        int searchThreads = Math.max(Math.min(configuration.getSearchParallelism(),
+                                              configuration.getMaxConnections()), 1);
 
-        // Store the connection.
-        m_connectionQueue.put(connection);
+        m_searchExecutor = new ThreadPoolExecutor(searchThreads, searchThreads, 60L,
+                                                  TimeUnit.SECONDS,
+                                                  new LinkedBlockingQueue<Runnable>(),
+                                                  new NamedThreadFactory("GenericLDAPSearch"));
+        m_searchExecutor.allowCoreThreadTimeOut(true);
 
-        // Create the rest of the connections.
-        for (int iCount = 1; iCount < configuration.getNrOfConnections(); iCount++)
+        // Create the rest of the connections. In lazy mode the connector is available as soon as
+        // the first connection is bound and the pool is warmed up in the background.
+        if (configuration.isLazyStartup())
+        {
+            m_scheduler.execute(new Runnable()
+                {
+                    public void run()
+                    {
+                        try
+                        {
+                            fillPools();
+                        }
+                        catch (GenericLDAPConnectorException e)
+                        {
+                            LOG.warn(e, GeneralMessages.ERROR_WARMING_UP_THE_CONNECTION_POOL_FOR_0,
+                                     m_configuration.getServers());
+                        }
+                    }
+                });
+        }
+        else
         {
             try
             {
-                m_connectionQueue.put(createConnection(m_ssf, configuration));
+                fillPools();
             }
-            catch (Exception e)
+            catch (GenericLDAPConnectorException e)
             {
-                throw new GenericLDAPConnectorException(e,
-                                                        GenLDAPExceptionMessages.GLE_ERROR_CREATING_CONNECTION_NUMBER_0_FOR_SERVER_12,
-                                                        iCount, configuration.getServer(),
-                                                        configuration.getPort());
+                m_scheduler.shutdownNow();
+                closePools();
+                throw e;
             }
         }
+
+        // A schema from the snapshot is checked against the server right away.
+        if (fromSnapshot)
+        {
+            m_scheduler.execute(new Runnable()
+                {
+                    public void run()
+                    {
+                        refreshSchema();
+                    }
+                });
+        }
+
+        // Start the background task that shrinks the pool when connections are idle.
+        long interval = getMaintenanceInterval(configuration);
+
+        m_scheduler.scheduleWithFixedDelay(new Runnable()
+            {
+                public void run()
+                {
+                    maintainPool();
+                }
+            }, interval, interval, TimeUnit.MILLISECONDS);
+
+        // Start the background task that picks up changes of the schema.
+        if (configuration.getSchemaRefreshInterval() > 0)
+        {
+            long schemaInterval = configuration.getSchemaRefreshInterval() * 1000L;
+
+            m_scheduler.scheduleWithFixedDelay(new Runnable()
+                {
+                    public void run()
+                    {
+                        refreshSchema();
+                    }
+                }, schemaInterval, schemaInterval, TimeUnit.MILLISECONDS);
+        }
+
+        // Listen to the changes others make, so the caches do not serve them stale.
+        startChangeListeners(ssf);
+
+        // Start the background task that replaces broken idle connections.
+        if (configuration.getValidationInterval() > 0)
+        {
+            final long validationInterval = configuration.getValidationInterval() * 1000L;
+
+            m_scheduler.scheduleWithFixedDelay(new Runnable()
+                {
+                    public void run()
+                    {
+                        for (PoolGroup group : m_poolGroups)
+                        {
+                            group.validateIdle(validationInterval);
+                        }
+                    }
+                }, validationInterval, validationInterval, TimeUnit.MILLISECONDS);
+        }
     }
 
     /**
@@ -183,35 +416,40 @@ class ConnectionManager
      */
     @Override public void disconnect()
     {
-        if (LOG.isDebugEnabled())
+        for (ChangeNotificationListener listener : m_changeListeners)
         {
-            LOG.debug("Trying to disconnect " + m_connectionQueue.size() + " connections");
+            listener.stop();
         }
 
-        while (m_connectionQueue.size() > 0)
+        if (m_scheduler != null)
         {
-            LDAPConnection con = (LDAPConnection) m_connectionQueue.nonBlockingGet();
+            m_scheduler.shutdownNow();
+        }
 
-            if (con == null)
-            {
-                // This connection is already gone.
-            }
-            else if (con.isConnected())
-            {
-                try
-                {
-                    con.disconnect();
-                }
-                catch (LDAPException e)
-                {
-                    LOG.warn(e, GeneralMessages.ERROR_DISCONNECTING_CONNECTION);
-                }
-            }
+        if (m_searchExecutor != null)
+        {
+            m_searchExecutor.shutdownNow();
+        }
+
+        for (PagedSearchRegistry.PagedSearch search : m_pagedSearches.clear())
+        {
+            releasePinnedConnection(search.getConnection());
         }
+
+        closePools();
+    }
+
+    /**
+     * @see  com.cordys.coe.ac.genericldap.connection.IConnectionManager#getChangeBus()
+     */
+    @Override public DirectoryChangeBus getChangeBus()
+    {
+        return m_changeBus;
     }
 
     /**
-     * This method will return an active connection. If none is available it will wait.
+     * This method will return an active connection from the write pool. If none is available it
+     * will wait.
      *
      * @return  The connection or null if not connected.
      *
@@ -220,66 +458,93 @@ class ConnectionManager
     public LDAPConnection getConnection()
                                  throws GenericLDAPConnectorException
     {
-        LDAPConnection returnConnection = null;
-
-        if (LOG.isDebugEnabled())
-        {
-            LOG.debug("Waiting for connection");
-        }
-
-        LDAPConnection con = (LDAPConnection) m_connectionQueue.get();
+        return getConnection(EPoolType.WRITE);
+    }
 
+    /**
+     * @see  com.cordys.coe.ac.genericldap.connection.IConnectionManager#getConnection(com.cordys.coe.ac.genericldap.connection.EPoolType)
+     */
+    @Override public LDAPConnection getConnection(EPoolType type)
+                                           throws GenericLDAPConnectorException
+    {
         if (LOG.isDebugEnabled())
         {
-            LOG.debug("Obtained connection");
+            LOG.debug("Waiting for " + type + " connection");
         }
 
-        // Put in a try-finally construct to make sure the connection is never lost.
-        if (LOG.isDebugEnabled())
-        {
-            LOG.debug("Current connection connected: " + con.isConnected() + " and alive: " +
-                      con.isConnectionAlive());
-        }
+        // Try the servers in the order of the load balancing strategy. Only when a connection to
+        // a server could not be created the next server is tried. A timeout while waiting for a
+        // busy server is reported immediately.
+        GenericLDAPConnectorException lastError = null;
 
-        if (con.isConnected())
+        for (ConnectionPool pool : m_groups.get(type).select())
         {
-            // It's a normal, active connection.
-            returnConnection = con;
-        }
-        else
-        {
-            // Kill the connection and recreate it.
             try
             {
-                con.disconnect();
-            }
-            catch (Exception e)
-            {
-                LOG.warn(e, GeneralMessages.ERROR_DISCONNECTING_CONNECTION);
-            }
+                // Idle connections are validated in the background. The pool only discards
+                // connections that are known to be disconnected.
+                LDAPConnection returnConnection = pool.acquire();
 
-            try
-            {
-                con = createConnection(m_ssf, m_configuration);
+                if (LOG.isDebugEnabled())
+                {
+                    LOG.debug("Obtained connection to " + pool.getEndpoint() + ". Pool size: " +
+                              pool.getSize() + ", idle: " + pool.getIdleCount());
+                }
+
+                return returnConnection;
             }
-            catch (Exception e)
+            catch (GenericLDAPConnectorException e)
             {
-                // This is serious, because it means that we will have 1 connection less then
-                // before.
-                LOG.fatal(e,
-                          GeneralMessages.ERROR_LOST_A_CONNECTION_BECAUSE_IT_COULD_NOT_BE_RECREATED);
+                if (pool.isHealthy())
+                {
+                    throw e;
+                }
+
+                LOG.warn(e, GeneralMessages.SERVER_0_IS_NOT_AVAILABLE_TRYING_THE_NEXT_SERVER,
+                         pool.getEndpoint());
+                lastError = e;
             }
-            
-            //Return the freshly created connection.
-            returnConnection = con;
         }
 
-        if (returnConnection == null)
+        throw lastError;
+    }
+
+    /**
+     * This method returns an idle connection from the given pool without waiting.
+     *
+     * @param   type  The pool to get the connection from.
+     *
+     * @return  The connection. null if no connection is idle.
+     */
+    private LDAPConnection getIdleConnection(EPoolType type)
+    {
+        for (ConnectionPool pool : m_groups.get(type).select())
         {
-            throw new GenericLDAPConnectorException(GenLDAPExceptionMessages.GLE_COULD_NOT_OBTAIN_FREE_LDAP_CONNECTION);
+            LDAPConnection returnValue = pool.acquireIdle();
+
+            if (returnValue != null)
+            {
+                return returnValue;
+            }
         }
 
-        return returnConnection;
+        return null;
+    }
+
+    /**
+     * @see  com.cordys.coe.ac.genericldap.connection.IConnectionManager#getPoolStatistics(com.cordys.coe.ac.genericldap.connection.EPoolType)
+     */
+    @Override public PoolStatistics getPoolStatistics(EPoolType type)
+    {
+        return m_groups.get(type).getStatistics();
+    }
+
+    /**
+     * @see  com.cordys.coe.ac.genericldap.connection.IConnectionManager#getServerCapabilities()
+     */
+    @Override public ServerCapabilities getServerCapabilities()
+    {
+        return m_capabilities;
     }
 
     /**
@@ -290,6 +555,14 @@ class ConnectionManager
         return m_schema;
     }
 
+    /**
+     * @see  com.cordys.coe.ac.genericldap.connection.IConnectionManager#getSchemaIndex()
+     */
+    @Override public SchemaIndex getSchemaIndex()
+    {
+        return m_schemaIndex;
+    }
+
     /**
      * This method will read a specific DN from the LDAP server.
      *
@@ -319,27 +592,84 @@ class ConnectionManager
             				throws GenericLDAPConnectorException
 	{
 		LDAPEntry returnLDAPEntry = null;
+		RequestCoalescer.Flight<SearchResultCache.SearchKey, LDAPEntry> flight = null;
+		
+		if (m_entryReads != null)
+		{
+			// If the same entry is being read already, wait for that read.
+			flight = m_entryReads.join(SearchResultCache.createKey(dn, LDAPConnection.SCOPE_BASE,
+			                                                       null, attributes, null, 0,
+			                                                       false));
+			
+			if (!flight.isLeader())
+			{
+				returnLDAPEntry = flight.await();
+				
+				if (returnLDAPEntry != null)
+				{
+					return returnLDAPEntry;
+				}
+				
+				// The entry that the leader did not find does not exist for this read either.
+				if (flight.getError() != null)
+				{
+					throw new GenericLDAPConnectorException(flight.getError(),
+					                                    GenLDAPExceptionMessages.GLE_ERROR_READING_LDAP_ENTRY_WITH_DN_0,
+					                                    dn);
+				}
+				
+				flight = null;
+			}
+		}
 		
-		LDAPConnection con = getConnection();
+		LDAPConnection con = null;
 		
 		try
 		{
+			con = getConnection(EPoolType.READ);
+			
 			if (LOG.isDebugEnabled())
 			{
 				LOG.debug("Reading entry with DN: " + dn);
 			}
-			returnLDAPEntry = con.read(dn, attributes);
+			
+			long start = System.currentTimeMillis();
+			
+			returnLDAPEntry = m_missingEntries.read(con, dn, attributes);
+			
+			// A read of a single entry is answered right away, so it measures the server.
+			recordLatency(con, System.currentTimeMillis() - start);
+		}
+		catch (GenericLDAPConnectorException e)
+		{
+			throw e;
 		}
 		catch (Exception e)
 		{
+			if ((flight != null) && (e instanceof LDAPException) &&
+			        (((LDAPException) e).getResultCode() == LDAPException.NO_SUCH_OBJECT))
+			{
+				flight.fail(e);
+			}
+			
 			throw new GenericLDAPConnectorException(e,
 			                                    GenLDAPExceptionMessages.GLE_ERROR_READING_LDAP_ENTRY_WITH_DN_0,
 			                                    dn);
 		}
 		finally
 		{
+			// Hand the entry to the reads that waited for it. On another error than a missing
+			// entry they read themselves.
+			if (flight != null)
+			{
+				flight.complete(returnLDAPEntry);
+			}
+			
 			// Put the connection back in the queue.
-			releaseConnection(con);
+			if (con != null)
+			{
+				releaseConnection(con);
+			}
 		}
 		
 		return returnLDAPEntry;
@@ -347,115 +677,820 @@ class ConnectionManager
   
     
     /**
-     * This method releases the connection to the pool.
-     *
-     * @param  connection  The connection to releases the connection to the pool.
+     * @see  com.cordys.coe.ac.genericldap.connection.IConnectionManager#getSearchCoalescer()
      */
-    public void releaseConnection(LDAPConnection connection)
+    @Override public RequestCoalescer<SearchResultCache.SearchKey, LDAPEntry[]> getSearchCoalescer()
     {
-        if (connection != null)
-        {
-            if (LOG.isDebugEnabled())
-            {
-                LOG.debug("Releasing connection. Size before release: " + m_connectionQueue.size());
-            }
+        return m_searches;
+    }
 
-            m_connectionQueue.put(connection);
-        }
+    /**
+     * @see  com.cordys.coe.ac.genericldap.connection.IConnectionManager#getSearchExecutor()
+     */
+    @Override public ExecutorService getSearchExecutor()
+    {
+        return m_searchExecutor;
     }
 
     /**
-     * This method searches LDAP for entries.
-     *
-     * @param   rootDN          The DN to start searching from.
-     * @param   scope           The scope for searching.
-     * @param   filter          The filter to use.
-     * @param   attributeNames  The names of the attributes to retrieve.
-     * @param   excludeValues   Whether or not to exclude the values when returning the results.
-     * @param   constraints     The constraints to apply.
-     *
-     * @return  The result from the search query.
-     *
-     * @throws  GenericLDAPConnectorException  In case of any exceptions.
-     *
-     * @see     com.cordys.coe.ac.genericldap.connection.IConnectionManager#search(java.lang.String,
-     *          int, java.lang.String, java.lang.String[], boolean,
-     *          com.novell.ldap.LDAPSearchConstraints)
+     * @see  com.cordys.coe.ac.genericldap.connection.IConnectionManager#getNegativeLookupCache()
      */
-    @Override public LDAPSearchResults search(String rootDN, int scope, String filter,
-                                              String[] attributeNames, boolean excludeValues,
-                                              LDAPSearchConstraints constraints)
-                                       throws GenericLDAPConnectorException
+    @Override public NegativeLookupCache getNegativeLookupCache()
     {
-        LDAPSearchResults returnLDAPSearchResults = null;
+        return m_missingEntries;
+    }
 
-        LDAPConnection con = getConnection();
+    /**
+     * @see  com.cordys.coe.ac.genericldap.connection.IRangeReader#readAttributeRange(java.lang.String,
+     *       java.lang.String)
+     */
+    @Override public LDAPAttribute readAttributeRange(String dn, String attributeName)
+                                               throws GenericLDAPConnectorException
+    {
+        LDAPConnection con = null;
 
         try
         {
+            con = getConnection(EPoolType.READ);
+
             if (LOG.isDebugEnabled())
             {
-                LOG.debug(getDetails(rootDN, scope, filter, attributeNames, excludeValues,
-                                     constraints));
+                LOG.debug("Reading " + attributeName + " of entry with DN: " + dn);
             }
 
-            // Do the actual search.
-            returnLDAPSearchResults = con.search(rootDN, scope, filter, attributeNames,
-                                                 excludeValues, constraints);
+            return AttributeRange.read(con, dn, attributeName);
         }
-        catch (Exception e)
+        catch (LDAPException e)
         {
             throw new GenericLDAPConnectorException(e,
-                                                    GenLDAPExceptionMessages.GLE_ERROR_EXECUTING_SEARCH_WITH_CRITERIAN0,
-                                                    getDetails(rootDN, scope, filter,
-                                                               attributeNames, excludeValues,
-                                                               constraints));
+                                                    GenLDAPExceptionMessages.GLE_ERROR_READING_LDAP_ENTRY_WITH_DN_0,
+                                                    dn);
         }
         finally
         {
-            // Put the connection back in the queue.
-            m_connectionQueue.put(con);
+            if (con != null)
+            {
+                releaseConnection(con);
+            }
         }
-
-        return returnLDAPSearchResults;
     }
 
     /**
-     * This method creates a connection.
-     *
-     * @param   ssf            The secure socket factory to support SSL.
-     * @param   configuration  The configuration to use.
-     *
-     * @return  The LDAP connection to use.
-     *
-     * @throws  LDAPException  In case of any exception.
+     * @see  com.cordys.coe.ac.genericldap.connection.IConnectionManager#readLDAPEntries(java.lang.String[], java.lang.String[])
      */
-    private LDAPConnection createConnection(LDAPJSSESecureSocketFactory ssf,
-                                            IGenLDAPConfiguration configuration)
-                                     throws LDAPException
+    @Override public BatchReadResult readLDAPEntries(String[] dns, String[] attributes)
+                                              throws GenericLDAPConnectorException
     {
-        LDAPConnection returnConnection = null;
+        BatchReadResult returnValue = new BatchReadResult(dns);
+        long generation = m_missingEntries.getGeneration();
+        List<Integer> indexes = new ArrayList<Integer>();
 
-        // Try one connection to see if authentication and setup is OK
-        if (ssf == null)
+        for (int iCount = 0; iCount < dns.length; iCount++)
         {
-            returnConnection = new LDAPConnection();
+            if (m_missingEntries.isMissing(dns[iCount]))
+            {
+                returnValue.setError(iCount,
+                                     new LDAPException(LDAPException.resultCodeToString(LDAPException.NO_SUCH_OBJECT),
+                                                       LDAPException.NO_SUCH_OBJECT, null,
+                                                       dns[iCount]));
+            }
+            else
+            {
+                indexes.add(iCount);
+            }
         }
-        else
+
+        if (indexes.isEmpty())
         {
-            returnConnection = new LDAPConnection(ssf);
+            return returnValue;
         }
 
-        // Do the connect
-        returnConnection.connect(configuration.getServer(), configuration.getPort());
+        // One connection is always used. More connections are only used if they are idle, so a
+        // large list does not make other requests wait.
+        int wanted = Math.min(((indexes.size() - 1) / MAX_PIPELINED_READS) + 1,
+                              MAX_PIPELINED_CONNECTIONS);
+        List<LDAPConnection> connections = new ArrayList<LDAPConnection>();
+
+        try
+        {
+            connections.add(getConnection(EPoolType.READ));
+
+            while (connections.size() < wanted)
+            {
+                LDAPConnection connection = getIdleConnection(EPoolType.READ);
+
+                if (connection == null)
+                {
+                    break;
+                }
+                connections.add(connection);
+            }
+
+            if (LOG.isDebugEnabled())
+            {
+                LOG.debug("Reading " + indexes.size() + " entries over " + connections.size() +
+                          " connections");
+            }
+
+            new PipelinedReader(connections, attributes, MAX_PIPELINED_READS).read(indexes,
+                                                                                   returnValue);
+        }
+        finally
+        {
+            for (LDAPConnection connection : connections)
+            {
+                releaseConnection(connection);
+            }
+        }
+
+        for (int index : indexes)
+        {
+            LDAPException error = returnValue.getError(index);
+
+            if ((error != null) && (error.getResultCode() == LDAPException.NO_SUCH_OBJECT))
+            {
+                m_missingEntries.recordMissing(dns[index], generation);
+            }
+        }
+
+        return returnValue;
+    }
+
+    /**
+     * This method releases the connection to the pool.
+     *
+     * @param  connection  The connection to releases the connection to the pool.
+     */
+    public void releaseConnection(LDAPConnection connection)
+    {
+        if (connection != null)
+        {
+            for (ConnectionPool pool : m_pools)
+            {
+                if (pool.contains(connection))
+                {
+                    pool.release(connection);
+                    return;
+                }
+            }
+
+            // The pool was closed in the meantime, so the connection is not needed anymore.
+            try
+            {
+                connection.disconnect();
+            }
+            catch (LDAPException e)
+            {
+                LOG.warn(e, GeneralMessages.ERROR_DISCONNECTING_CONNECTION);
+            }
+        }
+    }
+
+    /**
+     * @see  com.cordys.coe.ac.genericldap.connection.IConnectionManager#openSearch(java.lang.String,
+     *       int, java.lang.String, java.lang.String[], boolean,
+     *       com.novell.ldap.LDAPSearchConstraints)
+     */
+    @Override public SearchLease openSearch(String rootDN, int scope, String filter,
+                                            String[] attributeNames, boolean excludeValues,
+                                            LDAPSearchConstraints constraints)
+                                     throws GenericLDAPConnectorException
+    {
+        LDAPConnection con = getConnection(EPoolType.READ);
+
+        try
+        {
+            if (LOG.isDebugEnabled())
+            {
+                LOG.debug(getDetails(rootDN, scope, filter, attributeNames, excludeValues,
+                                     constraints));
+            }
+
+            // Do the actual search. From now on the lease owns the connection.
+            return new SearchLease(this, con,
+                                   con.search(rootDN, scope, filter, attributeNames,
+                                              excludeValues, constraints));
+        }
+        catch (Exception e)
+        {
+            // Put the connection back in the queue.
+            releaseConnection(con);
+
+            throw new GenericLDAPConnectorException(e,
+                                                    GenLDAPExceptionMessages.GLE_ERROR_EXECUTING_SEARCH_WITH_CRITERIAN0,
+                                                    getDetails(rootDN, scope, filter,
+                                                               attributeNames, excludeValues,
+                                                               constraints));
+        }
+    }
+
+    /**
+     * @see  com.cordys.coe.ac.genericldap.connection.IConnectionManager#openPagedSearch(java.lang.String,
+     *       int, java.lang.String, java.lang.String[], boolean,
+     *       com.novell.ldap.LDAPSearchConstraints, int, java.lang.String)
+     */
+    @Override public PagedSearchLease openPagedSearch(String rootDN, int scope, String filter,
+                                                      String[] attributeNames,
+                                                      boolean excludeValues,
+                                                      LDAPSearchConstraints constraints,
+                                                      int pageSize, String cookie)
+                                               throws GenericLDAPConnectorException
+    {
+        // The cookie of the server is only valid for exactly the same search.
+        String searchKey = getDetails(rootDN, scope, filter, attributeNames, excludeValues,
+                                      constraints);
+        LDAPConnection con;
+        byte[] serverCookie = null;
+
+        if ((cookie != null) && (cookie.length() > 0))
+        {
+            PagedSearchRegistry.PagedSearch search = m_pagedSearches.take(cookie);
+
+            if (search == null)
+            {
+                throw new GenericLDAPConnectorException(GenLDAPExceptionMessages.GLE_THE_PAGING_COOKIE_0_IS_UNKNOWN_OR_HAS_EXPIRED,
+                                                        cookie);
+            }
+
+            if (!searchKey.equals(search.getSearchKey()))
+            {
+                releasePinnedConnection(search.getConnection());
+
+                throw new GenericLDAPConnectorException(GenLDAPExceptionMessages.GLE_THE_PAGING_COOKIE_0_BELONGS_TO_A_DIFFERENT_SEARCH,
+                                                        cookie);
+            }
+
+            con = search.getConnection();
+            serverCookie = search.getCookie();
+        }
+        else
+        {
+            // Rather than waiting for a connection, take it from the search that has been
+            // waiting for its next page the longest.
+            if ((m_pagedSearches.size() > 0) && m_groups.get(EPoolType.READ).isExhausted())
+            {
+                releaseOldestPagedSearch();
+            }
+
+            con = getConnection(EPoolType.READ);
+        }
+
+        try
+        {
+            if (LOG.isDebugEnabled())
+            {
+                LOG.debug(searchKey + "\nPage size: " + pageSize + "\nContinued: " +
+                          (serverCookie != null));
+            }
+
+            // The page size limits the response, so the size limit does not apply.
+            LDAPSearchConstraints pageConstraints = (LDAPSearchConstraints) ((constraints != null)
+                                                                             ? constraints.clone()
+                                                                             : con.getSearchConstraints());
+            pageConstraints.setMaxResults(0);
+            pageConstraints.setControls(addControl(pageConstraints.getControls(),
+                                                   new PagedResultsControl(pageSize, serverCookie,
+                                                                           false)));
+
+            return new PagedSearchLease(this, con,
+                                        con.search(rootDN, scope, filter, attributeNames,
+                                                   excludeValues, pageConstraints), searchKey);
+        }
+        catch (Exception e)
+        {
+            if (serverCookie != null)
+            {
+                releasePinnedConnection(con);
+            }
+            else
+            {
+                releaseConnection(con);
+            }
+
+            throw new GenericLDAPConnectorException(e,
+                                                    GenLDAPExceptionMessages.GLE_ERROR_EXECUTING_SEARCH_WITH_CRITERIAN0,
+                                                    searchKey);
+        }
+    }
+
+    /**
+     * This method pins the connection to a paged search until the next page is requested. Every
+     * pinned search holds a read connection, so above the configured maximum the search that
+     * has been waiting the longest gives its connection back.
+     *
+     * @param   connection  The connection the search is running on.
+     * @param   cookie      The cookie the server returned.
+     * @param   searchKey   The identification of the search.
+     *
+     * @return  The cookie for the caller.
+     */
+    String pinPagedSearch(LDAPConnection connection, byte[] cookie, String searchKey)
+    {
+        String returnValue = m_pagedSearches.pin(connection, cookie, searchKey);
+
+        while (m_pagedSearches.size() > m_configuration.getMaxPinnedSearches())
+        {
+            releaseOldestPagedSearch();
+        }
+
+        return returnValue;
+    }
+
+    /**
+     * This method searches LDAP for entries. The search waits until all results are received, so
+     * the connection can safely be returned to the pool before the caller reads the results.
+     *
+     * @param   rootDN          The DN to start searching from.
+     * @param   scope           The scope for searching.
+     * @param   filter          The filter to use.
+     * @param   attributeNames  The names of the attributes to retrieve.
+     * @param   excludeValues   Whether or not to exclude the values when returning the results.
+     * @param   constraints     The constraints to apply.
+     *
+     * @return  The result from the search query.
+     *
+     * @throws  GenericLDAPConnectorException  In case of any exceptions.
+     *
+     * @see     com.cordys.coe.ac.genericldap.connection.IConnectionManager#search(java.lang.String,
+     *          int, java.lang.String, java.lang.String[], boolean,
+     *          com.novell.ldap.LDAPSearchConstraints)
+     * @deprecated  Use {@link #openSearch(String, int, String, String[], boolean,
+     *              LDAPSearchConstraints)} which streams the results.
+     */
+    @Deprecated @Override public LDAPSearchResults search(String rootDN, int scope, String filter,
+                                                          String[] attributeNames,
+                                                          boolean excludeValues,
+                                                          LDAPSearchConstraints constraints)
+                                                   throws GenericLDAPConnectorException
+    {
+        LDAPSearchResults returnLDAPSearchResults = null;
+
+        LDAPConnection con = getConnection(EPoolType.READ);
+
+        try
+        {
+            if (LOG.isDebugEnabled())
+            {
+                LOG.debug(getDetails(rootDN, scope, filter, attributeNames, excludeValues,
+                                     constraints));
+            }
+
+            // A batch size of 0 makes the search block until all results have been received, so
+            // nobody else reads from the connection while the caller iterates the results.
+            LDAPSearchConstraints bufferedConstraints = (LDAPSearchConstraints)
+                                                        ((constraints != null)
+                                                         ? constraints.clone()
+                                                         : con.getSearchConstraints());
+            bufferedConstraints.setBatchSize(0);
+
+            // Do the actual search.
+            returnLDAPSearchResults = con.search(rootDN, scope, filter, attributeNames,
+                                                 excludeValues, bufferedConstraints);
+        }
+        catch (Exception e)
+        {
+            throw new GenericLDAPConnectorException(e,
+                                                    GenLDAPExceptionMessages.GLE_ERROR_EXECUTING_SEARCH_WITH_CRITERIAN0,
+                                                    getDetails(rootDN, scope, filter,
+                                                               attributeNames, excludeValues,
+                                                               constraints));
+        }
+        finally
+        {
+            // Put the connection back in the queue.
+            releaseConnection(con);
+        }
+
+        return returnLDAPSearchResults;
+    }
+
+    /**
+     * This method closes the pools of all servers.
+     */
+    private void closePools()
+    {
+        for (PoolGroup group : m_poolGroups)
+        {
+            group.close();
+        }
+    }
+
+    /**
+     * This method adds a control to the given controls.
+     *
+     * @param   controls  The existing controls. May be null.
+     * @param   control   The control to add.
+     *
+     * @return  The controls including the new control.
+     */
+    private static LDAPControl[] addControl(LDAPControl[] controls, LDAPControl control)
+    {
+        if ((controls == null) || (controls.length == 0))
+        {
+            return new LDAPControl[] { control };
+        }
+
+        LDAPControl[] returnValue = new LDAPControl[controls.length + 1];
+
+        System.arraycopy(controls, 0, returnValue, 0, controls.length);
+        returnValue[controls.length] = control;
+
+        return returnValue;
+    }
+
+    /**
+     * This method creates the pools of the given type. Every server gets its own pool.
+     *
+     * @param  type            The type of the pools.
+     * @param  servers         The servers to connect to.
+     * @param  minConnections  The minimum number of connections per server.
+     * @param  maxConnections  The maximum number of connections per server.
+     * @param  strategy        The strategy to spread the load over the servers.
+     * @param  ssf             The secure socket factory to support SSL. If null plain connections
+     *                         are made.
+     */
+    private void createGroup(EPoolType type, List<ServerEndpoint> servers, int minConnections,
+                             int maxConnections, ELoadBalancingStrategy strategy,
+                             LDAPJSSESecureSocketFactory ssf)
+    {
+        PoolStatistics statistics = new PoolStatistics();
+        List<ConnectionPool> pools = new ArrayList<ConnectionPool>();
+
+        for (ServerEndpoint endpoint : servers)
+        {
+            pools.add(new ConnectionPool(new LDAPConnectionFactory(m_configuration, endpoint, ssf),
+                                         minConnections, maxConnections,
+                                         m_configuration.getIdleTimeout() * 1000L,
+                                         m_configuration.getAcquireTimeout(), statistics));
+        }
+
+        PoolGroup group = new PoolGroup(type, pools, strategy, statistics);
+
+        m_pools.addAll(pools);
+        m_groups.put(type, group);
+        m_poolGroups.add(group);
+    }
+
+    /**
+     * This method fills the pools of all servers up to their minimum size.
+     *
+     * @throws  GenericLDAPConnectorException  In case none of the pools of a pool type could be
+     *                                         filled.
+     */
+    private void fillPools()
+                    throws GenericLDAPConnectorException
+    {
+        for (PoolGroup group : m_poolGroups)
+        {
+            group.fill(STARTUP_PARALLELISM);
+        }
+    }
+
+    /**
+     * This method starts a listener for every subtree of which the changes must be published.
+     * Every listener keeps a search open on its own connection to the read servers.
+     *
+     * @param  ssf  The secure socket factory to support SSL. If null plain connections are made.
+     */
+    private void startChangeListeners(LDAPJSSESecureSocketFactory ssf)
+    {
+        List<String> bases = m_configuration.getChangeListenerBases();
+
+        if (bases.isEmpty())
+        {
+            return;
+        }
+
+        boolean persistentSearch = m_capabilities.isControlSupported(ChangeNotificationListener.PERSISTENT_SEARCH_OID);
+
+        if (!persistentSearch &&
+                !m_capabilities.isControlSupported(ChangeNotificationListener.NOTIFICATION_OID))
+        {
+            for (String base : bases)
+            {
+                LOG.warn(null,
+                         GeneralMessages.THE_SERVER_DOES_NOT_SUPPORT_CHANGE_NOTIFICATIONS_THE_CHANGES_OF_0_ARE_NOT_LISTENED_TO,
+                         base);
+            }
+            return;
+        }
+
+        List<LDAPConnectionFactory> factories = new ArrayList<LDAPConnectionFactory>();
+
+        for (ServerEndpoint endpoint : m_configuration.getServers())
+        {
+            factories.add(new LDAPConnectionFactory(m_configuration, endpoint, ssf));
+        }
+
+        for (String base : bases)
+        {
+            ChangeNotificationListener listener = new ChangeNotificationListener(base, factories,
+                                                                                 persistentSearch,
+                                                                                 m_changeBus);
+
+            m_changeListeners.add(listener);
+            listener.start();
+        }
+    }
+
+    /**
+     * This method reads the schema and builds the index of the attribute types.
+     *
+     * @param   connection  The connection to use.
+     *
+     * @throws  LDAPException  In case the schema could not be read.
+     */
+    private void loadSchema(LDAPConnection connection)
+                     throws LDAPException
+    {
+        String schemaDN = connection.getSchemaDN();
+
+        if ((schemaDN == null) || (schemaDN.length() == 0))
+        {
+            return;
+        }
+
+        if (LOG.isDebugEnabled())
+        {
+            LOG.debug("The DN for the schema: " + schemaDN);
+        }
+
+        String timestamp = readSchemaTimestamp(connection, schemaDN);
+        LDAPSchema schema = connection.fetchSchema(schemaDN);
+
+        if (LOG.isDebugEnabled())
+        {
+            // Dump the schema
+            StringBuilder sbTemp = new StringBuilder(1024);
+
+            Enumeration<?> enumNames = schema.getAttributeNames();
+
+            while (enumNames.hasMoreElements())
+            {
+                String name = (String) enumNames.nextElement();
+                LDAPAttributeSchema attrSchema = schema.getAttributeSchema(name);
+                String syntax = attrSchema.getSyntaxString();
+
+                sbTemp.append(name).append(": ").append(attrSchema.getID()).append("; Syntax: ")
+                      .append(syntax).append("\n");
+            }
+
+            LOG.debug(sbTemp.toString());
+        }
+
+        // Publish the index together with the schema it was built from.
+        SchemaIndex index = SchemaIndex.build(schema);
+
+        m_schemaIndex = index;
+        m_schema = schema;
+        m_schemaTimestamp = timestamp;
+
+        // Without a timestamp the snapshot can never be revalidated, so it is not written.
+        File snapshotFile = getSchemaSnapshotFile(connection);
+
+        if ((snapshotFile != null) && (timestamp != null))
+        {
+            try
+            {
+                new SchemaSnapshot(schema, index, timestamp).save(snapshotFile);
+            }
+            catch (IOException e)
+            {
+                LOG.warn(e, GeneralMessages.ERROR_WRITING_THE_SCHEMA_SNAPSHOT_0, snapshotFile);
+            }
+        }
+    }
+
+    /**
+     * This method reads the schema and the index of the attribute types from the snapshot on
+     * disk.
+     *
+     * @param   connection  The connection of the server the snapshot belongs to.
+     *
+     * @return  true if the schema was read from the snapshot. false if there is no usable
+     *          snapshot.
+     */
+    private boolean loadSchemaSnapshot(LDAPConnection connection)
+    {
+        File snapshotFile = getSchemaSnapshotFile(connection);
+
+        if (snapshotFile == null)
+        {
+            return false;
+        }
+
+        try
+        {
+            SchemaSnapshot snapshot = SchemaSnapshot.load(snapshotFile);
+
+            if (snapshot == null)
+            {
+                return false;
+            }
+
+            m_schemaIndex = snapshot.getIndex();
+            m_schema = snapshot.getSchema();
+            m_schemaTimestamp = snapshot.getTimestamp();
+
+            LOG.info(GeneralMessages.THE_LDAP_SCHEMA_WAS_LOADED_FROM_SNAPSHOT_0, snapshotFile);
+
+            return true;
+        }
+        catch (Exception e)
+        {
+            LOG.warn(e, GeneralMessages.ERROR_READING_THE_SCHEMA_SNAPSHOT_0, snapshotFile);
+        }
+
+        return false;
+    }
+
+    /**
+     * This method returns the file of the schema snapshot for the server of the given connection.
+     *
+     * @param   connection  The connection.
+     *
+     * @return  The file of the snapshot. null if no snapshots should be used.
+     */
+    private File getSchemaSnapshotFile(LDAPConnection connection)
+    {
+        String folder = m_configuration.getSchemaCacheDir();
+
+        if ((folder == null) || (folder.trim().length() == 0))
+        {
+            return null;
+        }
+
+        return SchemaSnapshot.getFile(new File(folder.trim()), connection.getHost(),
+                                      connection.getPort());
+    }
+
+    /**
+     * This method reads the modify timestamp of the subschema entry.
+     *
+     * @param   connection  The connection to use.
+     * @param   schemaDN    The DN of the subschema entry.
+     *
+     * @return  The modify timestamp or null if the server does not provide it.
+     *
+     * @throws  LDAPException  In case the subschema entry could not be read.
+     */
+    private String readSchemaTimestamp(LDAPConnection connection, String schemaDN)
+                                throws LDAPException
+    {
+        LDAPEntry entry = connection.read(schemaDN, new String[] { ATTR_MODIFY_TIMESTAMP });
+        LDAPAttribute attribute = (entry == null) ? null
+                                                  : entry.getAttribute(ATTR_MODIFY_TIMESTAMP);
+
+        return (attribute == null) ? null : attribute.getStringValue();
+    }
+
+    /**
+     * This method checks whether the schema on the server has changed. If so the schema is read
+     * again and the index of the attribute types is rebuilt. Servers that do not provide the
+     * modify timestamp of the schema are not refreshed.
+     */
+    private void refreshSchema()
+    {
+        LDAPConnection connection = null;
+
+        try
+        {
+            connection = getConnection(EPoolType.READ);
+
+            String schemaDN = connection.getSchemaDN();
+
+            if ((schemaDN == null) || (schemaDN.length() == 0))
+            {
+                return;
+            }
+
+            String timestamp = readSchemaTimestamp(connection, schemaDN);
+
+            if ((timestamp != null) && !timestamp.equals(m_schemaTimestamp))
+            {
+                LOG.info(GeneralMessages.THE_LDAP_SCHEMA_HAS_CHANGED_RELOADING_THE_SCHEMA);
+
+                loadSchema(connection);
+            }
+        }
+        catch (Exception e)
+        {
+            LOG.warn(e, GeneralMessages.ERROR_REFRESHING_THE_LDAP_SCHEMA);
+        }
+        finally
+        {
+            releaseConnection(connection);
+        }
+    }
+
+    /**
+     * This method does the background maintenance of the pools.
+     */
+    private void maintainPool()
+    {
+        for (PoolGroup group : m_poolGroups)
+        {
+            group.maintain();
+        }
+
+        // Release the connections of paged searches that were abandoned by the caller.
+        List<PagedSearchRegistry.PagedSearch> expired = m_pagedSearches.removeExpired(m_configuration
+                                                                                      .getPagedSearchTimeout() *
+                                                                                      1000L);
+
+        for (PagedSearchRegistry.PagedSearch search : expired)
+        {
+            releasePinnedConnection(search.getConnection());
+        }
+
+        if (!expired.isEmpty())
+        {
+            LOG.warn(null, GeneralMessages.RELEASED_0_PAGED_SEARCHES_THAT_WERE_NOT_CONTINUED_IN_TIME,
+                     expired.size());
+        }
+    }
+
+    /**
+     * This method returns the connection of the paged search that has been waiting for its next
+     * page the longest to the pool. The caller gets an error when it asks for the next page.
+     */
+    private void releaseOldestPagedSearch()
+    {
+        PagedSearchRegistry.PagedSearch search = m_pagedSearches.removeOldest();
+
+        if (search != null)
+        {
+            if (LOG.isDebugEnabled())
+            {
+                LOG.debug("Releasing the connection of the paged search that waited the longest: " +
+                          search.getSearchKey());
+            }
+
+            releasePinnedConnection(search.getConnection());
+        }
+    }
+
+    /**
+     * This method records the round trip time of a single request for the server of the given
+     * connection.
+     *
+     * @param  connection  The connection the request was sent on.
+     * @param  duration    The round trip time in milliseconds.
+     */
+    private void recordLatency(LDAPConnection connection, long duration)
+    {
+        for (ConnectionPool pool : m_pools)
+        {
+            if (pool.contains(connection))
+            {
+                pool.recordLatency(duration);
+                return;
+            }
+        }
+    }
+
+    /**
+     * This method returns a connection that was pinned to a paged search to the pool. The
+     * connection is closed first, so the server discards the state of the paged search. The pool
+     * replaces the connection when needed.
+     *
+     * @param  connection  The pinned connection.
+     */
+    private void releasePinnedConnection(LDAPConnection connection)
+    {
+        try
+        {
+            connection.disconnect();
+        }
+        catch (LDAPException e)
+        {
+            if (LOG.isDebugEnabled())
+            {
+                LOG.debug("Error closing the connection of a paged search", e);
+            }
+        }
+
+        releaseConnection(connection);
+    }
+
+    /**
+     * This method returns the interval in which the background maintenance of the pool runs. It
+     * runs twice per idle timeout, but at least once every minute.
+     *
+     * @param   configuration  The configuration to use.
+     *
+     * @return  The interval in milliseconds.
+     */
+    private static long getMaintenanceInterval(IGenLDAPConfiguration configuration)
+    {
+        long returnValue = 60000L;
 
-        if (!configuration.isAnonymousBind())
+        if (configuration.getIdleTimeout() > 0)
         {
-            returnConnection.bind(LDAPConnection.LDAP_V3, configuration.getUser(),
-                                  configuration.getPassword().getBytes());
+            returnValue = Math.min(returnValue, (configuration.getIdleTimeout() * 1000L) / 2);
         }
 
-        return returnConnection;
+        return Math.max(returnValue, 1000L);
     }
 
     /**
@@ -0,0 +1,1011 @@
+/*
+ * Copyright 2007 Cordys R&D B.V. 
+ *
+ *   This file is part of the Cordys Generic LDAP Connector. 
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.cordys.coe.ac.genericldap.connection;
+
+import com.cordys.coe.ac.genericldap.config.ServerEndpoint;
+import com.cordys.coe.ac.genericldap.exception.GenericLDAPConnectorException;
+import com.cordys.coe.ac.genericldap.localization.GenLDAPExceptionMessages;
+import com.cordys.coe.ac.genericldap.localization.GeneralMessages;
+
+import com.cordys.coe.ac.genericldap.util.NamedThreadFactory;
+
+import com.eibus.util.logger.CordysLogger;
+
+import com.novell.ldap.LDAPConnection;
+import com.novell.ldap.LDAPException;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * This class holds an elastic pool of connections to a single LDAP server. The pool keeps at
+ * least the minimum number of connections open and grows on demand up to the maximum. Connections
+ * that have been idle for longer than the idle timeout are closed by {@link #evictIdle()} until
+ * the pool is back at its minimum size.
+ *
+ * <p>Idle connections are validated in the background by {@link #validateIdle(long)}. Broken
+ * connections are replaced on the maintenance thread, so borrowers do not pay the reconnect
+ * latency.</p>
+ *
+ * <p>Idle connections are handed out last-in-first-out. This keeps the busy connections warm and
+ * lets the surplus connections age at the end of the idle list, where they are evicted.</p>
+ *
+ * <p>The pool also tracks the health of its server. When a connection cannot be created the server
+ * is marked as unavailable for {@link #RETRY_INTERVAL} milliseconds, so the connection manager
+ * can fail over to another server. The average round trip of single requests, such as the
+ * validation probe, is kept as a measure for the latency of the server. The time a connection is
+ * leased is not used, because that depends on how long the caller keeps it.</p>
+ *
+ * <p>This class will be accessed by multiple threads.</p>
+ *
+ * @author  pgussow
+ */
+class ConnectionPool
+{
+    /**
+     * Holds the logger to use.
+     */
+    private static final CordysLogger LOG = CordysLogger.getCordysLogger(ConnectionPool.class);
+    /**
+     * Holds the time in milliseconds a server that failed is skipped before it is tried again.
+     */
+    static final long RETRY_INTERVAL = 30000L;
+    /**
+     * Holds the weight of a new sample in the moving average of the latency.
+     */
+    private static final double LATENCY_WEIGHT = 0.2;
+    /**
+     * Holds the maximum time in milliseconds to wait for a free connection. 0 means wait forever.
+     */
+    private long m_acquireTimeout;
+    /**
+     * Holds all connections owned by this pool (both idle and in use).
+     */
+    private Map<LDAPConnection, PooledConnection> m_connections = new IdentityHashMap<LDAPConnection, PooledConnection>();
+    /**
+     * Holds the factory that creates the actual connections.
+     */
+    private LDAPConnectionFactory m_factory;
+    /**
+     * Holds the idle connections. The most recently used connection is at the head.
+     */
+    private LinkedList<PooledConnection> m_idle = new LinkedList<PooledConnection>();
+    /**
+     * Holds the time the server last failed. 0 if the server is healthy.
+     */
+    private volatile long m_failedSince = 0;
+    /**
+     * Holds the moving average of the round trip time in milliseconds.
+     */
+    private double m_latency = 0;
+    /**
+     * Holds the time in milliseconds after which surplus idle connections are closed. 0 means
+     * never.
+     */
+    private long m_idleTimeout;
+    /**
+     * Holds the lock which guards the state of the pool.
+     */
+    private final Object m_lock = new Object();
+    /**
+     * Holds the maximum number of connections.
+     */
+    private int m_maxConnections;
+    /**
+     * Holds the minimum number of connections.
+     */
+    private int m_minConnections;
+    /**
+     * Holds the number of connections that are currently being created.
+     */
+    private int m_pending = 0;
+    /**
+     * Holds whether or not the pool has been closed.
+     */
+    private boolean m_closed = false;
+    /**
+     * Holds the statistics of acquiring connections.
+     */
+    private PoolStatistics m_statistics;
+
+    /**
+     * Creates a new ConnectionPool object. No connections are created yet.
+     *
+     * @param  factory         The factory that creates the actual connections.
+     * @param  minConnections  The minimum number of connections.
+     * @param  maxConnections  The maximum number of connections.
+     * @param  idleTimeout     The time in milliseconds after which surplus idle connections are
+     *                         closed. 0 means never.
+     * @param  acquireTimeout  The maximum time in milliseconds to wait for a free connection. 0
+     *                         means wait forever.
+     * @param  statistics      The statistics to record the acquires in. They can be shared by
+     *                         multiple pools.
+     */
+    ConnectionPool(LDAPConnectionFactory factory, int minConnections, int maxConnections,
+                   long idleTimeout, long acquireTimeout, PoolStatistics statistics)
+    {
+        m_factory = factory;
+        m_minConnections = Math.max(minConnections, 0);
+        m_maxConnections = Math.max(maxConnections, Math.max(m_minConnections, 1));
+        m_idleTimeout = idleTimeout;
+        m_acquireTimeout = Math.max(acquireTimeout, 0);
+        m_statistics = statistics;
+    }
+
+    /**
+     * This method returns an active connection. If no idle connection is available and the pool
+     * has not reached its maximum size a new connection is created. Otherwise it will wait until
+     * a connection is released or the acquire timeout expires.
+     *
+     * @return  The connection to use.
+     *
+     * @throws  GenericLDAPConnectorException  In case no connection could be obtained.
+     */
+    public LDAPConnection acquire()
+                           throws GenericLDAPConnectorException
+    {
+        long start = System.currentTimeMillis();
+        long deadline = (m_acquireTimeout > 0) ? (start + m_acquireTimeout) : Long.MAX_VALUE;
+
+        while (true)
+        {
+            PooledConnection dead = null;
+
+            synchronized (m_lock)
+            {
+                while (true)
+                {
+                    if (m_closed)
+                    {
+                        throw new GenericLDAPConnectorException(GenLDAPExceptionMessages.GLE_NO_ACTIVE_CONNECTION_TO_THE_LDAP);
+                    }
+
+                    if (!m_idle.isEmpty())
+                    {
+                        PooledConnection pc = m_idle.removeFirst();
+
+                        if (pc.getConnection().isConnected())
+                        {
+                            pc.setInUse(true);
+                            m_statistics.recordAcquire(System.currentTimeMillis() - start);
+
+                            return pc.getConnection();
+                        }
+
+                        // The connection died while it was idle. Remove it from the pool, a new
+                        // one will be created if needed.
+                        m_connections.remove(pc.getConnection());
+                        dead = pc;
+                        break;
+                    }
+
+                    if ((m_connections.size() + m_pending) < m_maxConnections)
+                    {
+                        m_pending++;
+                        break;
+                    }
+
+                    long remaining = deadline - System.currentTimeMillis();
+
+                    if (remaining <= 0)
+                    {
+                        m_statistics.recordTimeout();
+                        throw new GenericLDAPConnectorException(GenLDAPExceptionMessages.GLE_TIMED_OUT_AFTER_0_MS_WAITING_FOR_A_FREE_LDAP_CONNECTION,
+                                                                m_acquireTimeout);
+                    }
+
+                    m_statistics.waitStarted();
+
+                    try
+                    {
+                        if (deadline == Long.MAX_VALUE)
+                        {
+                            m_lock.wait();
+                        }
+                        else
+                        {
+                            m_lock.wait(remaining);
+                        }
+                    }
+                    catch (InterruptedException e)
+                    {
+                        Thread.currentThread().interrupt();
+                        throw new GenericLDAPConnectorException(e,
+                                                                GenLDAPExceptionMessages.GLE_COULD_NOT_OBTAIN_FREE_LDAP_CONNECTION);
+                    }
+                    finally
+                    {
+                        m_statistics.waitFinished();
+                    }
+                }
+            }
+
+            if (dead != null)
+            {
+                if (LOG.isDebugEnabled())
+                {
+                    LOG.debug("Discarding dead connection to " + getServerDescription());
+                }
+                closeQuietly(dead.getConnection());
+                continue;
+            }
+
+            // There was room to grow, so create a new connection outside the lock.
+            LDAPConnection returnValue = createLeasedConnection();
+
+            m_statistics.recordAcquire(System.currentTimeMillis() - start);
+
+            return returnValue;
+        }
+    }
+
+    /**
+     * This method returns an idle connection without waiting and without creating a new one.
+     *
+     * @return  The connection to use. null if no idle connection is available.
+     */
+    public LDAPConnection acquireIdle()
+    {
+        long start = System.currentTimeMillis();
+        PooledConnection dead = null;
+
+        synchronized (m_lock)
+        {
+            if (m_closed || m_idle.isEmpty())
+            {
+                return null;
+            }
+
+            PooledConnection pc = m_idle.removeFirst();
+
+            if (pc.getConnection().isConnected())
+            {
+                pc.setInUse(true);
+                m_statistics.recordAcquire(System.currentTimeMillis() - start);
+
+                return pc.getConnection();
+            }
+
+            m_connections.remove(pc.getConnection());
+            dead = pc;
+        }
+
+        closeQuietly(dead.getConnection());
+
+        return null;
+    }
+
+    /**
+     * This method closes all idle connections and marks the pool as closed. Connections that
+     * are in use are closed when they are released.
+     */
+    public void close()
+    {
+        List<PooledConnection> toClose;
+
+        synchronized (m_lock)
+        {
+            m_closed = true;
+            toClose = new ArrayList<PooledConnection>(m_idle);
+
+            for (PooledConnection pc : m_idle)
+            {
+                m_connections.remove(pc.getConnection());
+            }
+            m_idle.clear();
+            m_lock.notifyAll();
+        }
+
+        if (LOG.isDebugEnabled())
+        {
+            LOG.debug("Trying to disconnect " + toClose.size() + " connections to " +
+                      getServerDescription());
+        }
+
+        for (PooledConnection pc : toClose)
+        {
+            closeQuietly(pc.getConnection());
+        }
+    }
+
+    /**
+     * This method returns whether or not the given connection belongs to this pool.
+     *
+     * @param   connection  The connection to check.
+     *
+     * @return  true if the connection was created by this pool and is still owned by it.
+     */
+    public boolean contains(LDAPConnection connection)
+    {
+        synchronized (m_lock)
+        {
+            return m_connections.containsKey(connection);
+        }
+    }
+
+    /**
+     * This method closes the surplus connections that have been idle for longer than the idle
+     * timeout. The pool never shrinks below its minimum size. If the pool dropped below the
+     * minimum (e.g. because dead connections were discarded) it is filled up again.
+     */
+    public void evictIdle()
+    {
+        List<PooledConnection> toClose = new ArrayList<PooledConnection>();
+
+        synchronized (m_lock)
+        {
+            if (m_closed)
+            {
+                return;
+            }
+
+            if (m_idleTimeout > 0)
+            {
+                long threshold = System.currentTimeMillis() - m_idleTimeout;
+                int surplus = m_connections.size() - m_minConnections;
+
+                // The oldest idle connections are at the end of the list.
+                Iterator<PooledConnection> iterator = m_idle.descendingIterator();
+
+                while (iterator.hasNext() && (surplus > 0))
+                {
+                    PooledConnection pc = iterator.next();
+
+                    if (pc.getLastUsed() < threshold)
+                    {
+                        iterator.remove();
+                        m_connections.remove(pc.getConnection());
+                        toClose.add(pc);
+                        surplus--;
+                    }
+                }
+            }
+        }
+
+        if (!toClose.isEmpty())
+        {
+            if (LOG.isDebugEnabled())
+            {
+                LOG.debug("Closing " + toClose.size() + " idle connections to " +
+                          getServerDescription());
+            }
+
+            for (PooledConnection pc : toClose)
+            {
+                closeQuietly(pc.getConnection());
+            }
+        }
+
+        try
+        {
+            fill();
+        }
+        catch (GenericLDAPConnectorException e)
+        {
+            LOG.warn(e, GeneralMessages.ERROR_LOST_A_CONNECTION_BECAUSE_IT_COULD_NOT_BE_RECREATED);
+        }
+    }
+
+    /**
+     * This method validates the idle connections that have not been used or validated within the
+     * given interval. Each connection is taken out of the idle list while it is being probed, so
+     * borrowers never get a connection that is being validated. Broken connections are closed and
+     * the pool is filled up to its minimum size again.
+     *
+     * @param  interval  The time in milliseconds after which an idle connection must be validated
+     *                   again.
+     */
+    public void validateIdle(long interval)
+    {
+        int candidates;
+
+        synchronized (m_lock)
+        {
+            candidates = m_idle.size();
+        }
+
+        int broken = 0;
+
+        // Every candidate is probed at most once per run, so the loop is bounded by the number of
+        // connections that were idle when the run started.
+        for (int iCount = 0; iCount < candidates; iCount++)
+        {
+            PooledConnection pc = null;
+
+            synchronized (m_lock)
+            {
+                if (m_closed)
+                {
+                    return;
+                }
+
+                long threshold = System.currentTimeMillis() - interval;
+                Iterator<PooledConnection> iterator = m_idle.descendingIterator();
+
+                while (iterator.hasNext())
+                {
+                    PooledConnection current = iterator.next();
+
+                    if (current.getLastChecked() < threshold)
+                    {
+                        iterator.remove();
+                        pc = current;
+                        break;
+                    }
+                }
+            }
+
+            if (pc == null)
+            {
+                break;
+            }
+
+            long start = System.currentTimeMillis();
+            boolean valid = m_factory.validate(pc.getConnection());
+            boolean close = false;
+
+            if (valid)
+            {
+                recordLatency(System.currentTimeMillis() - start);
+            }
+
+            synchronized (m_lock)
+            {
+                if (valid && !m_closed)
+                {
+                    pc.setLastValidated(System.currentTimeMillis());
+                    m_idle.addLast(pc);
+                }
+                else
+                {
+                    m_connections.remove(pc.getConnection());
+                    close = true;
+                }
+                m_lock.notifyAll();
+            }
+
+            if (close)
+            {
+                if (!valid)
+                {
+                    broken++;
+                }
+                closeQuietly(pc.getConnection());
+            }
+        }
+
+        if (broken > 0)
+        {
+            if (LOG.isDebugEnabled())
+            {
+                LOG.debug("Replacing " + broken + " broken connections to " +
+                          getServerDescription());
+            }
+
+            try
+            {
+                fill();
+            }
+            catch (GenericLDAPConnectorException e)
+            {
+                LOG.warn(e, GeneralMessages.ERROR_LOST_A_CONNECTION_BECAUSE_IT_COULD_NOT_BE_RECREATED);
+            }
+        }
+    }
+
+    /**
+     * This method creates connections until the pool has reached its minimum size.
+     *
+     * @throws  GenericLDAPConnectorException  In case a connection could not be created.
+     */
+    public void fill()
+              throws GenericLDAPConnectorException
+    {
+        fill(1);
+    }
+
+    /**
+     * This method creates connections until the pool has reached its minimum size. The
+     * connections are established in parallel, so the connect, TLS handshake and bind of the
+     * connections overlap.
+     *
+     * @param   parallelism  The maximum number of connections to establish at the same time.
+     *
+     * @throws  GenericLDAPConnectorException  In case a connection could not be created.
+     */
+    public void fill(int parallelism)
+              throws GenericLDAPConnectorException
+    {
+        int missing;
+
+        synchronized (m_lock)
+        {
+            if (m_closed)
+            {
+                return;
+            }
+
+            // Reserve the slots up front, so concurrent acquires do not overshoot the maximum.
+            missing = m_minConnections - (m_connections.size() + m_pending);
+
+            if (missing <= 0)
+            {
+                return;
+            }
+            m_pending += missing;
+        }
+
+        if ((parallelism <= 1) || (missing == 1))
+        {
+            for (int iCount = 0; iCount < missing; iCount++)
+            {
+                try
+                {
+                    release(createLeasedConnection());
+                }
+                catch (GenericLDAPConnectorException e)
+                {
+                    cancelPending(missing - iCount - 1);
+                    throw e;
+                }
+            }
+
+            return;
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(parallelism, missing),
+                                                                new NamedThreadFactory("GenericLDAPConnect"));
+
+        try
+        {
+            List<Future<LDAPConnection>> futures = new ArrayList<Future<LDAPConnection>>(missing);
+
+            for (int iCount = 0; iCount < missing; iCount++)
+            {
+                futures.add(executor.submit(new Callable<LDAPConnection>()
+                    {
+                        public LDAPConnection call()
+                                            throws GenericLDAPConnectorException
+                        {
+                            LDAPConnection connection = createLeasedConnection();
+
+                            release(connection);
+
+                            return connection;
+                        }
+                    }));
+            }
+
+            GenericLDAPConnectorException firstError = null;
+
+            for (Future<LDAPConnection> future : futures)
+            {
+                try
+                {
+                    future.get();
+                }
+                catch (ExecutionException e)
+                {
+                    if ((firstError == null) &&
+                            (e.getCause() instanceof GenericLDAPConnectorException))
+                    {
+                        firstError = (GenericLDAPConnectorException) e.getCause();
+                    }
+                }
+                catch (InterruptedException e)
+                {
+                    Thread.currentThread().interrupt();
+                    throw new GenericLDAPConnectorException(e,
+                                                            GenLDAPExceptionMessages.GLE_ERROR_CREATING_CONNECTION_TO_01,
+                                                            m_factory.getServer(),
+                                                            m_factory.getPort());
+                }
+            }
+
+            if (firstError != null)
+            {
+                throw firstError;
+            }
+        }
+        finally
+        {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * This method gets the server of this pool.
+     *
+     * @return  The server of this pool.
+     */
+    public ServerEndpoint getEndpoint()
+    {
+        return m_factory.getEndpoint();
+    }
+
+    /**
+     * This method gets the number of idle connections.
+     *
+     * @return  The number of idle connections.
+     */
+    public int getIdleCount()
+    {
+        synchronized (m_lock)
+        {
+            return m_idle.size();
+        }
+    }
+
+    /**
+     * This method gets the moving average of the round trip time in milliseconds of the server
+     * of this pool.
+     *
+     * @return  The average latency in milliseconds.
+     */
+    public double getLatency()
+    {
+        synchronized (m_lock)
+        {
+            return m_latency;
+        }
+    }
+
+    /**
+     * This method gets the number of connections that are currently in use.
+     *
+     * @return  The number of connections in use.
+     */
+    public int getOutstanding()
+    {
+        synchronized (m_lock)
+        {
+            return m_connections.size() - m_idle.size();
+        }
+    }
+
+    /**
+     * This method gets the statistics of acquiring connections from this pool.
+     *
+     * @return  The statistics of acquiring connections.
+     */
+    public PoolStatistics getStatistics()
+    {
+        return m_statistics;
+    }
+
+    /**
+     * This method gets the total number of connections in the pool.
+     *
+     * @return  The total number of connections in the pool.
+     */
+    public int getSize()
+    {
+        synchronized (m_lock)
+        {
+            return m_connections.size();
+        }
+    }
+
+    /**
+     * This method returns whether or not the server is considered available. A server that failed
+     * becomes available again for a retry after {@link #RETRY_INTERVAL} milliseconds.
+     *
+     * @return  true if the server is available. Otherwise false.
+     */
+    public boolean isAvailable()
+    {
+        long failedSince = m_failedSince;
+
+        return (failedSince == 0) || ((System.currentTimeMillis() - failedSince) > RETRY_INTERVAL);
+    }
+
+    /**
+     * This method returns whether or not an acquire would have to wait, because no connection is
+     * idle and the pool cannot grow anymore.
+     *
+     * @return  true if the pool is exhausted. Otherwise false.
+     */
+    public boolean isExhausted()
+    {
+        synchronized (m_lock)
+        {
+            return m_idle.isEmpty() && ((m_connections.size() + m_pending) >= m_maxConnections);
+        }
+    }
+
+    /**
+     * This method returns whether or not the last attempt to connect to the server succeeded.
+     *
+     * @return  true if the server is healthy. Otherwise false.
+     */
+    public boolean isHealthy()
+    {
+        return m_failedSince == 0;
+    }
+
+    /**
+     * This method records the round trip time of a single request to the server. Only requests
+     * that are answered right away should be recorded, not searches that are streamed or kept
+     * open by the caller.
+     *
+     * @param  duration  The round trip time in milliseconds.
+     */
+    public void recordLatency(long duration)
+    {
+        synchronized (m_lock)
+        {
+            m_latency = (m_latency == 0)
+                        ? Math.max(duration, 1)
+                        : ((LATENCY_WEIGHT * duration) + ((1 - LATENCY_WEIGHT) * m_latency));
+        }
+    }
+
+    /**
+     * This method returns the connection to the pool. Connections that are no longer connected
+     * are discarded.
+     *
+     * @param  connection  The connection to return.
+     */
+    public void release(LDAPConnection connection)
+    {
+        boolean close = false;
+
+        synchronized (m_lock)
+        {
+            PooledConnection pc = m_connections.get(connection);
+
+            if (pc == null)
+            {
+                if (LOG.isDebugEnabled())
+                {
+                    LOG.debug("Ignoring release of a connection which is not owned by this pool");
+                }
+                return;
+            }
+
+            if (LOG.isDebugEnabled())
+            {
+                LOG.debug("Releasing connection. Idle connections before release: " +
+                          m_idle.size());
+            }
+
+            pc.setInUse(false);
+
+            if (m_closed || !connection.isConnected())
+            {
+                m_connections.remove(connection);
+                close = true;
+            }
+            else
+            {
+                m_idle.addFirst(pc);
+            }
+            m_lock.notifyAll();
+        }
+
+        if (close)
+        {
+            closeQuietly(connection);
+        }
+    }
+
+    /**
+     * This method gives back slots that were reserved for connections that will not be created.
+     *
+     * @param  count  The number of reserved slots to give back.
+     */
+    private void cancelPending(int count)
+    {
+        synchronized (m_lock)
+        {
+            m_pending -= count;
+            m_lock.notifyAll();
+        }
+    }
+
+    /**
+     * This method closes the given connection, ignoring any errors.
+     *
+     * @param  connection  The connection to close.
+     */
+    private void closeQuietly(LDAPConnection connection)
+    {
+        try
+        {
+            connection.disconnect();
+        }
+        catch (LDAPException e)
+        {
+            LOG.warn(e, GeneralMessages.ERROR_DISCONNECTING_CONNECTION);
+        }
+    }
+
+    /**
+     * This method creates a new connection and registers it as in use. The caller must have
+     * incremented the pending counter.
+     *
+     * @return  The newly created connection.
+     *
+     * @throws  GenericLDAPConnectorException  In case the connection could not be created.
+     */
+    private LDAPConnection createLeasedConnection()
+                                           throws GenericLDAPConnectorException
+    {
+        LDAPConnection connection = null;
+
+        try
+        {
+            if (LOG.isDebugEnabled())
+            {
+                LOG.debug("Creating new connection to " + getServerDescription());
+            }
+
+            connection = m_factory.createConnection();
+        }
+        catch (LDAPException e)
+        {
+            if (m_failedSince == 0)
+            {
+                m_failedSince = System.currentTimeMillis();
+            }
+
+            synchronized (m_lock)
+            {
+                m_pending--;
+                m_lock.notifyAll();
+            }
+
+            throw new GenericLDAPConnectorException(e,
+                                                    GenLDAPExceptionMessages.GLE_ERROR_CREATING_CONNECTION_TO_01,
+                                                    m_factory.getServer(), m_factory.getPort());
+        }
+
+        m_failedSince = 0;
+
+        synchronized (m_lock)
+        {
+            m_pending--;
+
+            PooledConnection pc = new PooledConnection(connection);
+            pc.setInUse(true);
+            m_connections.put(connection, pc);
+        }
+
+        return connection;
+    }
+
+    /**
+     * This method returns the description of the server for logging purposes.
+     *
+     * @return  The server and port.
+     */
+    private String getServerDescription()
+    {
+        return m_factory.getServer() + ":" + m_factory.getPort();
+    }
+
+    /**
+     * This class wraps a pooled connection together with its bookkeeping.
+     */
+    private static class PooledConnection
+    {
+        /**
+         * Holds the actual connection.
+         */
+        private LDAPConnection m_connection;
+        /**
+         * Holds whether or not the connection is currently in use.
+         */
+        private boolean m_inUse;
+        /**
+         * Holds the time the connection was last returned to the pool.
+         */
+        private long m_lastUsed;
+        /**
+         * Holds the time the connection was last validated.
+         */
+        private long m_lastValidated;
+
+        /**
+         * Creates a new PooledConnection object.
+         *
+         * @param  connection  The actual connection.
+         */
+        PooledConnection(LDAPConnection connection)
+        {
+            m_connection = connection;
+            m_lastUsed = System.currentTimeMillis();
+        }
+
+        /**
+         * This method gets the actual connection.
+         *
+         * @return  The actual connection.
+         */
+        public LDAPConnection getConnection()
+        {
+            return m_connection;
+        }
+
+        /**
+         * This method gets the time the connection was last known to be good. That is either the
+         * time it was last used or the time it was last validated.
+         *
+         * @return  The time the connection was last known to be good.
+         */
+        public long getLastChecked()
+        {
+            return Math.max(m_lastUsed, m_lastValidated);
+        }
+
+        /**
+         * This method gets the time the connection was last returned to the pool.
+         *
+         * @return  The time the connection was last returned to the pool.
+         */
+        public long getLastUsed()
+        {
+            return m_lastUsed;
+        }
+
+        /**
+         * This method gets whether or not the connection is currently in use.
+         *
+         * @return  Whether or not the connection is currently in use.
+         */
+        public boolean isInUse()
+        {
+            return m_inUse;
+        }
+
+        /**
+         * This method sets the time the connection was last validated.
+         *
+         * @param  lastValidated  The time the connection was last validated.
+         */
+        public void setLastValidated(long lastValidated)
+        {
+            m_lastValidated = lastValidated;
+        }
+
+        /**
+         * This method sets whether or not the connection is currently in use. Returning the
+         * connection updates the last used time.
+         *
+         * @param  inUse  Whether or not the connection is currently in use.
+         */
+        public void setInUse(boolean inUse)
+        {
+            m_inUse = inUse;
+
+            if (!inUse)
+            {
+                m_lastUsed = System.currentTimeMillis();
+            }
+        }
+    }
+}
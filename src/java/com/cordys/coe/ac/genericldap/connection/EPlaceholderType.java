@@ -0,0 +1,39 @@
+/*
+ * Copyright 2007 Cordys R&D B.V. 
+ *
+ *   This file is part of the Cordys Generic LDAP Connector. 
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.cordys.coe.ac.genericldap.connection;
+
+/**
+ * This enum defines how a value is bound to a placeholder of a filter template.
+ *
+ * @author  pgussow
+ */
+public enum EPlaceholderType
+{
+    /**
+     * The value is an assertion value. All special characters are escaped.
+     */
+    STRING,
+    /**
+     * The value can contain wildcards. All special characters except the '*' are escaped.
+     */
+    SUBSTRING,
+    /**
+     * The value must be a number.
+     */
+    INTEGER;
+}
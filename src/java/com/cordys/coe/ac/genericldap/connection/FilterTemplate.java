@@ -0,0 +1,373 @@
+/*
+ * Copyright 2007 Cordys R&D B.V. 
+ *
+ *   This file is part of the Cordys Generic LDAP Connector. 
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.cordys.coe.ac.genericldap.connection;
+
+import com.cordys.coe.ac.genericldap.exception.GenericLDAPConnectorException;
+import com.cordys.coe.ac.genericldap.localization.GenLDAPExceptionMessages;
+
+import com.novell.ldap.LDAPException;
+import com.novell.ldap.rfc2251.RfcFilter;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * This class holds a search filter with placeholders for values from the request. The template is
+ * parsed once, so binding the values of a request is only escaping them and concatenating the
+ * parts. The values are escaped as described in RFC 4515, so a value can never change the
+ * structure of the filter.
+ *
+ * <p>A placeholder is written as <code>{name}</code> or <code>{name:type}</code>, where the type
+ * is one of <code>string</code> (the default), <code>substring</code> or <code>integer</code>
+ * (e.g. <code>(&amp;(objectClass=user)(sAMAccountName={user}))</code>). A literal '{' in the
+ * template must be written as <code>\7b</code>.</p>
+ *
+ * <p>The compatibility methods use placeholders written as <code>:name</code>. A placeholder that
+ * has no value is kept as it is.</p>
+ *
+ * @author  pgussow
+ */
+public class FilterTemplate
+{
+    /**
+     * Holds the pattern of the placeholders of a template.
+     */
+    private static final Pattern PLACEHOLDER = Pattern.compile("\\{([A-Za-z_][\\w\\-]*)(?::(\\w+))?\\}");
+    /**
+     * Holds the pattern of the placeholders of a template of the compatibility methods.
+     */
+    private static final Pattern COMPATIBLE_PLACEHOLDER = Pattern.compile(":([A-Za-z_][\\w\\-]*)");
+    /**
+     * Holds whether placeholders without a value are kept as they are.
+     */
+    private boolean m_keepUnbound;
+    /**
+     * Holds the texts between the placeholders. There is one more text than placeholders.
+     */
+    private String[] m_literals;
+    /**
+     * Holds the names of the placeholders.
+     */
+    private String[] m_names;
+    /**
+     * Holds the original text of the placeholders.
+     */
+    private String[] m_placeholders;
+    /**
+     * Holds the template.
+     */
+    private String m_template;
+    /**
+     * Holds how the values are bound to the placeholders.
+     */
+    private EPlaceholderType[] m_types;
+
+    /**
+     * Creates a new FilterTemplate object.
+     *
+     * @param  template      The template.
+     * @param  literals      The texts between the placeholders.
+     * @param  placeholders  The original text of the placeholders.
+     * @param  names         The names of the placeholders.
+     * @param  types         How the values are bound to the placeholders.
+     * @param  keepUnbound   Whether placeholders without a value are kept as they are.
+     */
+    private FilterTemplate(String template, List<String> literals, List<String> placeholders,
+                           List<String> names, List<EPlaceholderType> types, boolean keepUnbound)
+    {
+        m_template = template;
+        m_literals = literals.toArray(new String[literals.size()]);
+        m_placeholders = placeholders.toArray(new String[placeholders.size()]);
+        m_names = names.toArray(new String[names.size()]);
+        m_types = types.toArray(new EPlaceholderType[types.size()]);
+        m_keepUnbound = keepUnbound;
+    }
+
+    /**
+     * This method parses the given template. A sample filter is parsed as well, so errors in the
+     * template are found when the implementation is loaded instead of on the first request.
+     *
+     * @param   template  The template with placeholders written as <code>{name:type}</code>.
+     *
+     * @return  The parsed template.
+     *
+     * @throws  GenericLDAPConnectorException  In case the template is invalid.
+     */
+    public static FilterTemplate compile(String template)
+                                  throws GenericLDAPConnectorException
+    {
+        List<String> literals = new ArrayList<String>();
+        List<String> placeholders = new ArrayList<String>();
+        List<String> names = new ArrayList<String>();
+        List<EPlaceholderType> types = new ArrayList<EPlaceholderType>();
+
+        Matcher matcher = PLACEHOLDER.matcher(template);
+        int start = 0;
+
+        while (matcher.find())
+        {
+            EPlaceholderType type = EPlaceholderType.STRING;
+
+            if (matcher.group(2) != null)
+            {
+                try
+                {
+                    type = EPlaceholderType.valueOf(matcher.group(2).toUpperCase(Locale.ENGLISH));
+                }
+                catch (IllegalArgumentException e)
+                {
+                    throw new GenericLDAPConnectorException(e,
+                                                            GenLDAPExceptionMessages.GLE_THE_FILTER_TEMPLATE_0_IS_INVALID_1,
+                                                            template, matcher.group());
+                }
+            }
+
+            literals.add(template.substring(start, matcher.start()));
+            placeholders.add(matcher.group());
+            names.add(matcher.group(1));
+            types.add(type);
+            start = matcher.end();
+        }
+
+        literals.add(template.substring(start));
+
+        FilterTemplate returnValue = new FilterTemplate(template, literals, placeholders, names,
+                                                        types, false);
+
+        // Check the syntax with a value for every placeholder.
+        StringBuilder sample = new StringBuilder(template.length());
+
+        for (int iCount = 0; iCount < returnValue.m_names.length; iCount++)
+        {
+            sample.append(returnValue.m_literals[iCount]).append('0');
+        }
+        sample.append(returnValue.m_literals[returnValue.m_names.length]);
+
+        try
+        {
+            new RfcFilter(sample.toString());
+        }
+        catch (LDAPException e)
+        {
+            throw new GenericLDAPConnectorException(e,
+                                                    GenLDAPExceptionMessages.GLE_THE_FILTER_TEMPLATE_0_IS_INVALID_1,
+                                                    template, e.getLDAPErrorMessage());
+        }
+
+        return returnValue;
+    }
+
+    /**
+     * This method parses a template of the compatibility methods. These templates are not
+     * checked, since a placeholder can also be a part of an attribute name or a DN.
+     *
+     * @param   template  The template with placeholders written as <code>:name</code>.
+     * @param   type      How the values are bound to the placeholders.
+     *
+     * @return  The parsed template.
+     */
+    public static FilterTemplate compileCompatible(String template, EPlaceholderType type)
+    {
+        List<String> literals = new ArrayList<String>();
+        List<String> placeholders = new ArrayList<String>();
+        List<String> names = new ArrayList<String>();
+        List<EPlaceholderType> types = new ArrayList<EPlaceholderType>();
+
+        Matcher matcher = COMPATIBLE_PLACEHOLDER.matcher(template);
+        int start = 0;
+
+        while (matcher.find())
+        {
+            literals.add(template.substring(start, matcher.start()));
+            placeholders.add(matcher.group());
+            names.add(matcher.group(1));
+            types.add(type);
+            start = matcher.end();
+        }
+
+        literals.add(template.substring(start));
+
+        return new FilterTemplate(template, literals, placeholders, names, types, true);
+    }
+
+    /**
+     * This method escapes the given value so that it can be used as an assertion value in a
+     * filter (RFC 4515).
+     *
+     * @param   value  The value to escape.
+     *
+     * @return  The escaped value.
+     */
+    public static String escape(String value)
+    {
+        return escape(value, false);
+    }
+
+    /**
+     * This method creates the filter with the given values for the placeholders.
+     *
+     * @param   values  The values per name of the placeholder.
+     *
+     * @return  The filter.
+     *
+     * @throws  GenericLDAPConnectorException  In case a value does not match the type of its
+     *                                         placeholder.
+     */
+    public String bind(Map<String, String> values)
+                throws GenericLDAPConnectorException
+    {
+        StringBuilder returnValue = new StringBuilder(m_template.length() + 64);
+
+        for (int iCount = 0; iCount < m_names.length; iCount++)
+        {
+            returnValue.append(m_literals[iCount]);
+
+            String value = values.get(m_names[iCount]);
+
+            if (value == null)
+            {
+                if (m_keepUnbound)
+                {
+                    returnValue.append(m_placeholders[iCount]);
+                }
+
+                continue;
+            }
+
+            switch (m_types[iCount])
+            {
+                case SUBSTRING:
+                    returnValue.append(escape(value, true));
+                    break;
+
+                case INTEGER:
+
+                    try
+                    {
+                        returnValue.append(Long.parseLong(value.trim()));
+                    }
+                    catch (NumberFormatException e)
+                    {
+                        throw new GenericLDAPConnectorException(e,
+                                                                GenLDAPExceptionMessages.GLE_THE_VALUE_0_FOR_PLACEHOLDER_1_IS_NOT_A_NUMBER,
+                                                                value, m_names[iCount]);
+                    }
+                    break;
+
+                default:
+                    returnValue.append(escape(value, false));
+                    break;
+            }
+        }
+
+        returnValue.append(m_literals[m_names.length]);
+
+        return returnValue.toString();
+    }
+
+    /**
+     * This method returns the names of the placeholders in the template.
+     *
+     * @return  The names of the placeholders.
+     */
+    public Set<String> getPlaceholders()
+    {
+        Set<String> returnValue = new LinkedHashSet<String>();
+        Collections.addAll(returnValue, m_names);
+
+        return returnValue;
+    }
+
+    /**
+     * @see  java.lang.Object#toString()
+     */
+    @Override public String toString()
+    {
+        return m_template;
+    }
+
+    /**
+     * This method escapes the special characters of a filter in the given value.
+     *
+     * @param   value         The value to escape.
+     * @param   keepWildcard  Whether a '*' is kept as a wildcard.
+     *
+     * @return  The escaped value.
+     */
+    private static String escape(String value, boolean keepWildcard)
+    {
+        StringBuilder returnValue = null;
+
+        for (int iCount = 0; iCount < value.length(); iCount++)
+        {
+            char c = value.charAt(iCount);
+            String replacement = null;
+
+            switch (c)
+            {
+                case '\\':
+                    replacement = "\\5c";
+                    break;
+
+                case '*':
+                    replacement = keepWildcard ? null : "\\2a";
+                    break;
+
+                case '(':
+                    replacement = "\\28";
+                    break;
+
+                case ')':
+                    replacement = "\\29";
+                    break;
+
+                case '\u0000':
+                    replacement = "\\00";
+                    break;
+            }
+
+            if ((replacement != null) && (returnValue == null))
+            {
+                // Most values do not need escaping, so the copy is only made when needed.
+                returnValue = new StringBuilder(value.length() + 16);
+                returnValue.append(value, 0, iCount);
+            }
+
+            if (returnValue != null)
+            {
+                if (replacement != null)
+                {
+                    returnValue.append(replacement);
+                }
+                else
+                {
+                    returnValue.append(c);
+                }
+            }
+        }
+
+        return (returnValue == null) ? value : returnValue.toString();
+    }
+}
@@ -17,7 +17,11 @@
  */
 package com.cordys.coe.ac.genericldap.connection;
 
+import com.cordys.coe.ac.genericldap.cache.DirectoryChangeBus;
+import com.cordys.coe.ac.genericldap.cache.NegativeLookupCache;
+import com.cordys.coe.ac.genericldap.cache.SearchResultCache;
 import com.cordys.coe.ac.genericldap.exception.GenericLDAPConnectorException;
+import com.cordys.coe.ac.genericldap.schema.SchemaIndex;
 
 import com.novell.ldap.LDAPConnection;
 import com.novell.ldap.LDAPEntry;
@@ -25,12 +29,15 @@ import com.novell.ldap.LDAPSchema;
 import com.novell.ldap.LDAPSearchConstraints;
 import com.novell.ldap.LDAPSearchResults;
 
+import java.util.concurrent.ExecutorService;
+
 /**
  * This interface describes the LDAP connection manager.
  *
  * @author  pgussow
  */
 public interface IConnectionManager
+    extends IRangeReader
 {
     /**
      * This method should be called to gracefully close all connections.
@@ -38,7 +45,16 @@ public interface IConnectionManager
     void disconnect();
 
     /**
-     * This method will return an active connection. If none is available it will wait.
+     * This method returns the bus on which the changes the connector makes to the directory are
+     * published. The caches listen to it to invalidate their entries.
+     *
+     * @return  The bus for the changes to the directory.
+     */
+    DirectoryChangeBus getChangeBus();
+
+    /**
+     * This method will return an active connection from the write pool. If none is available it
+     * will wait until one is released or the configured acquire timeout expires.
      *
      * @return  The connection or null if not connected.
      *
@@ -47,6 +63,38 @@ public interface IConnectionManager
     LDAPConnection getConnection()
                           throws GenericLDAPConnectorException;
 
+    /**
+     * This method will return an active connection from the given pool. If none is available it
+     * will wait until one is released or the configured acquire timeout expires. The connection
+     * must be returned with {@link #releaseConnection(LDAPConnection)}.
+     *
+     * @param   type  The pool to get the connection from.
+     *
+     * @return  The connection or null if not connected.
+     *
+     * @throws  GenericLDAPConnectorException  In case no connection could be obtained.
+     */
+    LDAPConnection getConnection(EPoolType type)
+                          throws GenericLDAPConnectorException;
+
+    /**
+     * This method returns the cache of the DNs that are known not to exist. Existence checks
+     * should read through it, so repeated checks for the same DN do not reach the server.
+     *
+     * @return  The negative lookup cache.
+     */
+    NegativeLookupCache getNegativeLookupCache();
+
+    /**
+     * This method returns the statistics of acquiring connections from the given pool. They show
+     * how long requests had to wait for a connection and how many requests are waiting right now.
+     *
+     * @param   type  The pool to get the statistics for.
+     *
+     * @return  The statistics of the connection pool.
+     */
+    PoolStatistics getPoolStatistics(EPoolType type);
+
     /**
      * This method returns the schema for the current LDAP server.
      *
@@ -55,7 +103,54 @@ public interface IConnectionManager
     LDAPSchema getSchema();
 
     /**
-     * This method will read a specific DN from the LDAP server.
+     * This method returns the index of the attribute types in the schema of the current LDAP
+     * server. The index is rebuilt when the schema changes.
+     *
+     * @return  The index of the attribute types.
+     */
+    SchemaIndex getSchemaIndex();
+
+    /**
+     * This method returns the coalescer that lets identical searches that run at the same time
+     * share one search on the server.
+     *
+     * @return  The coalescer for the searches. null if searches should not be coalesced.
+     */
+    RequestCoalescer<SearchResultCache.SearchKey, LDAPEntry[]> getSearchCoalescer();
+
+    /**
+     * This method returns the executor on which a request runs its searches in parallel. It is
+     * shared by all requests and has at most searchparallelism threads, capped at the maximum
+     * number of connections.
+     *
+     * @return  The executor for parallel searches.
+     */
+    ExecutorService getSearchExecutor();
+
+    /**
+     * This method returns the capabilities the LDAP server advertises in its root DSE.
+     *
+     * @return  The capabilities of the server.
+     */
+    ServerCapabilities getServerCapabilities();
+
+    /**
+     * This method reads the given DNs from the LDAP server. The reads are sent without waiting
+     * for the previous ones to complete, and large lists are spread over idle connections of the
+     * read pool. A DN that cannot be read does not fail the others.
+     *
+     * @param   dns         The DNs to read.
+     * @param   attributes  The names of the attributes to read. null for all user attributes.
+     *
+     * @return  The entry or the error for every DN.
+     *
+     * @throws  GenericLDAPConnectorException  In case no connection could be obtained.
+     */
+    BatchReadResult readLDAPEntries(String[] dns, String[] attributes)
+                             throws GenericLDAPConnectorException;
+
+    /**
+     * This method will read a specific DN from the LDAP server. The read pool is used.
      *
      * @param   dn  The DN to read.
      *
@@ -67,7 +162,7 @@ public interface IConnectionManager
                      throws GenericLDAPConnectorException;
     
     /**
-     * This method will read a specific DN from the LDAP server.
+     * This method will read a specific DN from the LDAP server. The read pool is used.
      *
      * @param   dn  The DN to read.
      *
@@ -86,7 +181,54 @@ public interface IConnectionManager
     void releaseConnection(LDAPConnection connection);
 
     /**
-     * This method searches LDAP for entries.
+     * This method starts a search on the read pool and returns a lease on the results. The
+     * connection stays reserved for the search until all results have been read or the lease is
+     * closed. The caller must close the lease in a finally block.
+     *
+     * @param   rootDN          The DN to start searching from.
+     * @param   scope           The scope for searching.
+     * @param   filter          The filter to use.
+     * @param   attributeNames  The names of the attributes to retrieve.
+     * @param   excludeValues   Whether or not to exclude the values when returning the results.
+     * @param   constraints     The constraints to apply.
+     *
+     * @return  The lease on the search results.
+     *
+     * @throws  GenericLDAPConnectorException  In case of any exceptions.
+     */
+    SearchLease openSearch(String rootDN, int scope, String filter, String[] attributeNames,
+                           boolean excludeValues, LDAPSearchConstraints constraints)
+                    throws GenericLDAPConnectorException;
+
+    /**
+     * This method returns one page of a search using the simple paged results control (RFC 2696).
+     * If there are more pages the connection stays pinned to the search after the page has been
+     * read and the lease returns a cookie. Passing that cookie with the same search parameters
+     * returns the next page.
+     *
+     * @param   rootDN          The DN to start searching from.
+     * @param   scope           The scope for searching.
+     * @param   filter          The filter to use.
+     * @param   attributeNames  The names of the attributes to retrieve.
+     * @param   excludeValues   Whether or not to exclude the values when returning the results.
+     * @param   constraints     The constraints to apply.
+     * @param   pageSize        The number of entries per page.
+     * @param   cookie          The cookie of the previous page. null for the first page.
+     *
+     * @return  The lease on the results of the page.
+     *
+     * @throws  GenericLDAPConnectorException  In case of any exceptions or if the cookie is
+     *                                         unknown.
+     */
+    PagedSearchLease openPagedSearch(String rootDN, int scope, String filter,
+                                     String[] attributeNames, boolean excludeValues,
+                                     LDAPSearchConstraints constraints, int pageSize,
+                                     String cookie)
+                              throws GenericLDAPConnectorException;
+
+    /**
+     * This method searches LDAP for entries. All results are received from the server before the
+     * connection is returned to the pool, so large searches are buffered in memory.
      *
      * @param   rootDN          The DN to start searching from.
      * @param   scope           The scope for searching.
@@ -98,8 +240,11 @@ public interface IConnectionManager
      * @return  The result from the search query.
      *
      * @throws  GenericLDAPConnectorException  In case of any exceptions.
+     *
+     * @deprecated  Use {@link #openSearch(String, int, String, String[], boolean,
+     *              LDAPSearchConstraints)} which streams the results.
      */
-    LDAPSearchResults search(String rootDN, int scope, String filter, String[] attributeNames,
+    @Deprecated LDAPSearchResults search(String rootDN, int scope, String filter, String[] attributeNames,
                              boolean excludeValues, LDAPSearchConstraints constraints)
                       throws GenericLDAPConnectorException;
 }
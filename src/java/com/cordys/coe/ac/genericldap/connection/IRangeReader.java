@@ -0,0 +1,45 @@
+/*
+ * Copyright 2007 Cordys R&D B.V. 
+ *
+ *   This file is part of the Cordys Generic LDAP Connector. 
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.cordys.coe.ac.genericldap.connection;
+
+import com.cordys.coe.ac.genericldap.exception.GenericLDAPConnectorException;
+
+import com.novell.ldap.LDAPAttribute;
+
+/**
+ * This interface describes the reading of the next range of values of a multi-valued attribute.
+ *
+ * @author  pgussow
+ * @see     AttributeRange
+ */
+public interface IRangeReader
+{
+    /**
+     * This method reads the next range of the values of an attribute of an entry.
+     *
+     * @param   dn             The DN of the entry.
+     * @param   attributeName  The name of the attribute including the range to read.
+     *
+     * @return  The attribute with the values of the range. null if the entry does not have the
+     *          attribute anymore.
+     *
+     * @throws  GenericLDAPConnectorException  In case the entry could not be read.
+     */
+    LDAPAttribute readAttributeRange(String dn, String attributeName)
+                               throws GenericLDAPConnectorException;
+}
@@ -0,0 +1,166 @@
+/*
+ * Copyright 2007 Cordys R&D B.V. 
+ *
+ *   This file is part of the Cordys Generic LDAP Connector. 
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.cordys.coe.ac.genericldap.connection;
+
+import com.cordys.coe.ac.genericldap.config.IGenLDAPConfiguration;
+import com.cordys.coe.ac.genericldap.config.ServerEndpoint;
+
+import com.novell.ldap.LDAPConnection;
+import com.novell.ldap.LDAPException;
+import com.novell.ldap.LDAPJSSESecureSocketFactory;
+import com.novell.ldap.LDAPSearchConstraints;
+
+/**
+ * This class creates new connections to a single LDAP server. The connection is connected and
+ * bound with the credentials from the configuration.
+ *
+ * @author  pgussow
+ */
+class LDAPConnectionFactory
+{
+    /**
+     * Holds the maximum time in milliseconds the validation of a connection may take.
+     */
+    private static final int VALIDATION_TIME_LIMIT = 10000;
+    /**
+     * Holds the attributes to request when probing the root DSE. OID 1.1 means no attributes.
+     */
+    private static final String[] NO_ATTRIBUTES = new String[] { LDAPConnection.NO_ATTRS };
+    /**
+     * Holds the configuration to use.
+     */
+    private IGenLDAPConfiguration m_configuration;
+    /**
+     * Holds the server to connect to.
+     */
+    private ServerEndpoint m_endpoint;
+    /**
+     * Holds the optional SSL socket factory.
+     */
+    private LDAPJSSESecureSocketFactory m_ssf;
+
+    /**
+     * Creates a new LDAPConnectionFactory object.
+     *
+     * @param  configuration  The configuration to use.
+     * @param  endpoint       The server to connect to.
+     * @param  ssf            The secure socket factory to support SSL. If null a plain connection
+     *                        is made.
+     */
+    LDAPConnectionFactory(IGenLDAPConfiguration configuration, ServerEndpoint endpoint,
+                          LDAPJSSESecureSocketFactory ssf)
+    {
+        m_configuration = configuration;
+        m_endpoint = endpoint;
+        m_ssf = ssf;
+    }
+
+    /**
+     * This method creates a connection.
+     *
+     * @return  The LDAP connection to use.
+     *
+     * @throws  LDAPException  In case of any exception.
+     */
+    public LDAPConnection createConnection()
+                                    throws LDAPException
+    {
+        LDAPConnection returnConnection = null;
+
+        // Try one connection to see if authentication and setup is OK
+        if (m_ssf == null)
+        {
+            returnConnection = new LDAPConnection();
+        }
+        else
+        {
+            returnConnection = new LDAPConnection(m_ssf);
+        }
+
+        // Do the connect
+        returnConnection.connect(getServer(), getPort());
+
+        if (!m_configuration.isAnonymousBind())
+        {
+            returnConnection.bind(LDAPConnection.LDAP_V3, m_configuration.getUser(),
+                                  m_configuration.getPassword().getBytes());
+        }
+
+        return returnConnection;
+    }
+
+    /**
+     * This method checks whether the connection is still usable by reading the root DSE. No
+     * attributes are requested, so the probe is cheap for the server.
+     *
+     * @param   connection  The connection to check.
+     *
+     * @return  true if the server answered the probe. Otherwise false.
+     */
+    public boolean validate(LDAPConnection connection)
+    {
+        if (!connection.isConnected())
+        {
+            return false;
+        }
+
+        LDAPSearchConstraints constraints = new LDAPSearchConstraints();
+        constraints.setTimeLimit(VALIDATION_TIME_LIMIT);
+
+        try
+        {
+            connection.read("", NO_ATTRIBUTES, constraints);
+        }
+        catch (LDAPException e)
+        {
+            return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * This method gets the server the connections are made to.
+     *
+     * @return  The server the connections are made to.
+     */
+    public ServerEndpoint getEndpoint()
+    {
+        return m_endpoint;
+    }
+
+    /**
+     * This method gets the port of the server the connections are made to.
+     *
+     * @return  The port of the server the connections are made to.
+     */
+    public int getPort()
+    {
+        return m_endpoint.getPort();
+    }
+
+    /**
+     * This method gets the server the connections are made to.
+     *
+     * @return  The server the connections are made to.
+     */
+    public String getServer()
+    {
+        return m_endpoint.getHost();
+    }
+}
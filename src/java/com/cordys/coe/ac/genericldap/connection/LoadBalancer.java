@@ -0,0 +1,165 @@
+/*
+ * Copyright 2007 Cordys R&D B.V. 
+ *
+ *   This file is part of the Cordys Generic LDAP Connector. 
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.cordys.coe.ac.genericldap.connection;
+
+import com.cordys.coe.ac.genericldap.config.ELoadBalancingStrategy;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * This class decides in which order the pools of the different LDAP servers are tried. The
+ * available servers come first, ordered according to the load balancing strategy. The servers
+ * that recently failed are appended as a last resort.
+ *
+ * <p>This class will be accessed by multiple threads.</p>
+ *
+ * @author  pgussow
+ */
+class LoadBalancer
+{
+    /**
+     * Holds the pools of all servers in the configured order.
+     */
+    private List<ConnectionPool> m_pools;
+    /**
+     * Holds the random generator for the latency weighted strategy.
+     */
+    private Random m_random = new Random();
+    /**
+     * Holds the counter for the round robin strategy.
+     */
+    private AtomicInteger m_roundRobin = new AtomicInteger();
+    /**
+     * Holds the strategy to use.
+     */
+    private ELoadBalancingStrategy m_strategy;
+
+    /**
+     * Creates a new LoadBalancer object.
+     *
+     * @param  strategy  The strategy to use.
+     * @param  pools     The pools of all servers in the configured order.
+     */
+    LoadBalancer(ELoadBalancingStrategy strategy, List<ConnectionPool> pools)
+    {
+        m_strategy = strategy;
+        m_pools = pools;
+    }
+
+    /**
+     * This method returns the pools in the order in which they should be tried.
+     *
+     * @return  The pools in the order in which they should be tried.
+     */
+    public List<ConnectionPool> select()
+    {
+        if (m_pools.size() == 1)
+        {
+            return m_pools;
+        }
+
+        List<ConnectionPool> available = new ArrayList<ConnectionPool>(m_pools.size());
+        List<ConnectionPool> failed = new ArrayList<ConnectionPool>(m_pools.size());
+
+        for (ConnectionPool pool : m_pools)
+        {
+            if (pool.isAvailable())
+            {
+                available.add(pool);
+            }
+            else
+            {
+                failed.add(pool);
+            }
+        }
+
+        if (available.size() > 1)
+        {
+            switch (m_strategy)
+            {
+                case ROUND_ROBIN:
+                    Collections.rotate(available,
+                                       -((m_roundRobin.getAndIncrement() & Integer.MAX_VALUE) %
+                                         available.size()));
+                    break;
+
+                case LEAST_OUTSTANDING:
+                    Collections.sort(available, new Comparator<ConnectionPool>()
+                        {
+                            public int compare(ConnectionPool first, ConnectionPool second)
+                            {
+                                return first.getOutstanding() - second.getOutstanding();
+                            }
+                        });
+                    break;
+
+                case LATENCY_WEIGHTED:
+                    moveWeightedChoiceToFront(available);
+                    break;
+
+                default:
+                    // FAILOVER: keep the configured order.
+                    break;
+            }
+        }
+
+        available.addAll(failed);
+
+        return available;
+    }
+
+    /**
+     * This method picks a pool at random, weighted by the inverse of the latency of the server,
+     * and moves it to the front of the list. Servers without any measurements yet get the weight
+     * of a 1 ms latency, so they are tried soon.
+     *
+     * @param  pools  The available pools.
+     */
+    private void moveWeightedChoiceToFront(List<ConnectionPool> pools)
+    {
+        double[] weights = new double[pools.size()];
+        double total = 0;
+
+        for (int iCount = 0; iCount < weights.length; iCount++)
+        {
+            weights[iCount] = 1.0 / Math.max(pools.get(iCount).getLatency(), 1.0);
+            total += weights[iCount];
+        }
+
+        double choice = m_random.nextDouble() * total;
+        int selected = weights.length - 1;
+
+        for (int iCount = 0; iCount < weights.length; iCount++)
+        {
+            choice -= weights[iCount];
+
+            if (choice < 0)
+            {
+                selected = iCount;
+                break;
+            }
+        }
+
+        pools.add(0, pools.remove(selected));
+    }
+}
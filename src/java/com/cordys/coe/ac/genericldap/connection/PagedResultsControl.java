@@ -0,0 +1,108 @@
+/*
+ * Copyright 2007 Cordys R&D B.V. 
+ *
+ *   This file is part of the Cordys Generic LDAP Connector. 
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.cordys.coe.ac.genericldap.connection;
+
+import com.novell.ldap.LDAPControl;
+import com.novell.ldap.asn1.ASN1Integer;
+import com.novell.ldap.asn1.ASN1Object;
+import com.novell.ldap.asn1.ASN1OctetString;
+import com.novell.ldap.asn1.ASN1Sequence;
+import com.novell.ldap.asn1.LBERDecoder;
+import com.novell.ldap.asn1.LBEREncoder;
+
+/**
+ * This class implements the simple paged results control of RFC 2696. The same control is used
+ * in the request to ask for a page and in the response to pass the cookie for the next page.
+ *
+ * <pre>
+ * realSearchControlValue ::= SEQUENCE {
+ *         size            INTEGER (0..maxInt),
+ *         cookie          OCTET STRING
+ * }
+ * </pre>
+ *
+ * @author  pgussow
+ */
+public class PagedResultsControl extends LDAPControl
+{
+    /**
+     * Holds the OID of the paged results control.
+     */
+    public static final String OID = "1.2.840.113556.1.4.319";
+    /**
+     * Holds the version of the serialized form, since LDAPControl is serializable.
+     */
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Creates a new PagedResultsControl object.
+     *
+     * @param  pageSize  The number of entries to return per page.
+     * @param  cookie    The cookie the server returned for the previous page. null for the first
+     *                   page.
+     * @param  critical  Whether or not the server must support the control.
+     */
+    public PagedResultsControl(int pageSize, byte[] cookie, boolean critical)
+    {
+        super(OID, critical, null);
+
+        ASN1Sequence value = new ASN1Sequence(2);
+        value.add(new ASN1Integer(pageSize));
+        value.add(new ASN1OctetString((cookie == null) ? new byte[0] : cookie));
+
+        setValue(value.getEncoding(new LBEREncoder()));
+    }
+
+    /**
+     * This method returns the cookie for the next page from the controls the server returned.
+     *
+     * @param   controls  The response controls.
+     *
+     * @return  The cookie. null if the server did not return the control or if this was the last
+     *          page.
+     */
+    public static byte[] getCookie(LDAPControl[] controls)
+    {
+        if (controls == null)
+        {
+            return null;
+        }
+
+        for (LDAPControl control : controls)
+        {
+            if (OID.equals(control.getID()) && (control.getValue() != null))
+            {
+                ASN1Object value = new LBERDecoder().decode(control.getValue());
+
+                if ((value instanceof ASN1Sequence) && (((ASN1Sequence) value).size() > 1))
+                {
+                    ASN1Object cookie = ((ASN1Sequence) value).get(1);
+
+                    if (cookie instanceof ASN1OctetString)
+                    {
+                        byte[] returnValue = ((ASN1OctetString) cookie).byteValue();
+
+                        return (returnValue.length == 0) ? null : returnValue;
+                    }
+                }
+            }
+        }
+
+        return null;
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright 2007 Cordys R&D B.V. 
+ *
+ *   This file is part of the Cordys Generic LDAP Connector. 
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.cordys.coe.ac.genericldap.connection;
+
+import com.novell.ldap.LDAPConnection;
+import com.novell.ldap.LDAPSearchResults;
+
+/**
+ * This class wraps one page of a paged search. When all results of the page have been read and
+ * the server indicates there are more pages, the connection is not returned to the pool but
+ * pinned to the search. The cookie to request the next page is then available via
+ * {@link #getCookie()}.
+ *
+ * @author  pgussow
+ */
+public class PagedSearchLease extends SearchLease
+{
+    /**
+     * Holds the cookie for the next page.
+     */
+    private String m_cookie;
+    /**
+     * Holds the connection manager in which the connection is pinned.
+     */
+    private ConnectionManager m_pinningManager;
+    /**
+     * Holds the identification of the search.
+     */
+    private String m_searchKey;
+
+    /**
+     * Creates a new PagedSearchLease object.
+     *
+     * @param  connectionManager  The connection manager the connection must be returned to.
+     * @param  connection         The connection the search is running on.
+     * @param  results            The actual search results.
+     * @param  searchKey          The identification of the search.
+     */
+    PagedSearchLease(ConnectionManager connectionManager, LDAPConnection connection,
+                     LDAPSearchResults results, String searchKey)
+    {
+        super(connectionManager, connection, results);
+
+        m_pinningManager = connectionManager;
+        m_searchKey = searchKey;
+    }
+
+    /**
+     * This method returns the cookie for the next page. It is available after all results of the
+     * page have been read.
+     *
+     * @return  The cookie for the next page. null if this was the last page.
+     */
+    public String getCookie()
+    {
+        return m_cookie;
+    }
+
+    /**
+     * @see  com.cordys.coe.ac.genericldap.connection.SearchLease#release(com.novell.ldap.LDAPConnection,
+     *       boolean)
+     */
+    @Override protected void release(LDAPConnection connection, boolean drained)
+    {
+        byte[] cookie = drained ? PagedResultsControl.getCookie(getResponseControls()) : null;
+
+        if (cookie == null)
+        {
+            super.release(connection, drained);
+        }
+        else
+        {
+            m_cookie = m_pinningManager.pinPagedSearch(connection, cookie, m_searchKey);
+        }
+    }
+}
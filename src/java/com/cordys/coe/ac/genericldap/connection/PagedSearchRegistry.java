@@ -0,0 +1,242 @@
+/*
+ * Copyright 2007 Cordys R&D B.V. 
+ *
+ *   This file is part of the Cordys Generic LDAP Connector. 
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.cordys.coe.ac.genericldap.connection;
+
+import com.novell.ldap.LDAPConnection;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * This class holds the paged searches that are waiting for the caller to ask for the next page.
+ * The paging state on the server is bound to the connection, so the connection stays pinned to
+ * the search between the pages. The caller gets an opaque cookie that refers to the pinned
+ * connection and the cookie of the server.
+ *
+ * <p>Searches for which the next page is not requested in time are removed by the background
+ * maintenance of the connection manager.</p>
+ *
+ * @author  pgussow
+ */
+class PagedSearchRegistry
+{
+    /**
+     * Holds the pinned searches by the cookie handed out to the caller.
+     */
+    private Map<String, PagedSearch> m_searches = new ConcurrentHashMap<String, PagedSearch>();
+
+    /**
+     * This method removes all pinned searches.
+     *
+     * @return  The removed searches.
+     */
+    public List<PagedSearch> clear()
+    {
+        List<PagedSearch> returnValue = new ArrayList<PagedSearch>(m_searches.values());
+
+        m_searches.clear();
+
+        return returnValue;
+    }
+
+    /**
+     * This method removes the search that has been waiting for the next page the longest.
+     *
+     * @return  The removed search. null if no search is pinned.
+     */
+    public PagedSearch removeOldest()
+    {
+        while (true)
+        {
+            Map.Entry<String, PagedSearch> oldest = null;
+
+            for (Map.Entry<String, PagedSearch> entry : m_searches.entrySet())
+            {
+                if ((oldest == null) ||
+                        (entry.getValue().getCreated() < oldest.getValue().getCreated()))
+                {
+                    oldest = entry;
+                }
+            }
+
+            if (oldest == null)
+            {
+                return null;
+            }
+
+            // Only the thread that actually removes it may release the connection. If another
+            // thread was first, look again.
+            if (m_searches.remove(oldest.getKey()) != null)
+            {
+                return oldest.getValue();
+            }
+        }
+    }
+
+    /**
+     * This method removes the searches that have not been continued within the given time.
+     *
+     * @param   timeout  The time in milliseconds after which a search expires.
+     *
+     * @return  The expired searches.
+     */
+    public List<PagedSearch> removeExpired(long timeout)
+    {
+        List<PagedSearch> returnValue = new ArrayList<PagedSearch>();
+        long now = System.currentTimeMillis();
+
+        for (Iterator<Map.Entry<String, PagedSearch>> iterator = m_searches.entrySet().iterator();
+                 iterator.hasNext();)
+        {
+            Map.Entry<String, PagedSearch> entry = iterator.next();
+
+            if ((now - entry.getValue().getCreated()) > timeout)
+            {
+                // Only the thread that actually removes it may release the connection.
+                if (m_searches.remove(entry.getKey()) != null)
+                {
+                    returnValue.add(entry.getValue());
+                }
+            }
+        }
+
+        return returnValue;
+    }
+
+    /**
+     * This method pins the connection to the search until the next page is requested.
+     *
+     * @param   connection  The connection the search is running on.
+     * @param   cookie      The cookie the server returned.
+     * @param   searchKey   The identification of the search.
+     *
+     * @return  The cookie for the caller.
+     */
+    public String pin(LDAPConnection connection, byte[] cookie, String searchKey)
+    {
+        String returnValue = UUID.randomUUID().toString();
+
+        m_searches.put(returnValue, new PagedSearch(connection, cookie, searchKey));
+
+        return returnValue;
+    }
+
+    /**
+     * This method returns the number of pinned searches.
+     *
+     * @return  The number of pinned searches.
+     */
+    public int size()
+    {
+        return m_searches.size();
+    }
+
+    /**
+     * This method removes the search for the given cookie. From now on the caller owns the
+     * connection.
+     *
+     * @param   cookie  The cookie handed out to the caller.
+     *
+     * @return  The search. null if the cookie is unknown or has expired.
+     */
+    public PagedSearch take(String cookie)
+    {
+        return m_searches.remove(cookie);
+    }
+
+    /**
+     * This class holds a search that is waiting for the next page.
+     */
+    static class PagedSearch
+    {
+        /**
+         * Holds the connection the search is running on.
+         */
+        private LDAPConnection m_connection;
+        /**
+         * Holds the cookie the server returned.
+         */
+        private byte[] m_cookie;
+        /**
+         * Holds the time the page was returned.
+         */
+        private long m_created = System.currentTimeMillis();
+        /**
+         * Holds the identification of the search.
+         */
+        private String m_searchKey;
+
+        /**
+         * Creates a new PagedSearch object.
+         *
+         * @param  connection  The connection the search is running on.
+         * @param  cookie      The cookie the server returned.
+         * @param  searchKey   The identification of the search.
+         */
+        PagedSearch(LDAPConnection connection, byte[] cookie, String searchKey)
+        {
+            m_connection = connection;
+            m_cookie = cookie;
+            m_searchKey = searchKey;
+        }
+
+        /**
+         * This method gets the connection the search is running on.
+         *
+         * @return  The connection the search is running on.
+         */
+        public LDAPConnection getConnection()
+        {
+            return m_connection;
+        }
+
+        /**
+         * This method gets the cookie the server returned.
+         *
+         * @return  The cookie the server returned.
+         */
+        public byte[] getCookie()
+        {
+            return m_cookie;
+        }
+
+        /**
+         * This method gets the time the page was returned.
+         *
+         * @return  The time the page was returned.
+         */
+        public long getCreated()
+        {
+            return m_created;
+        }
+
+        /**
+         * This method gets the identification of the search.
+         *
+         * @return  The identification of the search.
+         */
+        public String getSearchKey()
+        {
+            return m_searchKey;
+        }
+    }
+}
@@ -0,0 +1,312 @@
+/*
+ * Copyright 2007 Cordys R&D B.V. 
+ *
+ *   This file is part of the Cordys Generic LDAP Connector. 
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.cordys.coe.ac.genericldap.connection;
+
+import com.eibus.util.logger.CordysLogger;
+
+import com.novell.ldap.LDAPConnection;
+import com.novell.ldap.LDAPException;
+import com.novell.ldap.LDAPMessage;
+import com.novell.ldap.LDAPMessageQueue;
+import com.novell.ldap.LDAPResponse;
+import com.novell.ldap.LDAPSearchConstraints;
+import com.novell.ldap.LDAPSearchRequest;
+import com.novell.ldap.LDAPSearchResult;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * This class reads a list of DNs without waiting for each read to complete before sending the
+ * next one. The reads are spread over the given connections. On every connection a limited
+ * number of reads is outstanding at the same time; when one completes the next one is sent.
+ *
+ * <p>An instance is used by one thread. The caller owns the connections.</p>
+ *
+ * @author  pgussow
+ */
+class PipelinedReader
+{
+    /**
+     * Holds the logger to use.
+     */
+    private static final CordysLogger LOG = CordysLogger.getCordysLogger(PipelinedReader.class);
+    /**
+     * Holds the filter that matches every entry.
+     */
+    private static final String FILTER_ALL = "(objectClass=*)";
+    /**
+     * Holds the names of the attributes to read.
+     */
+    private String[] m_attributes;
+    /**
+     * Holds the reads per connection.
+     */
+    private List<Lane> m_lanes = new ArrayList<Lane>();
+    /**
+     * Holds the maximum number of outstanding reads per connection.
+     */
+    private int m_window;
+
+    /**
+     * Creates a new PipelinedReader object.
+     *
+     * @param  connections  The connections to spread the reads over.
+     * @param  attributes   The names of the attributes to read.
+     * @param  window       The maximum number of outstanding reads per connection.
+     */
+    PipelinedReader(List<LDAPConnection> connections, String[] attributes, int window)
+    {
+        m_attributes = attributes;
+        m_window = Math.max(window, 1);
+
+        for (LDAPConnection connection : connections)
+        {
+            m_lanes.add(new Lane(connection));
+        }
+    }
+
+    /**
+     * This method reads the DNs with the given indexes. The entries and the errors are stored in
+     * the result. A connection that fails only fails the reads that were assigned to it.
+     *
+     * @param  indexes  The indexes of the DNs to read.
+     * @param  result   The result to store the entries and errors in.
+     */
+    void read(List<Integer> indexes, BatchReadResult result)
+    {
+        for (int iCount = 0; iCount < indexes.size(); iCount++)
+        {
+            m_lanes.get(iCount % m_lanes.size()).m_pending.add(indexes.get(iCount));
+        }
+
+        try
+        {
+            for (Lane lane : m_lanes)
+            {
+                lane.fill(result);
+            }
+
+            Lane lane;
+
+            while ((lane = getReadyLane()) != null)
+            {
+                lane.receive(result);
+                lane.fill(result);
+            }
+        }
+        finally
+        {
+            for (Lane remaining : m_lanes)
+            {
+                remaining.abandon();
+            }
+        }
+    }
+
+    /**
+     * This method returns the lane from which a response should be read next. A lane that has a
+     * response waiting is preferred, so a slow connection does not hold up the others.
+     *
+     * @return  The lane to read from. null if there are no outstanding reads.
+     */
+    private Lane getReadyLane()
+    {
+        Lane returnValue = null;
+
+        for (Lane lane : m_lanes)
+        {
+            if (!lane.m_outstanding.isEmpty())
+            {
+                if (lane.m_queue.isResponseReceived())
+                {
+                    return lane;
+                }
+
+                if (returnValue == null)
+                {
+                    returnValue = lane;
+                }
+            }
+        }
+
+        return returnValue;
+    }
+
+    /**
+     * This class holds the reads on one connection.
+     */
+    private class Lane
+    {
+        /**
+         * Holds the connection.
+         */
+        private LDAPConnection m_connection;
+        /**
+         * Holds the indexes of the DNs by the message ID of their outstanding read.
+         */
+        private Map<Integer, Integer> m_outstanding = new HashMap<Integer, Integer>();
+        /**
+         * Holds the indexes of the DNs that still have to be sent.
+         */
+        private LinkedList<Integer> m_pending = new LinkedList<Integer>();
+        /**
+         * Holds the queue that receives the responses of all reads on the connection.
+         */
+        private LDAPMessageQueue m_queue;
+
+        /**
+         * Creates a new Lane object.
+         *
+         * @param  connection  The connection.
+         */
+        Lane(LDAPConnection connection)
+        {
+            m_connection = connection;
+        }
+
+        /**
+         * This method abandons the reads that are still outstanding.
+         */
+        void abandon()
+        {
+            if ((m_queue != null) && !m_outstanding.isEmpty())
+            {
+                try
+                {
+                    m_connection.abandon(m_queue);
+                }
+                catch (LDAPException e)
+                {
+                    if (LOG.isDebugEnabled())
+                    {
+                        LOG.debug("Error abandoning the outstanding reads", e);
+                    }
+                }
+            }
+        }
+
+        /**
+         * This method sends reads until the window is full.
+         *
+         * @param  result  The result to store the errors in.
+         */
+        void fill(BatchReadResult result)
+        {
+            while ((m_outstanding.size() < m_window) && !m_pending.isEmpty())
+            {
+                int index = m_pending.removeFirst();
+
+                try
+                {
+                    LDAPSearchRequest request = new LDAPSearchRequest(result.getDN(index),
+                                                                      LDAPConnection.SCOPE_BASE,
+                                                                      FILTER_ALL, m_attributes,
+                                                                      LDAPSearchConstraints.DEREF_NEVER,
+                                                                      0, 0, false, null);
+
+                    m_queue = m_connection.sendRequest(request, m_queue);
+                    m_outstanding.put(request.getMessageID(), index);
+                }
+                catch (LDAPException e)
+                {
+                    result.setError(index, e);
+
+                    if (!m_connection.isConnected())
+                    {
+                        fail(e, result);
+                    }
+                }
+            }
+        }
+
+        /**
+         * This method reads the next response and stores it in the result.
+         *
+         * @param  result  The result to store the entry or error in.
+         */
+        void receive(BatchReadResult result)
+        {
+            LDAPMessage message;
+
+            try
+            {
+                message = m_queue.getResponse();
+            }
+            catch (LDAPException e)
+            {
+                fail(e, result);
+
+                return;
+            }
+
+            Integer index = m_outstanding.get(message.getMessageID());
+
+            if (index == null)
+            {
+                return;
+            }
+
+            if (message instanceof LDAPSearchResult)
+            {
+                result.setEntry(index, ((LDAPSearchResult) message).getEntry());
+            }
+            else if (message instanceof LDAPResponse)
+            {
+                // The read is done.
+                m_outstanding.remove(message.getMessageID());
+
+                LDAPResponse response = (LDAPResponse) message;
+                int resultCode = response.getResultCode();
+
+                if ((resultCode != LDAPException.SUCCESS) && (result.getEntry(index) == null))
+                {
+                    result.setError(index,
+                                    new LDAPException(LDAPException.resultCodeToString(resultCode),
+                                                      resultCode, response.getErrorMessage(),
+                                                      response.getMatchedDN()));
+                }
+            }
+        }
+
+        /**
+         * This method fails all reads on this connection that have not completed.
+         *
+         * @param  e       The reason the reads failed.
+         * @param  result  The result to store the errors in.
+         */
+        private void fail(LDAPException e, BatchReadResult result)
+        {
+            for (Integer index : m_outstanding.values())
+            {
+                result.setError(index, e);
+            }
+
+            for (Integer index : m_pending)
+            {
+                result.setError(index, e);
+            }
+
+            m_outstanding.clear();
+            m_pending.clear();
+        }
+    }
+}
@@ -0,0 +1,266 @@
+/*
+ * Copyright 2007 Cordys R&D B.V. 
+ *
+ *   This file is part of the Cordys Generic LDAP Connector. 
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.cordys.coe.ac.genericldap.connection;
+
+import com.cordys.coe.ac.genericldap.config.ELoadBalancingStrategy;
+import com.cordys.coe.ac.genericldap.exception.GenericLDAPConnectorException;
+import com.cordys.coe.ac.genericldap.localization.GeneralMessages;
+
+import com.eibus.util.logger.CordysLogger;
+
+import java.util.List;
+
+/**
+ * This class groups the pools of one pool type. It holds one pool per server, the load balancer
+ * that decides which server is used and the statistics that are shared by the pools.
+ *
+ * <p>This class will be accessed by multiple threads.</p>
+ *
+ * @author  pgussow
+ */
+class PoolGroup
+{
+    /**
+     * Holds the logger to use.
+     */
+    private static final CordysLogger LOG = CordysLogger.getCordysLogger(PoolGroup.class);
+    /**
+     * Holds the load balancer that decides which server is used.
+     */
+    private LoadBalancer m_loadBalancer;
+    /**
+     * Holds the pools of all servers in the configured order.
+     */
+    private List<ConnectionPool> m_pools;
+    /**
+     * Holds the number of timed out acquires seen by the previous maintenance run.
+     */
+    private long m_reportedTimeouts = 0;
+    /**
+     * Holds the statistics of acquiring connections from the pools of this group.
+     */
+    private PoolStatistics m_statistics;
+    /**
+     * Holds the type of the pools in this group.
+     */
+    private EPoolType m_type;
+
+    /**
+     * Creates a new PoolGroup object.
+     *
+     * @param  type        The type of the pools in this group.
+     * @param  pools       The pools of all servers in the configured order.
+     * @param  strategy    The strategy to spread the load over the servers.
+     * @param  statistics  The statistics the pools record their acquires in.
+     */
+    PoolGroup(EPoolType type, List<ConnectionPool> pools, ELoadBalancingStrategy strategy,
+              PoolStatistics statistics)
+    {
+        m_type = type;
+        m_pools = pools;
+        m_statistics = statistics;
+        m_loadBalancer = new LoadBalancer(strategy, pools);
+    }
+
+    /**
+     * This method closes the pools of all servers.
+     */
+    public void close()
+    {
+        for (ConnectionPool pool : m_pools)
+        {
+            pool.close();
+        }
+    }
+
+    /**
+     * This method fills the pools of all servers up to their minimum size. A server that cannot
+     * be reached does not stop the other pools from being filled. Only when none of the pools
+     * could be filled the error is reported.
+     *
+     * @param   parallelism  The maximum number of connections to establish at the same time.
+     *
+     * @throws  GenericLDAPConnectorException  In case none of the pools could be filled.
+     */
+    public void fill(int parallelism)
+              throws GenericLDAPConnectorException
+    {
+        GenericLDAPConnectorException firstError = null;
+        int failed = 0;
+
+        for (ConnectionPool pool : m_pools)
+        {
+            try
+            {
+                pool.fill(parallelism);
+            }
+            catch (GenericLDAPConnectorException e)
+            {
+                failed++;
+
+                if (firstError == null)
+                {
+                    firstError = e;
+                }
+
+                if (m_pools.size() > 1)
+                {
+                    LOG.warn(e, GeneralMessages.ERROR_WARMING_UP_THE_CONNECTION_POOL_FOR_0,
+                             pool.getEndpoint());
+                }
+            }
+        }
+
+        if (failed == m_pools.size())
+        {
+            throw firstError;
+        }
+    }
+
+    /**
+     * This method gets the pools of all servers in the configured order.
+     *
+     * @return  The pools of all servers.
+     */
+    public List<ConnectionPool> getPools()
+    {
+        return m_pools;
+    }
+
+    /**
+     * This method gets the statistics of acquiring connections from the pools of this group.
+     *
+     * @return  The statistics of acquiring connections.
+     */
+    public PoolStatistics getStatistics()
+    {
+        return m_statistics;
+    }
+
+    /**
+     * This method gets the type of the pools in this group.
+     *
+     * @return  The type of the pools in this group.
+     */
+    public EPoolType getType()
+    {
+        return m_type;
+    }
+
+    /**
+     * This method returns whether or not an acquire would have to wait, because the pools of all
+     * available servers are exhausted.
+     *
+     * @return  true if all pools are exhausted. Otherwise false.
+     */
+    public boolean isExhausted()
+    {
+        for (ConnectionPool pool : m_pools)
+        {
+            if (pool.isAvailable() && !pool.isExhausted())
+            {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * This method does the background maintenance of the pools. It closes the idle connections
+     * and reports starvation of the pools when requests timed out or are still waiting for a
+     * connection.
+     */
+    public void maintain()
+    {
+        for (ConnectionPool pool : m_pools)
+        {
+            // Servers that failed recently are left alone until the retry interval has passed.
+            if (pool.isAvailable())
+            {
+                pool.evictIdle();
+            }
+
+            if (LOG.isDebugEnabled())
+            {
+                LOG.debug(m_type + " pool for " + pool.getEndpoint() + ": size " +
+                          pool.getSize() + ", idle " + pool.getIdleCount() +
+                          ", average latency " + Math.round(pool.getLatency()) + "ms" +
+                          (pool.isHealthy() ? "" : ", NOT healthy"));
+            }
+        }
+
+        long timeouts = m_statistics.getTimeouts();
+
+        if ((timeouts > m_reportedTimeouts) || (m_statistics.getWaiters() > 0))
+        {
+            LOG.warn(null, GeneralMessages.POOL_STARVATION_DETECTED_FOR_0_STATISTICS_1,
+                     m_type + " " + getServers(), m_statistics);
+        }
+        else if (LOG.isDebugEnabled())
+        {
+            LOG.debug(m_type + " pool statistics: " + m_statistics);
+        }
+        m_reportedTimeouts = timeouts;
+    }
+
+    /**
+     * This method returns the pools in the order in which they should be tried.
+     *
+     * @return  The pools in the order in which they should be tried.
+     */
+    public List<ConnectionPool> select()
+    {
+        return m_loadBalancer.select();
+    }
+
+    /**
+     * This method validates the idle connections of all pools.
+     *
+     * @param  interval  The time in milliseconds after which an idle connection must be validated
+     *                   again.
+     */
+    public void validateIdle(long interval)
+    {
+        for (ConnectionPool pool : m_pools)
+        {
+            pool.validateIdle(interval);
+        }
+    }
+
+    /**
+     * This method returns the description of the servers for logging purposes.
+     *
+     * @return  The servers of this group.
+     */
+    private String getServers()
+    {
+        StringBuilder sb = new StringBuilder();
+
+        for (ConnectionPool pool : m_pools)
+        {
+            if (sb.length() > 0)
+            {
+                sb.append(", ");
+            }
+            sb.append(pool.getEndpoint());
+        }
+
+        return sb.toString();
+    }
+}
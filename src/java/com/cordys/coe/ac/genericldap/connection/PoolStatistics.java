@@ -0,0 +1,251 @@
+/*
+ * Copyright 2007 Cordys R&D B.V. 
+ *
+ *   This file is part of the Cordys Generic LDAP Connector. 
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.cordys.coe.ac.genericldap.connection;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * This class holds the statistics of acquiring connections from the pool. For every acquire the
+ * time the thread had to wait for a connection is recorded in a histogram. Next to that it keeps
+ * track of the number of threads that are currently waiting for a connection.
+ *
+ * <p>This class will be accessed by multiple threads.</p>
+ *
+ * @author  pgussow
+ */
+public class PoolStatistics
+{
+    /**
+     * Holds the upper bounds (exclusive, in milliseconds) of the buckets of the wait time
+     * histogram. The last bucket holds all waits that took longer.
+     */
+    private static final long[] BUCKET_BOUNDS = new long[] { 1, 5, 10, 50, 100, 500, 1000, 5000 };
+    /**
+     * Holds the number of acquires that failed because of a timeout.
+     */
+    private AtomicLong m_timeouts = new AtomicLong();
+    /**
+     * Holds the total number of successful acquires.
+     */
+    private AtomicLong m_totalAcquires = new AtomicLong();
+    /**
+     * Holds the sum of all wait times in milliseconds.
+     */
+    private AtomicLong m_totalWaitTime = new AtomicLong();
+    /**
+     * Holds the longest wait time in milliseconds.
+     */
+    private AtomicLong m_maxWaitTime = new AtomicLong();
+    /**
+     * Holds the number of acquires per bucket.
+     */
+    private AtomicLongArray m_buckets = new AtomicLongArray(BUCKET_BOUNDS.length + 1);
+    /**
+     * Holds the highest number of threads that waited at the same time.
+     */
+    private AtomicInteger m_peakWaiters = new AtomicInteger();
+    /**
+     * Holds the number of threads that are currently waiting for a connection.
+     */
+    private AtomicInteger m_waiters = new AtomicInteger();
+
+    /**
+     * This method gets the upper bounds of the buckets of the wait time histogram in
+     * milliseconds. The histogram has one more bucket than there are bounds; the last bucket holds
+     * all waits that took longer than the last bound.
+     *
+     * @return  The upper bounds of the buckets.
+     */
+    public static long[] getBucketBounds()
+    {
+        return BUCKET_BOUNDS.clone();
+    }
+
+    /**
+     * This method gets the number of acquires per bucket of the wait time histogram.
+     *
+     * @return  The number of acquires per bucket.
+     *
+     * @see     #getBucketBounds()
+     */
+    public long[] getHistogram()
+    {
+        long[] returnValue = new long[m_buckets.length()];
+
+        for (int iCount = 0; iCount < returnValue.length; iCount++)
+        {
+            returnValue[iCount] = m_buckets.get(iCount);
+        }
+
+        return returnValue;
+    }
+
+    /**
+     * This method gets the longest time a thread had to wait for a connection.
+     *
+     * @return  The longest wait time in milliseconds.
+     */
+    public long getMaxWaitTime()
+    {
+        return m_maxWaitTime.get();
+    }
+
+    /**
+     * This method gets the highest number of threads that waited for a connection at the same
+     * time.
+     *
+     * @return  The highest number of waiting threads.
+     */
+    public int getPeakWaiters()
+    {
+        return m_peakWaiters.get();
+    }
+
+    /**
+     * This method gets the number of acquires that failed because of a timeout.
+     *
+     * @return  The number of timed out acquires.
+     */
+    public long getTimeouts()
+    {
+        return m_timeouts.get();
+    }
+
+    /**
+     * This method gets the total number of successful acquires.
+     *
+     * @return  The total number of successful acquires.
+     */
+    public long getTotalAcquires()
+    {
+        return m_totalAcquires.get();
+    }
+
+    /**
+     * This method gets the average time a thread had to wait for a connection.
+     *
+     * @return  The average wait time in milliseconds.
+     */
+    public double getAverageWaitTime()
+    {
+        long acquires = m_totalAcquires.get();
+
+        return (acquires == 0) ? 0 : ((double) m_totalWaitTime.get() / acquires);
+    }
+
+    /**
+     * This method gets the number of threads that are currently waiting for a connection.
+     *
+     * @return  The number of waiting threads.
+     */
+    public int getWaiters()
+    {
+        return m_waiters.get();
+    }
+
+    /**
+     * @see  java.lang.Object#toString()
+     */
+    @Override public String toString()
+    {
+        StringBuilder sb = new StringBuilder(256);
+
+        sb.append("Acquires: ").append(getTotalAcquires());
+        sb.append(", timeouts: ").append(getTimeouts());
+        sb.append(", waiting: ").append(getWaiters());
+        sb.append(", peak waiting: ").append(getPeakWaiters());
+        sb.append(", average wait: ").append(Math.round(getAverageWaitTime())).append("ms");
+        sb.append(", max wait: ").append(getMaxWaitTime()).append("ms");
+        sb.append(", histogram:");
+
+        long[] histogram = getHistogram();
+
+        for (int iCount = 0; iCount < histogram.length; iCount++)
+        {
+            if (iCount < BUCKET_BOUNDS.length)
+            {
+                sb.append(" <").append(BUCKET_BOUNDS[iCount]);
+            }
+            else
+            {
+                sb.append(" >=").append(BUCKET_BOUNDS[BUCKET_BOUNDS.length - 1]);
+            }
+            sb.append("ms=").append(histogram[iCount]);
+        }
+
+        return sb.toString();
+    }
+
+    /**
+     * This method records a successful acquire.
+     *
+     * @param  waitTime  The time in milliseconds the thread had to wait for the connection.
+     */
+    void recordAcquire(long waitTime)
+    {
+        m_totalAcquires.incrementAndGet();
+        m_totalWaitTime.addAndGet(waitTime);
+
+        long max = m_maxWaitTime.get();
+
+        while ((waitTime > max) && !m_maxWaitTime.compareAndSet(max, waitTime))
+        {
+            max = m_maxWaitTime.get();
+        }
+
+        int bucket = 0;
+
+        while ((bucket < BUCKET_BOUNDS.length) && (waitTime >= BUCKET_BOUNDS[bucket]))
+        {
+            bucket++;
+        }
+        m_buckets.incrementAndGet(bucket);
+    }
+
+    /**
+     * This method records an acquire that failed because of a timeout.
+     */
+    void recordTimeout()
+    {
+        m_timeouts.incrementAndGet();
+    }
+
+    /**
+     * This method records that a thread stopped waiting for a connection.
+     */
+    void waitFinished()
+    {
+        m_waiters.decrementAndGet();
+    }
+
+    /**
+     * This method records that a thread started waiting for a connection.
+     */
+    void waitStarted()
+    {
+        int waiters = m_waiters.incrementAndGet();
+        int peak = m_peakWaiters.get();
+
+        while ((waiters > peak) && !m_peakWaiters.compareAndSet(peak, waiters))
+        {
+            peak = m_peakWaiters.get();
+        }
+    }
+}
@@ -0,0 +1,249 @@
+/*
+ * Copyright 2007 Cordys R&D B.V. 
+ *
+ *   This file is part of the Cordys Generic LDAP Connector. 
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.cordys.coe.ac.genericldap.connection;
+
+import com.cordys.coe.ac.genericldap.cache.DirectoryChangeEvent;
+import com.cordys.coe.ac.genericldap.cache.IDirectoryChangeListener;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This class makes identical requests that run at the same time share one round trip to the
+ * server. The first caller of a request becomes the leader and executes it. Callers that join
+ * while it runs wait for the result of the leader instead of taking a connection of their own.
+ *
+ * <p>The leader MUST always complete its flight, also when the request failed. A flight that is
+ * completed without a result makes the waiting callers execute the request themselves. An error
+ * that would repeat for every caller, such as an entry that does not exist, can be handed to the
+ * waiting callers with {@link Flight#fail(Exception)} instead. A change
+ * the connector makes to the directory ends the sharing of the running requests, so a request that
+ * starts after the change never gets a result that was read before it.</p>
+ *
+ * <p>This class will be accessed by multiple threads.</p>
+ *
+ * @param   <K>  The type of the keys identifying the requests.
+ * @param   <V>  The type of the results.
+ *
+ * @author  pgussow
+ */
+public class RequestCoalescer<K, V>
+    implements IDirectoryChangeListener
+{
+    /**
+     * Holds the requests that are running.
+     */
+    private ConcurrentMap<K, Call<V>> m_calls = new ConcurrentHashMap<K, Call<V>>();
+    /**
+     * Holds the number of requests that joined a running request.
+     */
+    private AtomicLong m_coalesced = new AtomicLong();
+
+    /**
+     * @see  com.cordys.coe.ac.genericldap.cache.IDirectoryChangeListener#directoryChanged(com.cordys.coe.ac.genericldap.cache.DirectoryChangeEvent)
+     */
+    @Override public void directoryChanged(DirectoryChangeEvent event)
+    {
+        // The running requests still complete, but new requests no longer join them.
+        m_calls.clear();
+    }
+
+    /**
+     * This method returns the number of requests that got their result from another request.
+     *
+     * @return  The number of coalesced requests.
+     */
+    public long getCoalescedCount()
+    {
+        return m_coalesced.get();
+    }
+
+    /**
+     * This method joins the running request with the given key. If there is none the caller
+     * becomes the leader of a new one.
+     *
+     * @param   key  The key identifying the request.
+     *
+     * @return  The flight of the request.
+     */
+    public Flight<K, V> join(K key)
+    {
+        Call<V> call = new Call<V>();
+        Call<V> running = m_calls.putIfAbsent(key, call);
+
+        if (running != null)
+        {
+            m_coalesced.incrementAndGet();
+
+            return new Flight<K, V>(this, key, running, false);
+        }
+
+        return new Flight<K, V>(this, key, call, true);
+    }
+
+    /**
+     * This class holds the state of one running request.
+     *
+     * @param  <V>  The type of the result.
+     */
+    private static class Call<V>
+    {
+        /**
+         * Released when the request completed.
+         */
+        private CountDownLatch m_done = new CountDownLatch(1);
+        /**
+         * Holds the error the request failed with. null if the error is not shared.
+         */
+        private volatile Exception m_error;
+        /**
+         * Holds the result of the request. null if the request failed.
+         */
+        private volatile V m_result;
+    }
+
+    /**
+     * This class is the view of a caller on a running request.
+     *
+     * @param  <K>  The type of the key identifying the request.
+     * @param  <V>  The type of the result.
+     */
+    public static class Flight<K, V>
+    {
+        /**
+         * Holds the state of the request.
+         */
+        private Call<V> m_call;
+        /**
+         * Holds the coalescer the request runs in.
+         */
+        private RequestCoalescer<K, V> m_coalescer;
+        /**
+         * Holds the key identifying the request.
+         */
+        private K m_key;
+        /**
+         * Holds whether this caller executes the request.
+         */
+        private boolean m_leader;
+
+        /**
+         * Creates a new Flight object.
+         *
+         * @param  coalescer  The coalescer the request runs in.
+         * @param  key        The key identifying the request.
+         * @param  call       The state of the request.
+         * @param  leader     Whether this caller executes the request.
+         */
+        Flight(RequestCoalescer<K, V> coalescer, K key, Call<V> call, boolean leader)
+        {
+            m_coalescer = coalescer;
+            m_key = key;
+            m_call = call;
+            m_leader = leader;
+        }
+
+        /**
+         * This method waits for the leader to complete the request.
+         *
+         * @return  The result of the request. null if the request failed or the thread was
+         *          interrupted. The caller should then execute the request itself.
+         */
+        public V await()
+        {
+            try
+            {
+                m_call.m_done.await();
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+
+                return null;
+            }
+
+            return m_call.m_result;
+        }
+
+        /**
+         * This method completes the request and hands the result to the waiting callers. Only
+         * the first call of the leader has effect.
+         *
+         * @param  result  The result of the request. null if the request failed.
+         */
+        public void complete(V result)
+        {
+            finish(result, null);
+        }
+
+        /**
+         * This method completes the request with an error that holds for the waiting callers as
+         * well, so they do not execute the request themselves. Only the first call of the leader
+         * has effect.
+         *
+         * @param  error  The error the request failed with.
+         */
+        public void fail(Exception error)
+        {
+            finish(null, error);
+        }
+
+        /**
+         * This method returns the error the leader shared. It is available after
+         * {@link #await()} returned.
+         *
+         * @return  The error the request failed with. null if the request succeeded or the
+         *          error was not shared.
+         */
+        public Exception getError()
+        {
+            return m_call.m_error;
+        }
+
+        /**
+         * This method returns whether this caller executes the request.
+         *
+         * @return  true if this caller is the leader. false if it should wait for the result.
+         */
+        public boolean isLeader()
+        {
+            return m_leader;
+        }
+
+        /**
+         * This method completes the request and releases the waiting callers.
+         *
+         * @param  result  The result of the request. null if the request failed.
+         * @param  error   The error that holds for the waiting callers. null if none.
+         */
+        private void finish(V result, Exception error)
+        {
+            if (!m_leader || (m_call.m_done.getCount() == 0))
+            {
+                return;
+            }
+
+            m_coalescer.m_calls.remove(m_key, m_call);
+            m_call.m_result = result;
+            m_call.m_error = error;
+            m_call.m_done.countDown();
+        }
+    }
+}
@@ -0,0 +1,217 @@
+/*
+ * Copyright 2007 Cordys R&D B.V. 
+ *
+ *   This file is part of the Cordys Generic LDAP Connector. 
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.cordys.coe.ac.genericldap.connection;
+
+import com.cordys.coe.ac.genericldap.exception.GenericLDAPConnectorException;
+import com.cordys.coe.ac.genericldap.localization.GenLDAPExceptionMessages;
+import com.cordys.coe.ac.genericldap.localization.GeneralMessages;
+
+import com.eibus.util.logger.CordysLogger;
+
+import com.novell.ldap.LDAPAttribute;
+import com.novell.ldap.LDAPConnection;
+import com.novell.ldap.LDAPControl;
+import com.novell.ldap.LDAPEntry;
+import com.novell.ldap.LDAPException;
+import com.novell.ldap.LDAPSearchResults;
+
+/**
+ * This class wraps the results of a search together with the connection the search is running
+ * on. JLDAP streams the search results lazily, so the connection is owned by the lease until all
+ * results have been read or the lease is closed. When all results have been read the connection
+ * is returned to the pool automatically. Closing the lease before that abandons the search.
+ *
+ * <p>The lease must always be closed in a finally block. Closing it more than once is safe.</p>
+ *
+ * <p>A lease is meant to be used by a single thread.</p>
+ *
+ * @author  pgussow
+ */
+public class SearchLease
+    implements IRangeReader
+{
+    /**
+     * Holds the logger to use.
+     */
+    private static final CordysLogger LOG = CordysLogger.getCordysLogger(SearchLease.class);
+    /**
+     * Holds the connection the search is running on.
+     */
+    private LDAPConnection m_connection;
+    /**
+     * Holds the connection manager the connection must be returned to.
+     */
+    private IConnectionManager m_connectionManager;
+    /**
+     * Holds whether or not all results have been read.
+     */
+    private boolean m_drained = false;
+    /**
+     * Holds whether or not the connection has been returned to the pool.
+     */
+    private boolean m_released = false;
+    /**
+     * Holds the actual search results.
+     */
+    private LDAPSearchResults m_results;
+
+    /**
+     * Creates a new SearchLease object.
+     *
+     * @param  connectionManager  The connection manager the connection must be returned to.
+     * @param  connection         The connection the search is running on.
+     * @param  results            The actual search results.
+     */
+    SearchLease(IConnectionManager connectionManager, LDAPConnection connection,
+                LDAPSearchResults results)
+    {
+        m_connectionManager = connectionManager;
+        m_connection = connection;
+        m_results = results;
+    }
+
+    /**
+     * This method ends the lease. If not all results have been read the search is abandoned. The
+     * connection is returned to the pool.
+     */
+    public void close()
+    {
+        if (m_released)
+        {
+            return;
+        }
+
+        if (!m_drained)
+        {
+            if (LOG.isDebugEnabled())
+            {
+                LOG.debug("Abandoning search because the lease was closed before all results were read");
+            }
+
+            try
+            {
+                m_connection.abandon(m_results);
+            }
+            catch (LDAPException e)
+            {
+                LOG.warn(e, GeneralMessages.ERROR_ABANDONING_THE_SEARCH);
+            }
+        }
+
+        m_released = true;
+        release(m_connection, m_drained);
+    }
+
+    /**
+     * This method hands the connection back when the lease ends.
+     *
+     * @param  connection  The connection the search was running on.
+     * @param  drained     Whether or not all results have been read.
+     */
+    protected void release(LDAPConnection connection, boolean drained)
+    {
+        m_connectionManager.releaseConnection(connection);
+    }
+
+    /**
+     * This method returns the number of results that have been received from the server, but
+     * have not been read yet.
+     *
+     * @return  The number of results that are ready to be read.
+     */
+    public int getCount()
+    {
+        return m_released ? 0 : m_results.getCount();
+    }
+
+    /**
+     * This method reads the next range of the values of an attribute on the connection of the
+     * search, so the values can be added while the search is still running. Once the connection
+     * has been returned to the pool the connection manager reads it.
+     *
+     * @see  com.cordys.coe.ac.genericldap.connection.IRangeReader#readAttributeRange(java.lang.String,
+     *       java.lang.String)
+     */
+    @Override public LDAPAttribute readAttributeRange(String dn, String attributeName)
+                                               throws GenericLDAPConnectorException
+    {
+        if (m_released)
+        {
+            return m_connectionManager.readAttributeRange(dn, attributeName);
+        }
+
+        try
+        {
+            return AttributeRange.read(m_connection, dn, attributeName);
+        }
+        catch (LDAPException e)
+        {
+            throw new GenericLDAPConnectorException(e,
+                                                    GenLDAPExceptionMessages.GLE_ERROR_READING_LDAP_ENTRY_WITH_DN_0,
+                                                    dn);
+        }
+    }
+
+    /**
+     * This method returns the controls the server returned with the search results. They are
+     * available after all results have been read.
+     *
+     * @return  The response controls. null if the server did not return any.
+     */
+    public LDAPControl[] getResponseControls()
+    {
+        return m_results.getResponseControls();
+    }
+
+    /**
+     * This method returns whether or not there are more results. When all results have been read
+     * the connection is returned to the pool.
+     *
+     * @return  true if there are more results. Otherwise false.
+     */
+    public boolean hasMore()
+    {
+        if (m_released)
+        {
+            return false;
+        }
+
+        boolean returnValue = m_results.hasMore();
+
+        if (!returnValue)
+        {
+            m_drained = true;
+            close();
+        }
+
+        return returnValue;
+    }
+
+    /**
+     * This method returns the next search result.
+     *
+     * @return  The next entry.
+     *
+     * @throws  LDAPException  In case the server returned an error or a referral for this result.
+     */
+    public LDAPEntry next()
+                   throws LDAPException
+    {
+        return m_results.next();
+    }
+}
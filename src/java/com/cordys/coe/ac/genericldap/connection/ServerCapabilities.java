@@ -0,0 +1,156 @@
+/*
+ * Copyright 2007 Cordys R&D B.V. 
+ *
+ *   This file is part of the Cordys Generic LDAP Connector. 
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.cordys.coe.ac.genericldap.connection;
+
+import com.novell.ldap.LDAPAttribute;
+import com.novell.ldap.LDAPConnection;
+import com.novell.ldap.LDAPEntry;
+import com.novell.ldap.LDAPException;
+
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * This class holds the capabilities the LDAP server advertises in its root DSE. They are read
+ * once when the connection manager starts. All servers of a connector are assumed to run the same
+ * directory software.
+ *
+ * @author  pgussow
+ */
+public class ServerCapabilities
+{
+    /**
+     * Holds the capabilities of a server that does not advertise anything.
+     */
+    public static final ServerCapabilities EMPTY = new ServerCapabilities(new HashSet<String>(),
+                                                                          new HashSet<String>());
+    /**
+     * Holds the OID of the capability of an Active Directory server.
+     */
+    public static final String ACTIVE_DIRECTORY_OID = "1.2.840.113556.1.4.800";
+    /**
+     * Holds the name of the root DSE attribute that holds the supported capabilities.
+     */
+    private static final String ATTR_SUPPORTED_CAPABILITIES = "supportedCapabilities";
+    /**
+     * Holds the name of the root DSE attribute that holds the supported controls.
+     */
+    private static final String ATTR_SUPPORTED_CONTROL = "supportedControl";
+    /**
+     * Holds the OIDs of the supported capabilities.
+     */
+    private final Set<String> m_capabilities;
+    /**
+     * Holds the OIDs of the supported controls.
+     */
+    private final Set<String> m_controls;
+
+    /**
+     * Creates a new ServerCapabilities object.
+     *
+     * @param  controls      The OIDs of the supported controls.
+     * @param  capabilities  The OIDs of the supported capabilities.
+     */
+    private ServerCapabilities(Set<String> controls, Set<String> capabilities)
+    {
+        m_controls = Collections.unmodifiableSet(controls);
+        m_capabilities = Collections.unmodifiableSet(capabilities);
+    }
+
+    /**
+     * This method reads the capabilities from the root DSE of the server.
+     *
+     * @param   connection  The connection to use.
+     *
+     * @return  The capabilities of the server.
+     *
+     * @throws  LDAPException  In case the root DSE could not be read.
+     */
+    public static ServerCapabilities read(LDAPConnection connection)
+                                   throws LDAPException
+    {
+        LDAPEntry rootDSE = connection.read("",
+                                            new String[]
+                                            {
+                                                ATTR_SUPPORTED_CONTROL, ATTR_SUPPORTED_CAPABILITIES
+                                            });
+
+        return new ServerCapabilities(getValues(rootDSE, ATTR_SUPPORTED_CONTROL),
+                                      getValues(rootDSE, ATTR_SUPPORTED_CAPABILITIES));
+    }
+
+    /**
+     * This method returns whether or not the server has the given capability.
+     *
+     * @param   oid  The OID of the capability.
+     *
+     * @return  true if the server advertises the capability. Otherwise false.
+     */
+    public boolean isCapabilitySupported(String oid)
+    {
+        return m_capabilities.contains(oid);
+    }
+
+    /**
+     * This method returns whether or not the server supports the given control.
+     *
+     * @param   oid  The OID of the control.
+     *
+     * @return  true if the server advertises the control. Otherwise false.
+     */
+    public boolean isControlSupported(String oid)
+    {
+        return m_controls.contains(oid);
+    }
+
+    /**
+     * @see  java.lang.Object#toString()
+     */
+    @Override public String toString()
+    {
+        return "Supported controls: " + m_controls + ", supported capabilities: " + m_capabilities;
+    }
+
+    /**
+     * This method returns the values of an attribute of the root DSE.
+     *
+     * @param   rootDSE    The root DSE. null if it could not be read.
+     * @param   attribute  The name of the attribute.
+     *
+     * @return  The trimmed values of the attribute.
+     */
+    private static Set<String> getValues(LDAPEntry rootDSE, String attribute)
+    {
+        Set<String> returnValue = new HashSet<String>();
+        LDAPAttribute values = (rootDSE == null) ? null : rootDSE.getAttribute(attribute);
+
+        if (values != null)
+        {
+            Enumeration<?> strings = values.getStringValues();
+
+            while (strings.hasMoreElements())
+            {
+                returnValue.add(((String) strings.nextElement()).trim());
+            }
+        }
+
+        return returnValue;
+    }
+}
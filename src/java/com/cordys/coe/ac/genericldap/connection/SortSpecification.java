@@ -0,0 +1,341 @@
+/*
+ * Copyright 2007 Cordys R&D B.V. 
+ *
+ *   This file is part of the Cordys Generic LDAP Connector. 
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.cordys.coe.ac.genericldap.connection;
+
+import com.novell.ldap.LDAPAttribute;
+import com.novell.ldap.LDAPEntry;
+import com.novell.ldap.LDAPException;
+import com.novell.ldap.controls.LDAPSortControl;
+import com.novell.ldap.controls.LDAPSortKey;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.PriorityQueue;
+
+/**
+ * This class holds the order in which search results should be returned. The specification is a
+ * comma separated list of attributes. An attribute prefixed with a '-' is sorted in descending
+ * order. Optionally a matching rule can be given after a ':' (e.g. <code>sn,-whenCreated</code>
+ * or <code>cn:2.5.13.3</code>).
+ *
+ * <p>If the server supports the server side sort control (RFC 2891) it is used. Otherwise the
+ * entries can be sorted by the connector. To keep the memory bounded the connector only keeps the
+ * first entries up to the maximum number of results.</p>
+ *
+ * @author  pgussow
+ */
+public class SortSpecification
+{
+    /**
+     * Holds the OID of the server side sort control.
+     */
+    public static final String SORT_CONTROL_OID = "1.2.840.113556.1.4.473";
+    /**
+     * Holds the values of the old sort parameter that do not specify any attributes.
+     */
+    private static final List<String> s_legacyValues = Arrays.asList("true", "false", "none",
+                                                                     "ascending", "descending");
+    /**
+     * Holds the sort keys.
+     */
+    private LDAPSortKey[] m_keys;
+
+    /**
+     * Creates a new SortSpecification object.
+     *
+     * @param  keys  The sort keys.
+     */
+    private SortSpecification(LDAPSortKey[] keys)
+    {
+        m_keys = keys;
+    }
+
+    /**
+     * This method parses the sort specification. For compatibility with the old sort parameter
+     * the values 'true', 'false', 'none', 'ascending' and 'descending' mean that no sorting is
+     * done.
+     *
+     * @param   specification  The sort specification.
+     *
+     * @return  The parsed specification. null if no sorting is needed.
+     */
+    public static SortSpecification parse(String specification)
+    {
+        if ((specification == null) || (specification.trim().length() == 0) ||
+                s_legacyValues.contains(specification.trim().toLowerCase(Locale.ENGLISH)))
+        {
+            return null;
+        }
+
+        List<LDAPSortKey> keys = new ArrayList<LDAPSortKey>();
+
+        for (String key : specification.split(","))
+        {
+            key = key.trim();
+
+            if (key.length() > 0)
+            {
+                boolean reverse = key.startsWith("-");
+
+                if (reverse)
+                {
+                    key = key.substring(1).trim();
+                }
+
+                String matchRule = null;
+                int index = key.indexOf(':');
+
+                if (index > 0)
+                {
+                    matchRule = key.substring(index + 1).trim();
+                    key = key.substring(0, index).trim();
+                }
+
+                keys.add(new LDAPSortKey(key, reverse, matchRule));
+            }
+        }
+
+        return keys.isEmpty() ? null : new SortSpecification(keys.toArray(new LDAPSortKey[keys.size()]));
+    }
+
+    /**
+     * This method returns whether the exception indicates that the server refused to sort the
+     * results.
+     *
+     * @param   e  The exception.
+     *
+     * @return  true if the server refused the sort control. Otherwise false.
+     */
+    public static boolean isRejected(LDAPException e)
+    {
+        return (e.getResultCode() == LDAPException.UNAVAILABLE_CRITICAL_EXTENSION) ||
+               (e.getResultCode() == LDAPException.INAPPROPRIATE_MATCHING);
+    }
+
+    /**
+     * This method returns the attributes that are needed for sorting in the connector.
+     *
+     * @param   attributeNames  The attributes the caller asked for. An empty list means all
+     *                          attributes.
+     *
+     * @return  The attributes including the sort attributes.
+     */
+    public String[] addSortAttributes(String[] attributeNames)
+    {
+        if ((attributeNames == null) || (attributeNames.length == 0))
+        {
+            return attributeNames;
+        }
+
+        List<String> returnValue = new ArrayList<String>();
+
+        Collections.addAll(returnValue, attributeNames);
+
+        for (LDAPSortKey key : m_keys)
+        {
+            if (!returnValue.contains(key.getKey()))
+            {
+                returnValue.add(key.getKey());
+            }
+        }
+
+        return returnValue.toArray(new String[returnValue.size()]);
+    }
+
+    /**
+     * This method creates the server side sort control.
+     *
+     * @param   critical  Whether or not the server must fail the search if it cannot sort.
+     *
+     * @return  The sort control.
+     */
+    public LDAPSortControl createControl(boolean critical)
+    {
+        return new LDAPSortControl(m_keys, critical);
+    }
+
+    /**
+     * This method reads all results and returns the first entries in the sort order. Only the
+     * entries that can end up in the result are kept in memory.
+     *
+     * @param   results     The search results. The lease is closed by this method.
+     * @param   maxResults  The maximum number of entries to return. 0 means all entries.
+     *
+     * @return  The sorted entries.
+     *
+     * @throws  LDAPException  In case of any exceptions while reading the results.
+     */
+    public List<LDAPEntry> selectFirst(SearchLease results, int maxResults)
+                                throws LDAPException
+    {
+        Comparator<LDAPEntry> comparator = new EntryComparator();
+        List<LDAPEntry> returnValue;
+
+        try
+        {
+            if (maxResults <= 0)
+            {
+                returnValue = new ArrayList<LDAPEntry>();
+
+                while (results.hasMore())
+                {
+                    returnValue.add(results.next());
+                }
+            }
+            else
+            {
+                // The head of the queue is the entry that is the first to drop out.
+                PriorityQueue<LDAPEntry> queue = new PriorityQueue<LDAPEntry>(maxResults + 1,
+                                                                              Collections
+                                                                              .reverseOrder(comparator));
+
+                while (results.hasMore())
+                {
+                    queue.add(results.next());
+
+                    if (queue.size() > maxResults)
+                    {
+                        queue.poll();
+                    }
+                }
+
+                returnValue = new ArrayList<LDAPEntry>(queue);
+            }
+        }
+        finally
+        {
+            results.close();
+        }
+
+        Collections.sort(returnValue, comparator);
+
+        return returnValue;
+    }
+
+    /**
+     * @see  java.lang.Object#toString()
+     */
+    @Override public String toString()
+    {
+        StringBuilder sbReturn = new StringBuilder();
+
+        for (LDAPSortKey key : m_keys)
+        {
+            if (sbReturn.length() > 0)
+            {
+                sbReturn.append(",");
+            }
+
+            if (key.getReverse())
+            {
+                sbReturn.append("-");
+            }
+            sbReturn.append(key.getKey());
+
+            if (key.getMatchRule() != null)
+            {
+                sbReturn.append(":").append(key.getMatchRule());
+            }
+        }
+
+        return sbReturn.toString();
+    }
+
+    /**
+     * This class compares the entries on the sort keys. The values are compared case insensitive
+     * on their string value. Entries without a value for a key are sorted last.
+     */
+    private class EntryComparator
+        implements Comparator<LDAPEntry>
+    {
+        /**
+         * @see  java.util.Comparator#compare(java.lang.Object, java.lang.Object)
+         */
+        @Override public int compare(LDAPEntry first, LDAPEntry second)
+        {
+            for (LDAPSortKey key : m_keys)
+            {
+                String firstValue = getValue(first, key.getKey());
+                String secondValue = getValue(second, key.getKey());
+                int returnValue;
+
+                if (firstValue == null)
+                {
+                    returnValue = (secondValue == null) ? 0 : 1;
+                }
+                else if (secondValue == null)
+                {
+                    returnValue = -1;
+                }
+                else
+                {
+                    returnValue = firstValue.compareTo(secondValue);
+
+                    if (key.getReverse())
+                    {
+                        returnValue = -returnValue;
+                    }
+                }
+
+                if (returnValue != 0)
+                {
+                    return returnValue;
+                }
+            }
+
+            return 0;
+        }
+
+        /**
+         * This method returns the value to sort on. For multi-valued attributes the lowest value
+         * is used.
+         *
+         * @param   entry          The entry.
+         * @param   attributeName  The name of the attribute.
+         *
+         * @return  The value in lower case. null if the entry does not have the attribute.
+         */
+        private String getValue(LDAPEntry entry, String attributeName)
+        {
+            LDAPAttribute attribute = entry.getAttribute(attributeName);
+
+            if (attribute == null)
+            {
+                return null;
+            }
+
+            String returnValue = null;
+
+            for (String value : attribute.getStringValueArray())
+            {
+                String normalized = value.toLowerCase(Locale.ENGLISH);
+
+                if ((returnValue == null) || (normalized.compareTo(returnValue) < 0))
+                {
+                    returnValue = normalized;
+                }
+            }
+
+            return returnValue;
+        }
+    }
+}
@@ -313,5 +313,77 @@ public class GenLDAPExceptionMessages
 	 * No attributes to include in search.
 	 */
 	public static final Message NO_ATTRIBUTES_TO_INCLUDE_IN_SEARCH = MESSAGE_SET.getMessage("NO_ATTRIBUTES_TO_INCLUDE_IN_SEARCH");
+	/**
+	 * Holds the definition of the message with ID GLE_TIMED_OUT_AFTER_0_MS_WAITING_FOR_A_FREE_LDAP_CONNECTION.
+	 * Message text:
+	 * Timed out after {0} ms waiting for a free LDAP connection
+	 */
+	public static final Message GLE_TIMED_OUT_AFTER_0_MS_WAITING_FOR_A_FREE_LDAP_CONNECTION = MESSAGE_SET.getMessage("GLE_TIMED_OUT_AFTER_0_MS_WAITING_FOR_A_FREE_LDAP_CONNECTION");
+	/**
+	 * Holds the definition of the message with ID GLE_INVALID_SERVER_ENDPOINT_0.
+	 * Message text:
+	 * Invalid LDAP server endpoint: {0}. The expected format is host[:port]
+	 */
+	public static final Message GLE_INVALID_SERVER_ENDPOINT_0 = MESSAGE_SET.getMessage("GLE_INVALID_SERVER_ENDPOINT_0");
+	/**
+	 * Holds the definition of the message with ID GLE_THE_PAGING_COOKIE_0_IS_UNKNOWN_OR_HAS_EXPIRED.
+	 * Message text:
+	 * The paging cookie {0} is unknown or has expired.
+	 */
+	public static final Message GLE_THE_PAGING_COOKIE_0_IS_UNKNOWN_OR_HAS_EXPIRED = MESSAGE_SET.getMessage("GLE_THE_PAGING_COOKIE_0_IS_UNKNOWN_OR_HAS_EXPIRED");
+	/**
+	 * Holds the definition of the message with ID GLE_THE_PAGING_COOKIE_0_BELONGS_TO_A_DIFFERENT_SEARCH.
+	 * Message text:
+	 * The paging cookie {0} belongs to a different search.
+	 */
+	public static final Message GLE_THE_PAGING_COOKIE_0_BELONGS_TO_A_DIFFERENT_SEARCH = MESSAGE_SET.getMessage("GLE_THE_PAGING_COOKIE_0_BELONGS_TO_A_DIFFERENT_SEARCH");
+	/**
+	 * Holds the definition of the message with ID GLE_A_VIRTUAL_LIST_VIEW_REQUIRES_A_SORT_ORDER.
+	 * Message text:
+	 * A virtual list view requires a sort order.
+	 */
+	public static final Message GLE_A_VIRTUAL_LIST_VIEW_REQUIRES_A_SORT_ORDER = MESSAGE_SET.getMessage("GLE_A_VIRTUAL_LIST_VIEW_REQUIRES_A_SORT_ORDER");
+	/**
+	 * Holds the definition of the message with ID GLE_THE_LDAP_SERVER_DOES_NOT_SUPPORT_VIRTUAL_LIST_VIEWS.
+	 * Message text:
+	 * The LDAP server does not support virtual list views.
+	 */
+	public static final Message GLE_THE_LDAP_SERVER_DOES_NOT_SUPPORT_VIRTUAL_LIST_VIEWS = MESSAGE_SET.getMessage("GLE_THE_LDAP_SERVER_DOES_NOT_SUPPORT_VIRTUAL_LIST_VIEWS");
+	/**
+	 * Holds the definition of the message with ID GLE_PAGING_CANNOT_BE_COMBINED_WITH_A_VIRTUAL_LIST_VIEW.
+	 * Message text:
+	 * Paging cannot be combined with a virtual list view.
+	 */
+	public static final Message GLE_PAGING_CANNOT_BE_COMBINED_WITH_A_VIRTUAL_LIST_VIEW = MESSAGE_SET.getMessage("GLE_PAGING_CANNOT_BE_COMBINED_WITH_A_VIRTUAL_LIST_VIEW");
+	/**
+	 * Holds the definition of the message with ID GLE_THE_CACHE_DEFINITION_0_IS_INVALID.
+	 * Message text:
+	 * The cache definition {0} is invalid. The attributes ttl and maxentries must be positive numbers.
+	 */
+	public static final Message GLE_THE_CACHE_DEFINITION_0_IS_INVALID = MESSAGE_SET.getMessage("GLE_THE_CACHE_DEFINITION_0_IS_INVALID");
+	/**
+	 * Holds the definition of the message with ID GLE_THE_FILTER_TEMPLATE_0_IS_INVALID_1.
+	 * Message text:
+	 * The filter template {0} is invalid: {1}
+	 */
+	public static final Message GLE_THE_FILTER_TEMPLATE_0_IS_INVALID_1 = MESSAGE_SET.getMessage("GLE_THE_FILTER_TEMPLATE_0_IS_INVALID_1");
+	/**
+	 * Holds the definition of the message with ID GLE_THE_VALUE_0_FOR_PLACEHOLDER_1_IS_NOT_A_NUMBER.
+	 * Message text:
+	 * The value {0} for placeholder {1} of the filter template is not a number.
+	 */
+	public static final Message GLE_THE_VALUE_0_FOR_PLACEHOLDER_1_IS_NOT_A_NUMBER = MESSAGE_SET.getMessage("GLE_THE_VALUE_0_FOR_PLACEHOLDER_1_IS_NOT_A_NUMBER");
+	/**
+	 * Holds the definition of the message with ID GLE_NO_PARAMETER_IS_DEFINED_FOR_PLACEHOLDER_0_OF_FILTER_TEMPLATE_1.
+	 * Message text:
+	 * No parameter is defined for placeholder {0} of the filter template {1}.
+	 */
+	public static final Message GLE_NO_PARAMETER_IS_DEFINED_FOR_PLACEHOLDER_0_OF_FILTER_TEMPLATE_1 = MESSAGE_SET.getMessage("GLE_NO_PARAMETER_IS_DEFINED_FOR_PLACEHOLDER_0_OF_FILTER_TEMPLATE_1");
+	/**
+	 * Holds the definition of the message with ID GLE_THE_VALUE_0_FOR_PARAMETER_1_IS_NOT_A_NUMBER.
+	 * Message text:
+	 * The value {0} for parameter {1} is not a number.
+	 */
+	public static final Message GLE_THE_VALUE_0_FOR_PARAMETER_1_IS_NOT_A_NUMBER = MESSAGE_SET.getMessage("GLE_THE_VALUE_0_FOR_PARAMETER_1_IS_NOT_A_NUMBER");
 
 }
\ No newline at end of file
@@ -146,5 +146,95 @@ public class GeneralMessages
 	 * Rolling back failed for {0}
 	 */
 	public static final Message UPDATE_ROLLBACK_FAILED_FOR_DN = MESSAGE_SET.getMessage("UPDATE_ROLLBACK_FAILED_FOR_DN");
+	/**
+	 * Holds the definition of the message with ID POOL_STARVATION_DETECTED_FOR_0_STATISTICS_1.
+	 * Message text:
+	 * The LDAP connection pool for {0} is starving. Statistics: {1}
+	 */
+	public static final Message POOL_STARVATION_DETECTED_FOR_0_STATISTICS_1 = MESSAGE_SET.getMessage("POOL_STARVATION_DETECTED_FOR_0_STATISTICS_1");
+	/**
+	 * Holds the definition of the message with ID ERROR_ABANDONING_THE_SEARCH.
+	 * Message text:
+	 * Error abandoning the search
+	 */
+	public static final Message ERROR_ABANDONING_THE_SEARCH = MESSAGE_SET.getMessage("ERROR_ABANDONING_THE_SEARCH");
+	/**
+	 * Holds the definition of the message with ID ERROR_WARMING_UP_THE_CONNECTION_POOL_FOR_0.
+	 * Message text:
+	 * Error warming up the LDAP connection pool for {0}. The pool will be filled by the maintenance task.
+	 */
+	public static final Message ERROR_WARMING_UP_THE_CONNECTION_POOL_FOR_0 = MESSAGE_SET.getMessage("ERROR_WARMING_UP_THE_CONNECTION_POOL_FOR_0");
+	/**
+	 * Holds the definition of the message with ID SERVER_0_IS_NOT_AVAILABLE_TRYING_THE_NEXT_SERVER.
+	 * Message text:
+	 * LDAP server {0} is not available. Trying the next server.
+	 */
+	public static final Message SERVER_0_IS_NOT_AVAILABLE_TRYING_THE_NEXT_SERVER = MESSAGE_SET.getMessage("SERVER_0_IS_NOT_AVAILABLE_TRYING_THE_NEXT_SERVER");
+	/**
+	 * Holds the definition of the message with ID THE_LDAP_SCHEMA_HAS_CHANGED_RELOADING_THE_SCHEMA.
+	 * Message text:
+	 * The LDAP schema has changed. Reloading the schema.
+	 */
+	public static final Message THE_LDAP_SCHEMA_HAS_CHANGED_RELOADING_THE_SCHEMA = MESSAGE_SET.getMessage("THE_LDAP_SCHEMA_HAS_CHANGED_RELOADING_THE_SCHEMA");
+	/**
+	 * Holds the definition of the message with ID ERROR_REFRESHING_THE_LDAP_SCHEMA.
+	 * Message text:
+	 * Error refreshing the LDAP schema
+	 */
+	public static final Message ERROR_REFRESHING_THE_LDAP_SCHEMA = MESSAGE_SET.getMessage("ERROR_REFRESHING_THE_LDAP_SCHEMA");
+	/**
+	 * Holds the definition of the message with ID THE_LDAP_SCHEMA_WAS_LOADED_FROM_SNAPSHOT_0.
+	 * Message text:
+	 * The LDAP schema was loaded from snapshot {0}. The schema is revalidated in the background.
+	 */
+	public static final Message THE_LDAP_SCHEMA_WAS_LOADED_FROM_SNAPSHOT_0 = MESSAGE_SET.getMessage("THE_LDAP_SCHEMA_WAS_LOADED_FROM_SNAPSHOT_0");
+	/**
+	 * Holds the definition of the message with ID ERROR_READING_THE_SCHEMA_SNAPSHOT_0.
+	 * Message text:
+	 * Error reading the schema snapshot {0}
+	 */
+	public static final Message ERROR_READING_THE_SCHEMA_SNAPSHOT_0 = MESSAGE_SET.getMessage("ERROR_READING_THE_SCHEMA_SNAPSHOT_0");
+	/**
+	 * Holds the definition of the message with ID ERROR_WRITING_THE_SCHEMA_SNAPSHOT_0.
+	 * Message text:
+	 * Error writing the schema snapshot {0}
+	 */
+	public static final Message ERROR_WRITING_THE_SCHEMA_SNAPSHOT_0 = MESSAGE_SET.getMessage("ERROR_WRITING_THE_SCHEMA_SNAPSHOT_0");
+	/**
+	 * Holds the definition of the message with ID RELEASED_0_PAGED_SEARCHES_THAT_WERE_NOT_CONTINUED_IN_TIME.
+	 * Message text:
+	 * Released {0} paged searches for which the next page was not requested in time.
+	 */
+	public static final Message RELEASED_0_PAGED_SEARCHES_THAT_WERE_NOT_CONTINUED_IN_TIME = MESSAGE_SET.getMessage("RELEASED_0_PAGED_SEARCHES_THAT_WERE_NOT_CONTINUED_IN_TIME");
+	/**
+	 * Holds the definition of the message with ID ERROR_READING_THE_CAPABILITIES_OF_THE_LDAP_SERVER.
+	 * Message text:
+	 * Error reading the capabilities of the LDAP server. Optional controls will not be used.
+	 */
+	public static final Message ERROR_READING_THE_CAPABILITIES_OF_THE_LDAP_SERVER = MESSAGE_SET.getMessage("ERROR_READING_THE_CAPABILITIES_OF_THE_LDAP_SERVER");
+	/**
+	 * Holds the definition of the message with ID THE_SERVER_REFUSED_TO_SORT_ON_0_SORTING_IN_THE_CONNECTOR.
+	 * Message text:
+	 * The LDAP server refused to sort on {0}. The results are sorted by the connector.
+	 */
+	public static final Message THE_SERVER_REFUSED_TO_SORT_ON_0_SORTING_IN_THE_CONNECTOR = MESSAGE_SET.getMessage("THE_SERVER_REFUSED_TO_SORT_ON_0_SORTING_IN_THE_CONNECTOR");
+	/**
+	 * Holds the definition of the message with ID ERROR_NOTIFYING_A_LISTENER_OF_THE_CHANGE_TO_0.
+	 * Message text:
+	 * Error notifying a listener of the change to {0}.
+	 */
+	public static final Message ERROR_NOTIFYING_A_LISTENER_OF_THE_CHANGE_TO_0 = MESSAGE_SET.getMessage("ERROR_NOTIFYING_A_LISTENER_OF_THE_CHANGE_TO_0");
+	/**
+	 * Holds the definition of the message with ID THE_CHANGE_LISTENER_FOR_0_LOST_ITS_CONNECTION_RECONNECTING.
+	 * Message text:
+	 * The change listener for {0} lost its connection. Reconnecting and invalidating the caches of the subtree.
+	 */
+	public static final Message THE_CHANGE_LISTENER_FOR_0_LOST_ITS_CONNECTION_RECONNECTING = MESSAGE_SET.getMessage("THE_CHANGE_LISTENER_FOR_0_LOST_ITS_CONNECTION_RECONNECTING");
+	/**
+	 * Holds the definition of the message with ID THE_SERVER_DOES_NOT_SUPPORT_CHANGE_NOTIFICATIONS_THE_CHANGES_OF_0_ARE_NOT_LISTENED_TO.
+	 * Message text:
+	 * The server supports neither persistent searches nor change notifications. The changes of {0} are not listened to.
+	 */
+	public static final Message THE_SERVER_DOES_NOT_SUPPORT_CHANGE_NOTIFICATIONS_THE_CHANGES_OF_0_ARE_NOT_LISTENED_TO = MESSAGE_SET.getMessage("THE_SERVER_DOES_NOT_SUPPORT_CHANGE_NOTIFICATIONS_THE_CHANGES_OF_0_ARE_NOT_LISTENED_TO");
 
 }
\ No newline at end of file
@@ -0,0 +1,81 @@
+/*
+ * Copyright 2007 Cordys R&D B.V. 
+ *
+ *   This file is part of the Cordys Generic LDAP Connector. 
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.cordys.coe.ac.genericldap.schema;
+
+/**
+ * This enum holds the kinds of attribute syntaxes the connector distinguishes. The syntax of an
+ * attribute determines how its values are returned.
+ *
+ * @author  pgussow
+ */
+public enum EAttributeSyntax
+{
+    /**
+     * Binary data. The values are returned Base64 encoded.
+     */
+    BINARY(true),
+    /**
+     * Boolean (TRUE/FALSE).
+     */
+    BOOLEAN(false),
+    /**
+     * A distinguished name.
+     */
+    DN(false),
+    /**
+     * A generalized time.
+     */
+    GENERALIZED_TIME(false),
+    /**
+     * An integer (including the AD large integer).
+     */
+    INTEGER(false),
+    /**
+     * Any other string based syntax.
+     */
+    STRING(false),
+    /**
+     * The syntax of the attribute is not known. It is treated as a string.
+     */
+    UNKNOWN(false);
+
+    /**
+     * Holds whether or not the values of this syntax are binary.
+     */
+    private final boolean m_binary;
+
+    /**
+     * Creates a new EAttributeSyntax object.
+     *
+     * @param  binary  Whether or not the values of this syntax are binary.
+     */
+    private EAttributeSyntax(boolean binary)
+    {
+        m_binary = binary;
+    }
+
+    /**
+     * This method returns whether or not the values of this syntax are binary.
+     *
+     * @return  true if the values are binary. Otherwise false.
+     */
+    public boolean isBinary()
+    {
+        return m_binary;
+    }
+}
@@ -0,0 +1,271 @@
+/*
+ * Copyright 2007 Cordys R&D B.V. 
+ *
+ *   This file is part of the Cordys Generic LDAP Connector. 
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.cordys.coe.ac.genericldap.schema;
+
+import com.eibus.util.logger.CordysLogger;
+
+import com.novell.ldap.LDAPAttributeSchema;
+import com.novell.ldap.LDAPSchema;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * This class holds an immutable index of the attribute types in the LDAP schema. For every
+ * attribute name and OID it holds the kind of syntax of the attribute, so the syntax does not
+ * have to be determined again for every returned value. Attributes without a syntax inherit the
+ * syntax of their superior. Lookups are case insensitive.
+ *
+ * <p>The index is built once when the schema is read. Since it is immutable it can be used by
+ * multiple threads without locking.</p>
+ *
+ * @author  pgussow
+ */
+public class SchemaIndex
+{
+    /**
+     * Holds an index without any attributes. All attributes are reported as unknown.
+     */
+    public static final SchemaIndex EMPTY = new SchemaIndex(new HashMap<String, EAttributeSyntax>());
+    /**
+     * Holds the logger to use.
+     */
+    private static final CordysLogger LOG = CordysLogger.getCordysLogger(SchemaIndex.class);
+    /**
+     * Holds the prefix of the standard LDAP syntaxes (RFC 4517).
+     */
+    private static final String STANDARD_SYNTAX_PREFIX = "1.3.6.1.4.1.1466.115.121.1.";
+    /**
+     * Holds the kinds of the known syntaxes.
+     */
+    private static final Map<String, EAttributeSyntax> s_syntaxes = new HashMap<String, EAttributeSyntax>();
+
+    static
+    {
+        // See http://www.alvestrand.no/objectid/1.3.6.1.4.1.1466.115.121.1.html for more
+        // information.
+        s_syntaxes.put(STANDARD_SYNTAX_PREFIX + "4", EAttributeSyntax.BINARY); // Audio
+        s_syntaxes.put(STANDARD_SYNTAX_PREFIX + "5", EAttributeSyntax.BINARY); // Binary
+        s_syntaxes.put(STANDARD_SYNTAX_PREFIX + "7", EAttributeSyntax.BOOLEAN);
+        s_syntaxes.put(STANDARD_SYNTAX_PREFIX + "8", EAttributeSyntax.BINARY); // Certificate
+        s_syntaxes.put(STANDARD_SYNTAX_PREFIX + "9", EAttributeSyntax.BINARY); // Certificate List
+        s_syntaxes.put(STANDARD_SYNTAX_PREFIX + "10", EAttributeSyntax.BINARY); // Certificate key pair
+        s_syntaxes.put(STANDARD_SYNTAX_PREFIX + "12", EAttributeSyntax.DN);
+        s_syntaxes.put(STANDARD_SYNTAX_PREFIX + "24", EAttributeSyntax.GENERALIZED_TIME);
+        s_syntaxes.put(STANDARD_SYNTAX_PREFIX + "27", EAttributeSyntax.INTEGER);
+        s_syntaxes.put(STANDARD_SYNTAX_PREFIX + "28", EAttributeSyntax.BINARY); // JPeg image
+        s_syntaxes.put(STANDARD_SYNTAX_PREFIX + "40", EAttributeSyntax.BINARY); // Octect String
+        s_syntaxes.put("1.2.840.113556.1.4.906", EAttributeSyntax.INTEGER); // AD large integer
+    }
+
+    /**
+     * Holds the syntax per attribute name and OID. The keys are stored both as defined and in
+     * lower case.
+     */
+    private final Map<String, EAttributeSyntax> m_attributes;
+
+    /**
+     * Creates a new SchemaIndex object.
+     *
+     * @param  attributes  The syntax per attribute name and OID.
+     */
+    SchemaIndex(Map<String, EAttributeSyntax> attributes)
+    {
+        m_attributes = Collections.unmodifiableMap(attributes);
+    }
+
+    /**
+     * This method builds the index for the given schema.
+     *
+     * @param   schema  The schema to index. If null the empty index is returned.
+     *
+     * @return  The index of the attribute types.
+     */
+    public static SchemaIndex build(LDAPSchema schema)
+    {
+        if (schema == null)
+        {
+            return EMPTY;
+        }
+
+        Map<String, LDAPAttributeSchema> definitions = new HashMap<String, LDAPAttributeSchema>();
+        Enumeration<?> enumSchemas = schema.getAttributeSchemas();
+
+        while (enumSchemas.hasMoreElements())
+        {
+            LDAPAttributeSchema attrSchema = (LDAPAttributeSchema) enumSchemas.nextElement();
+
+            for (String name : getKeys(attrSchema))
+            {
+                definitions.put(normalize(name), attrSchema);
+            }
+        }
+
+        Map<String, EAttributeSyntax> attributes = new HashMap<String, EAttributeSyntax>();
+
+        for (LDAPAttributeSchema attrSchema : definitions.values())
+        {
+            EAttributeSyntax syntax = determineSyntax(attrSchema, definitions);
+
+            for (String name : getKeys(attrSchema))
+            {
+                attributes.put(name, syntax);
+                attributes.put(normalize(name), syntax);
+            }
+        }
+
+        if (LOG.isDebugEnabled())
+        {
+            LOG.debug("Built the schema index for " + definitions.size() +
+                      " attribute names and OIDs");
+        }
+
+        return new SchemaIndex(attributes);
+    }
+
+    /**
+     * This method returns the syntax per attribute name and OID.
+     *
+     * @return  The syntax per attribute name and OID.
+     */
+    Map<String, EAttributeSyntax> getAttributes()
+    {
+        return m_attributes;
+    }
+
+    /**
+     * This method returns the kind of syntax of the given attribute.
+     *
+     * @param   attributeName  The name or OID of the attribute (without options).
+     *
+     * @return  The kind of syntax. UNKNOWN if the attribute is not defined in the schema.
+     */
+    public EAttributeSyntax getSyntax(String attributeName)
+    {
+        EAttributeSyntax returnValue = m_attributes.get(attributeName);
+
+        if (returnValue == null)
+        {
+            returnValue = m_attributes.get(normalize(attributeName));
+        }
+
+        return (returnValue == null) ? EAttributeSyntax.UNKNOWN : returnValue;
+    }
+
+    /**
+     * This method returns whether or not the values of the given attribute are binary.
+     *
+     * @param   attributeName  The name or OID of the attribute (without options).
+     *
+     * @return  true if the values are binary. Otherwise false.
+     */
+    public boolean isBinary(String attributeName)
+    {
+        return getSyntax(attributeName).isBinary();
+    }
+
+    /**
+     * This method determines the kind of syntax of an attribute. If the attribute does not define
+     * a syntax the syntax of its superior is used.
+     *
+     * @param   attrSchema   The attribute definition.
+     * @param   definitions  All attribute definitions by lower case name and OID.
+     *
+     * @return  The kind of syntax.
+     */
+    private static EAttributeSyntax determineSyntax(LDAPAttributeSchema attrSchema,
+                                                    Map<String, LDAPAttributeSchema> definitions)
+    {
+        LDAPAttributeSchema current = attrSchema;
+
+        // The depth is limited to protect against cycles in a broken schema.
+        for (int depth = 0; (current != null) && (depth < 16); depth++)
+        {
+            String syntax = current.getSyntaxString();
+
+            if ((syntax != null) && (syntax.length() > 0))
+            {
+                // Strip an optional length restriction, e.g. 1.3.6.1.4.1.1466.115.121.1.15{64}
+                int index = syntax.indexOf('{');
+
+                if (index > 0)
+                {
+                    syntax = syntax.substring(0, index);
+                }
+
+                EAttributeSyntax returnValue = s_syntaxes.get(syntax.trim());
+
+                return (returnValue == null) ? EAttributeSyntax.STRING : returnValue;
+            }
+
+            String superior = current.getSuperior();
+
+            current = (superior == null) ? null : definitions.get(normalize(superior));
+        }
+
+        return EAttributeSyntax.UNKNOWN;
+    }
+
+    /**
+     * This method returns all names and the OID of the attribute definition.
+     *
+     * @param   attrSchema  The attribute definition.
+     *
+     * @return  The names and the OID.
+     */
+    private static List<String> getKeys(LDAPAttributeSchema attrSchema)
+    {
+        List<String> returnValue = new ArrayList<String>();
+        String[] names = attrSchema.getNames();
+
+        if (names != null)
+        {
+            for (String name : names)
+            {
+                if (name != null)
+                {
+                    returnValue.add(name);
+                }
+            }
+        }
+
+        if (attrSchema.getID() != null)
+        {
+            returnValue.add(attrSchema.getID());
+        }
+
+        return returnValue;
+    }
+
+    /**
+     * This method returns the key to use for case insensitive lookups.
+     *
+     * @param   name  The name of the attribute.
+     *
+     * @return  The name in lower case.
+     */
+    private static String normalize(String name)
+    {
+        return name.toLowerCase(Locale.ENGLISH);
+    }
+}
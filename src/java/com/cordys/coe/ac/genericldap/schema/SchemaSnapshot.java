@@ -0,0 +1,280 @@
+/*
+ * Copyright 2007 Cordys R&D B.V. 
+ *
+ *   This file is part of the Cordys Generic LDAP Connector. 
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.cordys.coe.ac.genericldap.schema;
+
+import com.novell.ldap.LDAPAttribute;
+import com.novell.ldap.LDAPAttributeSet;
+import com.novell.ldap.LDAPEntry;
+import com.novell.ldap.LDAPSchema;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * This class holds a snapshot of the LDAP schema of a server as it is stored on disk. The
+ * snapshot contains the raw subschema attributes, the modify timestamp of the subschema entry
+ * and the index of the attribute types. This allows the connector to start without downloading
+ * the complete schema. The timestamp is used to check in the background whether the snapshot is
+ * still up to date.
+ *
+ * <p>There is one file per server. The file is written to a temporary file first and then
+ * renamed, so a reader never sees a partial snapshot.</p>
+ *
+ * @author  pgussow
+ */
+public class SchemaSnapshot
+{
+    /**
+     * Holds the identification of the file format.
+     */
+    private static final int MAGIC = 0x474C5343;
+    /**
+     * Holds the version of the file format. Increase it when the format changes, older files are
+     * then ignored.
+     */
+    private static final int VERSION = 1;
+    /**
+     * Holds the index of the attribute types.
+     */
+    private SchemaIndex m_index;
+    /**
+     * Holds the schema.
+     */
+    private LDAPSchema m_schema;
+    /**
+     * Holds the modify timestamp of the subschema entry.
+     */
+    private String m_timestamp;
+
+    /**
+     * Creates a new SchemaSnapshot object.
+     *
+     * @param  schema     The schema.
+     * @param  index      The index of the attribute types of the schema.
+     * @param  timestamp  The modify timestamp of the subschema entry.
+     */
+    public SchemaSnapshot(LDAPSchema schema, SchemaIndex index, String timestamp)
+    {
+        m_schema = schema;
+        m_index = index;
+        m_timestamp = timestamp;
+    }
+
+    /**
+     * This method returns the file that holds the snapshot for the given server.
+     *
+     * @param   folder  The folder holding the snapshots.
+     * @param   host    The host name of the LDAP server.
+     * @param   port    The port of the LDAP server.
+     *
+     * @return  The file for the snapshot.
+     */
+    public static File getFile(File folder, String host, int port)
+    {
+        return new File(folder, "schema_" + host.replaceAll("[^A-Za-z0-9.\\-]", "_") + "_" + port +
+                        ".dat");
+    }
+
+    /**
+     * This method reads the snapshot from the given file.
+     *
+     * @param   file  The file to read.
+     *
+     * @return  The snapshot. null if the file does not exist or was written in an older format.
+     *
+     * @throws  IOException  In case the file could not be read.
+     */
+    public static SchemaSnapshot load(File file)
+                               throws IOException
+    {
+        if (!file.isFile())
+        {
+            return null;
+        }
+
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+
+        try
+        {
+            if ((in.readInt() != MAGIC) || (in.readInt() != VERSION))
+            {
+                return null;
+            }
+
+            String timestamp = in.readUTF();
+            String dn = in.readUTF();
+
+            // The raw subschema attributes.
+            LDAPAttributeSet attributes = new LDAPAttributeSet();
+            int attributeCount = in.readInt();
+
+            for (int i = 0; i < attributeCount; i++)
+            {
+                LDAPAttribute attribute = new LDAPAttribute(in.readUTF());
+                int valueCount = in.readInt();
+
+                for (int j = 0; j < valueCount; j++)
+                {
+                    attribute.addValue(in.readUTF());
+                }
+                attributes.add(attribute);
+            }
+
+            // The index of the attribute types.
+            Map<String, EAttributeSyntax> syntaxes = new HashMap<String, EAttributeSyntax>();
+            int indexCount = in.readInt();
+
+            for (int i = 0; i < indexCount; i++)
+            {
+                String name = in.readUTF();
+
+                syntaxes.put(name, EAttributeSyntax.valueOf(in.readUTF()));
+            }
+
+            return new SchemaSnapshot(new LDAPSchema(new LDAPEntry(dn, attributes)),
+                                      new SchemaIndex(syntaxes), timestamp);
+        }
+        catch (IllegalArgumentException e)
+        {
+            // An unknown syntax. Treat it as a corrupt file.
+            throw new IOException("Invalid schema snapshot " + file + ": " + e.getMessage());
+        }
+        finally
+        {
+            in.close();
+        }
+    }
+
+    /**
+     * This method gets the index of the attribute types.
+     *
+     * @return  The index of the attribute types.
+     */
+    public SchemaIndex getIndex()
+    {
+        return m_index;
+    }
+
+    /**
+     * This method gets the schema.
+     *
+     * @return  The schema.
+     */
+    public LDAPSchema getSchema()
+    {
+        return m_schema;
+    }
+
+    /**
+     * This method gets the modify timestamp of the subschema entry.
+     *
+     * @return  The modify timestamp of the subschema entry.
+     */
+    public String getTimestamp()
+    {
+        return m_timestamp;
+    }
+
+    /**
+     * This method writes the snapshot to the given file.
+     *
+     * @param   file  The file to write.
+     *
+     * @throws  IOException  In case the file could not be written.
+     */
+    public void save(File file)
+              throws IOException
+    {
+        File folder = file.getAbsoluteFile().getParentFile();
+
+        if ((folder != null) && !folder.isDirectory() && !folder.mkdirs())
+        {
+            throw new IOException("Could not create folder " + folder);
+        }
+
+        File tempFile = new File(file.getPath() + ".tmp");
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)));
+
+        try
+        {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeUTF(m_timestamp);
+            out.writeUTF((m_schema.getDN() == null) ? "" : m_schema.getDN());
+
+            // The raw subschema attributes.
+            LDAPAttributeSet attributes = m_schema.getAttributeSet();
+
+            out.writeInt(attributes.size());
+
+            Iterator<?> iterator = attributes.iterator();
+
+            while (iterator.hasNext())
+            {
+                LDAPAttribute attribute = (LDAPAttribute) iterator.next();
+
+                out.writeUTF(attribute.getName());
+                out.writeInt(attribute.size());
+
+                Enumeration<?> values = attribute.getStringValues();
+
+                while (values.hasMoreElements())
+                {
+                    out.writeUTF((String) values.nextElement());
+                }
+            }
+
+            // The index of the attribute types.
+            Map<String, EAttributeSyntax> syntaxes = m_index.getAttributes();
+
+            out.writeInt(syntaxes.size());
+
+            for (Map.Entry<String, EAttributeSyntax> entry : syntaxes.entrySet())
+            {
+                out.writeUTF(entry.getKey());
+                out.writeUTF(entry.getValue().name());
+            }
+        }
+        finally
+        {
+            out.close();
+        }
+
+        // Replace the old snapshot.
+        if (file.exists() && !file.delete())
+        {
+            throw new IOException("Could not replace " + file);
+        }
+
+        if (!tempFile.renameTo(file))
+        {
+            throw new IOException("Could not rename " + tempFile + " to " + file);
+        }
+    }
+}
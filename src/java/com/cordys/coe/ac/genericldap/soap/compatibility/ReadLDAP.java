@@ -19,6 +19,12 @@ package com.cordys.coe.ac.genericldap.soap.compatibility;
 
 import com.cordys.coe.ac.genericldap.GenericLDAPConstraints;
 import com.cordys.coe.ac.genericldap.config.IGenLDAPConfiguration;
+import com.cordys.coe.ac.genericldap.connection.AttributeRange;
+import com.cordys.coe.ac.genericldap.connection.EPlaceholderType;
+import com.cordys.coe.ac.genericldap.connection.FilterTemplate;
+import com.cordys.coe.ac.genericldap.connection.IConnectionManager;
+import com.cordys.coe.ac.genericldap.connection.SearchLease;
+import com.cordys.coe.ac.genericldap.connection.SortSpecification;
 import com.cordys.coe.ac.genericldap.exception.GenericLDAPConnectorException;
 import com.cordys.coe.ac.genericldap.localization.GenLDAPExceptionMessages;
 import com.cordys.coe.ac.genericldap.soap.BaseMethod;
@@ -36,10 +42,21 @@ import com.eibus.xml.nom.Node;
 import com.novell.ldap.LDAPAttribute;
 import com.novell.ldap.LDAPConnection;
 import com.novell.ldap.LDAPEntry;
+import com.novell.ldap.LDAPException;
 import com.novell.ldap.LDAPSearchConstraints;
 
+import java.util.ArrayList;
 import java.util.Enumeration;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicIntegerArray;
 
 /**
  * Handle a read request, use the LDAP API and serach for entries that match. Return each entry as a
@@ -55,6 +72,14 @@ public class ReadLDAP extends BaseMethod
      * Holds the logger to use.
      */
     private static final CordysLogger LOG = CordysLogger.getCordysLogger(ReadLDAP.class);
+    /**
+     * Holds the maximum number of parsed filter templates that are kept.
+     */
+    private static final int MAX_FILTER_TEMPLATES = 256;
+    /**
+     * Holds the parsed filter templates of the method implementations.
+     */
+    private static final ConcurrentMap<String, FilterTemplate> s_filterTemplates = new ConcurrentHashMap<String, FilterTemplate>();
     /**
      * DOCUMENTME.
      */
@@ -75,6 +100,10 @@ public class ReadLDAP extends BaseMethod
      * DOCUMENTME.
      */
     private String mFilter;
+    /**
+     * Holds the values for the placeholders in the filter.
+     */
+    private Map<String, String> mFilterValues = new HashMap<String, String>();
     /**
      * DOCUMENTME.
      */
@@ -134,6 +163,14 @@ public class ReadLDAP extends BaseMethod
 
         substituteSearchRoot();
 
+        // The values are escaped, so they cannot change the structure of the filter. A '*' is
+        // still a wildcard.
+        FilterTemplate filterTemplate = Node.getLocalName(requestInterface).equals("SearchLDAP")
+                                        ? FilterTemplate.compileCompatible(mFilter,
+                                                                           EPlaceholderType.SUBSTRING)
+                                        : getFilterTemplate(mFilter);
+        mFilter = filterTemplate.bind(mFilterValues);
+
         // add Searchroot to each DN
         if (getConfiguration().getSearchRoot() != null)
         {
@@ -159,94 +196,432 @@ public class ReadLDAP extends BaseMethod
             }
         }
 
-        // now loop through all dn's
-        for (int i = 0; i < mDn.length; i++)
+        // Let the server sort if it can. The control is not critical, so a server that cannot
+        // sort on the given attributes returns the entries unsorted.
+        IConnectionManager connectionManager = getConfiguration().getConnectionManager();
+        SortSpecification sortSpecification = SortSpecification.parse(mSort);
+        boolean serverSort = (sortSpecification != null) &&
+                             connectionManager.getServerCapabilities().isControlSupported(SortSpecification.SORT_CONTROL_OID);
+
+        if (serverSort)
         {
-            if (LOG.isDebugEnabled())
-            {
-                StringBuilder sbTemp = new StringBuilder(2048);
-                sbTemp.append("Search dn[").append(i).append("]: ").append(mDn[i]).append("\n");
-                sbTemp.append("Search filter: ").append(mFilter).append("\n");
-                sbTemp.append("Search sort: ").append(mSort).append("\n");
+            mConstraints.setControls(sortSpecification.createControl(false));
+        }
+
+        // search directory
+        mConstraints.setMaxResults(20000); // todo : make dynamic
 
-                String att = "";
+        String[] attributeNames = ((sortSpecification != null) && !serverSort)
+                                  ? sortSpecification.addSortAttributes(mAttributeNames)
+                                  : mAttributeNames;
 
-                for (int j = 0; j < mAttributeNames.length; j++)
+        // create output nodes in the tuple old format
+        int tupleParent = getResponseXML();
+        int maxResults = mConstraints.getMaxResults();
+        // Every search holds a connection, so more searches than connections only wait.
+        int parallelism = Math.min(Math.min(getConfiguration().getSearchParallelism(),
+                                            getConfiguration().getMaxConnections()), mDn.length);
+
+        if (parallelism > 1)
+        {
+            // Search all bases at the same time and merge the results in the order of the bases.
+            List<List<LDAPEntry>> results = searchInParallel(connectionManager, attributeNames,
+                                                             sortSpecification, serverSort);
+            int count = 0;
+
+            for (List<LDAPEntry> entries : results)
+            {
+                for (LDAPEntry entry : entries)
                 {
-                    att += (mAttributeNames[j] + ",");
+                    if (count++ >= maxResults)
+                    {
+                        return;
+                    }
+
+                    appendEntry(connectionManager, document, tupleParent, entry);
                 }
+            }
+        }
+        else
+        {
+            // The entries are added to the response while they are read, so they are not held
+            // in memory.
+            final IConnectionManager manager = connectionManager;
+            final Document responseDocument = document;
+            final int parent = tupleParent;
+            IEntryHandler handler = new IEntryHandler()
+                {
+                    public void handleEntry(LDAPEntry entry)
+                                     throws GenericLDAPConnectorException
+                    {
+                        appendEntry(manager, responseDocument, parent, entry);
+                    }
+                };
 
-                sbTemp.append("Search attributes: ").append(att).append("\n");
-                sbTemp.append("Search scope: ").append(mScope).append("\n");
-                sbTemp.append("Search excludeValues: ").append(mExcludeValues);
+            // now loop through all dn's
+            int count = 0;
 
-                LOG.debug(sbTemp.toString());
+            for (int i = 0; (i < mDn.length) && (count < maxResults); i++)
+            {
+                count += searchBase(connectionManager, i, attributeNames, sortSpecification,
+                                    serverSort, maxResults - count, null, handler);
             }
+        }
+    }
+
+    /**
+     * This method adds the entry to the response in the tuple old format. When the server
+     * returned only a range of the values of an attribute, the other ranges are read as well.
+     *
+     * @param   connectionManager  The connection manager to read the remaining ranges with.
+     * @param   document           The document to create the nodes in.
+     * @param   tupleParent        The node to add the tuple to.
+     * @param   entry              The entry to add.
+     *
+     * @throws  GenericLDAPConnectorException  In case the remaining values of an attribute could
+     *                                         not be read.
+     */
+    private void appendEntry(IConnectionManager connectionManager, Document document,
+                             int tupleParent, LDAPEntry entry)
+                      throws GenericLDAPConnectorException
+    {
+        if (entry.getDN() != null)
+        {
+            int tuple = document.createElement("tuple", tupleParent);
+            int old = document.createElement("old", tuple);
+            int entryNode = Node.createElement("entry", old);
+            Node.setAttribute(entryNode, "dn", entry.getDN());
 
-            // search directory
-            // mConstraints = new LDAPSearchConstraints();
-            mConstraints.setMaxResults(20000); // todo : make dynamic
+            Iterator<?> iAttributes = entry.getAttributeSet().iterator();
 
-            com.novell.ldap.LDAPSearchResults results = getConfiguration().getConnectionManager()
-                                                                          .search(mDn[i], mScope,
-                                                                                  mFilter,
-                                                                                  mAttributeNames,
-                                                                                  mExcludeValues,
-                                                                                  mConstraints);
-            // create output nodes in the tuple old format
-            int tupleParent = getResponseXML();
+            while (iAttributes.hasNext())
+            {
+                LDAPAttribute attribute = (LDAPAttribute) iAttributes.next();
+                AttributeRange range = AttributeRange.parse(attribute);
+                String name = (range == null) ? attribute.getName() : range.getName();
+
+                appendValues(entryNode, name, attribute);
+
+                // Read the remaining ranges. A range that does not move forward would never end.
+                while ((range != null) && !range.isLast())
+                {
+                    LDAPAttribute next = connectionManager.readAttributeRange(entry.getDN(),
+                                                                              range.getNextName());
+
+                    if (next == null)
+                    {
+                        break;
+                    }
+
+                    appendValues(entryNode, name, next);
+
+                    AttributeRange nextRange = AttributeRange.parse(next);
+                    range = ((nextRange != null) &&
+                             (nextRange.isLast() ||
+                                  (nextRange.getNextStart() > range.getNextStart())))
+                            ? nextRange : null;
+                }
+            }
 
             if (LOG.isDebugEnabled())
             {
-                LOG.debug("Debug: results.getCount() = " + results.getCount());
+                LOG.debug("Read entry: " + Node.writeToString(entryNode, true));
+            }
+        }
+    }
+
+    /**
+     * This method adds the values of the attribute to the entry.
+     *
+     * @param  entryNode  The node of the entry.
+     * @param  name       The name of the tags for the values.
+     * @param  attribute  The attribute.
+     */
+    private static void appendValues(int entryNode, String name, LDAPAttribute attribute)
+    {
+        Enumeration<?> strings = attribute.getStringValues();
+
+        while (strings.hasMoreElements())
+        {
+            Node.createTextElement(name, strings.nextElement().toString(), entryNode);
+        }
+    }
+
+    /**
+     * This method searches one of the search bases and passes the entries that were found to the
+     * handler while they are read.
+     *
+     * @param   connectionManager  The connection manager.
+     * @param   index              The index of the search base in the list of DNs.
+     * @param   attributeNames     The attributes to read.
+     * @param   sortSpecification  The sort order. null if the entries are not sorted.
+     * @param   serverSort         Whether or not the server sorts the entries.
+     * @param   maxResults         The maximum number of entries to return.
+     * @param   budget             The entries found by the bases that are searched at the same
+     *                             time. null if the bases are searched one after the other.
+     * @param   handler            The handler for the entries.
+     *
+     * @return  The number of entries that were found.
+     *
+     * @throws  GenericLDAPConnectorException  In case the search or the handler fails.
+     */
+    private int searchBase(IConnectionManager connectionManager, int index,
+                           String[] attributeNames, SortSpecification sortSpecification,
+                           boolean serverSort, int maxResults, SearchBudget budget,
+                           IEntryHandler handler)
+                    throws GenericLDAPConnectorException
+    {
+        if (LOG.isDebugEnabled())
+        {
+            StringBuilder sbTemp = new StringBuilder(2048);
+            sbTemp.append("Search dn[").append(index).append("]: ").append(mDn[index]).append("\n");
+            sbTemp.append("Search filter: ").append(mFilter).append("\n");
+            sbTemp.append("Search sort: ").append(mSort).append("\n");
+
+            String att = "";
+
+            for (int j = 0; j < mAttributeNames.length; j++)
+            {
+                att += (mAttributeNames[j] + ",");
             }
 
-            while (results.hasMore())
+            sbTemp.append("Search attributes: ").append(att).append("\n");
+            sbTemp.append("Search scope: ").append(mScope).append("\n");
+            sbTemp.append("Search excludeValues: ").append(mExcludeValues);
+
+            LOG.debug(sbTemp.toString());
+        }
+
+        // The searches of the bases can run at the same time, so each gets its own constraints.
+        LDAPSearchConstraints constraints = (LDAPSearchConstraints) mConstraints.clone();
+        constraints.setMaxResults(maxResults);
+
+        SearchLease results = connectionManager.openSearch(mDn[index], mScope, mFilter,
+                                                           attributeNames, mExcludeValues,
+                                                           constraints);
+        int returnValue = 0;
+
+        if (LOG.isDebugEnabled())
+        {
+            LOG.debug("Debug: results.getCount() = " + results.getCount());
+        }
+
+        try
+        {
+            if ((sortSpecification != null) && !serverSort)
             {
+                // The server cannot sort, so only the first entries in the sort order are kept.
+                List<LDAPEntry> first;
+
                 try
                 {
-                    LDAPEntry entry = results.next();
+                    first = sortSpecification.selectFirst(results,
+                                                          getRemaining(budget, index, maxResults));
+                }
+                catch (LDAPException e)
+                {
+                    throw new GenericLDAPConnectorException(e,
+                                                            GenLDAPExceptionMessages.ERROR_EXECUTING_SEARCH_REQUEST);
+                }
 
-                    if (entry.getDN() != null)
-                    {
-                        int tuple = document.createElement("tuple", tupleParent);
-                        int old = document.createElement("old", tuple);
-                        int entryNode = Node.createElement("entry", old);
-                        Node.setAttribute(entryNode, "dn", entry.getDN());
+                for (LDAPEntry entry : first)
+                {
+                    handler.handleEntry(entry);
+                }
 
-                        Iterator<?> iAttributes = entry.getAttributeSet().iterator();
+                returnValue = first.size();
 
-                        while (iAttributes.hasNext())
-                        {
-                            LDAPAttribute attribute = (LDAPAttribute) iAttributes.next();
-                            Enumeration<?> strings = attribute.getStringValues();
-
-                            while (strings.hasMoreElements())
-                            {
-                                Node.createTextElement(attribute.getName(),
-                                                       strings.nextElement().toString(), entryNode);
-                            }
-                        }
+                if (budget != null)
+                {
+                    budget.setCount(index, returnValue);
+                }
+            }
 
-                        if (LOG.isDebugEnabled())
-                        {
-                            LOG.debug("Read entry: " + Node.writeToString(entryNode, true));
-                        }
-                    }
+            while ((returnValue < getRemaining(budget, index, maxResults)) && results.hasMore())
+            {
+                LDAPEntry entry;
+
+                try
+                {
+                    entry = results.next();
                 }
                 catch (Exception ignore)
                 {
-                    // we catch the exception while we read the information, no way to recover
-                    // as we read more info : ignore exception and continue with next nodes TODO
-                    // : decide how often this happens and if we get away with ignoring the
+                    // we catch the exception while we read the information, no way to recover as
+                    // we read more info : ignore exception and continue with next nodes TODO :
+                    // decide how often this happens and if we get away with ignoring the
                     // exception
                     if (LOG.isDebugEnabled())
                     {
                         LOG.debug("Ignoring exception while reading entries.", ignore);
                     }
+
+                    continue;
+                }
+
+                handler.handleEntry(entry);
+                returnValue++;
+
+                if (budget != null)
+                {
+                    budget.setCount(index, returnValue);
+                }
+            }
+        }
+        finally
+        {
+            // Return the connection to the pool, even if not all results were read.
+            results.close();
+        }
+
+        return returnValue;
+    }
+
+    /**
+     * This method returns the number of entries a search base may still add. When the bases are
+     * searched at the same time, the entries of the bases before it count as well.
+     *
+     * @param   budget      The entries found by the bases that are searched at the same time.
+     *                      null if the bases are searched one after the other.
+     * @param   index       The index of the search base in the list of DNs.
+     * @param   maxResults  The maximum number of entries of the search base.
+     *
+     * @return  The maximum number of entries of the search base.
+     */
+    private static int getRemaining(SearchBudget budget, int index, int maxResults)
+    {
+        return (budget == null) ? maxResults : budget.getRemaining(index);
+    }
+
+    /**
+     * This method searches the search bases at the same time on the search executor of the
+     * connection manager. Every search uses its own connection from the pool. The results are
+     * returned in the order of the bases, so the response does not depend on which search
+     * finishes first.
+     *
+     * @param   connectionManager  The connection manager.
+     * @param   attributeNames     The attributes to read.
+     * @param   sortSpecification  The sort order. null if the entries are not sorted.
+     * @param   serverSort         Whether or not the server sorts the entries.
+     *
+     * @return  The entries per search base.
+     *
+     * @throws  GenericLDAPConnectorException  In case one of the searches fails.
+     */
+    private List<List<LDAPEntry>> searchInParallel(final IConnectionManager connectionManager,
+                                                   final String[] attributeNames,
+                                                   final SortSpecification sortSpecification,
+                                                   final boolean serverSort)
+                                            throws GenericLDAPConnectorException
+    {
+        final int maxResults = mConstraints.getMaxResults();
+        final SearchBudget budget = new SearchBudget(mDn.length, maxResults);
+        List<Future<List<LDAPEntry>>> futures = new ArrayList<Future<List<LDAPEntry>>>(mDn.length);
+
+        try
+        {
+            for (int i = 0; i < mDn.length; i++)
+            {
+                final int index = i;
+
+                futures.add(connectionManager.getSearchExecutor().submit(new Callable<List<LDAPEntry>>()
+                    {
+                        public List<LDAPEntry> call()
+                                             throws GenericLDAPConnectorException
+                        {
+                            // The entries are merged in the order of the bases, so they are
+                            // kept until all bases before this one are done.
+                            final List<LDAPEntry> entries = new ArrayList<LDAPEntry>();
+
+                            searchBase(connectionManager, index, attributeNames,
+                                       sortSpecification, serverSort, maxResults, budget,
+                                       new IEntryHandler()
+                                {
+                                    public void handleEntry(LDAPEntry entry)
+                                    {
+                                        entries.add(entry);
+                                    }
+                                });
+
+                            return entries;
+                        }
+                    }));
+            }
+
+            List<List<LDAPEntry>> returnValue = new ArrayList<List<LDAPEntry>>(mDn.length);
+            int count = 0;
+
+            for (Future<List<LDAPEntry>> future : futures)
+            {
+                // The bases after the one that reached the size limit are not needed.
+                if (count >= maxResults)
+                {
+                    break;
+                }
+
+                try
+                {
+                    List<LDAPEntry> entries = future.get();
+
+                    returnValue.add(entries);
+                    count += entries.size();
+                }
+                catch (ExecutionException e)
+                {
+                    if (e.getCause() instanceof GenericLDAPConnectorException)
+                    {
+                        throw (GenericLDAPConnectorException) e.getCause();
+                    }
+
+                    throw new GenericLDAPConnectorException(e.getCause(),
+                                                            GenLDAPExceptionMessages.ERROR_EXECUTING_SEARCH_REQUEST);
+                }
+                catch (InterruptedException e)
+                {
+                    Thread.currentThread().interrupt();
+                    throw new GenericLDAPConnectorException(e,
+                                                            GenLDAPExceptionMessages.ERROR_EXECUTING_SEARCH_REQUEST);
                 }
             }
+
+            return returnValue;
+        }
+        finally
+        {
+            // Searches that are not needed anymore are cancelled or interrupted. They return
+            // their connection to the pool when they stop.
+            for (Future<List<LDAPEntry>> future : futures)
+            {
+                future.cancel(true);
+            }
+        }
+    }
+
+    /**
+     * This method returns the parsed filter template of a method implementation. The templates
+     * are parsed once and shared by all requests.
+     *
+     * @param   filter  The filter of the method implementation.
+     *
+     * @return  The parsed template.
+     */
+    private static FilterTemplate getFilterTemplate(String filter)
+    {
+        FilterTemplate returnValue = s_filterTemplates.get(filter);
+
+        if (returnValue == null)
+        {
+            // The number of method implementations is small, so this only protects the memory.
+            if (s_filterTemplates.size() >= MAX_FILTER_TEMPLATES)
+            {
+                s_filterTemplates.clear();
+            }
+
+            returnValue = FilterTemplate.compileCompatible(filter, EPlaceholderType.SUBSTRING);
+            s_filterTemplates.put(filter, returnValue);
         }
+
+        return returnValue;
     }
 
     /**
@@ -348,14 +723,10 @@ public class ReadLDAP extends BaseMethod
                          mDn[0].substring((positionDN + name.length()) + 1);
             }
 
-            // see if we can substitute the parameter in the filter
-            int positionFilter = mFilter.indexOf(":" + name);
-
-            if (positionFilter >= 0)
+            // the filter is bound later, when all values are known
+            if (!mFilterValues.containsKey(name))
             {
-                // substitute in filter
-                mFilter = mFilter.substring(0, positionFilter) + Node.getData(parameter) +
-                          mFilter.substring((positionFilter + name.length()) + 1);
+                mFilterValues.put(name, Node.getData(parameter));
             }
 
             // see if we can substitute the parameter in the sort
@@ -394,15 +765,88 @@ public class ReadLDAP extends BaseMethod
                 }
             }
 
-            // see if we can substitute the searchroot in the filter
-            int positionSRinFilter = mFilter.indexOf(":SearchRoot");
+            // the searchroot is bound to the filter like the parameters
+            if (!mFilterValues.containsKey("SearchRoot"))
+            {
+                mFilterValues.put("SearchRoot", searchRoot);
+            }
+        }
+    }
+
+    /**
+     * This interface describes the processing of the entries of a search base while they are
+     * read.
+     */
+    private interface IEntryHandler
+    {
+        /**
+         * This method processes an entry that was found.
+         *
+         * @param   entry  The entry.
+         *
+         * @throws  GenericLDAPConnectorException  In case the entry could not be processed.
+         */
+        void handleEntry(LDAPEntry entry)
+                  throws GenericLDAPConnectorException;
+    }
+
+    /**
+     * This class holds the number of entries each search base has found so far, when the bases
+     * are searched at the same time. A base never needs more entries than the size limit minus
+     * the entries of the bases before it, so it stops reading when it has that many. The counts
+     * only grow, so the limit of a base only gets lower while the searches run.
+     */
+    private static class SearchBudget
+    {
+        /**
+         * Holds the number of entries found so far per search base.
+         */
+        private AtomicIntegerArray m_counts;
+        /**
+         * Holds the maximum number of entries of all bases together.
+         */
+        private int m_maxResults;
+
+        /**
+         * Creates a new SearchBudget object.
+         *
+         * @param  bases       The number of search bases.
+         * @param  maxResults  The maximum number of entries of all bases together.
+         */
+        SearchBudget(int bases, int maxResults)
+        {
+            m_counts = new AtomicIntegerArray(bases);
+            m_maxResults = maxResults;
+        }
+
+        /**
+         * This method returns the number of entries the given base may hold.
+         *
+         * @param   index  The index of the search base.
+         *
+         * @return  The size limit minus the entries found by the bases before it.
+         */
+        public int getRemaining(int index)
+        {
+            int returnValue = m_maxResults;
 
-            if (positionSRinFilter >= 0)
+            for (int iCount = 0; iCount < index; iCount++)
             {
-                // substitute in filter
-                mFilter = mFilter.substring(0, positionSRinFilter) + searchRoot +
-                          mFilter.substring(positionSRinFilter + 11);
+                returnValue -= m_counts.get(iCount);
             }
+
+            return Math.max(returnValue, 0);
+        }
+
+        /**
+         * This method sets the number of entries the given base has found so far.
+         *
+         * @param  index  The index of the search base.
+         * @param  count  The number of entries found so far.
+         */
+        public void setCount(int index, int count)
+        {
+            m_counts.set(index, count);
         }
     }
 }
@@ -20,7 +20,10 @@ package com.cordys.coe.ac.genericldap.soap.compatibility;
 import java.util.Enumeration;
 import java.util.Vector;
 
+import com.cordys.coe.ac.genericldap.cache.DirectoryChangeBus;
+import com.cordys.coe.ac.genericldap.cache.DirectoryChangeEvent;
 import com.cordys.coe.ac.genericldap.config.IGenLDAPConfiguration;
+import com.cordys.coe.ac.genericldap.connection.EPoolType;
 import com.cordys.coe.ac.genericldap.connection.IConnectionManager;
 import com.cordys.coe.ac.genericldap.exception.GenericLDAPConnectorException;
 import com.cordys.coe.ac.genericldap.localization.GenLDAPExceptionMessages;
@@ -91,7 +94,7 @@ public class Update extends BaseMethod
 
         try
         {
-            connection = cm.getConnection();
+            connection = cm.getConnection(EPoolType.WRITE);
 
             if (prepare())
             {
@@ -175,6 +178,16 @@ public class Update extends BaseMethod
                                                     GenLDAPExceptionMessages.GLE_ERROR_DURING_UPDATE_BUT_ROLLBACK_FAILED_REASON_,
                                                     messages.toString());
         }
+        finally
+        {
+            // Let the caches drop the entries that were touched, also if they were rolled back.
+            DirectoryChangeBus bus = getConfiguration().getConnectionManager().getChangeBus();
+
+            for (int j = 0; j < Math.min(i + 1, updates.length); j++)
+            {
+                bus.publish(updates[j].getChangeEvent());
+            }
+        }
     }
 
     /**
@@ -280,6 +293,29 @@ public class Update extends BaseMethod
          */
         private int tuple;
 
+        /**
+         * This method returns the change this update makes to the directory.
+         *
+         * @return  The change this update makes to the directory.
+         */
+        DirectoryChangeEvent getChangeEvent()
+        {
+            if (original == 0)
+            {
+                return new DirectoryChangeEvent(dn, null, false);
+            }
+            else if (proposal == 0)
+            {
+                return new DirectoryChangeEvent(dn, null, deleteRecursive);
+            }
+            else if (rename)
+            {
+                return new DirectoryChangeEvent(dn, proposedDn, true);
+            }
+
+            return new DirectoryChangeEvent(proposedDn, null, false);
+        }
+
         /**
          * Creates a new LDAPUpdate object.
          *
@@ -383,7 +419,9 @@ public class Update extends BaseMethod
 
                 try
                 {
-                    LDAPEntry ldapEntry = connection.read(dn);
+                    LDAPEntry ldapEntry = getConfiguration().getConnectionManager()
+                                              .getNegativeLookupCache().read(connection, dn,
+                                                                             null);
 
                     if (ldapEntry.getDN() != null)
                     {
@@ -518,7 +556,8 @@ public class Update extends BaseMethod
 
                     try
                     {
-                        connection.read(proposedDn);
+                        getConfiguration().getConnectionManager().getNegativeLookupCache()
+                                          .read(connection, proposedDn, null);
                         throw new GenericLDAPConnectorException(GenLDAPExceptionMessages.GLE_ALREADY_EXISTS_IN_LDAP,
                                                                 proposedDn);
                     }
@@ -80,6 +80,14 @@ public abstract class BaseImplementation
     public abstract void handleRequest(BaseMethod method)
                                 throws GenericLDAPConnectorException;
 
+    /**
+     * This method is called when the implementation is no longer used, e.g. because the method
+     * implementation has changed. It releases the resources the implementation holds.
+     */
+    public void dispose()
+    {
+    }
+
     /**
      * This method gets the action for this implementation.
      *
@@ -138,6 +146,30 @@ public abstract class BaseImplementation
         }
     }
 
+    /**
+     * This method returns the value of an optional parameter.
+     *
+     * @param   method        The base method.
+     * @param   xmi           The namespace definitions.
+     * @param   name          The name of the parameter.
+     * @param   defaultValue  The value if the parameter is not defined or empty.
+     *
+     * @return  The trimmed value of the parameter.
+     *
+     * @throws  GenericLDAPConnectorException  In case of any exceptions.
+     */
+    protected String getOptionalString(BaseMethod method, XPathMetaInfo xmi, String name,
+                                       String defaultValue)
+                                throws GenericLDAPConnectorException
+    {
+        RequestParameter parameter = getParameter(name);
+        String returnValue = (parameter == null)
+                             ? null : parameter.getStringValue(method.getRequestXML(), xmi);
+
+        return ((returnValue == null) || (returnValue.trim().length() == 0)) ? defaultValue
+                                                                              : returnValue.trim();
+    }
+
     /**
      * This method returns all parameters that are defined.
      *
@@ -0,0 +1,167 @@
+/*
+ * Copyright 2007 Cordys R&D B.V. 
+ *
+ *   This file is part of the Cordys Generic LDAP Connector. 
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.cordys.coe.ac.genericldap.soap.impl;
+
+import com.cordys.coe.ac.genericldap.EDynamicAction;
+import com.cordys.coe.ac.genericldap.connection.IConnectionManager;
+import com.cordys.coe.ac.genericldap.exception.GenericLDAPConnectorException;
+import com.cordys.coe.ac.genericldap.localization.GenLDAPExceptionMessages;
+import com.cordys.coe.ac.genericldap.soap.BaseMethod;
+import com.cordys.coe.util.xml.nom.XPathHelper;
+
+import com.eibus.util.logger.CordysLogger;
+
+import com.eibus.xml.nom.Node;
+import com.eibus.xml.xpath.XPathMetaInfo;
+
+import com.novell.ldap.LDAPConnection;
+import com.novell.ldap.LDAPException;
+import com.novell.ldap.LDAPSearchConstraints;
+
+/**
+ * This class is the base for the actions that answer a search with a single value instead of
+ * the entries, like CountLDAP and ExistsLDAP. It parses the search parameters dn, scope, filter
+ * and referralfollowing. No attributes are requested from the server and no XML is built for
+ * the entries.
+ *
+ * @author  pgussow
+ */
+public abstract class BaseScalarSearchImpl extends BaseImplementation
+{
+    /**
+     * Holds the logger to use.
+     */
+    private static final CordysLogger LOG = CordysLogger.getCordysLogger(BaseScalarSearchImpl.class);
+    /**
+     * Holds the name of the parameter 'dn'.
+     */
+    private static final String PARAM_DN = "dn";
+    /**
+     * Holds the name of the parameter 'scope'.
+     */
+    private static final String PARAM_SCOPE = "scope";
+    /**
+     * Holds the name of the parameter 'referralfollowing'.
+     */
+    private static final String PARAM_REFERRAL_FOLLOWING = "referralfollowing";
+    /**
+     * Holds the attribute list that makes the server return only the DNs.
+     */
+    protected static final String[] NO_ATTRIBUTES = new String[] { LDAPConnection.NO_ATTRS };
+    /**
+     * Holds the definition of the filter.
+     */
+    private FilterDefinition m_filter;
+
+    /**
+     * Creates a new BaseScalarSearchImpl object.
+     *
+     * @param   action          The actual action for this implementation.
+     * @param   implementation  The implementation XML.
+     *
+     * @throws  GenericLDAPConnectorException  In case the implementation is incorrect.
+     */
+    protected BaseScalarSearchImpl(EDynamicAction action, int implementation)
+                            throws GenericLDAPConnectorException
+    {
+        super(action, implementation);
+
+        int actionXML = Node.getFirstElement(implementation);
+
+        for (String name : new String[] { PARAM_DN, PARAM_SCOPE, PARAM_REFERRAL_FOLLOWING })
+        {
+            int paramXML = XPathHelper.selectSingleNode(actionXML, "impl:" + name, m_xmi);
+
+            if (paramXML == 0)
+            {
+                throw new GenericLDAPConnectorException(GenLDAPExceptionMessages.GLE_MISSING_REQUEST_INFORMATION_0,
+                                                        name);
+            }
+
+            addRequestParameter(RequestParameter.getInstance(paramXML));
+        }
+
+        // Parse the implementation for parameter filter.
+        int filter = XPathHelper.selectSingleNode(actionXML, "impl:filter", m_xmi);
+
+        if (filter == 0)
+        {
+            throw new GenericLDAPConnectorException(GenLDAPExceptionMessages.GLE_MISSING_REQUEST_INFORMATION_0,
+                                                    "filter");
+        }
+
+        m_filter = FilterDefinition.parse(filter);
+    }
+
+    /**
+     * @see  com.cordys.coe.ac.genericldap.soap.impl.BaseImplementation#handleRequest(com.cordys.coe.ac.genericldap.soap.BaseMethod)
+     */
+    @Override public void handleRequest(BaseMethod method)
+                                 throws GenericLDAPConnectorException
+    {
+        IConnectionManager connectionManager = method.getConfiguration().getConnectionManager();
+
+        // Prepare the XPathMetaInfo object
+        XPathMetaInfo xmi = new XPathMetaInfo();
+        xmi.addNamespaceBinding("ns", Node.getNamespaceURI(method.getRequestXML()));
+
+        // Get the parameter values.
+        String dn = getParameter(PARAM_DN).getStringValue(method.getRequestXML(), xmi);
+        int scope = getParameter(PARAM_SCOPE).getIntValue(method.getRequestXML(), xmi);
+        String filter = m_filter.getFilter(method.getRequestXML(), xmi);
+
+        LDAPSearchConstraints constraints = new LDAPSearchConstraints();
+        constraints.setReferralFollowing(getParameter(PARAM_REFERRAL_FOLLOWING).getBooleanValue(method
+                                                                                               .getRequestXML(),
+                                                                                               xmi));
+
+        if (LOG.isDebugEnabled())
+        {
+            LOG.debug("Executing " + getAction() + ". Parameters:\nDN: '" + dn + "'\nScope: '" +
+                      scope + "'\nFilter: '" + filter + "'");
+        }
+
+        try
+        {
+            search(method, xmi, connectionManager, dn, scope, filter, constraints);
+        }
+        catch (LDAPException e)
+        {
+            throw new GenericLDAPConnectorException(e, GenLDAPExceptionMessages.ERROR_EXECUTING_SEARCH_REQUEST);
+        }
+    }
+
+    /**
+     * This method executes the search and adds the answer to the response.
+     *
+     * @param   method             The base method.
+     * @param   xmi                The namespace definitions.
+     * @param   connectionManager  The connection manager.
+     * @param   dn                 The DN to start searching from.
+     * @param   scope              The scope for searching.
+     * @param   filter             The filter to use.
+     * @param   constraints        The constraints to apply.
+     *
+     * @throws  GenericLDAPConnectorException  In case the search could not be started.
+     * @throws  LDAPException                  In case of an error while reading the results.
+     */
+    protected abstract void search(BaseMethod method, XPathMetaInfo xmi,
+                                   IConnectionManager connectionManager, String dn, int scope,
+                                   String filter, LDAPSearchConstraints constraints)
+                            throws GenericLDAPConnectorException, LDAPException;
+}
@@ -0,0 +1,186 @@
+/*
+ * Copyright 2007 Cordys R&D B.V. 
+ *
+ *   This file is part of the Cordys Generic LDAP Connector. 
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.cordys.coe.ac.genericldap.soap.impl;
+
+import com.cordys.coe.ac.genericldap.EDynamicAction;
+import com.cordys.coe.ac.genericldap.connection.IConnectionManager;
+import com.cordys.coe.ac.genericldap.connection.PagedResultsControl;
+import com.cordys.coe.ac.genericldap.connection.PagedSearchLease;
+import com.cordys.coe.ac.genericldap.connection.SearchLease;
+import com.cordys.coe.ac.genericldap.exception.GenericLDAPConnectorException;
+import com.cordys.coe.ac.genericldap.soap.BaseMethod;
+import com.cordys.coe.util.xml.nom.XPathHelper;
+
+import com.eibus.util.logger.CordysLogger;
+
+import com.eibus.xml.nom.Node;
+import com.eibus.xml.xpath.XPathMetaInfo;
+
+import com.novell.ldap.LDAPException;
+import com.novell.ldap.LDAPSearchConstraints;
+
+/**
+ * This class holds the implementation of the CountLDAP action. It returns the number of entries
+ * that match the search instead of the entries themselves.
+ *
+ * @author  pgussow
+ */
+public class CountLDAPImpl extends BaseScalarSearchImpl
+{
+    /**
+     * Holds the logger to use.
+     */
+    private static final CordysLogger LOG = CordysLogger.getCordysLogger(CountLDAPImpl.class);
+    /**
+     * Holds the name of the parameter 'maxsearchresults'.
+     */
+    private static final String PARAM_MAX_SEARCH_RESULTS = "maxsearchresults";
+    /**
+     * Holds the maximum number of entries per page when counting.
+     */
+    private static final int MAX_PAGE_SIZE = 1000;
+
+    /**
+     * Creates a new CountLDAPImpl object.
+     *
+     * @param   implementation  The implementation XML.
+     *
+     * @throws  GenericLDAPConnectorException  In case the implementation is incorrect.
+     */
+    public CountLDAPImpl(int implementation)
+                  throws GenericLDAPConnectorException
+    {
+        super(EDynamicAction.COUNT_LDAP, implementation);
+
+        // Without a maximum the maximum number of search results of the configuration applies.
+        int maxsearchresults = XPathHelper.selectSingleNode(Node.getFirstElement(implementation),
+                                                            "impl:maxsearchresults", m_xmi);
+
+        if (maxsearchresults != 0)
+        {
+            addRequestParameter(RequestParameter.getInstance(maxsearchresults));
+        }
+    }
+
+    /**
+     * This method counts the entries and adds the number to the response. If there are more
+     * entries than the maximum, the count stops at the maximum and the count is marked as
+     * incomplete. The entries are read in pages if the server supports it, so a large count does
+     * not run into the size limit of the server.
+     *
+     * @see  com.cordys.coe.ac.genericldap.soap.impl.BaseScalarSearchImpl#search(com.cordys.coe.ac.genericldap.soap.BaseMethod,
+     *       com.eibus.xml.xpath.XPathMetaInfo,
+     *       com.cordys.coe.ac.genericldap.connection.IConnectionManager, java.lang.String, int,
+     *       java.lang.String, com.novell.ldap.LDAPSearchConstraints)
+     */
+    @Override protected void search(BaseMethod method, XPathMetaInfo xmi,
+                                    IConnectionManager connectionManager, String dn, int scope,
+                                    String filter, LDAPSearchConstraints constraints)
+                             throws GenericLDAPConnectorException, LDAPException
+    {
+        RequestParameter paramMaxSearchResults = getParameter(PARAM_MAX_SEARCH_RESULTS);
+        int maxSearchResults = method.getConfiguration().getMaximumNumberOfSearchResults();
+
+        if (paramMaxSearchResults != null)
+        {
+            maxSearchResults = paramMaxSearchResults.getIntValue(method.getRequestXML(), xmi,
+                                                                 maxSearchResults);
+        }
+
+        int count = 0;
+        boolean complete = true;
+
+        if (connectionManager.getServerCapabilities().isControlSupported(PagedResultsControl.OID))
+        {
+            // One entry more than the maximum tells whether the count is complete.
+            int pageSize = (maxSearchResults > 0)
+                           ? Math.min(MAX_PAGE_SIZE, maxSearchResults + 1) : MAX_PAGE_SIZE;
+            String cookie = null;
+
+            do
+            {
+                PagedSearchLease results = connectionManager.openPagedSearch(dn, scope, filter,
+                                                                             NO_ATTRIBUTES, true,
+                                                                             constraints,
+                                                                             pageSize, cookie);
+
+                try
+                {
+                    while (complete && results.hasMore())
+                    {
+                        results.next();
+                        count++;
+
+                        // The rest of the search is abandoned when the lease is closed.
+                        complete = (maxSearchResults <= 0) || (count <= maxSearchResults);
+                    }
+                }
+                finally
+                {
+                    results.close();
+                }
+
+                cookie = complete ? results.getCookie() : null;
+            }
+            while (cookie != null);
+
+            if (!complete)
+            {
+                count = maxSearchResults;
+            }
+        }
+        else
+        {
+            constraints.setMaxResults(maxSearchResults);
+
+            SearchLease results = connectionManager.openSearch(dn, scope, filter, NO_ATTRIBUTES,
+                                                               true, constraints);
+
+            try
+            {
+                while (results.hasMore())
+                {
+                    results.next();
+                    count++;
+                }
+            }
+            catch (LDAPException e)
+            {
+                if (e.getResultCode() != LDAPException.SIZE_LIMIT_EXCEEDED)
+                {
+                    throw e;
+                }
+
+                complete = false;
+            }
+            finally
+            {
+                results.close();
+            }
+        }
+
+        if (LOG.isDebugEnabled())
+        {
+            LOG.debug("Counted " + count + " entries" + (complete ? "." : " before the maximum was reached."));
+        }
+
+        Node.createElementWithParentNS("count", String.valueOf(count), method.getResponseXML());
+        Node.createElementWithParentNS("complete", String.valueOf(complete),
+                                       method.getResponseXML());
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright 2007 Cordys R&D B.V. 
+ *
+ *   This file is part of the Cordys Generic LDAP Connector. 
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.cordys.coe.ac.genericldap.soap.impl;
+
+import com.cordys.coe.ac.genericldap.EDynamicAction;
+import com.cordys.coe.ac.genericldap.connection.IConnectionManager;
+import com.cordys.coe.ac.genericldap.connection.SearchLease;
+import com.cordys.coe.ac.genericldap.exception.GenericLDAPConnectorException;
+import com.cordys.coe.ac.genericldap.soap.BaseMethod;
+
+import com.eibus.xml.nom.Node;
+import com.eibus.xml.xpath.XPathMetaInfo;
+
+import com.novell.ldap.LDAPException;
+import com.novell.ldap.LDAPSearchConstraints;
+
+/**
+ * This class holds the implementation of the ExistsLDAP action. It returns whether any entry
+ * matches the search. The search stops at the first entry.
+ *
+ * @author  pgussow
+ */
+public class ExistsLDAPImpl extends BaseScalarSearchImpl
+{
+    /**
+     * Creates a new ExistsLDAPImpl object.
+     *
+     * @param   implementation  The implementation XML.
+     *
+     * @throws  GenericLDAPConnectorException  In case the implementation is incorrect.
+     */
+    public ExistsLDAPImpl(int implementation)
+                   throws GenericLDAPConnectorException
+    {
+        super(EDynamicAction.EXISTS_LDAP, implementation);
+    }
+
+    /**
+     * @see  com.cordys.coe.ac.genericldap.soap.impl.BaseScalarSearchImpl#search(com.cordys.coe.ac.genericldap.soap.BaseMethod,
+     *       com.eibus.xml.xpath.XPathMetaInfo,
+     *       com.cordys.coe.ac.genericldap.connection.IConnectionManager, java.lang.String, int,
+     *       java.lang.String, com.novell.ldap.LDAPSearchConstraints)
+     */
+    @Override protected void search(BaseMethod method, XPathMetaInfo xmi,
+                                    IConnectionManager connectionManager, String dn, int scope,
+                                    String filter, LDAPSearchConstraints constraints)
+                             throws GenericLDAPConnectorException, LDAPException
+    {
+        // The server stops after the first entry.
+        constraints.setMaxResults(1);
+
+        boolean exists;
+        SearchLease results = connectionManager.openSearch(dn, scope, filter, NO_ATTRIBUTES, true,
+                                                           constraints);
+
+        try
+        {
+            exists = results.hasMore() && (results.next() != null);
+        }
+        catch (LDAPException e)
+        {
+            // The size limit is only exceeded if there was an entry.
+            if (e.getResultCode() != LDAPException.SIZE_LIMIT_EXCEEDED)
+            {
+                throw e;
+            }
+
+            exists = true;
+        }
+        finally
+        {
+            results.close();
+        }
+
+        Node.createElementWithParentNS("exists", String.valueOf(exists), method.getResponseXML());
+    }
+}
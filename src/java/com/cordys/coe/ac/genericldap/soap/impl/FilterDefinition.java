@@ -0,0 +1,131 @@
+/*
+ * Copyright 2007 Cordys R&D B.V. 
+ *
+ *   This file is part of the Cordys Generic LDAP Connector. 
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.cordys.coe.ac.genericldap.soap.impl;
+
+import com.cordys.coe.ac.genericldap.connection.FilterTemplate;
+import com.cordys.coe.ac.genericldap.exception.GenericLDAPConnectorException;
+import com.cordys.coe.ac.genericldap.localization.GenLDAPExceptionMessages;
+
+import com.eibus.xml.nom.Node;
+import com.eibus.xml.xpath.XPathMetaInfo;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * This class holds the definition of the filter of a search. The filter is either a plain
+ * parameter or a template with a parameter for each of its placeholders.
+ *
+ * @author  pgussow
+ */
+class FilterDefinition
+{
+    /**
+     * Holds the parameter for the plain filter. null if the filter is a template.
+     */
+    private RequestParameter m_filterParameter;
+    /**
+     * Holds the parameters for the placeholders of the filter template.
+     */
+    private Map<String, RequestParameter> m_filterParameters = new LinkedHashMap<String, RequestParameter>();
+    /**
+     * Holds the template of the filter. null if the filter is a plain parameter.
+     */
+    private FilterTemplate m_filterTemplate;
+
+    /**
+     * Creates a new FilterDefinition object.
+     */
+    private FilterDefinition()
+    {
+    }
+
+    /**
+     * This method parses the definition of the filter.
+     *
+     * @param   filterXML  The filter tag of the implementation.
+     *
+     * @return  The definition of the filter.
+     *
+     * @throws  GenericLDAPConnectorException  In case the template is invalid or a placeholder
+     *                                         has no parameter.
+     */
+    public static FilterDefinition parse(int filterXML)
+                                  throws GenericLDAPConnectorException
+    {
+        FilterDefinition returnValue = new FilterDefinition();
+        String template = Node.getAttribute(filterXML, "template", null);
+
+        if (template == null)
+        {
+            returnValue.m_filterParameter = RequestParameter.getInstance(filterXML);
+
+            return returnValue;
+        }
+
+        returnValue.m_filterTemplate = FilterTemplate.compile(template);
+
+        for (int placeholder = Node.getFirstElement(filterXML); placeholder != 0;
+                 placeholder = Node.getNextElement(placeholder))
+        {
+            RequestParameter param = RequestParameter.getInstance(placeholder);
+            returnValue.m_filterParameters.put(param.getName(), param);
+        }
+
+        for (String name : returnValue.m_filterTemplate.getPlaceholders())
+        {
+            if (!returnValue.m_filterParameters.containsKey(name))
+            {
+                throw new GenericLDAPConnectorException(GenLDAPExceptionMessages.GLE_NO_PARAMETER_IS_DEFINED_FOR_PLACEHOLDER_0_OF_FILTER_TEMPLATE_1,
+                                                        name, template);
+            }
+        }
+
+        return returnValue;
+    }
+
+    /**
+     * This method returns the filter for the request. A template is bound to the values of the
+     * request.
+     *
+     * @param   requestXML  The request XML.
+     * @param   xmi         The namespace mapping object.
+     *
+     * @return  The filter.
+     *
+     * @throws  GenericLDAPConnectorException  In case a value is missing or invalid.
+     */
+    public String getFilter(int requestXML, XPathMetaInfo xmi)
+                     throws GenericLDAPConnectorException
+    {
+        if (m_filterTemplate == null)
+        {
+            return m_filterParameter.getStringValue(requestXML, xmi);
+        }
+
+        Map<String, String> values = new HashMap<String, String>();
+
+        for (RequestParameter param : m_filterParameters.values())
+        {
+            values.put(param.getName(), param.getStringValue(requestXML, xmi));
+        }
+
+        return m_filterTemplate.bind(values);
+    }
+}
@@ -18,20 +18,27 @@
 package com.cordys.coe.ac.genericldap.soap.impl;
 
 import com.cordys.coe.ac.genericldap.EDynamicAction;
+import com.cordys.coe.ac.genericldap.cache.CacheDefinition;
+import com.cordys.coe.ac.genericldap.cache.EntryCache;
 import com.cordys.coe.ac.genericldap.connection.IConnectionManager;
 import com.cordys.coe.ac.genericldap.exception.GenericLDAPConnectorException;
 import com.cordys.coe.ac.genericldap.localization.GenLDAPExceptionMessages;
 import com.cordys.coe.ac.genericldap.soap.BaseMethod;
 import com.cordys.coe.util.xml.nom.XPathHelper;
 
+import com.eibus.util.logger.CordysLogger;
+
 import com.eibus.xml.nom.Node;
 import com.eibus.xml.xpath.XPathMetaInfo;
 
+import com.novell.ldap.LDAPConnection;
 import com.novell.ldap.LDAPEntry;
 
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
 
 /**
  * This class analyzes the implementation XML of the GetLDAPObject action.
@@ -40,10 +47,22 @@ import java.util.Map;
  */
 public class GetLDAPObjectImpl extends BaseImplementation
 {
+    /**
+     * Holds the logger to use.
+     */
+    private static final CordysLogger LOG = CordysLogger.getCordysLogger(GetLDAPObjectImpl.class);
     /**
      * Holds the name of the parameter 'dn'.
      */
     protected static final String PARAM_DN = "dn";
+    /**
+     * Holds the definition of the cache. null if nothing should be cached.
+     */
+    private CacheDefinition m_cacheDefinition;
+    /**
+     * Holds the cache for the entries. null if the entries are not cached.
+     */
+    private EntryCache m_entryCache;
     /**
      * This method holds the definition of the returning attributes.
      */
@@ -60,6 +79,12 @@ public class GetLDAPObjectImpl extends BaseImplementation
                       throws GenericLDAPConnectorException
     {
         this(EDynamicAction.GET_LDAP_OBJECT, implementation);
+
+        if (m_cacheDefinition != null)
+        {
+            m_entryCache = new EntryCache(m_cacheDefinition.getTimeToLive(),
+                                          m_cacheDefinition.getMaxEntries());
+        }
     }
 
     /**
@@ -95,6 +120,32 @@ public class GetLDAPObjectImpl extends BaseImplementation
         int returnXML = XPathHelper.selectSingleNode(actionXML, "impl:return", m_xmi);
 
         m_returnAttributes = new ReturnAttributes(returnXML, m_xmi);
+
+        // The results can be cached for a while.
+        m_cacheDefinition = CacheDefinition.parse(XPathHelper.selectSingleNode(actionXML,
+                                                                               "impl:cache",
+                                                                               m_xmi));
+    }
+
+    /**
+     * @see  com.cordys.coe.ac.genericldap.soap.impl.BaseImplementation#dispose()
+     */
+    @Override public void dispose()
+    {
+        if (m_entryCache != null)
+        {
+            m_entryCache.detach();
+        }
+    }
+
+    /**
+     * This method gets the definition of the cache.
+     *
+     * @return  The definition of the cache. null if nothing should be cached.
+     */
+    public CacheDefinition getCacheDefinition()
+    {
+        return m_cacheDefinition;
     }
 
     /**
@@ -140,7 +191,22 @@ public class GetLDAPObjectImpl extends BaseImplementation
         String dn = paramDN.getStringValue(method.getRequestXML(), xmi);
 
         String[] attributeNames = determineAttributesToIncludeInSearch(method, xmi);
-        LDAPEntry entry = connectionManager.readLDAPEntry(dn, attributeNames);
+        LDAPEntry entry;
+
+        if (m_entryCache != null)
+        {
+            m_entryCache.attach(connectionManager.getChangeBus());
+            entry = m_entryCache.readLDAPEntry(connectionManager, dn, attributeNames);
+
+            if (LOG.isDebugEnabled())
+            {
+                LOG.debug("Entry cache: " + m_entryCache.getStatistics());
+            }
+        }
+        else
+        {
+            entry = connectionManager.readLDAPEntry(dn, attributeNames);
+        }
 
         // Build up the actual response.
         buildResponse(method, connectionManager, xmi, new LDAPEntry[] { entry });
@@ -186,14 +252,54 @@ public class GetLDAPObjectImpl extends BaseImplementation
             int responseXML = method.getResponseXML();
 
             ResponseBuilder builder = new ResponseBuilder(responseXML, entries,
-                                                          connectionManager.getSchema(),
+                                                          connectionManager.getSchemaIndex(),
                                                           includeAttributes, excludeAttributes);
+            builder.setRangeReader(connectionManager);
             builder.buildResponse();
         }
     }
 
     /**
-     * Determine the attributes to include in the search.
+     * This method creates a response builder to which the entries can be appended while they are
+     * read from LDAP.
+     *
+     * @param   method             The base method.
+     * @param   connectionManager  The connection manager.
+     * @param   xmi                The XPathMetaInfo object.
+     *
+     * @return  The response builder.
+     *
+     * @throws  GenericLDAPConnectorException  In case of any exceptions.
+     */
+    protected ResponseBuilder createResponseBuilder(BaseMethod method,
+                                                    IConnectionManager connectionManager,
+                                                    XPathMetaInfo xmi)
+                                             throws GenericLDAPConnectorException
+    {
+        // Get the include and exclude attributes.
+        Map<String, IAttributeDefinition> includeAttributes = m_returnAttributes
+                                                              .getIncludeAttributes(method
+                                                                                    .getRequestXML(),
+                                                                                    xmi);
+        Map<String, IAttributeDefinition> excludeAttributes = m_returnAttributes
+                                                              .getExcludeAttributes(method
+                                                                                    .getRequestXML(),
+                                                                                    xmi);
+
+        ResponseBuilder returnValue = new ResponseBuilder(method.getResponseXML(),
+                                                          connectionManager.getSchemaIndex(),
+                                                          includeAttributes, excludeAttributes);
+        returnValue.setRangeReader(connectionManager);
+
+        return returnValue;
+    }
+
+    /**
+     * Determine the attributes to include in the search. Excluded attributes are dropped from an
+     * explicit include list. When all user attributes are requested they are still transferred
+     * and the excluded ones are filtered when the response is built. If only the DNs are needed
+     * no attributes are requested at all (<code>1.1</code>). An empty list means all user
+     * attributes.
      *
      * @param   method  The basemethod.
      * @param   xmi     The namespace definitions.
@@ -213,10 +319,16 @@ public class GetLDAPObjectImpl extends BaseImplementation
                                                                                                    xmi);
         List<String> attributeNames = new ArrayList<String>();
 
+        // Attribute names are case insensitive.
+        Set<String> excluded = new TreeSet<String>(String.CASE_INSENSITIVE_ORDER);
+        excluded.addAll(excludeAttr.keySet());
+
+        Set<String> requested = new TreeSet<String>(String.CASE_INSENSITIVE_ORDER);
+
         for (String attName : includeAttr.keySet())
         {
         	// Only return attributes that are not present in exclude list.
-            if (!excludeAttr.containsKey(attName))
+            if (!excluded.contains(attName) && requested.add(attName))
             {
                 attributeNames.add(attName);
                 IAttributeDefinition attribute = includeAttr.get(attName);
@@ -235,6 +347,20 @@ public class GetLDAPObjectImpl extends BaseImplementation
         	throw new GenericLDAPConnectorException(GenLDAPExceptionMessages.NO_ATTRIBUTES_TO_INCLUDE_IN_SEARCH);
         }
 
+        // 1.1 only means no attributes when nothing else is requested. Next to other attributes
+        // it is left out, so those are still returned.
+        if ((requested.size() > 1) && requested.contains(LDAPConnection.NO_ATTRS))
+        {
+            attributeNames.remove(LDAPConnection.NO_ATTRS);
+        }
+
+        // When only the DNs are needed the server does not have to send any attributes.
+        if (((requested.size() == 1) && requested.contains(LDAPConnection.NO_ATTRS)) ||
+                (excluded.contains(LDAPConnection.ALL_USER_ATTRS) && attributeNames.isEmpty()))
+        {
+            return new String[] { LDAPConnection.NO_ATTRS };
+        }
+
         return attributeNames.toArray(new String[0]);
     }    
 }
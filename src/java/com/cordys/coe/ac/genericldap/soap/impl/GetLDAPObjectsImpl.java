@@ -0,0 +1,107 @@
+/*
+ * Copyright 2007 Cordys R&D B.V. 
+ *
+ *   This file is part of the Cordys Generic LDAP Connector. 
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.cordys.coe.ac.genericldap.soap.impl;
+
+import com.cordys.coe.ac.genericldap.EDynamicAction;
+import com.cordys.coe.ac.genericldap.connection.BatchReadResult;
+import com.cordys.coe.ac.genericldap.connection.IConnectionManager;
+import com.cordys.coe.ac.genericldap.exception.GenericLDAPConnectorException;
+import com.cordys.coe.ac.genericldap.localization.GenLDAPExceptionMessages;
+import com.cordys.coe.ac.genericldap.soap.BaseMethod;
+
+import com.eibus.util.logger.CordysLogger;
+
+import com.eibus.xml.nom.Node;
+import com.eibus.xml.xpath.XPathMetaInfo;
+
+import com.novell.ldap.LDAPEntry;
+
+/**
+ * This class holds the implementation of the GetLDAPObjects action. It reads a list of DNs in one
+ * request and returns a tuple per DN, in the order of the request. A DN that cannot be read gives
+ * a tuple with the error instead of failing the whole request.
+ *
+ * @author  pgussow
+ */
+public class GetLDAPObjectsImpl extends GetLDAPObjectImpl
+{
+    /**
+     * Holds the logger to use.
+     */
+    private static final CordysLogger LOG = CordysLogger.getCordysLogger(GetLDAPObjectsImpl.class);
+
+    /**
+     * Creates a new GetLDAPObjectsImpl object.
+     *
+     * @param   implementation  The implementation XML.
+     *
+     * @throws  GenericLDAPConnectorException  In case the implementation is incorrect.
+     */
+    public GetLDAPObjectsImpl(int implementation)
+                       throws GenericLDAPConnectorException
+    {
+        super(EDynamicAction.GET_LDAP_OBJECTS, implementation);
+    }
+
+    /**
+     * @see  com.cordys.coe.ac.genericldap.soap.impl.GetLDAPObjectImpl#handleRequest(com.cordys.coe.ac.genericldap.soap.BaseMethod)
+     */
+    @Override public void handleRequest(BaseMethod method)
+                                 throws GenericLDAPConnectorException
+    {
+        IConnectionManager connectionManager = method.getConfiguration().getConnectionManager();
+
+        RequestParameter paramDN = getParameter(PARAM_DN);
+
+        if (paramDN == null)
+        {
+            throw new GenericLDAPConnectorException(GenLDAPExceptionMessages.GLE_CANT_FIND_THE_PARAMETER_DEFINITION_FOR_PARAMETER_WITH_NAME,
+                                                    PARAM_DN);
+        }
+
+        XPathMetaInfo xmi = new XPathMetaInfo();
+        xmi.addNamespaceBinding("ns", Node.getNamespaceURI(method.getRequestXML()));
+
+        String[] dns = paramDN.getStringValues(method.getRequestXML(), xmi);
+        String[] attributeNames = determineAttributesToIncludeInSearch(method, xmi);
+
+        BatchReadResult result = connectionManager.readLDAPEntries(dns, attributeNames);
+
+        // Build up the response in the order of the request.
+        ResponseBuilder builder = createResponseBuilder(method, connectionManager, xmi);
+
+        for (int iCount = 0; iCount < result.size(); iCount++)
+        {
+            LDAPEntry entry = result.getEntry(iCount);
+
+            if (entry != null)
+            {
+                builder.appendEntry(entry);
+            }
+            else
+            {
+                if (LOG.isDebugEnabled())
+                {
+                    LOG.debug("Could not read " + result.getDN(iCount), result.getError(iCount));
+                }
+
+                builder.appendError(result.getDN(iCount), result.getError(iCount));
+            }
+        }
+    }
+}
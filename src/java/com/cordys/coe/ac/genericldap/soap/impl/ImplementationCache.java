@@ -116,6 +116,7 @@ public class ImplementationCache
                                   methodDN);
                     }
                     m_implementations.remove(methodDN);
+                    returnValue.dispose();
                 }
                 else
                 {
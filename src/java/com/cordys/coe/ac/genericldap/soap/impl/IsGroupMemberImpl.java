@@ -0,0 +1,631 @@
+/*
+ * Copyright 2007 Cordys R&D B.V. 
+ *
+ *   This file is part of the Cordys Generic LDAP Connector. 
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.cordys.coe.ac.genericldap.soap.impl;
+
+import com.cordys.coe.ac.genericldap.EDynamicAction;
+import com.cordys.coe.ac.genericldap.cache.CacheDefinition;
+import com.cordys.coe.ac.genericldap.cache.DirectoryChangeEvent;
+import com.cordys.coe.ac.genericldap.cache.GroupMembershipCache;
+import com.cordys.coe.ac.genericldap.config.IGenLDAPConfiguration;
+import com.cordys.coe.ac.genericldap.connection.FilterTemplate;
+import com.cordys.coe.ac.genericldap.connection.IConnectionManager;
+import com.cordys.coe.ac.genericldap.connection.SearchLease;
+import com.cordys.coe.ac.genericldap.connection.ServerCapabilities;
+import com.cordys.coe.ac.genericldap.exception.GenericLDAPConnectorException;
+import com.cordys.coe.ac.genericldap.localization.GenLDAPExceptionMessages;
+import com.cordys.coe.ac.genericldap.soap.BaseMethod;
+import com.cordys.coe.util.xml.nom.XPathHelper;
+
+import com.eibus.util.logger.CordysLogger;
+
+import com.eibus.xml.nom.Node;
+import com.eibus.xml.xpath.XPathMetaInfo;
+
+import com.novell.ldap.LDAPAttribute;
+import com.novell.ldap.LDAPAttributeSchema;
+import com.novell.ldap.LDAPConnection;
+import com.novell.ldap.LDAPEntry;
+import com.novell.ldap.LDAPException;
+import com.novell.ldap.LDAPObjectClassSchema;
+import com.novell.ldap.LDAPSchema;
+import com.novell.ldap.LDAPSearchConstraints;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * This class holds the implementation of the IsGroupMember action. It returns whether an entry is
+ * a member of a group, directly or through nested groups.
+ *
+ * <p>Active Directory resolves the nested memberships itself with the matching rule
+ * LDAP_MATCHING_RULE_IN_CHAIN, so one base search is enough. Otherwise the groups the entry is a
+ * member of are searched level by level (breadth-first) until the group is found. The groups of
+ * one level are searched in parallel over the pool. Every group is only expanded once, so cycles
+ * in the nesting end. The groups of each entry can be cached. The object classes of the member
+ * are checked against the schema, so a change to a member that is no group does not clear the
+ * whole cache.</p>
+ *
+ * @author  pgussow
+ */
+public class IsGroupMemberImpl extends BaseImplementation
+{
+    /**
+     * Holds the logger to use.
+     */
+    private static final CordysLogger LOG = CordysLogger.getCordysLogger(IsGroupMemberImpl.class);
+    /**
+     * Holds the name of the parameter 'member'.
+     */
+    private static final String PARAM_MEMBER = "member";
+    /**
+     * Holds the name of the parameter 'group'.
+     */
+    private static final String PARAM_GROUP = "group";
+    /**
+     * Holds the name of the parameter 'dn'. It holds the base from which the groups are searched.
+     */
+    private static final String PARAM_DN = "dn";
+    /**
+     * Holds the name of the parameter 'memberattribute'.
+     */
+    private static final String PARAM_MEMBER_ATTRIBUTE = "memberattribute";
+    /**
+     * Holds the name of the default member attribute.
+     */
+    private static final String DEFAULT_MEMBER_ATTRIBUTE = "member";
+    /**
+     * Holds the OID of the matching rule LDAP_MATCHING_RULE_IN_CHAIN of Active Directory.
+     */
+    private static final String MATCHING_RULE_IN_CHAIN = "1.2.840.113556.1.4.1941";
+    /**
+     * Holds the attribute list that makes the server return only the DNs.
+     */
+    private static final String[] NO_ATTRIBUTES = new String[] { LDAPConnection.NO_ATTRS };
+    /**
+     * Holds the cache for the groups of the entries. null if they are not cached.
+     */
+    private GroupMembershipCache m_membershipCache;
+
+    /**
+     * Creates a new IsGroupMemberImpl object.
+     *
+     * @param   implementation  The implementation XML.
+     *
+     * @throws  GenericLDAPConnectorException  In case the implementation is incorrect.
+     */
+    public IsGroupMemberImpl(int implementation)
+                      throws GenericLDAPConnectorException
+    {
+        super(EDynamicAction.IS_GROUP_MEMBER, implementation);
+
+        int actionXML = Node.getFirstElement(implementation);
+
+        for (String name : new String[] { PARAM_MEMBER, PARAM_GROUP })
+        {
+            int paramXML = XPathHelper.selectSingleNode(actionXML, "impl:" + name, m_xmi);
+
+            if (paramXML == 0)
+            {
+                throw new GenericLDAPConnectorException(GenLDAPExceptionMessages.GLE_MISSING_REQUEST_INFORMATION_0,
+                                                        name);
+            }
+
+            addRequestParameter(RequestParameter.getInstance(paramXML));
+        }
+
+        // Without a base the groups are searched from the search root. Without a member
+        // attribute the attribute 'member' is used.
+        for (String name : new String[] { PARAM_DN, PARAM_MEMBER_ATTRIBUTE })
+        {
+            int paramXML = XPathHelper.selectSingleNode(actionXML, "impl:" + name, m_xmi);
+
+            if (paramXML != 0)
+            {
+                addRequestParameter(RequestParameter.getInstance(paramXML));
+            }
+        }
+
+        CacheDefinition cache = CacheDefinition.parse(XPathHelper.selectSingleNode(actionXML,
+                                                                                   "impl:cache",
+                                                                                   m_xmi));
+
+        if (cache != null)
+        {
+            m_membershipCache = new GroupMembershipCache(cache.getTimeToLive(),
+                                                         cache.getMaxEntries());
+        }
+    }
+
+    /**
+     * @see  com.cordys.coe.ac.genericldap.soap.impl.BaseImplementation#dispose()
+     */
+    @Override public void dispose()
+    {
+        if (m_membershipCache != null)
+        {
+            m_membershipCache.detach();
+        }
+    }
+
+    /**
+     * @see  com.cordys.coe.ac.genericldap.soap.impl.BaseImplementation#handleRequest(com.cordys.coe.ac.genericldap.soap.BaseMethod)
+     */
+    @Override public void handleRequest(BaseMethod method)
+                                 throws GenericLDAPConnectorException
+    {
+        IGenLDAPConfiguration configuration = method.getConfiguration();
+        IConnectionManager connectionManager = configuration.getConnectionManager();
+
+        // Prepare the XPathMetaInfo object
+        XPathMetaInfo xmi = new XPathMetaInfo();
+        xmi.addNamespaceBinding("ns", Node.getNamespaceURI(method.getRequestXML()));
+
+        // Get the parameter values.
+        String member = getParameter(PARAM_MEMBER).getStringValue(method.getRequestXML(), xmi);
+        String group = getParameter(PARAM_GROUP).getStringValue(method.getRequestXML(), xmi);
+        String baseDN = getOptionalString(method, xmi, PARAM_DN, configuration.getSearchRoot());
+        String memberAttribute = getOptionalString(method, xmi, PARAM_MEMBER_ATTRIBUTE,
+                                                   DEFAULT_MEMBER_ATTRIBUTE);
+
+        if (LOG.isDebugEnabled())
+        {
+            LOG.debug("Resolving membership. Parameters:\nMember: '" + member + "'\nGroup: '" +
+                      group + "'\nBase: '" + baseDN + "'\nMember attribute: '" +
+                      memberAttribute + "'");
+        }
+
+        Boolean isMember = null;
+
+        // The matching rule works on memberOf, which is the back link of member.
+        if (DEFAULT_MEMBER_ATTRIBUTE.equalsIgnoreCase(memberAttribute) &&
+                connectionManager.getServerCapabilities().isCapabilitySupported(ServerCapabilities.ACTIVE_DIRECTORY_OID))
+        {
+            isMember = isMemberInChain(connectionManager, member, group);
+        }
+
+        if (isMember == null)
+        {
+            if (m_membershipCache != null)
+            {
+                m_membershipCache.attach(connectionManager.getChangeBus());
+            }
+
+            // Every search holds a connection, so more searches than connections only wait.
+            ExecutorService executor = (Math.min(configuration.getSearchParallelism(),
+                                                 configuration.getMaxConnections()) > 1)
+                                       ? connectionManager.getSearchExecutor() : null;
+
+            isMember = isMemberByExpansion(connectionManager, baseDN, memberAttribute, member,
+                                           group, executor);
+
+            if ((m_membershipCache != null) && LOG.isDebugEnabled())
+            {
+                LOG.debug("Group membership cache: " + m_membershipCache.getStatistics());
+            }
+        }
+
+        Node.createElementWithParentNS("ismember", String.valueOf(isMember),
+                                       method.getResponseXML());
+    }
+
+    /**
+     * This method searches the groups the given entries are a direct member of. The entries of
+     * which the groups are cached are not searched. The others are searched in parallel if an
+     * executor is given.
+     *
+     * @param   connectionManager  The connection manager.
+     * @param   baseDN             The DN from which the groups are searched.
+     * @param   memberAttribute    The attribute of a group that holds its members.
+     * @param   members            The normalized DNs of the entries.
+     * @param   mayBeNonGroups     Whether the entries may be no groups. The entries found by a
+     *                             search for members are groups.
+     * @param   executor           The executor for the searches. null to search one by one.
+     *
+     * @return  The normalized DNs of the groups of all entries.
+     *
+     * @throws  GenericLDAPConnectorException  In case a search fails.
+     */
+    private List<String> findParentGroups(final IConnectionManager connectionManager,
+                                          final String baseDN, final String memberAttribute,
+                                          List<String> members, final boolean mayBeNonGroups,
+                                          ExecutorService executor)
+                                   throws GenericLDAPConnectorException
+    {
+        List<String> returnValue = new ArrayList<String>();
+        List<Future<String[]>> futures = new ArrayList<Future<String[]>>();
+
+        for (final String member : members)
+        {
+            String[] groups = (m_membershipCache == null)
+                              ? null : m_membershipCache.getParentGroups(member);
+
+            if (groups != null)
+            {
+                Collections.addAll(returnValue, groups);
+            }
+            else if (executor == null)
+            {
+                Collections.addAll(returnValue,
+                                   searchParentGroups(connectionManager, baseDN, memberAttribute,
+                                                      member, mayBeNonGroups));
+            }
+            else
+            {
+                futures.add(executor.submit(new Callable<String[]>()
+                    {
+                        public String[] call()
+                                      throws GenericLDAPConnectorException
+                        {
+                            return searchParentGroups(connectionManager, baseDN,
+                                                      memberAttribute, member, mayBeNonGroups);
+                        }
+                    }));
+            }
+        }
+
+        try
+        {
+            for (Future<String[]> future : futures)
+            {
+                try
+                {
+                    Collections.addAll(returnValue, future.get());
+                }
+                catch (ExecutionException e)
+                {
+                    if (e.getCause() instanceof GenericLDAPConnectorException)
+                    {
+                        throw (GenericLDAPConnectorException) e.getCause();
+                    }
+
+                    throw new GenericLDAPConnectorException(e.getCause(),
+                                                            GenLDAPExceptionMessages.ERROR_EXECUTING_SEARCH_REQUEST);
+                }
+                catch (InterruptedException e)
+                {
+                    Thread.currentThread().interrupt();
+                    throw new GenericLDAPConnectorException(e,
+                                                            GenLDAPExceptionMessages.ERROR_EXECUTING_SEARCH_REQUEST);
+                }
+            }
+        }
+        finally
+        {
+            // After a failure the other searches are not needed anymore.
+            for (Future<String[]> future : futures)
+            {
+                future.cancel(true);
+            }
+        }
+
+        return returnValue;
+    }
+
+    /**
+     * This method resolves the membership by expanding the groups of the member level by level
+     * until the group is found or there are no more groups.
+     *
+     * @param   connectionManager  The connection manager.
+     * @param   baseDN             The DN from which the groups are searched.
+     * @param   memberAttribute    The attribute of a group that holds its members.
+     * @param   member             The DN of the member.
+     * @param   group              The DN of the group.
+     * @param   executor           The executor for parallel searches. null to search one by
+     *                             one.
+     *
+     * @return  true if the entry is a member of the group. Otherwise false.
+     *
+     * @throws  GenericLDAPConnectorException  In case a search fails.
+     */
+    private boolean isMemberByExpansion(IConnectionManager connectionManager, String baseDN,
+                                        String memberAttribute, String member, String group,
+                                        ExecutorService executor)
+                                 throws GenericLDAPConnectorException
+    {
+        String target = DirectoryChangeEvent.normalize(group);
+        Set<String> visited = new HashSet<String>();
+        List<String> level = new ArrayList<String>();
+        int depth = 0;
+
+        level.add(DirectoryChangeEvent.normalize(member));
+        visited.addAll(level);
+
+        while (!level.isEmpty())
+        {
+            depth++;
+
+            List<String> next = new ArrayList<String>();
+
+            // A single entry is searched by the calling thread.
+            for (String parent : findParentGroups(connectionManager, baseDN, memberAttribute,
+                                                  level, depth == 1,
+                                                  (level.size() > 1) ? executor : null))
+            {
+                if (parent.equals(target))
+                {
+                    if (LOG.isDebugEnabled())
+                    {
+                        LOG.debug("Found " + group + " at nesting level " + depth + ".");
+                    }
+
+                    return true;
+                }
+
+                // A group that was expanded already is part of a cycle or reached twice.
+                if (visited.add(parent))
+                {
+                    next.add(parent);
+                }
+            }
+
+            level = next;
+        }
+
+        if (LOG.isDebugEnabled())
+        {
+            LOG.debug("Expanded " + visited.size() + " entries in " + depth + " levels without finding " + group + ".");
+        }
+
+        return false;
+    }
+
+    /**
+     * This method resolves the membership with the matching rule LDAP_MATCHING_RULE_IN_CHAIN of
+     * Active Directory.
+     *
+     * @param   connectionManager  The connection manager.
+     * @param   member             The DN of the member.
+     * @param   group              The DN of the group.
+     *
+     * @return  Whether the entry is a member of the group. null if the server did not accept the
+     *          matching rule.
+     *
+     * @throws  GenericLDAPConnectorException  In case the search could not be started.
+     */
+    private Boolean isMemberInChain(IConnectionManager connectionManager, String member,
+                                    String group)
+                             throws GenericLDAPConnectorException
+    {
+        String filter = "(memberOf:" + MATCHING_RULE_IN_CHAIN + ":=" +
+                        FilterTemplate.escape(group) + ")";
+        SearchLease results = null;
+
+        try
+        {
+            results = connectionManager.openSearch(member, LDAPConnection.SCOPE_BASE, filter,
+                                                   NO_ATTRIBUTES, true, null);
+
+            return Boolean.valueOf(results.hasMore() && (results.next() != null));
+        }
+        catch (LDAPException e)
+        {
+            if (e.getResultCode() == LDAPException.NO_SUCH_OBJECT)
+            {
+                return Boolean.FALSE;
+            }
+
+            if (LOG.isDebugEnabled())
+            {
+                LOG.debug("The server did not resolve the membership with the matching rule in chain. Expanding the groups instead.",
+                          e);
+            }
+
+            return null;
+        }
+        finally
+        {
+            if (results != null)
+            {
+                results.close();
+            }
+        }
+    }
+
+    /**
+     * This method returns whether the given entry is known not to be a group, because none of its
+     * object classes allows the member attribute. An entry that cannot be checked might be a
+     * group.
+     *
+     * @param   connectionManager  The connection manager.
+     * @param   member             The normalized DN of the entry.
+     * @param   memberAttribute    The attribute of a group that holds its members.
+     *
+     * @return  true if the entry cannot be a group. Otherwise false.
+     */
+    private boolean isNonGroup(IConnectionManager connectionManager, String member,
+                               String memberAttribute)
+    {
+        LDAPSchema schema = connectionManager.getSchema();
+        LDAPAttributeSchema attributeSchema = (schema == null)
+                                              ? null : schema.getAttributeSchema(memberAttribute);
+
+        if (attributeSchema == null)
+        {
+            return false;
+        }
+
+        LDAPAttribute objectClasses;
+
+        try
+        {
+            LDAPEntry entry = connectionManager.readLDAPEntry(member,
+                                                              new String[] { "objectClass" });
+
+            objectClasses = (entry == null) ? null : entry.getAttribute("objectClass");
+        }
+        catch (GenericLDAPConnectorException e)
+        {
+            if (LOG.isDebugEnabled())
+            {
+                LOG.debug("Could not read the object classes of " + member, e);
+            }
+
+            return false;
+        }
+
+        if (objectClasses == null)
+        {
+            return false;
+        }
+
+        Set<String> names = new HashSet<String>();
+        names.add(attributeSchema.getID().toLowerCase());
+
+        for (String name : attributeSchema.getNames())
+        {
+            names.add(name.toLowerCase());
+        }
+
+        Set<String> visited = new HashSet<String>();
+
+        for (String objectClass : objectClasses.getStringValueArray())
+        {
+            if (mayHoldAttribute(schema, objectClass, names, visited))
+            {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * This method returns whether an entry of the given object class or one of its superiors may
+     * hold the given attribute. An unknown object class or extensibleObject may hold any
+     * attribute.
+     *
+     * @param   schema       The schema of the server.
+     * @param   objectClass  The name of the object class.
+     * @param   names        The lower case names and OID of the attribute.
+     * @param   visited      The lower case names of the object classes checked already.
+     *
+     * @return  true if the object class may hold the attribute. Otherwise false.
+     */
+    private boolean mayHoldAttribute(LDAPSchema schema, String objectClass, Set<String> names,
+                                     Set<String> visited)
+    {
+        if (!visited.add(objectClass.toLowerCase()))
+        {
+            return false;
+        }
+
+        LDAPObjectClassSchema classSchema = schema.getObjectClassSchema(objectClass);
+
+        if ((classSchema == null) || "extensibleObject".equalsIgnoreCase(objectClass))
+        {
+            return true;
+        }
+
+        for (String[] attributes : new String[][]
+                 {
+                     classSchema.getRequiredAttributes(), classSchema.getOptionalAttributes()
+                 })
+        {
+            if (attributes != null)
+            {
+                for (String attribute : attributes)
+                {
+                    if (names.contains(attribute.toLowerCase()))
+                    {
+                        return true;
+                    }
+                }
+            }
+        }
+
+        if (classSchema.getSuperiors() != null)
+        {
+            for (String superior : classSchema.getSuperiors())
+            {
+                if (mayHoldAttribute(schema, superior, names, visited))
+                {
+                    return true;
+                }
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * This method searches the groups the given entry is a direct member of and caches them.
+     *
+     * @param   connectionManager  The connection manager.
+     * @param   baseDN             The DN from which the groups are searched.
+     * @param   memberAttribute    The attribute of a group that holds its members.
+     * @param   member             The normalized DN of the entry.
+     * @param   mayBeNonGroup      Whether the entry may be no group.
+     *
+     * @return  The normalized DNs of the groups.
+     *
+     * @throws  GenericLDAPConnectorException  In case the search fails.
+     */
+    private String[] searchParentGroups(IConnectionManager connectionManager, String baseDN,
+                                        String memberAttribute, String member,
+                                        boolean mayBeNonGroup)
+                                 throws GenericLDAPConnectorException
+    {
+        // The generation must be read before searching, so a change made during the search
+        // prevents the outdated groups from being cached.
+        long generation = (m_membershipCache == null) ? 0 : m_membershipCache.getGeneration();
+        boolean nonGroup = (m_membershipCache != null) && mayBeNonGroup &&
+                           isNonGroup(connectionManager, member, memberAttribute);
+        List<String> groups = new ArrayList<String>();
+
+        LDAPSearchConstraints constraints = new LDAPSearchConstraints();
+        constraints.setMaxResults(0);
+
+        SearchLease results = connectionManager.openSearch(baseDN, LDAPConnection.SCOPE_SUB,
+                                                           "(" + memberAttribute + "=" +
+                                                           FilterTemplate.escape(member) + ")",
+                                                           NO_ATTRIBUTES, true, constraints);
+
+        try
+        {
+            while (results.hasMore())
+            {
+                groups.add(DirectoryChangeEvent.normalize(results.next().getDN()));
+            }
+        }
+        catch (LDAPException e)
+        {
+            throw new GenericLDAPConnectorException(e,
+                                                    GenLDAPExceptionMessages.ERROR_EXECUTING_SEARCH_REQUEST);
+        }
+        finally
+        {
+            results.close();
+        }
+
+        String[] returnValue = groups.toArray(new String[groups.size()]);
+
+        if (m_membershipCache != null)
+        {
+            m_membershipCache.putParentGroups(member, returnValue, nonGroup, generation);
+        }
+
+        return returnValue;
+    }
+}
@@ -22,6 +22,8 @@ import java.util.Enumeration;
 import java.util.List;
 import java.util.Locale;
 
+import com.cordys.coe.ac.genericldap.cache.DirectoryChangeEvent;
+import com.cordys.coe.ac.genericldap.cache.NegativeLookupCache;
 import com.cordys.coe.ac.genericldap.exception.GenericLDAPConnectorException;
 import com.cordys.coe.ac.genericldap.localization.GenLDAPExceptionMessages;
 import com.cordys.coe.ac.genericldap.localization.GeneralMessages;
@@ -218,6 +220,8 @@ class LDAPUpdateWrapper
          throws GenericLDAPConnectorException
     {
     	XPathMetaInfo xmi = method.getXPathMetaInfo();
+        NegativeLookupCache missingEntries = method.getConfiguration().getConnectionManager()
+                                                  .getNegativeLookupCache();
         original = XPathHelper.selectSingleNode(tuple, "ns:old/ns:entry", xmi);
         proposal = XPathHelper.selectSingleNode(tuple, "ns:new/ns:entry", xmi);
 
@@ -237,7 +241,9 @@ class LDAPUpdateWrapper
 
             try
             {
-                LDAPEntry ldapEntry = connection.read(dn);
+                // Probing for new entries is common, so the ones that are known to be missing
+                // are not read again.
+                LDAPEntry ldapEntry = missingEntries.read(connection, dn, null);
 
                 if (ldapEntry.getDN() != null)
                 {
@@ -370,7 +376,7 @@ class LDAPUpdateWrapper
 
                 try
                 {
-                    connection.read(proposedDn);
+                    missingEntries.read(connection, proposedDn, null);
                     throw new GenericLDAPConnectorException(GenLDAPExceptionMessages.GLE_ALREADY_EXISTS_IN_LDAP,
                                                             proposedDn);
                 }
@@ -858,6 +864,30 @@ class LDAPUpdateWrapper
         }
     }
 
+    /**
+     * This method returns the change this update makes to the directory. A rename moves the
+     * whole subtree, and a recursive delete removes it.
+     * 
+     * @return The change this update makes to the directory.
+     */
+    DirectoryChangeEvent getChangeEvent()
+    {
+        if (original == 0)
+        {
+            return new DirectoryChangeEvent(dn, null, false);
+        }
+        else if (proposal == 0)
+        {
+            return new DirectoryChangeEvent(dn, null, deleteRecursive);
+        }
+        else if (rename)
+        {
+            return new DirectoryChangeEvent(dn, proposedDn, true);
+        }
+
+        return new DirectoryChangeEvent(proposedDn, null, false);
+    }
+
     /**
      * This method returns the source tuple XML for this entry.
      * 
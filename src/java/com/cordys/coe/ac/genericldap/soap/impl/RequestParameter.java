@@ -24,6 +24,9 @@ import com.cordys.coe.util.xml.nom.XPathHelper;
 import com.eibus.xml.nom.Node;
 import com.eibus.xml.xpath.XPathMetaInfo;
 
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * This call holds the parameter defintion details.
  *
@@ -352,6 +355,59 @@ class RequestParameter
         return returnValue;
     }
 
+    /**
+     * This method returns all string values for the current parameter. It is used for parameters
+     * that occur multiple times. If the fixed value is defined it will always return that value.
+     * If an XPath is defined it will be executed on the request XML and the non-empty values of
+     * all matching nodes are returned. If none are found and the parameter is defined as mandatory
+     * it will throw an exception. If the parameter is optional it will return the default value
+     * if there is one.
+     *
+     * @param   requestXML  The XML to execute the XPath on.
+     * @param   xmi         The namespace mapping object. The prefix ns MUST be mapped to the XML's
+     *                      namespace.
+     *
+     * @return  The values for this parameter.
+     *
+     * @throws  GenericLDAPConnectorException  In case of any exceptions.
+     */
+    public String[] getStringValues(int requestXML, XPathMetaInfo xmi)
+                             throws GenericLDAPConnectorException
+    {
+        if (m_fixedValue != null)
+        {
+            return new String[] { m_fixedValue };
+        }
+
+        List<String> returnValue = new ArrayList<String>();
+
+        for (int node : XPathHelper.selectNodes(requestXML, m_xpath, xmi))
+        {
+            String value = Node.getDataWithDefault(node, "").trim();
+
+            if (value.length() > 0)
+            {
+                returnValue.add(value);
+            }
+        }
+
+        if (returnValue.isEmpty())
+        {
+            if (m_mandatory)
+            {
+                throw new GenericLDAPConnectorException(GenLDAPExceptionMessages.GLE_MISSING_MANDATORY_PARAMETER,
+                                                        getName(), getXPath());
+            }
+
+            if (m_defaultValue != null)
+            {
+                returnValue.add(m_defaultValue);
+            }
+        }
+
+        return returnValue.toArray(new String[returnValue.size()]);
+    }
+
     /**
      * This method gets the XPath for this parameter.
      *
@@ -17,56 +17,48 @@
  */
 package com.cordys.coe.ac.genericldap.soap.impl;
 
+import com.cordys.coe.ac.genericldap.connection.AttributeRange;
+import com.cordys.coe.ac.genericldap.connection.IRangeReader;
+import com.cordys.coe.ac.genericldap.exception.GenericLDAPConnectorException;
+import com.cordys.coe.ac.genericldap.schema.SchemaIndex;
+
 import com.eibus.util.logger.CordysLogger;
 import com.eibus.util.logger.Severity;
 
 import com.eibus.xml.nom.Node;
 
 import com.novell.ldap.LDAPAttribute;
-import com.novell.ldap.LDAPAttributeSchema;
+import com.novell.ldap.LDAPConnection;
 import com.novell.ldap.LDAPEntry;
-import com.novell.ldap.LDAPSchema;
+import com.novell.ldap.LDAPException;
 import com.novell.ldap.util.Base64;
 
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Enumeration;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
-
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.TreeMap;
 
 /**
- * This class builds up the response XML for the current request.
+ * This class builds up the response XML for the current request. The entries can either be passed
+ * at once or be appended one by one while the search results come in. The latter keeps only one
+ * entry in memory at a time, unless the entries are retained to be cached. When the server
+ * returned only a range of the values of an attribute, the other ranges are read and added one
+ * by one as well.
  *
  * @author  pgussow
  */
 public class ResponseBuilder
 {
-    /**
-     * Holds all know binary data types.
-     */
-    private static ArrayList<Integer> s_binaryTypes = new ArrayList<Integer>();
-
-    static
-    {
-        // See http://www.alvestrand.no/objectid/1.3.6.1.4.1.1466.115.121.1.html for more
-        // information.
-        s_binaryTypes.add(4); // Audio
-        s_binaryTypes.add(5); // Binary
-        s_binaryTypes.add(8); // Certificate
-        s_binaryTypes.add(9); // Certificate List
-        s_binaryTypes.add(10); // Certificate key pair
-        s_binaryTypes.add(28); // JPeg image
-        s_binaryTypes.add(40); // Octect String
-    }
-
     /**
      * Holds the logger to use.
      */
     private static final CordysLogger LOG = CordysLogger.getCordysLogger(ResponseBuilder.class);
+    /**
+     * Holds the number of entries that have been added to the response.
+     */
+    private int m_entryCount = 0;
     /**
      * Holds the entries to return.
      */
@@ -79,43 +71,69 @@ public class ResponseBuilder
      * Holds the list of attributes that should be included.
      */
     private Map<String, IAttributeDefinition> m_includeAttributes;
+    /**
+     * Holds the maximum number of entries to retain.
+     */
+    private int m_maxRetainedEntries;
+    /**
+     * Holds the reader for the remaining ranges of the values of an attribute. null if only the
+     * returned range is added.
+     */
+    private IRangeReader m_rangeReader;
     /**
      * Holds the response XML.
      */
     private int m_responseXML;
     /**
-     * Holds teh LDAP schema.
+     * Holds the entries that were added to the response. null if they are not retained or there
+     * were too many of them.
+     */
+    private List<LDAPEntry> m_retainedEntries;
+    /**
+     * Holds the index of the attribute types in the LDAP schema.
      */
-    private LDAPSchema m_schema;
+    private SchemaIndex m_schemaIndex;
+
     /**
-     * Holds the pattern for getting the last digits.
+     * Creates a new ResponseBuilder object for appending the entries one by one.
+     *
+     * @param  responseXML        Holds the response XML.
+     * @param  schemaIndex        Holds the index of the attribute types in the schema.
+     * @param  includeAttributes  Holds the list of attributes that should be included.
+     * @param  excludeAttributes  Holds the list of attributes that should be excluded.
      */
-    private final Pattern m_typePattern = Pattern.compile("^1\\.3\\.6\\.1\\.4\\.1\\.1466\\.115\\.121\\.1\\.([\\d]+)$");
+    public ResponseBuilder(int responseXML, SchemaIndex schemaIndex,
+                           Map<String, IAttributeDefinition> includeAttributes,
+                           Map<String, IAttributeDefinition> excludeAttributes)
+    {
+        this(responseXML, new LDAPEntry[0], schemaIndex, includeAttributes, excludeAttributes);
+    }
 
     /**
      * Creates a new ResponseBuilder object.
      *
      * @param  responseXML        Holds the response XML.
      * @param  entries            Holds the entries to return.
-     * @param  schema             Holds the schema to return.
+     * @param  schemaIndex        Holds the index of the attribute types in the schema.
      * @param  includeAttributes  Holds the list of attributes that should be included.
      * @param  excludeAttributes  Holds the list of attributes that should be excluded.
      */
-    public ResponseBuilder(int responseXML, LDAPEntry[] entries, LDAPSchema schema,
+    public ResponseBuilder(int responseXML, LDAPEntry[] entries, SchemaIndex schemaIndex,
                            Map<String, IAttributeDefinition> includeAttributes,
                            Map<String, IAttributeDefinition> excludeAttributes)
     {
         m_responseXML = responseXML;
         m_entries = entries;
-        m_schema = schema;
-        m_includeAttributes = includeAttributes;
-        m_excludeAttributes = excludeAttributes;
+        m_schemaIndex = schemaIndex;
+        m_includeAttributes = ignoreCase(includeAttributes);
+        m_excludeAttributes = ignoreCase(excludeAttributes);
     }
 
     /**
      * This method builds up the actual response.
      */
     public void buildResponse()
+                       throws GenericLDAPConnectorException
     {
         if (LOG.isDebugEnabled())
         {
@@ -124,67 +142,147 @@ public class ResponseBuilder
 
         for (LDAPEntry entry : m_entries)
         {
-            int tupleXML = Node.createElementWithParentNS("tuple", null, m_responseXML);
-            int oldXML = Node.createElementWithParentNS("old", null, tupleXML);
-
-            int entryXML = Node.createElementWithParentNS("entry", null, oldXML);
-            Node.setAttribute(entryXML, "dn", entry.getDN());
+            appendEntry(entry);
+        }
+    }
 
-            Iterator<?> attributes = entry.getAttributeSet().iterator();
+    /**
+     * This method adds the given entry to the response. After this the entry is no longer
+     * referenced by the builder, unless the entries are retained.
+     *
+     * @param   entry  The entry to add.
+     *
+     * @throws  GenericLDAPConnectorException  In case the remaining values of an attribute could
+     *                                         not be read.
+     */
+    public void appendEntry(LDAPEntry entry)
+                     throws GenericLDAPConnectorException
+    {
+        m_entryCount++;
 
-            while (attributes.hasNext())
+        if (m_retainedEntries != null)
+        {
+            if (m_retainedEntries.size() < m_maxRetainedEntries)
             {
-                LDAPAttribute attribute = (LDAPAttribute) attributes.next();
+                m_retainedEntries.add(entry);
+            }
+            else
+            {
+                m_retainedEntries = null;
+            }
+        }
 
-                String attrName = attribute.getBaseName();
+        int tupleXML = Node.createElementWithParentNS("tuple", null, m_responseXML);
+        int oldXML = Node.createElementWithParentNS("old", null, tupleXML);
 
-                if (shouldInclude(attrName))
-                {
-                    // Determine whether it's a binary or string attribute.
-                    boolean isBinary = isBinary(attribute, m_schema);
-
-                    // Create the root tag for the attribute.
-                    int xmlAttribute = Node.createElementWithParentNS(attrName, null, entryXML);
-                    String attrOptions = attribute.getName();
-                    if(!attrName.equals(attrOptions)) {
-                    	try {
-                    		Node.setAttribute(xmlAttribute, "options", attrOptions.substring(attrOptions.indexOf(';')+1));	
+        int entryXML = Node.createElementWithParentNS("entry", null, oldXML);
+        Node.setAttribute(entryXML, "dn", entry.getDN());
+
+        Iterator<?> attributes = entry.getAttributeSet().iterator();
+
+        while (attributes.hasNext())
+        {
+            LDAPAttribute attribute = (LDAPAttribute) attributes.next();
+
+            String attrName = attribute.getBaseName();
+
+            if (shouldInclude(attrName))
+            {
+                // Determine whether it's a binary or string attribute.
+                boolean isBinary = isBinary(attribute);
+
+                // Create the root tag for the attribute.
+                int xmlAttribute = Node.createElementWithParentNS(attrName, null, entryXML);
+                AttributeRange range = (m_rangeReader == null) ? null
+                                                               : AttributeRange.parse(attribute);
+                String attrOptions = (range == null) ? attribute.getName() : range.getName();
+                if(!attrName.equals(attrOptions)) {
+                	try {
+                		Node.setAttribute(xmlAttribute, "options", attrOptions.substring(attrOptions.indexOf(';')+1));	
 						} catch (Exception e) {
 							if (LOG.isEnabled(Severity.FATAL)) {
 								LOG.log(Severity.FATAL, "Failed to set response options for attribute --> " + attrOptions);
 							}
 						}
-                    	
-                    }
-
-                    if (isBinary)
-                    {
-                        Enumeration<?> buffers = attribute.getByteValues();
-
-                        while (buffers.hasMoreElements())
-                        {
-                            Node.createCDataElementWithParentNS("binary",
-                                                                Base64.encode((byte[])
-                                                                              buffers
-                                                                              .nextElement()),
-                                                                xmlAttribute);
-                        }
-                    }
-                    else
-                    {
-                        Enumeration<?> strings = attribute.getStringValues();
-
-                        while (strings.hasMoreElements())
-                        {
-                            String value = strings.nextElement().toString();
-                            Node.createElementWithParentNS("string", value, xmlAttribute);
-                        }
-                    }
+                	
+                }
+
+                appendValues(xmlAttribute, attribute, isBinary);
+
+                if (range != null)
+                {
+                    appendRemainingRanges(entry.getDN(), xmlAttribute, range, isBinary);
                 }
             }
         }
     }
 
+    /**
+     * This method adds a tuple to the response for an entry that could not be read.
+     *
+     * @param  dn     The DN of the entry.
+     * @param  error  The reason the entry could not be read.
+     */
+    public void appendError(String dn, LDAPException error)
+    {
+        int tupleXML = Node.createElementWithParentNS("tuple", null, m_responseXML);
+
+        String message = error.getLDAPErrorMessage();
+
+        if ((message == null) || (message.length() == 0))
+        {
+            message = LDAPException.resultCodeToString(error.getResultCode());
+        }
+
+        int errorXML = Node.createElementWithParentNS("error", message, tupleXML);
+        Node.setAttribute(errorXML, "dn", dn);
+        Node.setAttribute(errorXML, "resultcode", String.valueOf(error.getResultCode()));
+    }
+
+    /**
+     * This method returns the number of entries that have been added to the response.
+     *
+     * @return  The number of entries in the response.
+     */
+    public int getEntryCount()
+    {
+        return m_entryCount;
+    }
+
+    /**
+     * This method returns the entries that were added to the response since
+     * {@link #retainEntries(int)} was called.
+     *
+     * @return  The entries. null if the entries were not retained or there were too many of them.
+     */
+    public LDAPEntry[] getRetainedEntries()
+    {
+        return (m_retainedEntries == null) ? null : m_retainedEntries.toArray(new LDAPEntry[0]);
+    }
+
+    /**
+     * This method makes the builder keep the entries that are added to the response, e.g. to cache
+     * them. When more entries are added than the given maximum the entries are no longer kept.
+     *
+     * @param  maxEntries  The maximum number of entries to keep.
+     */
+    public void retainEntries(int maxEntries)
+    {
+        m_maxRetainedEntries = maxEntries;
+        m_retainedEntries = new ArrayList<LDAPEntry>();
+    }
+
+    /**
+     * This method sets the reader for the remaining ranges of the values of an attribute. Without
+     * a reader only the range the server returned is added and the range is shown in the options.
+     *
+     * @param  rangeReader  The reader for the ranges.
+     */
+    public void setRangeReader(IRangeReader rangeReader)
+    {
+        m_rangeReader = rangeReader;
+    }
+
     /**
      * This method returns whether or not the attribute should be included in the response.
      *
@@ -196,106 +294,192 @@ public class ResponseBuilder
     {
     	boolean returnValue = false;
     	
-    	if ((m_includeAttributes.size() == 0)||  m_includeAttributes.containsKey("*") || m_includeAttributes.containsKey(attrName))
+    	if (m_excludeAttributes.containsKey(attrName))
+    	{
+    		returnValue = false;
+    	}
+    	else if (m_includeAttributes.containsKey(attrName))
     	{
     		returnValue = true;
-    		if (m_excludeAttributes.containsKey(attrName))
-    		{
-    			returnValue = false;
-    		}	
+    	}
+    	else if (!m_excludeAttributes.containsKey(LDAPConnection.ALL_USER_ATTRS))
+    	{
+    		// Without a list every attribute is included, unless all attributes are excluded.
+    		returnValue = (m_includeAttributes.size() == 0) ||
+    		              m_includeAttributes.containsKey(LDAPConnection.ALL_USER_ATTRS);
     	}
     	
     	return returnValue;
     }
 
     /**
-     * This method returns true if the data for this attribute is binary. For now this check is done
-     * NOT based on the actual schema, but based on if the subtypes indicate it's binary.
+     * This method reads the ranges of the values after the given range and adds the values to the
+     * attribute. Only one range is kept in memory at a time.
      *
-     * @param   attribute  The LDAP attribute.
-     * @param   schema     The actual LDAP schema.
+     * @param   dn            The DN of the entry.
+     * @param   xmlAttribute  The tag of the attribute.
+     * @param   range         The range of the values that has been added.
+     * @param   isBinary      Whether or not the values are binary.
      *
-     * @return  true if the data is binary. Otherwise false.
+     * @throws  GenericLDAPConnectorException  In case a range could not be read.
      */
-    private boolean isBinary(LDAPAttribute attribute, LDAPSchema schema)
+    private void appendRemainingRanges(String dn, int xmlAttribute, AttributeRange range,
+                                       boolean isBinary)
+                                throws GenericLDAPConnectorException
     {
-        if (attribute == null)
+        int ranges = 1;
+
+        while (!range.isLast())
         {
-            return false;
-        }
+            LDAPAttribute attribute = m_rangeReader.readAttributeRange(dn, range.getNextName());
 
-        boolean returnValue = false;
-        List<String> subtypes = Arrays.asList(attribute.getSubtypes());
+            if (attribute == null)
+            {
+                break;
+            }
+
+            appendValues(xmlAttribute, attribute, isBinary);
+            ranges++;
+
+            AttributeRange next = AttributeRange.parse(attribute);
+
+            // Without a range the server returned all remaining values. A range that does not
+            // move forward would never end.
+            if ((next == null) || (!next.isLast() && (next.getNextStart() <= range.getNextStart())))
+            {
+                break;
+            }
 
-        if (subtypes.contains("binary"))
+            range = next;
+        }
+
+        if (LOG.isDebugEnabled())
         {
-            returnValue = true;
+            LOG.debug("Read " + range.getName() + " of " + dn + " in " + ranges + " ranges.");
         }
+    }
 
-        if (!returnValue)
+    /**
+     * This method adds the values of the attribute to the tag of the attribute.
+     *
+     * @param  xmlAttribute  The tag of the attribute.
+     * @param  attribute     The LDAP attribute.
+     * @param  isBinary      Whether or not the values are binary.
+     */
+    private static void appendValues(int xmlAttribute, LDAPAttribute attribute, boolean isBinary)
+    {
+        if (isBinary)
         {
-            // Last resort: check the defined attributes.
-            if ((m_excludeAttributes != null) &&
-                    m_excludeAttributes.containsKey(attribute.getBaseName()) &&
-                    (m_excludeAttributes.get(attribute.getBaseName()).getType() ==
-                         EAttributeType.BINARY))
+            Enumeration<?> buffers = attribute.getByteValues();
+
+            while (buffers.hasMoreElements())
             {
-                returnValue = true;
+                Node.createCDataElementWithParentNS("binary",
+                                                    Base64.encode((byte[]) buffers.nextElement()),
+                                                    xmlAttribute);
             }
+        }
+        else
+        {
+            Enumeration<?> strings = attribute.getStringValues();
 
-            if ((returnValue == false) && (m_includeAttributes != null) &&
-                    m_includeAttributes.containsKey(attribute.getBaseName()) &&
-                    (m_includeAttributes.get(attribute.getBaseName()).getType() ==
-                         EAttributeType.BINARY))
+            while (strings.hasMoreElements())
             {
-                returnValue = true;
+                String value = strings.nextElement().toString();
+                Node.createElementWithParentNS("string", value, xmlAttribute);
             }
         }
+    }
 
-        // Last resort: look at the schema and figure it out. Note: For the sake of performance this
-        // schould really be moved to when the connection is made. There we should read the
-        // attribute's schemas and decide the type for each attribute.
-        if ((schema != null) && (returnValue == false))
+    /**
+     * This method returns true if the data for this attribute is binary. The subtypes and the
+     * attribute definitions of the request take precedence. Otherwise the type is taken from the
+     * index of the schema, which is built once when the schema is read.
+     *
+     * @param   attribute  The LDAP attribute.
+     *
+     * @return  true if the data is binary. Otherwise false.
+     */
+    private boolean isBinary(LDAPAttribute attribute)
+    {
+        if (attribute == null)
         {
-            LDAPAttributeSchema attrSchema = schema.getAttributeSchema(attribute.getBaseName());
+            return false;
+        }
 
-            if (attrSchema != null)
-            {
-                String syntax = attrSchema.getSyntaxString();
+        boolean returnValue = false;
 
-                if (syntax != null)
-                {
-                    if (LOG.isDebugEnabled())
-                    {
-                        LOG.debug("Syntax for attribute " + attribute.getBaseName() + " is " +
-                                  syntax);
-                    }
+        for (String subtype : attribute.getSubtypes())
+        {
+            if ("binary".equals(subtype))
+            {
+                returnValue = true;
+                break;
+            }
+        }
 
-                    Matcher m = m_typePattern.matcher(syntax);
+        String baseName = attribute.getBaseName();
 
-                    if (m.matches())
-                    {
-                        int dataType = Integer.parseInt(m.group(1));
+        if (!returnValue)
+        {
+            // Check the defined attributes.
+            returnValue = isDefinedAsBinary(m_excludeAttributes, baseName) ||
+                          isDefinedAsBinary(m_includeAttributes, baseName);
+        }
 
-                        returnValue = s_binaryTypes.contains(dataType);
-                    }
-                }
-                else
-                {
-                    if (LOG.isDebugEnabled())
-                    {
-                        LOG.debug("Attribute type could not be determined. Defaulting to binary.");
-                    }
-                }
-            }
+        // Last resort: look at the schema.
+        if (!returnValue && (m_schemaIndex != null))
+        {
+            returnValue = m_schemaIndex.isBinary(baseName);
         }
 
         if (LOG.isDebugEnabled())
         {
-            LOG.debug("Attribute " + attribute.getBaseName() + " is " +
-                      (returnValue ? "" : "NOT ") + "binary.");
+            LOG.debug("Attribute " + baseName + " is " + (returnValue ? "" : "NOT ") + "binary.");
         }
 
         return returnValue;
     }
+
+    /**
+     * This method returns a copy of the attribute definitions in which the names are case
+     * insensitive, like the attribute names in LDAP.
+     *
+     * @param   definitions  The attribute definitions.
+     *
+     * @return  The case insensitive attribute definitions.
+     */
+    private static Map<String, IAttributeDefinition> ignoreCase(Map<String, IAttributeDefinition> definitions)
+    {
+        Map<String, IAttributeDefinition> returnValue = new TreeMap<String, IAttributeDefinition>(String.CASE_INSENSITIVE_ORDER);
+
+        if (definitions != null)
+        {
+            returnValue.putAll(definitions);
+        }
+
+        return returnValue;
+    }
+
+    /**
+     * This method returns whether the attribute is defined as binary in the given attribute
+     * definitions.
+     *
+     * @param   definitions  The attribute definitions.
+     * @param   baseName     The name of the attribute.
+     *
+     * @return  true if the attribute is defined as binary. Otherwise false.
+     */
+    private static boolean isDefinedAsBinary(Map<String, IAttributeDefinition> definitions,
+                                             String baseName)
+    {
+        if (definitions == null)
+        {
+            return false;
+        }
+
+        IAttributeDefinition definition = definitions.get(baseName);
+
+        return (definition != null) && (definition.getType() == EAttributeType.BINARY);
+    }
 }
@@ -15,9 +15,16 @@
 package com.cordys.coe.ac.genericldap.soap.impl;
 
 import com.cordys.coe.ac.genericldap.EDynamicAction;
+import com.cordys.coe.ac.genericldap.cache.CacheDefinition;
+import com.cordys.coe.ac.genericldap.cache.SearchResultCache;
 import com.cordys.coe.ac.genericldap.connection.IConnectionManager;
+import com.cordys.coe.ac.genericldap.connection.PagedSearchLease;
+import com.cordys.coe.ac.genericldap.connection.RequestCoalescer;
+import com.cordys.coe.ac.genericldap.connection.SearchLease;
+import com.cordys.coe.ac.genericldap.connection.SortSpecification;
 import com.cordys.coe.ac.genericldap.exception.GenericLDAPConnectorException;
 import com.cordys.coe.ac.genericldap.localization.GenLDAPExceptionMessages;
+import com.cordys.coe.ac.genericldap.localization.GeneralMessages;
 import com.cordys.coe.ac.genericldap.soap.BaseMethod;
 import com.cordys.coe.util.xml.nom.XPathHelper;
 
@@ -27,13 +34,13 @@ import com.eibus.xml.nom.Node;
 import com.eibus.xml.xpath.XPathMetaInfo;
 
 import com.novell.ldap.LDAPConnection;
+import com.novell.ldap.LDAPControl;
 import com.novell.ldap.LDAPEntry;
+import com.novell.ldap.LDAPException;
 import com.novell.ldap.LDAPSearchConstraints;
-import com.novell.ldap.LDAPSearchResults;
+import com.novell.ldap.controls.LDAPVirtualListControl;
+import com.novell.ldap.controls.LDAPVirtualListResponse;
 
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Map;
 
 /**
  * This calls wraps the implementation of the SearchLDAP action.
@@ -47,13 +54,14 @@ public class SearchLDAPImpl extends GetLDAPObjectImpl
      */
     private static final CordysLogger LOG = CordysLogger.getCordysLogger(SearchLDAPImpl.class);
     /**
-     * Holds the name of the parameter 'scope'.
+     * Holds the maximum number of entries of a search that are handed to identical searches that
+     * waited for it.
      */
-    private static final String PARAM_SCOPE = "scope";
+    private static final int MAX_SHARED_ENTRIES = 1000;
     /**
-     * Holds the name of the parameter 'filter'.
+     * Holds the name of the parameter 'scope'.
      */
-    private static final String PARAM_FILTER = "filter";
+    private static final String PARAM_SCOPE = "scope";
     /**
      * Holds the name of the parameter 'sort'.
      */
@@ -66,6 +74,62 @@ public class SearchLDAPImpl extends GetLDAPObjectImpl
      * Holds the name of the parameter 'referralfollowing'.
      */
     private static final String PARAM_REFERRAL_FOLLOWING = "referralfollowing";
+    /**
+     * Holds the name of the parameter 'pagesize'.
+     */
+    private static final String PARAM_PAGE_SIZE = "pagesize";
+    /**
+     * Holds the name of the parameter 'cookie'.
+     */
+    private static final String PARAM_COOKIE = "cookie";
+    /**
+     * Holds the name of the parameter 'vlvoffset'.
+     */
+    private static final String PARAM_VLV_OFFSET = "vlvoffset";
+    /**
+     * Holds the name of the parameter 'vlvjumpto'.
+     */
+    private static final String PARAM_VLV_JUMP_TO = "vlvjumpto";
+    /**
+     * Holds the name of the parameter 'vlvbefore'.
+     */
+    private static final String PARAM_VLV_BEFORE = "vlvbefore";
+    /**
+     * Holds the name of the parameter 'vlvafter'.
+     */
+    private static final String PARAM_VLV_AFTER = "vlvafter";
+    /**
+     * Holds the name of the parameter 'vlvcontentcount'.
+     */
+    private static final String PARAM_VLV_CONTENT_COUNT = "vlvcontentcount";
+    /**
+     * Holds the name of the parameter 'vlvcontext'.
+     */
+    private static final String PARAM_VLV_CONTEXT = "vlvcontext";
+    /**
+     * Holds the names of the optional parameters. They do not have to be defined in the method
+     * implementation, so existing method implementations keep working.
+     */
+    private static final String[] OPTIONAL_PARAMETERS = new String[]
+                                                        {
+                                                            PARAM_PAGE_SIZE, PARAM_COOKIE,
+                                                            PARAM_VLV_OFFSET, PARAM_VLV_JUMP_TO,
+                                                            PARAM_VLV_BEFORE, PARAM_VLV_AFTER,
+                                                            PARAM_VLV_CONTENT_COUNT,
+                                                            PARAM_VLV_CONTEXT
+                                                        };
+    /**
+     * Holds the OID of the virtual list view control.
+     */
+    private static final String VLV_CONTROL_OID = "2.16.840.1.113730.3.4.9";
+    /**
+     * Holds the definition of the filter.
+     */
+    private FilterDefinition m_filter;
+    /**
+     * Holds the cache for the search results. null if the results are not cached.
+     */
+    private SearchResultCache m_resultCache;
 
     /**
      * Creates a new SearchLDAPImpl object.
@@ -102,8 +166,8 @@ public class SearchLDAPImpl extends GetLDAPObjectImpl
                                                     "filter");
         }
 
-        param = RequestParameter.getInstance(filter);
-        addRequestParameter(param);
+        // The filter is either a parameter or a template with parameters for its placeholders.
+        m_filter = FilterDefinition.parse(filter);
 
         // Parse the implementation for parameter sort.
         int sort = XPathHelper.selectSingleNode(actionXML, "impl:sort", m_xmi);
@@ -139,6 +203,38 @@ public class SearchLDAPImpl extends GetLDAPObjectImpl
 
         param = RequestParameter.getInstance(referralfollowing);
         addRequestParameter(param);
+
+        // The parameters for paging and virtual list views are optional.
+        for (String name : OPTIONAL_PARAMETERS)
+        {
+            int optional = XPathHelper.selectSingleNode(actionXML, "impl:" + name, m_xmi);
+
+            if (optional != 0)
+            {
+                addRequestParameter(RequestParameter.getInstance(optional));
+            }
+        }
+
+        // The cache is bounded by the total number of LDAP entries in the results.
+        CacheDefinition cache = getCacheDefinition();
+
+        if (cache != null)
+        {
+            m_resultCache = new SearchResultCache(cache.getTimeToLive(), cache.getMaxEntries());
+        }
+    }
+
+    /**
+     * @see  com.cordys.coe.ac.genericldap.soap.impl.GetLDAPObjectImpl#dispose()
+     */
+    @Override public void dispose()
+    {
+        super.dispose();
+
+        if (m_resultCache != null)
+        {
+            m_resultCache.detach();
+        }
     }
 
     /**
@@ -153,10 +249,11 @@ public class SearchLDAPImpl extends GetLDAPObjectImpl
         // Now we need to get the value for the parameter 'dn'
         RequestParameter paramDN = getParameter(PARAM_DN);
         RequestParameter paramScope = getParameter(PARAM_SCOPE);
-        RequestParameter paramFilter = getParameter(PARAM_FILTER);
         RequestParameter paramSort = getParameter(PARAM_SORT);
         RequestParameter paramMaxSearchResults = getParameter(PARAM_MAX_SEARCH_RESULTS);
         RequestParameter paramReferralFollowing = getParameter(PARAM_REFERRAL_FOLLOWING);
+        RequestParameter paramPageSize = getParameter(PARAM_PAGE_SIZE);
+        RequestParameter paramCookie = getParameter(PARAM_COOKIE);
 
         // Prepare the XPathMetaInfo object
         XPathMetaInfo xmi = new XPathMetaInfo();
@@ -167,22 +264,131 @@ public class SearchLDAPImpl extends GetLDAPObjectImpl
         int scope = LDAPConnection.SCOPE_SUB;
         scope = paramScope.getIntValue(method.getRequestXML(), xmi);
 
-        String filter = paramFilter.getStringValue(method.getRequestXML(), xmi);
+        String filter = m_filter.getFilter(method.getRequestXML(), xmi);
         String sort = paramSort.getStringValue(method.getRequestXML(), xmi);
         int maxSearchResults = paramMaxSearchResults.getIntValue(method.getRequestXML(), xmi,
                                                                  method.getConfiguration()
                                                                  .getMaximumNumberOfSearchResults());
         boolean referralFollowing = paramReferralFollowing.getBooleanValue(method.getRequestXML(), xmi);
+        int pageSize = (paramPageSize == null) ? 0
+                                               : paramPageSize.getIntValue(method.getRequestXML(),
+                                                                           xmi);
+        String cookie = (paramCookie == null) ? null
+                                              : paramCookie.getStringValue(method.getRequestXML(),
+                                                                           xmi);
 
         String[] attributeNames = determineAttributesToIncludeInSearch(method, xmi);
 
+        // The server sorts if it supports it. Otherwise the connector sorts the results.
+        SortSpecification sortSpecification = SortSpecification.parse(sort);
+        boolean serverSort = (sortSpecification != null) &&
+                             connectionManager.getServerCapabilities().isControlSupported(SortSpecification.SORT_CONTROL_OID);
+
+        // A virtual list view returns a window of the sorted list.
+        LDAPVirtualListControl vlvControl = createVirtualListControl(method, xmi,
+                                                                     maxSearchResults);
+
+        if (vlvControl != null)
+        {
+            if (sortSpecification == null)
+            {
+                throw new GenericLDAPConnectorException(GenLDAPExceptionMessages.GLE_A_VIRTUAL_LIST_VIEW_REQUIRES_A_SORT_ORDER);
+            }
+
+            if (!serverSort ||
+                    !connectionManager.getServerCapabilities().isControlSupported(VLV_CONTROL_OID))
+            {
+                throw new GenericLDAPConnectorException(GenLDAPExceptionMessages.GLE_THE_LDAP_SERVER_DOES_NOT_SUPPORT_VIRTUAL_LIST_VIEWS);
+            }
+
+            if (pageSize > 0)
+            {
+                throw new GenericLDAPConnectorException(GenLDAPExceptionMessages.GLE_PAGING_CANNOT_BE_COMBINED_WITH_A_VIRTUAL_LIST_VIEW);
+            }
+        }
+
+        // Only complete result sets are cached, so paged searches and windows are not.
+        SearchResultCache.SearchKey cacheKey = null;
+        long cacheGeneration = 0;
+
+        if ((m_resultCache != null) && (pageSize <= 0) && (cookie == null) && (vlvControl == null))
+        {
+            m_resultCache.attach(connectionManager.getChangeBus());
+
+            cacheKey = SearchResultCache.createKey(dn, scope, filter, attributeNames, sort,
+                                                   maxSearchResults, referralFollowing);
+
+            LDAPEntry[] cached = m_resultCache.get(cacheKey);
+
+            if (LOG.isDebugEnabled())
+            {
+                LOG.debug("Search result cache " + ((cached == null) ? "miss" : "hit") + ". " +
+                          m_resultCache.getStatistics());
+            }
+
+            if (cached != null)
+            {
+                ResponseBuilder builder = createResponseBuilder(method, connectionManager, xmi);
+
+                for (LDAPEntry entry : cached)
+                {
+                    builder.appendEntry(entry);
+                }
+
+                return;
+            }
+
+            // The generation must be read before searching, so a change made during the search
+            // prevents the outdated results from being cached.
+            cacheGeneration = m_resultCache.getGeneration();
+        }
+
+        // When the same search is running already, its results are used.
+        RequestCoalescer.Flight<SearchResultCache.SearchKey, LDAPEntry[]> flight = null;
+        RequestCoalescer<SearchResultCache.SearchKey, LDAPEntry[]> coalescer = connectionManager
+                                                                              .getSearchCoalescer();
+
+        if ((coalescer != null) && (pageSize <= 0) && (cookie == null) && (vlvControl == null))
+        {
+            flight = coalescer.join((cacheKey != null)
+                                    ? cacheKey
+                                    : SearchResultCache.createKey(dn, scope, filter,
+                                                                  attributeNames, sort,
+                                                                  maxSearchResults,
+                                                                  referralFollowing));
+
+            if (!flight.isLeader())
+            {
+                LDAPEntry[] shared = flight.await();
+
+                if (shared != null)
+                {
+                    ResponseBuilder builder = createResponseBuilder(method, connectionManager,
+                                                                    xmi);
+
+                    for (LDAPEntry entry : shared)
+                    {
+                        builder.appendEntry(entry);
+                    }
+
+                    return;
+                }
+
+                // The search failed or had too many results to share, so run it separately.
+                flight = null;
+            }
+        }
+
+        LDAPEntry[] retainedEntries = null;
+
         try
         {
             if (LOG.isDebugEnabled())
             {
                 LOG.debug("Executing search. Parameters:\nDN: '" + dn + "'\nScope: '" + scope + "'\nFilter: '" +
                           filter + "'\nMax search results: '" + maxSearchResults + "'\nSort: '" + sort +
-                          "'\nFollow referrals: '" + referralFollowing + "'");
+                          "'\nFollow referrals: '" + referralFollowing + "'\nPage size: '" +
+                          pageSize + "'");
             }
 
             // Add contraints.
@@ -190,25 +396,305 @@ public class SearchLDAPImpl extends GetLDAPObjectImpl
             constraints.setMaxResults(maxSearchResults);
             constraints.setReferralFollowing(referralFollowing);
 
-            // Execute the actual LDAP search.
-            LDAPSearchResults results = connectionManager.search(dn, scope, filter, (String[])
-                                                                 attributeNames, false, constraints);
+            if (vlvControl != null)
+            {
+                // The window limits the number of results.
+                constraints.setMaxResults(0);
+                constraints.setControls(new LDAPControl[]
+                                        {
+                                            sortSpecification.createControl(true), vlvControl
+                                        });
+            }
+            else if (serverSort)
+            {
+                constraints.setControls(sortSpecification.createControl(true));
+            }
 
-            ArrayList<LDAPEntry> entriesList = new ArrayList<LDAPEntry>();
+            // The response is built while the results come in, so only the current entry is
+            // kept in memory.
+            ResponseBuilder builder = createResponseBuilder(method, connectionManager, xmi);
+            SearchLease results;
 
-            while (results.hasMore())
+            if ((cacheKey != null) || (flight != null))
             {
-                LDAPEntry entry = results.next();
+                builder.retainEntries(Math.max((cacheKey != null)
+                                               ? m_resultCache.getMaxWeight() : 0,
+                                               (flight != null) ? MAX_SHARED_ENTRIES : 0));
+            }
 
-                entriesList.add(entry);
+            try
+            {
+                results = executeSearch(connectionManager, dn, scope, filter, attributeNames,
+                                        constraints, pageSize, cookie, builder,
+                                        serverSort ? null : sortSpecification);
+            }
+            catch (LDAPException e)
+            {
+                // A server can still refuse to sort, e.g. on an attribute without an ordering
+                // rule. As long as nothing was returned the search can be done again.
+                if (!serverSort || !SortSpecification.isRejected(e) ||
+                        (builder.getEntryCount() > 0) || (cookie != null) ||
+                        (vlvControl != null))
+                {
+                    throw e;
+                }
+
+                LOG.warn(e, GeneralMessages.THE_SERVER_REFUSED_TO_SORT_ON_0_SORTING_IN_THE_CONNECTOR,
+                         sortSpecification);
+
+                constraints.setControls(new LDAPControl[0]);
+                results = executeSearch(connectionManager, dn, scope, filter, attributeNames,
+                                        constraints, pageSize, cookie, builder,
+                                        sortSpecification);
             }
 
-            // Build up the actual response.
-            buildResponse(method, connectionManager, xmi, entriesList.toArray(new LDAPEntry[entriesList.size()]));
+            if (LOG.isDebugEnabled())
+            {
+                LOG.debug("Returned " + builder.getEntryCount() + " entries for the search.");
+            }
+
+            retainedEntries = builder.getRetainedEntries();
+
+            if ((cacheKey != null) && (retainedEntries != null))
+            {
+                m_resultCache.put(cacheKey, retainedEntries, cacheGeneration);
+            }
+
+            if (vlvControl != null)
+            {
+                addVirtualListResponse(method.getResponseXML(), results.getResponseControls());
+            }
+
+            // If there are more pages the caller gets the cookie to request the next one.
+            if (results instanceof PagedSearchLease)
+            {
+                String nextCookie = ((PagedSearchLease) results).getCookie();
+
+                if (nextCookie != null)
+                {
+                    Node.createElementWithParentNS(PARAM_COOKIE, nextCookie,
+                                                   method.getResponseXML());
+                }
+            }
         }
         catch (Exception e)
         {
             throw new GenericLDAPConnectorException(e, GenLDAPExceptionMessages.ERROR_EXECUTING_SEARCH_REQUEST);
         }
+        finally
+        {
+            // The searches that waited for this one get the results. On an error they search
+            // themselves.
+            if (flight != null)
+            {
+                flight.complete(retainedEntries);
+            }
+        }
+    }
+
+    /**
+     * This method executes the search and adds the results to the response. With paging only
+     * one page is returned.
+     *
+     * @param   connectionManager  The connection manager.
+     * @param   dn                 The DN to start searching from.
+     * @param   scope              The scope for searching.
+     * @param   filter             The filter to use.
+     * @param   attributeNames     The names of the attributes to retrieve.
+     * @param   constraints        The constraints to apply.
+     * @param   pageSize           The size of the page. 0 if paging is not used.
+     * @param   cookie             The cookie of the previous page.
+     * @param   builder            The builder for the response.
+     * @param   sortSpecification  The sort order if the connector should sort the results. null
+     *                             if the results should be returned in the order they arrive.
+     *
+     * @return  The lease on the search results. It has been closed already.
+     *
+     * @throws  GenericLDAPConnectorException  In case the search could not be started.
+     * @throws  LDAPException                  In case of an error while reading the results.
+     */
+    private SearchLease executeSearch(IConnectionManager connectionManager, String dn, int scope,
+                                      String filter, String[] attributeNames,
+                                      LDAPSearchConstraints constraints, int pageSize,
+                                      String cookie, ResponseBuilder builder,
+                                      SortSpecification sortSpecification)
+                               throws GenericLDAPConnectorException, LDAPException
+    {
+        int maxResults = constraints.getMaxResults();
+        String[] searchAttributes = attributeNames;
+
+        if (sortSpecification != null)
+        {
+            // All entries must be read to find the first ones in the sort order. Only the
+            // entries that can end up in the response are kept.
+            constraints.setMaxResults(0);
+            searchAttributes = sortSpecification.addSortAttributes(attributeNames);
+        }
+
+        // The lease keeps the connection until all results have been read.
+        SearchLease results;
+
+        if (pageSize > 0)
+        {
+            results = connectionManager.openPagedSearch(dn, scope, filter, searchAttributes, false,
+                                                        constraints, pageSize, cookie);
+        }
+        else
+        {
+            results = connectionManager.openSearch(dn, scope, filter, searchAttributes, false,
+                                                   constraints);
+        }
+
+        // The remaining ranges of the values of an attribute are read on the connection of the
+        // search.
+        builder.setRangeReader(results);
+
+        try
+        {
+            if (sortSpecification != null)
+            {
+                // With paging only the entries of the page are sorted.
+                for (LDAPEntry entry : sortSpecification.selectFirst(results,
+                                                                     (pageSize > 0) ? 0
+                                                                                    : maxResults))
+                {
+                    builder.appendEntry(entry);
+                }
+            }
+            else
+            {
+                while (results.hasMore())
+                {
+                    builder.appendEntry(results.next());
+                }
+            }
+        }
+        finally
+        {
+            results.close();
+            builder.setRangeReader(connectionManager);
+            constraints.setMaxResults(maxResults);
+        }
+
+        return results;
+    }
+
+    /**
+     * This method adds the position of the window and the size of the list to the response.
+     *
+     * @param  responseXML  The response XML.
+     * @param  controls     The controls the server returned.
+     */
+    private void addVirtualListResponse(int responseXML, LDAPControl[] controls)
+    {
+        if (controls == null)
+        {
+            return;
+        }
+
+        for (LDAPControl control : controls)
+        {
+            if (control instanceof LDAPVirtualListResponse)
+            {
+                LDAPVirtualListResponse vlvResponse = (LDAPVirtualListResponse) control;
+
+                if (LOG.isDebugEnabled())
+                {
+                    LOG.debug("Virtual list view response: position " +
+                              vlvResponse.getFirstPosition() + " of " +
+                              vlvResponse.getContentCount() + ", result code " +
+                              vlvResponse.getResultCode());
+                }
+
+                Node.createElementWithParentNS("targetposition",
+                                               String.valueOf(vlvResponse.getFirstPosition()),
+                                               responseXML);
+                Node.createElementWithParentNS("contentcount",
+                                               String.valueOf(vlvResponse.getContentCount()),
+                                               responseXML);
+
+                if (vlvResponse.getContext() != null)
+                {
+                    Node.createElementWithParentNS(PARAM_VLV_CONTEXT, vlvResponse.getContext(),
+                                                   responseXML);
+                }
+            }
+        }
+    }
+
+    /**
+     * This method creates the virtual list view control for the request. The window is either
+     * positioned by offset (1 is the first entry) or by the first entry that is greater than or
+     * equal to the jump-to value. By default the window holds the maximum number of search
+     * results.
+     *
+     * @param   method            The base method.
+     * @param   xmi               The namespace definitions.
+     * @param   maxSearchResults  The maximum number of search results.
+     *
+     * @return  The control. null if the request does not ask for a virtual list view.
+     *
+     * @throws  GenericLDAPConnectorException  In case of any exceptions.
+     */
+    private LDAPVirtualListControl createVirtualListControl(BaseMethod method, XPathMetaInfo xmi,
+                                                            int maxSearchResults)
+                                                     throws GenericLDAPConnectorException
+    {
+        int offset = getOptionalInt(method, xmi, PARAM_VLV_OFFSET, 0);
+        String jumpTo = getOptionalString(method, xmi, PARAM_VLV_JUMP_TO, null);
+
+        if ((offset <= 0) && (jumpTo == null))
+        {
+            return null;
+        }
+
+        int before = getOptionalInt(method, xmi, PARAM_VLV_BEFORE, 0);
+        int after = getOptionalInt(method, xmi, PARAM_VLV_AFTER,
+                                   Math.max(maxSearchResults - before - 1, 0));
+        String context = getOptionalString(method, xmi, PARAM_VLV_CONTEXT, null);
+
+        if (jumpTo != null)
+        {
+            return new LDAPVirtualListControl(jumpTo, before, after, context);
+        }
+
+        return new LDAPVirtualListControl(offset, before, after,
+                                          getOptionalInt(method, xmi, PARAM_VLV_CONTENT_COUNT, 0),
+                                          context);
+    }
+
+    /**
+     * This method returns the integer value of an optional parameter.
+     *
+     * @param   method        The base method.
+     * @param   xmi           The namespace definitions.
+     * @param   name          The name of the parameter.
+     * @param   defaultValue  The value if the parameter is not defined or empty.
+     *
+     * @return  The value of the parameter.
+     *
+     * @throws  GenericLDAPConnectorException  In case the value is not a number.
+     */
+    private int getOptionalInt(BaseMethod method, XPathMetaInfo xmi, String name,
+                               int defaultValue)
+                        throws GenericLDAPConnectorException
+    {
+        String value = getOptionalString(method, xmi, name, null);
+
+        if (value == null)
+        {
+            return defaultValue;
+        }
+
+        try
+        {
+            return Integer.parseInt(value);
+        }
+        catch (NumberFormatException e)
+        {
+            throw new GenericLDAPConnectorException(e,
+                                                    GenLDAPExceptionMessages.GLE_THE_VALUE_0_FOR_PARAMETER_1_IS_NOT_A_NUMBER,
+                                                    value, name);
+        }
     }
 }
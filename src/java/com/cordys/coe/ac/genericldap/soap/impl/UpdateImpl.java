@@ -21,6 +21,8 @@ import java.util.ArrayList;
 import java.util.List;
 
 import com.cordys.coe.ac.genericldap.EDynamicAction;
+import com.cordys.coe.ac.genericldap.cache.DirectoryChangeBus;
+import com.cordys.coe.ac.genericldap.connection.EPoolType;
 import com.cordys.coe.ac.genericldap.connection.IConnectionManager;
 import com.cordys.coe.ac.genericldap.exception.GenericLDAPConnectorException;
 import com.cordys.coe.ac.genericldap.localization.GenLDAPExceptionMessages;
@@ -66,7 +68,7 @@ public class UpdateImpl extends BaseImplementation
         LDAPConnection connection = null;
 		try
         {
-            connection = cm.getConnection();
+            connection = cm.getConnection(EPoolType.WRITE);
 
             //Prepare all individual update requests.
             List<LDAPUpdateWrapper> updateWrappers = prepare(method, connection);
@@ -206,6 +208,30 @@ public class UpdateImpl extends BaseImplementation
                                                     GenLDAPExceptionMessages.GLE_ERROR_DURING_UPDATE_BUT_ROLLBACK_FAILED_REASON_,
                                                     messages.toString());
         }
+        finally
+        {
+            // Even a rolled back update may have been visible, so the caches must drop the
+            // entries that were touched, including the one that failed.
+            publishChanges(updateWrappers, Math.min(count + 1, updateWrappers.size()), method);
+        }
+    }
+
+    /**
+     * This method publishes the changes of the given updates, so the caches can invalidate the
+     * affected entries.
+     *
+     * @param updateWrappers  The update wrappers that were committed.
+     * @param count           The number of update wrappers that have been executed.
+     * @param method          The SOAP method that is being executed.
+     */
+    private void publishChanges(List<LDAPUpdateWrapper> updateWrappers, int count, BaseMethod method)
+    {
+        DirectoryChangeBus bus = method.getConfiguration().getConnectionManager().getChangeBus();
+
+        for (int i = 0; i < count; i++)
+        {
+            bus.publish(updateWrappers.get(i).getChangeEvent());
+        }
     }
 
 }
@@ -0,0 +1,61 @@
+/*
+ * Copyright 2007 Cordys R&D B.V. 
+ *
+ *   This file is part of the Cordys Generic LDAP Connector. 
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.cordys.coe.ac.genericldap.util;
+
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Thread factory which creates named daemon threads. The daemon flag makes sure that the
+ * background threads of the connector never keep the SOAP processor alive.
+ *
+ * @author  pgussow
+ */
+public class NamedThreadFactory
+    implements ThreadFactory
+{
+    /**
+     * Holds the number of the next thread.
+     */
+    private AtomicInteger m_counter = new AtomicInteger(1);
+    /**
+     * Holds the prefix for the thread names.
+     */
+    private String m_prefix;
+
+    /**
+     * Creates a new NamedThreadFactory object.
+     *
+     * @param  prefix  The prefix for the thread names.
+     */
+    public NamedThreadFactory(String prefix)
+    {
+        m_prefix = prefix;
+    }
+
+    /**
+     * @see  java.util.concurrent.ThreadFactory#newThread(java.lang.Runnable)
+     */
+    @Override public Thread newThread(Runnable runnable)
+    {
+        Thread returnValue = new Thread(runnable, m_prefix + "-" + m_counter.getAndIncrement());
+        returnValue.setDaemon(true);
+
+        return returnValue;
+    }
+}
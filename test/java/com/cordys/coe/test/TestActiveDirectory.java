@@ -18,7 +18,9 @@
 package com.cordys.coe.test;
 
 import com.cordys.coe.ac.genericldap.config.EConnectionType;
+import com.cordys.coe.ac.genericldap.config.ELoadBalancingStrategy;
 import com.cordys.coe.ac.genericldap.config.IGenLDAPConfiguration;
+import com.cordys.coe.ac.genericldap.config.ServerEndpoint;
 import com.cordys.coe.ac.genericldap.connection.ConnectionManagerFactory;
 import com.cordys.coe.ac.genericldap.connection.IConnectionManager;
 
@@ -29,7 +31,10 @@ import com.novell.ldap.LDAPEntry;
 import com.novell.ldap.LDAPSchema;
 
 import java.security.Provider;
+
+import java.util.Arrays;
 import java.util.Enumeration;
+import java.util.List;
 
 import org.apache.log4j.BasicConfigurator;
 import org.apache.log4j.Level;
@@ -104,6 +109,22 @@ public class TestActiveDirectory
          */
         private IConnectionManager m_cm;
 
+        /**
+         * @see  com.cordys.coe.ac.genericldap.config.IGenLDAPConfiguration#getAcquireTimeout()
+         */
+        @Override public long getAcquireTimeout()
+        {
+            return 30000L;
+        }
+
+        /**
+         * @see  com.cordys.coe.ac.genericldap.config.IGenLDAPConfiguration#getChangeListenerBases()
+         */
+        @Override public List<String> getChangeListenerBases()
+        {
+            return Arrays.asList(new String[0]);
+        }
+
         /**
          * @see  com.cordys.coe.ac.genericldap.config.IGenLDAPConfiguration#getConnectionManager()
          */
@@ -131,6 +152,14 @@ public class TestActiveDirectory
             return null;
         }
 
+        /**
+         * @see  com.cordys.coe.ac.genericldap.config.IGenLDAPConfiguration#getIdleTimeout()
+         */
+        @Override public int getIdleTimeout()
+        {
+            return 300;
+        }
+
         /**
          * @see  com.cordys.coe.ac.genericldap.config.IGenLDAPConfiguration#getKeyStore()
          */
@@ -140,6 +169,22 @@ public class TestActiveDirectory
             return null;
         }
 
+        /**
+         * @see  com.cordys.coe.ac.genericldap.config.IGenLDAPConfiguration#getLoadBalancingStrategy()
+         */
+        @Override public ELoadBalancingStrategy getLoadBalancingStrategy()
+        {
+            return ELoadBalancingStrategy.FAILOVER;
+        }
+
+        /**
+         * @see  com.cordys.coe.ac.genericldap.config.IGenLDAPConfiguration#getMaxConnections()
+         */
+        @Override public int getMaxConnections()
+        {
+            return 5;
+        }
+
         /**
          * @see  com.cordys.coe.ac.genericldap.config.IGenLDAPConfiguration#getMaximumNumberOfSearchResults()
          */
@@ -149,6 +194,30 @@ public class TestActiveDirectory
             return 50;
         }
 
+        /**
+         * @see  com.cordys.coe.ac.genericldap.config.IGenLDAPConfiguration#getMaxPinnedSearches()
+         */
+        @Override public int getMaxPinnedSearches()
+        {
+            return 2;
+        }
+
+        /**
+         * @see  com.cordys.coe.ac.genericldap.config.IGenLDAPConfiguration#getMinConnections()
+         */
+        @Override public int getMinConnections()
+        {
+            return 1;
+        }
+
+        /**
+         * @see  com.cordys.coe.ac.genericldap.config.IGenLDAPConfiguration#getNegativeCacheTTL()
+         */
+        @Override public int getNegativeCacheTTL()
+        {
+            return 0;
+        }
+
         /**
          * @see  com.cordys.coe.ac.genericldap.config.IGenLDAPConfiguration#getNrOfConnections()
          */
@@ -158,6 +227,14 @@ public class TestActiveDirectory
             return 5;
         }
 
+        /**
+         * @see  com.cordys.coe.ac.genericldap.config.IGenLDAPConfiguration#getPagedSearchTimeout()
+         */
+        @Override public int getPagedSearchTimeout()
+        {
+            return 300;
+        }
+
         /**
          * @see  com.cordys.coe.ac.genericldap.config.IGenLDAPConfiguration#getPassword()
          */
@@ -176,6 +253,30 @@ public class TestActiveDirectory
             return 389;
         }
 
+        /**
+         * @see  com.cordys.coe.ac.genericldap.config.IGenLDAPConfiguration#getSchemaCacheDir()
+         */
+        @Override public String getSchemaCacheDir()
+        {
+            return "";
+        }
+
+        /**
+         * @see  com.cordys.coe.ac.genericldap.config.IGenLDAPConfiguration#getSchemaRefreshInterval()
+         */
+        @Override public int getSchemaRefreshInterval()
+        {
+            return 3600;
+        }
+
+        /**
+         * @see  com.cordys.coe.ac.genericldap.config.IGenLDAPConfiguration#getSearchParallelism()
+         */
+        @Override public int getSearchParallelism()
+        {
+            return 1;
+        }
+
         /**
          * @see  com.cordys.coe.ac.genericldap.config.IGenLDAPConfiguration#getSearchRoot()
          */
@@ -203,6 +304,14 @@ public class TestActiveDirectory
             return "10.1.36.15";
         }
 
+        /**
+         * @see  com.cordys.coe.ac.genericldap.config.IGenLDAPConfiguration#getServers()
+         */
+        @Override public List<ServerEndpoint> getServers()
+        {
+            return Arrays.asList(new ServerEndpoint(getServer(), getPort()));
+        }
+
         /**
          * @see  com.cordys.coe.ac.genericldap.config.IGenLDAPConfiguration#getUser()
          */
@@ -212,6 +321,38 @@ public class TestActiveDirectory
             return "NTDOM\\pgussow";
         }
 
+        /**
+         * @see  com.cordys.coe.ac.genericldap.config.IGenLDAPConfiguration#getValidationInterval()
+         */
+        @Override public int getValidationInterval()
+        {
+            return 60;
+        }
+
+        /**
+         * @see  com.cordys.coe.ac.genericldap.config.IGenLDAPConfiguration#getWriteMaxConnections()
+         */
+        @Override public int getWriteMaxConnections()
+        {
+            return 5;
+        }
+
+        /**
+         * @see  com.cordys.coe.ac.genericldap.config.IGenLDAPConfiguration#getWriteMinConnections()
+         */
+        @Override public int getWriteMinConnections()
+        {
+            return 1;
+        }
+
+        /**
+         * @see  com.cordys.coe.ac.genericldap.config.IGenLDAPConfiguration#getWriteServers()
+         */
+        @Override public List<ServerEndpoint> getWriteServers()
+        {
+            return getServers();
+        }
+
         /**
          * @see  com.cordys.coe.ac.genericldap.config.IGenLDAPConfiguration#isAnonymousBind()
          */
@@ -221,6 +362,22 @@ public class TestActiveDirectory
             return false;
         }
 
+        /**
+         * @see  com.cordys.coe.ac.genericldap.config.IGenLDAPConfiguration#isCoalesceRequests()
+         */
+        @Override public boolean isCoalesceRequests()
+        {
+            return false;
+        }
+
+        /**
+         * @see  com.cordys.coe.ac.genericldap.config.IGenLDAPConfiguration#isLazyStartup()
+         */
+        @Override public boolean isLazyStartup()
+        {
+            return false;
+        }
+
         /**
          * @see  com.cordys.coe.ac.genericldap.config.IGenLDAPConfiguration#setConnectionManager(com.cordys.coe.ac.genericldap.connection.IConnectionManager)
          */